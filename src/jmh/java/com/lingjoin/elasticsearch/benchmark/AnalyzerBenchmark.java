@@ -0,0 +1,85 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.lingjoin.elasticsearch.index.IctclasAnalyzer;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通过 {@link IctclasAnalyzer#tokenStream(String, String)} 分词, 所有线程共享一个 analyzer, 与索引时的用法相同.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AnalyzerBenchmark {
+
+    /**
+     * 所有线程共享的 analyzer.
+     */
+    @State(Scope.Benchmark)
+    public static class SharedAnalyzer {
+        @Param({"false", "true"})
+        public boolean fineSegment;
+
+        private Analyzer analyzer;
+
+        @Setup(Level.Trial)
+        public void setup() throws NlpirException {
+            BenchmarkSupport.init();
+            analyzer = new IctclasAnalyzer(BenchmarkSupport.configuration(), BenchmarkSupport.environment(), fineSegment);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            analyzer.close();
+        }
+    }
+
+    @Param({"short", "paragraph", "long"})
+    public String size;
+
+    private List<String> documents;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        documents = BenchmarkSupport.corpus(size);
+    }
+
+    @Benchmark
+    public int tokenStream(SharedAnalyzer shared) throws IOException {
+        String document = documents.get(next);
+        next = (next + 1) % documents.size();
+        int length = 0;
+        try (TokenStream stream = shared.analyzer.tokenStream("content", document)) {
+            CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                length += termAtt.length();
+            }
+            stream.end();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,122 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin;
+import com.lingjoin.elasticsearch.index.IctclasTokenizer;
+import com.lingjoin.elasticsearch.util.Configuration;
+import com.lingjoin.nlpir.NlpirException;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 性能测试的公共部分: 语料加载和 NLPIR 初始化.
+ * <p>
+ * 通过系统属性配置:
+ * <ul>
+ *     <li>ictclas.data: 插件目录, 包含 Data 目录, 默认 src/main/packaging</li>
+ *     <li>ictclas.license: 授权码, 默认为空</li>
+ *     <li>ictclas.searchCache: 是否开启搜索分词缓存, 默认 false, 以便测量完整的分词开销</li>
+ *     <li>ictclas.engine: 分词引擎, nlpir 或 dictionary, 默认 nlpir; dictionary 不需要授权, 用于测量插件自身的开销</li>
+ *     <li>ictclas.engineDictionary: dictionary 引擎的词表, 相对于 ictclas.data, 默认为空</li>
+ * </ul>
+ */
+final class BenchmarkSupport {
+
+    private static volatile Configuration configuration;
+    private static volatile Environment environment;
+
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * 读取语料, short 每行一条查询, paragraph 每行一段, long 整个文件作为一篇长文档, mixed 每行一条中英文混合的文本.
+     *
+     * @param size short, paragraph, long 或 mixed
+     * @return the list
+     */
+    static List<String> corpus(String size) {
+        String resource = "/corpus/" + size + ".txt";
+        try (InputStream in = BenchmarkSupport.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalArgumentException("Unknown corpus " + size);
+            }
+            String content = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            if ("long".equals(size)) {
+                return List.of(content);
+            }
+            return content.lines().filter(line -> !line.isBlank()).toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 按插件的方式初始化 NLPIR, 多次调用只初始化一次.
+     *
+     * @throws NlpirException the nlpir exception
+     */
+    static synchronized void init() throws NlpirException {
+        if (configuration != null) {
+            return;
+        }
+        Environment env = createEnvironment();
+        Configuration config = new Configuration(
+                System.getProperty("ictclas.license", ""), "", false,
+                new Configuration.SearchCache(Boolean.getBoolean("ictclas.searchCache"), null, null, null, null),
+                null, null, null, null, null, null, null, null, null,
+                new Configuration.Engine(
+                        System.getProperty("ictclas.engine", "nlpir"), System.getProperty("ictclas.engineDictionary")
+                ),
+                null, null
+        );
+        // 创建分词器时完成初始化
+        try (IctclasTokenizer ignored = new IctclasTokenizer(config, env, false)) {
+            assert ignored != null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        environment = env;
+        configuration = config;
+    }
+
+    /**
+     * Gets configuration.
+     *
+     * @return the configuration
+     */
+    static Configuration configuration() {
+        return configuration;
+    }
+
+    /**
+     * Gets environment.
+     *
+     * @return the environment
+     */
+    static Environment environment() {
+        return environment;
+    }
+
+    // 插件目录固定为 plugins/analysis-ictclas, 在临时目录中链接到 ictclas.data
+    private static Environment createEnvironment() {
+        try {
+            Path data = Path.of(System.getProperty("ictclas.data", "src/main/packaging")).toAbsolutePath();
+            Path home = Files.createTempDirectory("ictclas-benchmark");
+            Files.createDirectories(home.resolve("plugins"));
+            Files.createSymbolicLink(home.resolve("plugins").resolve(IctclasAnalysisPlugin.PLUGIN_NAME), data);
+            Settings settings = Settings.builder()
+                    .put("path.home", home.toString())
+                    .build();
+            return new Environment(settings, null);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 比较两次 JMH 结果 (-rf json), 输出每个测试的耗时和每次操作的内存分配变化.
+ * <p>
+ * 参数: 基准结果文件, 当前结果文件, 允许的退化百分比. 任何一项耗时退化超过阈值时以状态码 1 退出.
+ */
+public final class CompareResults {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+
+    private CompareResults() {
+    }
+
+    private record Result(String mode, double score, String unit, double allocPerOp) {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults <baseline.json> <current.json> [threshold percent]");
+            System.exit(2);
+        }
+        Map<String, Result> baseline = read(Path.of(args[0]));
+        Map<String, Result> current = read(Path.of(args[1]));
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        int regressions = 0;
+        System.out.printf(Locale.ROOT, "%-90s %14s %14s %9s %12s %12s%n",
+                "Benchmark", "Baseline", "Current", "Change", "B/op base", "B/op now");
+        for (Map.Entry<String, Result> entry : current.entrySet()) {
+            Result now = entry.getValue();
+            Result base = baseline.get(entry.getKey());
+            if (base == null) {
+                System.out.printf(Locale.ROOT, "%-90s %14s %14.3f %9s %12s %12.0f%n",
+                        entry.getKey(), "-", now.score(), "new", "-", now.allocPerOp());
+                continue;
+            }
+            double change = (now.score() - base.score()) / base.score() * 100;
+            // 吞吐量越低越差, 其余模式耗时越高越差
+            double regression = "thrpt".equals(now.mode()) ? -change : change;
+            boolean regressed = regression > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-90s %14.3f %14.3f %+8.1f%% %12.0f %12.0f%s%n",
+                    entry.getKey(), base.score(), now.score(), change, base.allocPerOp(), now.allocPerOp(),
+                    regressed ? "  REGRESSION" : "");
+        }
+        if (regressions > 0) {
+            System.out.printf(Locale.ROOT, "%d benchmark(s) regressed by more than %.1f%%%n", regressions, threshold);
+            System.exit(1);
+        }
+    }
+
+    private static Map<String, Result> read(Path path) throws IOException {
+        Map<String, Result> results = new TreeMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(Files.readAllBytes(path))) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText());
+            Map<String, String> params = new TreeMap<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = run.path("params").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            params.forEach((name, value) -> key.append(' ').append(name).append('=').append(value));
+            key.append(" threads=").append(run.path("threads").asInt(1));
+
+            double allocPerOp = Double.NaN;
+            for (Iterator<Map.Entry<String, JsonNode>> it = run.path("secondaryMetrics").fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> metric = it.next();
+                if (metric.getKey().endsWith(ALLOC_NORM)) {
+                    allocPerOp = metric.getValue().path("score").asDouble();
+                }
+            }
+            JsonNode primary = run.path("primaryMetric");
+            results.put(key.toString(), new Result(
+                    run.path("mode").asText(), primary.path("score").asDouble(), primary.path("scoreUnit").asText(), allocPerOp
+            ));
+        }
+        return results;
+    }
+}
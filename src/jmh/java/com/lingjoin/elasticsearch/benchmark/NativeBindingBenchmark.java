@@ -0,0 +1,82 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.lingjoin.elasticsearch.index.TokenResults;
+import com.lingjoin.nlpir.IctclasDirect;
+import com.lingjoin.nlpir.IctclasNative;
+import com.lingjoin.nlpir.NlpirException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NLPIR_Tokenizer4IR 本身的开销, 比较 JNA 接口 (String 输入输出) 与 direct mapping (UTF-8 字节) 两种调用方式,
+ * 以及两种方式加上解析结果的开销.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NativeBindingBenchmark {
+
+    @Param({"short", "paragraph", "long"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean fineSegment;
+
+    private List<String> documents;
+    private int next;
+    private final TokenResults results = new TokenResults();
+
+    @Setup(Level.Trial)
+    public void setup() throws NlpirException {
+        BenchmarkSupport.init();
+        if (!IctclasDirect.isAvailable()) {
+            throw new IllegalStateException("NLPIR direct mapping 不可用", IctclasDirect.getUnavailableCause());
+        }
+        documents = BenchmarkSupport.corpus(size);
+    }
+
+    private String nextDocument() {
+        String document = documents.get(next);
+        next = (next + 1) % documents.size();
+        return document;
+    }
+
+    @Benchmark
+    public String proxy() {
+        return IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(nextDocument(), fineSegment);
+    }
+
+    @Benchmark
+    public IctclasDirect.Utf8Result direct() {
+        return IctclasDirect.tokenize(nextDocument(), fineSegment);
+    }
+
+    @Benchmark
+    public TokenResults proxyAndParse() {
+        results.parse(IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(nextDocument(), fineSegment));
+        return results;
+    }
+
+    @Benchmark
+    public TokenResults directAndParse() {
+        IctclasDirect.Utf8Result utf8Result = IctclasDirect.tokenize(nextDocument(), fineSegment);
+        results.parse(utf8Result.bytes(), 0, utf8Result.length());
+        return results;
+    }
+}
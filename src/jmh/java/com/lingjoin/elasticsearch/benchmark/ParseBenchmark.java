@@ -0,0 +1,75 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.lingjoin.elasticsearch.index.TokenResults;
+import com.lingjoin.nlpir.IctclasNative;
+import com.lingjoin.nlpir.NlpirException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解析 NLPIR_Tokenizer4IR 输出的开销, json 在初始化时由 NLPIR 生成, 测量时不调用 native.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ParseBenchmark {
+
+    @Param({"short", "paragraph", "long"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean fineSegment;
+
+    private String[] json;
+    private byte[][] utf8;
+    private int next;
+    private final TokenResults results = new TokenResults();
+
+    @Setup(Level.Trial)
+    public void setup() throws NlpirException {
+        BenchmarkSupport.init();
+        List<String> documents = BenchmarkSupport.corpus(size);
+        json = new String[documents.size()];
+        utf8 = new byte[documents.size()][];
+        for (int i = 0; i < documents.size(); i++) {
+            json[i] = IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(documents.get(i), fineSegment);
+            utf8[i] = json[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int nextDocument() {
+        int document = next;
+        next = (next + 1) % json.length;
+        return document;
+    }
+
+    @Benchmark
+    public TokenResults parseString() {
+        results.parse(json[nextDocument()]);
+        return results;
+    }
+
+    @Benchmark
+    public TokenResults parseBytes() {
+        byte[] bytes = utf8[nextDocument()];
+        results.parse(bytes, 0, bytes.length);
+        return results;
+    }
+}
@@ -0,0 +1,81 @@
+package com.lingjoin.elasticsearch.benchmark;
+
+import com.lingjoin.elasticsearch.index.IctclasTokenizer;
+import com.lingjoin.elasticsearch.index.IctclasTokenizerSettings;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.analysis.Tokenizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 完整的 {@link IctclasTokenizer} 分词过程: setReader, reset, incrementToken, end, close, 每个线程复用一个分词器.
+ * <p>
+ * fastPathMinRun 为 0 时全部由 NLPIR 分词, 在 mixed 语料上与其他值比较可以看到英文片段在 Java 中分词的收益.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenizerBenchmark {
+
+    @Param({"short", "paragraph", "long", "mixed"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean fineSegment;
+
+    @Param({"0", "32"})
+    public int fastPathMinRun;
+
+    private List<String> documents;
+    private int next;
+    private Tokenizer tokenizer;
+
+    @Setup(Level.Trial)
+    public void setup() throws NlpirException {
+        BenchmarkSupport.init();
+        documents = BenchmarkSupport.corpus(size);
+        tokenizer = new IctclasTokenizer(
+                BenchmarkSupport.configuration(), BenchmarkSupport.environment(), fineSegment,
+                new IctclasTokenizerSettings(0, 0, 2048, fastPathMinRun)
+        );
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        tokenizer.close();
+    }
+
+    @Benchmark
+    public int tokenize() throws IOException {
+        String document = documents.get(next);
+        next = (next + 1) % documents.size();
+        tokenizer.setReader(new StringReader(document));
+        tokenizer.reset();
+        int tokens = 0;
+        while (tokenizer.incrementToken()) {
+            tokens++;
+        }
+        tokenizer.end();
+        tokenizer.close();
+        return tokens;
+    }
+}
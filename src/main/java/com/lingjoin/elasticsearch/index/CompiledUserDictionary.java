@@ -0,0 +1,135 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import org.elasticsearch.common.hash.MessageDigests;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * NLPIR 编译后的用户词典 Data/UserDict.pdat, NLPIR_Init 时自动加载.
+ * <p>
+ * 编译后在同一目录写入 UserDict.checksum, 记录用户词典文件内容的 SHA-256, overWrite 以及编译结果的大小和修改时间.
+ * 两者都与当前一致时不需要再导入用户词典; 编译结果被替换 (例如重新安装插件) 时大小或修改时间会变化, 视为过期.
+ * <p>
+ * UserDict.pdat 是符号链接时跟随链接, 校验文件写在实际文件旁边. 数据集中的 UserDict.pdat 是临时目录中的副本时,
+ * 校验文件随副本在下次启动时删除, 用户词典会重新导入.
+ */
+final class CompiledUserDictionary {
+
+    /**
+     * NLPIR 编译后的用户词典文件名
+     */
+    static final String COMPILED = "UserDict.pdat";
+
+    /**
+     * 校验文件名
+     */
+    static final String STAMP = "UserDict.checksum";
+
+    private final Path compiled;
+
+    /**
+     * Instantiates a new Compiled user dictionary.
+     *
+     * @param dataDirectory NLPIR 的 Data 目录
+     */
+    CompiledUserDictionary(Path dataDirectory) {
+        this.compiled = dataDirectory.resolve(COMPILED);
+    }
+
+    // 与 NLPIR 实际读写的 UserDict.pdat 在同一目录
+    private Path stamp() throws IOException {
+        return Access.doPrivilegedIOException(() -> {
+            Path target = Files.exists(compiled) ? compiled.toRealPath() : compiled;
+            return target.resolveSibling(STAMP);
+        });
+    }
+
+    /**
+     * 用户词典文件内容的 SHA-256 和 overWrite, 任一变化都需要重新编译.
+     *
+     * @param source    用户词典文件
+     * @param overWrite 导入时是否覆盖原有用户词典
+     * @return the string
+     * @throws IOException 读取失败
+     */
+    static String key(Path source, boolean overWrite) throws IOException {
+        byte[] digest = Access.doPrivilegedIOException(() -> {
+            try (InputStream in = Files.newInputStream(source)) {
+                return MessageDigests.digest(in, MessageDigests.sha256());
+            }
+        });
+        return MessageDigests.toHexString(digest) + " " + overWrite;
+    }
+
+    /**
+     * 编译结果是否与 key 对应.
+     *
+     * @param key the key
+     * @return the boolean
+     * @throws IOException 读取失败
+     */
+    boolean isUpToDate(String key) throws IOException {
+        try {
+            Path stamp = stamp();
+            String recorded = Access.doPrivilegedIOException(() -> Files.readString(stamp, StandardCharsets.UTF_8));
+            return recorded.strip().equals(key + " " + attributes());
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 导入前删除校验文件, 导入或编译中途失败时下次启动重新编译.
+     *
+     * @throws IOException 删除失败
+     */
+    void invalidate() throws IOException {
+        Path stamp = stamp();
+        Access.doPrivilegedIOException(() -> Files.deleteIfExists(stamp));
+    }
+
+    /**
+     * 保存当前用户词典并记录 key.
+     *
+     * @param dictionary the dictionary
+     * @param key        the key
+     * @return 是否成功, 引擎不支持保存时返回 false
+     * @throws IOException 写入校验文件失败
+     */
+    boolean compile(UserDictionary.NativeDictionary dictionary, String key) throws IOException {
+        if (!dictionary.saveDictionary()) {
+            return false;
+        }
+        String recorded = key + " " + attributes();
+        Path stamp = stamp();
+        Access.doPrivilegedIOException(() -> Files.writeString(stamp, recorded, StandardCharsets.UTF_8));
+        return true;
+    }
+
+    private String attributes() throws IOException {
+        try {
+            BasicFileAttributes attributes = Access.doPrivilegedIOException(
+                    () -> Files.readAttributes(compiled, BasicFileAttributes.class)
+            );
+            return attributes.size() + " " + attributes.lastModifiedTime().toMillis();
+        } catch (NoSuchFileException e) {
+            return "missing";
+        }
+    }
+
+    /**
+     * Gets compiled path.
+     *
+     * @return the path
+     */
+    Path getCompiled() {
+        return compiled;
+    }
+}
@@ -0,0 +1,268 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 纯 Java 的词典分词引擎, 结果只取决于词表, 用于没有 NLPIR 授权的环境中测试和测量分词器自身的开销.
+ * <p>
+ * 中文部分按正向最大匹配切分, 词表中没有的汉字单独成词, 中文标点的词性为 w. 细粒度分词时在每个词之后输出其内部的词表词,
+ * 按开始位置和长度从长到短排列. 不含中文的部分与 {@link ScriptAwareSegmenter#tokenize} 的规则相同.
+ * 词表格式与用户词典相同, 每行 "词 词性", 词性可以省略. 用户词典的修改只影响用户词, 删除的词用 {@link #DELETED} 标记,
+ * 修改在用户词典写锁内进行, 分词时持有读锁.
+ */
+public final class DictionaryEngine implements SegmentationEngine {
+
+    /**
+     * 引擎名称
+     */
+    static final String NAME = "dictionary";
+
+    // 已删除的用户词, CharArrayMap 不支持删除
+    private static final Integer DELETED = -1;
+    private static final int PUNCTUATION = PosTags.code("w");
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    private final CharArrayMap<Integer> words;
+    // 只在持有用户词典锁时访问
+    private CharArrayMap<Integer> userWords = new CharArrayMap<>(16, false);
+    private final UserDictionary.NativeDictionary dictionary = new UserWords();
+    private volatile int maxLength;
+    private volatile String lastError = "";
+
+    /**
+     * Instantiates a new Dictionary engine.
+     *
+     * @param entries 词 -> 词性, 词性可以为 null
+     */
+    DictionaryEngine(Map<String, String> entries) {
+        this.words = new CharArrayMap<>(entries.size(), false);
+        int longest = 1;
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            words.put(entry.getKey(), PosTags.code(entry.getValue()));
+            longest = Math.max(longest, entry.getKey().length());
+        }
+        this.maxLength = longest;
+    }
+
+    /**
+     * 从词表文件加载.
+     *
+     * @param path 词表文件, 为 null 时词表为空, 所有汉字单独成词
+     * @return the dictionary engine
+     * @throws IOException 读取词表失败
+     */
+    public static DictionaryEngine load(Path path) throws IOException {
+        return new DictionaryEngine(path == null ? Map.of() : UserDictionary.read(path));
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public BytesRef segment(String text, boolean fineSegment) {
+        Buffers buffers = BUFFERS.get();
+        TokenResults tokens = buffers.tokens;
+        tokens.clear();
+        char[] chars = text.toCharArray();
+        int length = chars.length;
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            while (i < length && !ScriptAwareSegmenter.needsNative(Character.codePointAt(chars, i))) {
+                i++;
+            }
+            if (i > start) {
+                ScriptAwareSegmenter.tokenize(chars, start, i, tokens);
+            }
+            start = i;
+            while (i < length && ScriptAwareSegmenter.needsNative(Character.codePointAt(chars, i))) {
+                i += Character.charCount(Character.codePointAt(chars, i));
+            }
+            if (i > start) {
+                match(chars, start, i, fineSegment, tokens);
+            }
+        }
+        return buffers.write(tokens);
+    }
+
+    // 正向最大匹配
+    private void match(char[] chars, int start, int end, boolean fineSegment, TokenResults target) {
+        int i = start;
+        while (i < end) {
+            int codePoint = Character.codePointAt(chars, i, end);
+            int charCount = Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint)) {
+                i += charCount;
+                continue;
+            }
+            int wordLength = longest(chars, i, end);
+            if (wordLength > 0) {
+                target.add(i, i + wordLength, lookup(chars, i, wordLength), chars, i, wordLength);
+                if (fineSegment && wordLength > 2) {
+                    inner(chars, i, i + wordLength, target);
+                }
+                i += wordLength;
+            } else {
+                int posCode = FallbackSegmenter.isHan(codePoint) ? PosTags.NONE : PUNCTUATION;
+                target.add(i, i + charCount, posCode, chars, i, charCount);
+                i += charCount;
+            }
+        }
+    }
+
+    // 词内的其他词表词, 不包括词本身
+    private void inner(char[] chars, int start, int end, TokenResults target) {
+        for (int begin = start; begin < end; begin++) {
+            int longest = end - begin - (begin == start ? 1 : 0);
+            for (int length = longest; length >= 2; length--) {
+                Integer posCode = lookup(chars, begin, length);
+                if (posCode != null) {
+                    target.add(begin, begin + length, posCode, chars, begin, length);
+                }
+            }
+        }
+    }
+
+    private int longest(char[] chars, int start, int end) {
+        for (int length = Math.min(maxLength, end - start); length > 0; length--) {
+            // 不切开代理对
+            if (Character.isHighSurrogate(chars[start + length - 1]) && start + length < end) {
+                continue;
+            }
+            if (lookup(chars, start, length) != null) {
+                return length;
+            }
+        }
+        return 0;
+    }
+
+    private Integer lookup(char[] chars, int start, int length) {
+        Integer posCode = userWords.get(chars, start, length);
+        if (posCode != null) {
+            return posCode.equals(DELETED) ? null : posCode;
+        }
+        return words.get(chars, start, length);
+    }
+
+    @Override
+    public UserDictionary.NativeDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * 用户词的修改.
+     */
+    private final class UserWords implements UserDictionary.NativeDictionary {
+        @Override
+        public boolean addWord(String entry) {
+            Map<String, String> parsed = UserDictionary.parse(List.of(entry));
+            if (parsed.isEmpty()) {
+                lastError = "empty user word";
+                return false;
+            }
+            parsed.forEach((word, pos) -> addUserWord(userWords, word, pos));
+            return true;
+        }
+
+        @Override
+        public boolean deleteWord(String word) {
+            if (lookup(word.toCharArray(), 0, word.length()) == null) {
+                lastError = "word [" + word + "] does not exist";
+                return false;
+            }
+            userWords.put(word, DELETED);
+            return true;
+        }
+
+        @Override
+        public boolean importDictionary(String path, boolean overwrite) {
+            Map<String, String> entries;
+            try {
+                entries = UserDictionary.read(Path.of(path));
+            } catch (IOException e) {
+                lastError = e.getMessage();
+                return false;
+            }
+            CharArrayMap<Integer> target = overwrite ? new CharArrayMap<>(entries.size(), false) : userWords;
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                addUserWord(target, entry.getKey(), entry.getValue());
+            }
+            userWords = target;
+            return true;
+        }
+
+        @Override
+        public String lastError() {
+            return lastError;
+        }
+    }
+
+    private void addUserWord(CharArrayMap<Integer> target, String word, String pos) {
+        target.put(word, PosTags.code(pos));
+        if (word.length() > maxLength) {
+            maxLength = word.length();
+        }
+    }
+
+    /**
+     * 每个线程复用的分词结果和 json 缓冲.
+     */
+    private static final class Buffers {
+        private final TokenResults tokens = new TokenResults();
+        private final StringBuilder json = new StringBuilder();
+        private final BytesRefBuilder bytes = new BytesRefBuilder();
+
+        // 输出与 NLPIR_Tokenizer4IR 相同的字段
+        private BytesRef write(TokenResults tokens) {
+            json.setLength(0);
+            json.append('[');
+            for (int i = 0; i < tokens.size(); i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"begin\":").append(tokens.begin(i))
+                        .append(",\"end\":").append(tokens.end(i));
+                if (tokens.posCode(i) != PosTags.NONE) {
+                    json.append(",\"pos\":\"");
+                    escape(tokens.pos(i));
+                    json.append('"');
+                }
+                json.append(",\"text\":\"");
+                escape(tokens.textBuffer(), tokens.textStart(i), tokens.textLength(i));
+                json.append("\"}");
+            }
+            json.append(']');
+            bytes.copyChars(json);
+            tokens.release();
+            return bytes.get();
+        }
+
+        private void escape(String value) {
+            escape(value.toCharArray(), 0, value.length());
+        }
+
+        private void escape(char[] chars, int offset, int length) {
+            for (int i = offset; i < offset + length; i++) {
+                char c = chars[i];
+                if (c == '"' || c == '\\') {
+                    json.append('\\').append(c);
+                } else if (c < 0x20) {
+                    json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                } else {
+                    json.append(c);
+                }
+            }
+        }
+    }
+}
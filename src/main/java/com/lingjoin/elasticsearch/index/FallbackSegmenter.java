@@ -0,0 +1,101 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.util.Locale;
+
+/**
+ * NLPIR 不可用或输入超出限制时使用的 Java 分词.
+ * <p>
+ * 连续的汉字按相邻两字切分为二元词, 单个汉字为一元词, 中文标点每个字符为一个词, 其余部分与
+ * {@link ScriptAwareSegmenter#tokenize} 的规则相同. 只依赖字符类型, 耗时与输入长度成正比.
+ */
+final class FallbackSegmenter {
+
+    /**
+     * 使用 Java 分词的原因.
+     */
+    enum Reason {
+        /**
+         * 输入超过 fallback.maxChars
+         */
+        TOO_LONG,
+        /**
+         * NLPIR 调用超过 fallback.timeBudget
+         */
+        TIMEOUT,
+        /**
+         * NLPIR 初始化失败或尚未完成, 或分词引擎调用失败 (例如分词进程重新启动或请求超时)
+         */
+        UNAVAILABLE;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int PUNCTUATION = PosTags.code("w");
+
+    private FallbackSegmenter() {
+    }
+
+    /**
+     * 对文本分词, 结果写入 target.
+     *
+     * @param text   the text
+     * @param target the target
+     */
+    static void segment(String text, TokenResults target) {
+        target.clear();
+        char[] chars = text.toCharArray();
+        int length = chars.length;
+        int i = 0;
+        while (i < length) {
+            int start = i;
+            while (i < length && !ScriptAwareSegmenter.needsNative(Character.codePointAt(chars, i))) {
+                i++;
+            }
+            if (i > start) {
+                ScriptAwareSegmenter.tokenize(chars, start, i, target);
+            }
+            start = i;
+            while (i < length && isHan(Character.codePointAt(chars, i))) {
+                i += Character.charCount(Character.codePointAt(chars, i));
+            }
+            if (i > start) {
+                bigrams(chars, start, i, target);
+            }
+            // 中文标点及全角字符
+            while (i < length) {
+                int codePoint = Character.codePointAt(chars, i);
+                if (!ScriptAwareSegmenter.needsNative(codePoint) || isHan(codePoint)) {
+                    break;
+                }
+                int charCount = Character.charCount(codePoint);
+                if (!Character.isWhitespace(codePoint) && !Character.isSpaceChar(codePoint)) {
+                    target.add(i, i + charCount, PUNCTUATION, chars, i, charCount);
+                }
+                i += charCount;
+            }
+        }
+    }
+
+    // 相邻两字组成二元词, 只有一个字时为一元词
+    private static void bigrams(char[] chars, int start, int end, TokenResults target) {
+        int first = start;
+        int second = first + Character.charCount(Character.codePointAt(chars, first));
+        if (second >= end) {
+            target.add(first, end, PosTags.NONE, chars, first, end - first);
+            return;
+        }
+        while (second < end) {
+            int third = second + Character.charCount(Character.codePointAt(chars, second));
+            target.add(first, third, PosTags.NONE, chars, first, third - first);
+            first = second;
+            second = third;
+        }
+    }
+
+    static boolean isHan(int codePoint) {
+        return Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN;
+    }
+}
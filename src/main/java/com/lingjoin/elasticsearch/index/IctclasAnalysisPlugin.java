@@ -1,21 +1,61 @@
 package com.lingjoin.elasticsearch.index;
 
+import com.lingjoin.elasticsearch.ingest.IctclasEntityProcessor;
+import com.lingjoin.elasticsearch.ingest.IctclasProcessor;
+import com.lingjoin.elasticsearch.query.IctclasPosWeightedQueryBuilder;
+import com.lingjoin.elasticsearch.rest.RestIctclasStatsAction;
+import com.lingjoin.elasticsearch.rest.RestReloadUserDictAction;
+import com.lingjoin.elasticsearch.util.Configuration;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
+import org.elasticsearch.client.internal.Client;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.io.stream.NamedWriteableRegistry;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.IndexScopedSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.env.NodeEnvironment;
 import org.elasticsearch.index.analysis.AnalyzerProvider;
+import org.elasticsearch.index.analysis.CharFilterFactory;
+import org.elasticsearch.index.analysis.TokenFilterFactory;
 import org.elasticsearch.index.analysis.TokenizerFactory;
 import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.elasticsearch.ingest.Processor;
+import org.elasticsearch.plugins.ActionPlugin;
 import org.elasticsearch.plugins.AnalysisPlugin;
+import org.elasticsearch.plugins.IngestPlugin;
 import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.repositories.RepositoriesService;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestHandler;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.FileChangesListener;
+import org.elasticsearch.watcher.FileWatcher;
+import org.elasticsearch.watcher.ResourceWatcherService;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * The type Ictclas analysis plugin.
  */
-public class IctclasAnalysisPlugin extends Plugin implements AnalysisPlugin {
+public class IctclasAnalysisPlugin extends Plugin implements AnalysisPlugin, ActionPlugin, SearchPlugin, IngestPlugin {
     /**
      * The constant LOGGER.
      */
@@ -26,12 +66,131 @@ public class IctclasAnalysisPlugin extends Plugin implements AnalysisPlugin {
      */
     public static final String PLUGIN_NAME = "analysis-ictclas";
 
-    // TODO Filter 停用词
+    /**
+     * 并行分词线程池名称, 可通过 thread_pool.ictclas.size 和 thread_pool.ictclas.queue_size 配置.
+     */
+    public static final String EXECUTOR_NAME = "ictclas";
+
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(Settings settings) {
+        return List.of(new FixedExecutorBuilder(
+                settings, EXECUTOR_NAME, EsExecutors.allocatedProcessors(settings), 1000, "thread_pool." + EXECUTOR_NAME, false
+        ));
+    }
+
+    @Override
+    public Collection<Object> createComponents(
+            Client client, ClusterService clusterService, ThreadPool threadPool,
+            ResourceWatcherService resourceWatcherService, ScriptService scriptService,
+            NamedXContentRegistry xContentRegistry, Environment environment, NodeEnvironment nodeEnvironment,
+            NamedWriteableRegistry namedWriteableRegistry, IndexNameExpressionResolver indexNameExpressionResolver,
+            Supplier<RepositoriesService> repositoriesServiceSupplier
+    ) {
+        ParallelSegmenter.setExecutor(threadPool.executor(EXECUTOR_NAME));
+        // 配置只解析一次, 之后的分词器工厂直接使用
+        Configuration configuration = Configuration.getConfiguration(environment);
+        if (configuration.getStartup().isEager()) {
+            // 在后台初始化并预热, 避免第一次分词请求等待词典加载
+            NlpirInitializer.NODE.startAsync(threadPool.generic(), configuration, environment);
+        }
+        if (configuration.getUserDictReload().isWatch()) {
+            watchUserDictionary(configuration, environment, resourceWatcherService);
+        }
+        return List.of();
+    }
+
+    /**
+     * 监听用户词典文件, 变化后重新加载, 检查间隔由 resource.reload.interval.medium 控制
+     */
+    private static void watchUserDictionary(
+            Configuration configuration, Environment environment, ResourceWatcherService resourceWatcherService
+    ) {
+        String userDict = configuration.getUserDict();
+        if (userDict == null || userDict.isEmpty() || userDict.equals("\"\"")) {
+            return;
+        }
+        FileWatcher watcher = new FileWatcher(Configuration.getUserDictionaryPath(environment, userDict));
+        watcher.addListener(new FileChangesListener() {
+            @Override
+            public void onFileCreated(Path file) {
+                onFileChanged(file);
+            }
+
+            @Override
+            public void onFileChanged(Path file) {
+                UserDictionary dictionary = IctclasTokenizer.getUserDictionary();
+                // 尚未初始化时不需要处理, 初始化时会导入最新的词典
+                if (!dictionary.isConfigured()) {
+                    return;
+                }
+                try {
+                    dictionary.reload();
+                } catch (Exception e) {
+                    LOGGER.error("Reload user dict {} failed", file, e);
+                }
+            }
+        });
+        try {
+            resourceWatcherService.add(watcher, ResourceWatcherService.Frequency.MEDIUM);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot watch user dict {}", userDict, e);
+        }
+    }
+
+    @Override
+    public List<RestHandler> getRestHandlers(
+            Settings settings, RestController restController, ClusterSettings clusterSettings,
+            IndexScopedSettings indexScopedSettings, SettingsFilter settingsFilter,
+            IndexNameExpressionResolver indexNameExpressionResolver, Supplier<DiscoveryNodes> nodesInCluster
+    ) {
+        return List.of(new RestReloadUserDictAction(), new RestIctclasStatsAction());
+    }
+
+    @Override
+    public void close() throws IOException {
+        ParallelSegmenter.setExecutor(null);
+    }
+
+    @Override
+    public Map<String, Processor.Factory> getProcessors(Processor.Parameters parameters) {
+        return Map.of(
+                IctclasProcessor.TYPE, new IctclasProcessor.Factory(parameters.env),
+                IctclasEntityProcessor.TYPE, new IctclasEntityProcessor.Factory(parameters.env)
+        );
+    }
+
+    @Override
+    public List<QuerySpec<?>> getQueries() {
+        return List.of(new QuerySpec<>(
+                IctclasPosWeightedQueryBuilder.NAME,
+                IctclasPosWeightedQueryBuilder::new,
+                IctclasPosWeightedQueryBuilder::fromXContent
+        ));
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<CharFilterFactory>> getCharFilters() {
+        Map<String, AnalysisModule.AnalysisProvider<CharFilterFactory>> extra = new HashMap<>();
+        extra.put("ictclas_normalize", IctclasNormalizeCharFilterFactory::new);
+        return extra;
+    }
+
+    @Override
+    public Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> getTokenFilters() {
+        Map<String, AnalysisModule.AnalysisProvider<TokenFilterFactory>> extra = new HashMap<>();
+        extra.put("ictclas_pos_filter", IctclasPosFilterFactory::new);
+        extra.put("ictclas_stop", IctclasStopFilterFactory::new);
+        extra.put("ictclas_pos_payload", IctclasPosPayloadFilterFactory::new);
+        extra.put("ictclas_pinyin", IctclasPinyinFilterFactory::new);
+        return extra;
+    }
+
     @Override
     public Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> getTokenizers() {
         Map<String, AnalysisModule.AnalysisProvider<TokenizerFactory>> extra = new HashMap<>();
         extra.put("ictclas_search", IctclasTokenizerFactory::getIctclasSearchTokenizerFactory);
         extra.put("ictclas_index", IctclasTokenizerFactory::getIctclasIndexTokenizerFactory);
+        extra.put("ictclas_pretokenized", IctclasPreTokenizedTokenizerFactory::new);
         return extra;
     }
 
@@ -12,6 +12,7 @@ public class IctclasAnalyzer extends Analyzer {
     private final Environment environment;
     private final Configuration configuration;
     private final boolean fineSegment;
+    private final IctclasTokenizerSettings settings;
 
     /**
      * Instantiates a new Ictclas analyzer.
@@ -21,10 +22,23 @@ public class IctclasAnalyzer extends Analyzer {
      * @param fineSegment   the fine segment
      */
     public IctclasAnalyzer(Configuration configuration, Environment environment, boolean fineSegment) {
+        this(configuration, environment, fineSegment, IctclasTokenizerSettings.DEFAULT);
+    }
+
+    /**
+     * Instantiates a new Ictclas analyzer.
+     *
+     * @param configuration the configuration
+     * @param environment   the environment
+     * @param fineSegment   the fine segment
+     * @param settings      the tokenizer settings
+     */
+    public IctclasAnalyzer(Configuration configuration, Environment environment, boolean fineSegment, IctclasTokenizerSettings settings) {
         super();
         this.environment = environment;
         this.fineSegment = fineSegment;
         this.configuration = configuration;
+        this.settings = settings;
     }
 
 
@@ -33,7 +47,7 @@ public class IctclasAnalyzer extends Analyzer {
         try {
             IctclasAnalysisPlugin.LOGGER.debug("New tokenizer IctclasAnalyzer for {}", fieldName);
             IctclasAnalysisPlugin.LOGGER.debug("PluginPath: {}", Configuration.getPluginPath(environment));
-            return new TokenStreamComponents(new IctclasTokenizer(configuration, environment, fineSegment));
+            return new TokenStreamComponents(new IctclasTokenizer(configuration, environment, fineSegment, settings));
         } catch (NlpirException e) {
             IctclasAnalysisPlugin.LOGGER.error(e);
             throw new RuntimeException(e);
@@ -25,7 +25,9 @@ public class IctclasAnalyzerProvider extends AbstractIndexAnalyzerProvider<Ictcl
         super(indexSettings, name, settings);
         // this.fineSegment = fineSegment;
         // this.configuration = Configuration.getConfiguration(environment);
-        analyzer = new IctclasAnalyzer(Configuration.getConfiguration(environment), environment, fineSegment);
+        analyzer = new IctclasAnalyzer(
+                Configuration.getConfiguration(environment), environment, fineSegment, IctclasTokenizerSettings.parse(settings)
+        );
     }
 
     /**
@@ -0,0 +1,205 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.LatencyHistogram;
+import com.lingjoin.elasticsearch.util.NativeMemory;
+import com.lingjoin.elasticsearch.worker.WorkerPool;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 当前节点的分词统计, 供 GET /_ictclas/stats 使用.
+ */
+public final class IctclasNodeStats {
+
+    private IctclasNodeStats() {
+    }
+
+    /**
+     * 获取当前节点统计的快照, 直方图的耗时单位为微秒.
+     *
+     * @param humanReadable 是否在耗时和字节数之前加上可读的值, 对应请求的 human 参数
+     * @return the map
+     */
+    public static Map<String, Object> snapshot(boolean humanReadable) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        NlpirInitializer initializer = NlpirInitializer.NODE;
+        stats.put("state", initializer.getState().name().toLowerCase(Locale.ROOT));
+        SegmentationEngine engine = IctclasTokenizer.getEngine();
+        stats.put("engine", engine == null ? null : engine.name());
+
+        Map<String, Object> init = new LinkedHashMap<>();
+        putTime(init, humanReadable, "took_millis", "took", initializer.getInitNanos());
+        putTime(init, humanReadable, "warmup_took_millis", "warmup_took", initializer.getWarmupNanos());
+        init.put("failures", initializer.getFailures());
+        stats.put("init", init);
+
+        Map<String, Object> nativeMemory = new LinkedHashMap<>();
+        if (engine instanceof NlpirEngine nlpir) {
+            NlpirDataSet dataSet = nlpir.getDataSet();
+            nativeMemory.put("data_profile", dataSet.getProfile().name().toLowerCase(Locale.ROOT));
+            putBytes(nativeMemory, humanReadable, "data_bytes", "data", dataSet.getBytes());
+            putBytes(nativeMemory, humanReadable, "full_data_bytes", "full_data", dataSet.getFullBytes());
+            putBytes(nativeMemory, humanReadable, "rss_before_init_bytes", "rss_before_init", nlpir.getResidentBytesBeforeInit());
+            putBytes(nativeMemory, humanReadable, "rss_after_init_bytes", "rss_after_init", nlpir.getResidentBytesAfterInit());
+        }
+        putBytes(nativeMemory, humanReadable, "rss_bytes", "rss", NativeMemory.residentBytes());
+        stats.put("native_memory", nativeMemory);
+
+        UserDictionary dictionary = IctclasTokenizer.getUserDictionary();
+        Map<String, Object> userDict = new LinkedHashMap<>();
+        userDict.put("configured", dictionary.isConfigured());
+        userDict.put("entries", dictionary.size());
+        userDict.put("version", dictionary.version());
+        stats.put("user_dict", userDict);
+
+        SegmentationStats segmentation = IctclasTokenizer.getStats();
+        NativeCallLimiter limiter = IctclasTokenizer.getNativeCallLimiter();
+        LatencyHistogram.Snapshot inCall = limiter == null ? null : limiter.getInCall().snapshot();
+        double nativeSeconds = inCall == null ? 0 : inCall.getSumNanos() / 1e9;
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("calls", segmentation.getCalls());
+        counters.put("chars", segmentation.getChars());
+        counters.put("tokens", segmentation.getTokens());
+        counters.put("empty_inputs", segmentation.getEmptyInputs());
+        counters.put("native_errors", segmentation.getNativeErrors());
+        counters.put("parse_errors", segmentation.getParseErrors());
+        counters.put("fast_path_chars", segmentation.getFastPathChars());
+        counters.put("fast_path_tokens", segmentation.getFastPathTokens());
+        counters.put("abandoned_calls", segmentation.getAbandonedCalls());
+        counters.put("abandoned_running", segmentation.getAbandonedRunning());
+        // 按 NLPIR 调用的总耗时计算吞吐, 不包括等待许可和解析的时间
+        counters.put("chars_per_second", nativeSeconds == 0 ? 0 : (long) (segmentation.getChars() / nativeSeconds));
+        counters.put("tokens_per_second", nativeSeconds == 0 ? 0 : (long) (segmentation.getTokens() / nativeSeconds));
+        Map<String, Object> fallbacks = new LinkedHashMap<>();
+        for (FallbackSegmenter.Reason reason : FallbackSegmenter.Reason.values()) {
+            fallbacks.put(reason.toString(), segmentation.getFallbacks(reason));
+        }
+        counters.put("fallbacks", fallbacks);
+        stats.put("segmentation", counters);
+        stats.put("native_call", inCall == null ? Map.of() : histogram(inCall));
+        stats.put("parse", histogram(segmentation.getParse().snapshot()));
+
+        if (limiter != null) {
+            Map<String, Object> concurrency = new LinkedHashMap<>();
+            concurrency.put("max", limiter.getMaxConcurrentCalls());
+            concurrency.put("active", limiter.getActiveCalls());
+            concurrency.put("queued", limiter.getQueuedCalls());
+            concurrency.put("timeouts", limiter.getTimeouts());
+            concurrency.put("rejections", limiter.getRejections());
+            concurrency.put("skips", limiter.getSkips());
+            concurrency.put("queue_wait", histogram(limiter.getQueueWait().snapshot()));
+            stats.put("concurrency", concurrency);
+        }
+
+        WorkerPool pool = IctclasTokenizer.getWorkerPool();
+        Map<String, Object> workers = new LinkedHashMap<>();
+        workers.put("enabled", pool != null);
+        if (pool != null) {
+            workers.put("count", pool.getCount());
+            workers.put("healthy", pool.healthyWorkers());
+            workers.put("requests", pool.getRequests());
+            workers.put("failures", pool.getFailures());
+            workers.put("timeouts", pool.getTimeouts());
+            workers.put("restarts", pool.getRestarts());
+        }
+        stats.put("workers", workers);
+
+        SegmentationCache cache = IctclasTokenizer.getSearchCache();
+        Map<String, Object> searchCache = new LinkedHashMap<>();
+        searchCache.put("enabled", cache != null);
+        if (cache != null) {
+            Cache.CacheStats cacheStats = cache.stats();
+            searchCache.put("count", cache.count());
+            searchCache.put("weight", cache.weight());
+            searchCache.put("hits", cacheStats.getHits());
+            searchCache.put("misses", cacheStats.getMisses());
+            searchCache.put("evictions", cacheStats.getEvictions());
+        }
+        stats.put("search_cache", searchCache);
+
+        SentenceCache sentences = IctclasTokenizer.getSentenceCache();
+        Map<String, Object> sentenceCache = new LinkedHashMap<>();
+        sentenceCache.put("enabled", sentences != null);
+        if (sentences != null) {
+            long lookups = sentences.getHits() + sentences.getMisses();
+            sentenceCache.put("count", sentences.count());
+            sentenceCache.put("weight", sentences.weight());
+            sentenceCache.put("hits", sentences.getHits());
+            sentenceCache.put("misses", sentences.getMisses());
+            sentenceCache.put("hit_rate", lookups == 0 ? 0.0 : (double) sentences.getHits() / lookups);
+            sentenceCache.put("hit_chars", sentences.getHitChars());
+            sentenceCache.put("evictions", sentences.getEvictions());
+        }
+        stats.put("sentence_cache", sentenceCache);
+
+        SegmentationMemo memo = IctclasTokenizer.getMemo();
+        Map<String, Object> memoStats = new LinkedHashMap<>();
+        memoStats.put("enabled", memo != null);
+        if (memo != null) {
+            memoStats.put("hits", memo.getHits());
+            memoStats.put("misses", memo.getMisses());
+        }
+        stats.put("segmentation_memo", memoStats);
+
+        SegmentationSlowLog slowLog = IctclasTokenizer.getSlowLog();
+        Map<String, Object> slow = new LinkedHashMap<>();
+        slow.put("enabled", slowLog != null);
+        if (slowLog != null) {
+            slow.put("threshold", slowLog.getThreshold().getStringRep());
+            slow.put("slow", slowLog.getSlow());
+            slow.put("logged", slowLog.getLogged());
+        }
+        stats.put("slow_log", slow);
+        return stats;
+    }
+
+    /**
+     * 直方图转为 map, 只输出非空的桶, 桶以上界 (微秒) 为键.
+     *
+     * @param snapshot the snapshot
+     * @return the map
+     */
+    static Map<String, Object> histogram(LatencyHistogram.Snapshot snapshot) {
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        histogram.put("count", snapshot.getCount());
+        histogram.put("sum_micros", snapshot.getSumNanos() / 1_000);
+        histogram.put("max_micros", snapshot.getMaxNanos() / 1_000);
+        histogram.put("p50_micros", snapshot.percentileMicros(50));
+        histogram.put("p90_micros", snapshot.percentileMicros(90));
+        histogram.put("p99_micros", snapshot.percentileMicros(99));
+        Map<String, Long> buckets = new LinkedHashMap<>();
+        long[] counts = snapshot.getCounts();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                long upper = LatencyHistogram.upperBoundMicros(i);
+                buckets.put(upper == Long.MAX_VALUE ? "inf" : "lt_" + upper, counts[i]);
+            }
+        }
+        histogram.put("buckets", buckets);
+        return histogram;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000;
+    }
+
+    // 与 XContentBuilder#humanReadableField 一样, 可读的值在原始值之前, 未知 (-1) 时不输出
+    private static void putTime(Map<String, Object> map, boolean humanReadable, String rawField, String readableField, long nanos) {
+        if (humanReadable && nanos >= 0) {
+            map.put(readableField, TimeValue.timeValueNanos(nanos).toString());
+        }
+        map.put(rawField, toMillis(nanos));
+    }
+
+    private static void putBytes(Map<String, Object> map, boolean humanReadable, String rawField, String readableField, long bytes) {
+        if (humanReadable && bytes >= 0) {
+            map.put(readableField, ByteSizeValue.ofBytes(bytes).toString());
+        }
+        map.put(rawField, bytes);
+    }
+}
@@ -0,0 +1,47 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.CharFilter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 按 {@link NormalizeTable} 逐字符转换, 一次读取完成繁简和全半角转换.
+ * <p>
+ * 对照表中每个字符只对应一个字符, 输出与输入等长, 偏移不需要修正.
+ */
+public final class IctclasNormalizeCharFilter extends CharFilter {
+
+    private final NormalizeTable table;
+
+    /**
+     * Instantiates a new Ictclas normalize char filter.
+     *
+     * @param input the input
+     * @param table the table
+     */
+    IctclasNormalizeCharFilter(Reader input, NormalizeTable table) {
+        super(input);
+        this.table = table;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        int read = input.read(buffer, offset, length);
+        if (read > 0) {
+            table.map(buffer, offset, read);
+        }
+        return read;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int c = input.read();
+        return c < 0 ? c : table.map((char) c);
+    }
+
+    @Override
+    protected int correct(int currentOff) {
+        return currentOff;
+    }
+}
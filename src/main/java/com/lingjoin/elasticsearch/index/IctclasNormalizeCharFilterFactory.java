@@ -0,0 +1,84 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractCharFilterFactory;
+import org.elasticsearch.index.analysis.NormalizingCharFilterFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+/**
+ * ictclas_normalize, 在分词前把繁体字转为简体字, 全角 ASCII 和全角空格转为半角.
+ * <p>
+ * 繁简对照来自插件自带的 Data 目录, 在节点内只加载一次. 也可以用在 normalizer 中.
+ */
+public class IctclasNormalizeCharFilterFactory extends AbstractCharFilterFactory implements NormalizingCharFilterFactory {
+
+    /**
+     * 插件自带的 NLPIR Data 目录
+     */
+    static final String DATA_DIRECTORY = "Data";
+
+    private static volatile NormalizeTable traditionalTable;
+
+    private final NormalizeTable table;
+
+    /**
+     * Instantiates a new Ictclas normalize char filter factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasNormalizeCharFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
+        super(indexSettings, name);
+        boolean traditional = settings.getAsBoolean("traditional", true);
+        boolean width = settings.getAsBoolean("width", true);
+        if (!traditional && !width) {
+            throw new IllegalArgumentException(
+                    "[" + name + "] at least one of [traditional] and [width] must be enabled"
+            );
+        }
+        this.table = new NormalizeTable(traditional ? traditionalTable(environment) : null, width);
+    }
+
+    private static NormalizeTable traditionalTable(Environment environment) {
+        NormalizeTable table = traditionalTable;
+        if (table == null) {
+            synchronized (IctclasNormalizeCharFilterFactory.class) {
+                table = traditionalTable;
+                if (table == null) {
+                    Path path = Configuration.getPluginPath(environment).resolve(DATA_DIRECTORY);
+                    try {
+                        table = Access.doPrivilegedIOException(() -> NormalizeTable.traditional(path));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read traditional to simplified tables in " + path, e);
+                    }
+                    traditionalTable = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public Reader create(Reader reader) {
+        return new IctclasNormalizeCharFilter(reader, table);
+    }
+
+    /**
+     * Gets table.
+     *
+     * @return the normalize table
+     */
+    NormalizeTable getTable() {
+        return table;
+    }
+}
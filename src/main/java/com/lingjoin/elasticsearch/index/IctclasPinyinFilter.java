@@ -0,0 +1,130 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.io.IOException;
+
+/**
+ * 为每个含有汉字的词在同一位置输出全拼和首字母, 例如 "中国" 输出 "zhongguo" 和 "zg".
+ * <p>
+ * 没有读音的字符原样保留, 全拼与首字母相同时只输出一次. 不含汉字的词原样输出.
+ */
+public final class IctclasPinyinFilter extends TokenFilter {
+
+    /**
+     * 全拼 token 的类型
+     */
+    public static final String FULL_TYPE = "pinyin";
+    /**
+     * 首字母 token 的类型
+     */
+    public static final String INITIALS_TYPE = "pinyin_initials";
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final PositionIncrementAttribute positionAtt = addAttribute(PositionIncrementAttribute.class);
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+
+    private final PinyinTable table;
+    private final boolean keepOriginal;
+    private final boolean full;
+    private final boolean initials;
+
+    private final StringBuilder fullBuffer = new StringBuilder();
+    private final StringBuilder initialsBuffer = new StringBuilder();
+    private State state;
+    // 当前词还需输出的全拼和首字母
+    private boolean pendingFull;
+    private boolean pendingInitials;
+
+    /**
+     * Instantiates a new Ictclas pinyin filter.
+     *
+     * @param input        the input
+     * @param table        the table
+     * @param keepOriginal 是否保留原词
+     * @param full         是否输出全拼
+     * @param initials     是否输出首字母
+     */
+    IctclasPinyinFilter(TokenStream input, PinyinTable table, boolean keepOriginal, boolean full, boolean initials) {
+        super(input);
+        this.table = table;
+        this.keepOriginal = keepOriginal;
+        this.full = full;
+        this.initials = initials;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (pendingFull || pendingInitials) {
+            restoreState(state);
+            positionAtt.setPositionIncrement(0);
+            emitPending();
+            return true;
+        }
+        if (!input.incrementToken()) {
+            return false;
+        }
+        if (!convert()) {
+            return true;
+        }
+        pendingFull = full;
+        // 每个字都是单字母读音或没有读音时首字母与全拼相同
+        pendingInitials = initials && !(full && fullBuffer.compareTo(initialsBuffer) == 0);
+        if (keepOriginal) {
+            state = captureState();
+        } else {
+            // 原词的位置增量留给第一个输出的 token
+            emitPending();
+            if (pendingFull || pendingInitials) {
+                state = captureState();
+            }
+        }
+        return true;
+    }
+
+    // 输出下一个全拼或首字母, 调用前属性为原词
+    private void emitPending() {
+        if (pendingFull) {
+            pendingFull = false;
+            termAtt.setEmpty().append(fullBuffer);
+            typeAtt.setType(FULL_TYPE);
+        } else {
+            pendingInitials = false;
+            termAtt.setEmpty().append(initialsBuffer);
+            typeAtt.setType(INITIALS_TYPE);
+        }
+    }
+
+    // 计算当前词的全拼和首字母, 没有任何汉字有读音时返回 false
+    private boolean convert() {
+        fullBuffer.setLength(0);
+        initialsBuffer.setLength(0);
+        char[] buffer = termAtt.buffer();
+        int length = termAtt.length();
+        boolean converted = false;
+        for (int i = 0; i < length; i++) {
+            char[] syllable = table.syllable(buffer[i]);
+            if (syllable == null) {
+                fullBuffer.append(buffer[i]);
+                initialsBuffer.append(buffer[i]);
+            } else {
+                fullBuffer.append(syllable);
+                initialsBuffer.append(syllable[0]);
+                converted = true;
+            }
+        }
+        return converted;
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        state = null;
+        pendingFull = false;
+        pendingInitials = false;
+    }
+}
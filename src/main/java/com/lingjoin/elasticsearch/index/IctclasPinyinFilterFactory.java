@@ -0,0 +1,76 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+import org.elasticsearch.index.analysis.Analysis;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ictclas_pinyin, 在原词的位置加上全拼和首字母, 拼音搜索只需 term 查询.
+ * <p>
+ * 拼音表通过 pinyin_path (相对 config 目录) 或 pinyin 指定, 每行 "汉字 读音". 同一个 pinyin_path 在节点内只加载一次.
+ */
+public class IctclasPinyinFilterFactory extends AbstractTokenFilterFactory {
+
+    private static final Map<Path, PinyinTable> TABLES = new ConcurrentHashMap<>();
+
+    private final PinyinTable table;
+    private final boolean keepOriginal;
+    private final boolean full;
+    private final boolean initials;
+
+    /**
+     * Instantiates a new Ictclas pinyin filter factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasPinyinFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        this.keepOriginal = settings.getAsBoolean("keep_original", true);
+        this.full = settings.getAsBoolean("full", true);
+        this.initials = settings.getAsBoolean("initials", true);
+        if (!full && !initials) {
+            throw new IllegalArgumentException("[" + name + "] at least one of [full] and [initials] must be enabled");
+        }
+        this.table = table(environment, settings, name);
+    }
+
+    private static PinyinTable table(Environment environment, Settings settings, String name) {
+        String path = settings.get("pinyin_path");
+        if (path == null) {
+            List<String> lines = Analysis.getWordList(environment, settings, "pinyin");
+            if (lines == null) {
+                throw new IllegalArgumentException("[" + name + "] requires [pinyin_path] or [pinyin]");
+            }
+            return PinyinTable.parse(lines);
+        }
+        return TABLES.computeIfAbsent(
+                environment.configFile().resolve(path).normalize(),
+                key -> PinyinTable.parse(Analysis.getWordList(environment, settings, "pinyin"))
+        );
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new IctclasPinyinFilter(tokenStream, table, keepOriginal, full, initials);
+    }
+
+    /**
+     * Gets table.
+     *
+     * @return the pinyin table
+     */
+    PinyinTable getTable() {
+        return table;
+    }
+}
@@ -0,0 +1,31 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+
+/**
+ * 按词性编码去掉 token, 位置增量会累加到下一个保留的 token 上.
+ * <p>
+ * 词性来自 {@link PosAttribute}, 不是由 {@link IctclasTokenizer} 产生的 token 没有词性, 总是保留.
+ */
+public final class IctclasPosFilter extends FilteringTokenFilter {
+
+    private final PosAttribute posAtt = addAttribute(PosAttribute.class);
+    private final PosTagSet stopTags;
+
+    /**
+     * Instantiates a new Ictclas pos filter.
+     *
+     * @param in       the in
+     * @param stopTags 需要去掉的词性
+     */
+    public IctclasPosFilter(TokenStream in, PosTagSet stopTags) {
+        super(in);
+        this.stopTags = stopTags;
+    }
+
+    @Override
+    protected boolean accept() {
+        return !stopTags.contains(posAtt.getPosCode());
+    }
+}
@@ -0,0 +1,40 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+
+import java.util.List;
+
+/**
+ * ictclas_pos_filter, 按词性前缀去掉 token, 设置 pos_prefixes, 默认去掉标点 (w), 助词 (u) 和语气词 (y).
+ */
+public class IctclasPosFilterFactory extends AbstractTokenFilterFactory {
+
+    /**
+     * 默认去掉的词性前缀
+     */
+    static final List<String> DEFAULT_PREFIXES = List.of("w", "u", "y");
+
+    private final PosTagSet stopTags;
+
+    /**
+     * Instantiates a new Ictclas pos filter factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasPosFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        this.stopTags = PosTagSet.ofPrefixes(settings.getAsList("pos_prefixes", DEFAULT_PREFIXES));
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new IctclasPosFilter(tokenStream, stopTags);
+    }
+}
@@ -0,0 +1,45 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.util.BytesRef;
+
+import java.io.IOException;
+
+/**
+ * 将词性编码写入一字节的 payload, 编码见 {@link PosTags#toPayload}. 没有词性或非内置词性的 token 不写 payload.
+ */
+public final class IctclasPosPayloadFilter extends TokenFilter {
+
+    // 每个编码共用一个不可修改的 payload
+    private static final BytesRef[] PAYLOADS = new BytesRef[PosTags.builtinSize() + 1];
+
+    static {
+        for (int code = PosTags.NONE + 1; code < PAYLOADS.length; code++) {
+            PAYLOADS[code] = new BytesRef(new byte[]{PosTags.toPayload(code)});
+        }
+    }
+
+    private final PosAttribute posAtt = addAttribute(PosAttribute.class);
+    private final PayloadAttribute payloadAtt = addAttribute(PayloadAttribute.class);
+
+    /**
+     * Instantiates a new Ictclas pos payload filter.
+     *
+     * @param input the input
+     */
+    public IctclasPosPayloadFilter(TokenStream input) {
+        super(input);
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (!input.incrementToken()) {
+            return false;
+        }
+        int code = posAtt.getPosCode();
+        payloadAtt.setPayload(code > PosTags.NONE && code < PAYLOADS.length ? PAYLOADS[code] : null);
+        return true;
+    }
+}
@@ -0,0 +1,32 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+
+/**
+ * ictclas_pos_payload, 将词性写入一字节的 payload, 搜索时由 ictclas_pos_weighted 查询按词性加权.
+ */
+public class IctclasPosPayloadFilterFactory extends AbstractTokenFilterFactory {
+
+    /**
+     * Instantiates a new Ictclas pos payload filter factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasPosPayloadFilterFactory(
+            IndexSettings indexSettings, Environment environment, String name, Settings settings
+    ) {
+        super(indexSettings, name, settings);
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new IctclasPosPayloadFilter(tokenStream);
+    }
+}
@@ -0,0 +1,63 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.io.IOException;
+
+/**
+ * 重放 ictclas 预处理器保存的分词结果, 不调用 NLPIR.
+ * <p>
+ * 输入为 {@link PreTokenizedStream} 编码的 Base64 字符串, 输出的词, 位置增量, 开始/结束位置和词性与预处理时的
+ * {@link IctclasTokenizer} 一致. 开始/结束位置对应原始文本, 因此高亮需要使用原始字段.
+ */
+public final class IctclasPreTokenizedTokenizer extends Tokenizer {
+
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+    private final PositionIncrementAttribute positionAtt = addAttribute(PositionIncrementAttribute.class);
+    private final PosAttribute posAtt = addAttribute(PosAttribute.class);
+
+    // 读取 Reader 的缓冲
+    private final char[] readBuffer = new char[1024];
+    private PreTokenizedStream tokens;
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        clearAttributes();
+        if (!tokens.next(termAtt, offsetAtt, positionAtt, posAtt)) {
+            return false;
+        }
+        offsetAtt.setOffset(correctOffset(offsetAtt.startOffset()), correctOffset(offsetAtt.endOffset()));
+        typeAtt.setType(PosTags.name(posAtt.getPosCode()));
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        int finalOffset = correctOffset(tokens.finalOffset());
+        offsetAtt.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        StringBuilder buffer = new StringBuilder();
+        int numCharsRead;
+        while ((numCharsRead = input.read(readBuffer, 0, readBuffer.length)) != -1) {
+            buffer.append(readBuffer, 0, numCharsRead);
+        }
+        tokens = PreTokenizedStream.decode(buffer);
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        tokens = null;
+    }
+}
@@ -0,0 +1,32 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenizerFactory;
+
+/**
+ * ictclas_pretokenized, 重放 ictclas 预处理器保存的分词结果.
+ */
+public class IctclasPreTokenizedTokenizerFactory extends AbstractTokenizerFactory {
+
+    /**
+     * Instantiates a new Ictclas pre tokenized tokenizer factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasPreTokenizedTokenizerFactory(
+            IndexSettings indexSettings, Environment environment, String name, Settings settings
+    ) {
+        super(indexSettings, settings, name);
+    }
+
+    @Override
+    public Tokenizer create() {
+        return new IctclasPreTokenizedTokenizer();
+    }
+}
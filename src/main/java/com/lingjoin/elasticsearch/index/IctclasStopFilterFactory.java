@@ -0,0 +1,107 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.analysis.AbstractTokenFilterFactory;
+import org.elasticsearch.index.analysis.Analysis;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * ictclas_stop, 去掉停用词.
+ * <p>
+ * 默认使用插件自带的 Data/ChnStopList.txt, 也可以与 stop 过滤器一样通过 stopwords 或 stopwords_path 指定.
+ * 默认停用词表在节点内只加载一次.
+ */
+public class IctclasStopFilterFactory extends AbstractTokenFilterFactory {
+
+    /**
+     * 插件自带的中文停用词表, GBK 编码
+     */
+    static final String DEFAULT_STOP_LIST = "Data/ChnStopList.txt";
+
+    private static final Charset STOP_LIST_CHARSET = Charset.forName("GBK");
+
+    private static volatile CharArraySet defaultStopWords;
+
+    private final CharArraySet stopWords;
+
+    /**
+     * Instantiates a new Ictclas stop filter factory.
+     *
+     * @param indexSettings the index settings
+     * @param environment   the environment
+     * @param name          the name
+     * @param settings      the settings
+     */
+    public IctclasStopFilterFactory(IndexSettings indexSettings, Environment environment, String name, Settings settings) {
+        super(indexSettings, name, settings);
+        boolean ignoreCase = settings.getAsBoolean("ignore_case", false);
+        CharArraySet defaults = defaultStopWords(environment);
+        if (ignoreCase) {
+            defaults = new CharArraySet(defaults, true);
+        }
+        this.stopWords = Analysis.parseStopWords(environment, settings, defaults, ignoreCase);
+    }
+
+    private static CharArraySet defaultStopWords(Environment environment) {
+        CharArraySet words = defaultStopWords;
+        if (words == null) {
+            synchronized (IctclasStopFilterFactory.class) {
+                words = defaultStopWords;
+                if (words == null) {
+                    Path path = Configuration.getPluginPath(environment).resolve(DEFAULT_STOP_LIST);
+                    try {
+                        words = load(Access.doPrivilegedIOException(() -> Files.readAllLines(path, STOP_LIST_CHARSET)));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Cannot read stop list " + path, e);
+                    }
+                    defaultStopWords = words;
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * 每行一个词, 去掉首尾空白后跳过空行.
+     *
+     * @param lines the lines
+     * @return 不可修改的停用词集合
+     */
+    static CharArraySet load(List<String> lines) {
+        CharArraySet words = new CharArraySet(lines.size(), false);
+        for (String line : lines) {
+            String word = line.strip();
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return CharArraySet.unmodifiableSet(words);
+    }
+
+    @Override
+    public TokenStream create(TokenStream tokenStream) {
+        return new StopFilter(tokenStream, stopWords);
+    }
+
+    /**
+     * Gets stop words.
+     *
+     * @return the char array set
+     */
+    CharArraySet getStopWords() {
+        return stopWords;
+    }
+}
@@ -1,25 +1,34 @@
 package com.lingjoin.elasticsearch.index;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.lingjoin.elasticsearch.util.Access;
 import com.lingjoin.elasticsearch.util.Configuration;
-import com.lingjoin.nlpir.IctclasNative;
+import com.lingjoin.elasticsearch.worker.WorkerPool;
 import com.lingjoin.nlpir.NlpirException;
 import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
 import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.CheckedSupplier;
 import org.elasticsearch.env.Environment;
 
-import java.beans.ConstructorProperties;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Path;
-import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Supplier;
 
 import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
 
@@ -32,68 +41,86 @@ public final class IctclasTokenizer extends Tokenizer {
     private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
     private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
     private final PositionIncrementAttribute positionAtt = addAttribute(PositionIncrementAttribute.class);
+    private final PosAttribute posAtt = addAttribute(PosAttribute.class);
+    private final PositionLengthAttribute positionLengthAtt = addAttribute(PositionLengthAttribute.class);
 
-    private static boolean initState = false;
+    private static volatile boolean initState = false;
+
+    // 节点级别的搜索分词缓存, 只用于粗粒度分词, 未开启时为 null
+    private static volatile SegmentationCache searchCache;
+
+    // 节点级别的 NLPIR 调用并发限制, 初始化前不做限制
+    private static volatile NativeCallLimiter nativeCallLimiter =
+            new NativeCallLimiter(new Configuration.NativeConcurrency(null, null, null, null));
+
+    // 节点级别的用户词典, 重新加载时持有写锁, 分词时持有读锁
+    private static volatile UserDictionary userDictionary = UserDictionary.none();
+
+    // 节点级别的分词统计
+    private static final SegmentationStats STATS = new SegmentationStats();
+    // 引擎调用失败, 与 nativeConcurrency 超时跳过返回的 null 区分
+    private static final BytesRef ENGINE_FAILED = new BytesRef();
+
+    // 分词慢日志, 未开启时为 null
+    private static volatile SegmentationSlowLog slowLog;
+
+    // 节点级别的按句分词缓存, 未开启时为 null
+    private static volatile SentenceCache sentenceCache;
+
+    // 粗粒度分词复用同一线程中细粒度分词的结果, 未开启时为 null
+    private static volatile SegmentationMemo memo;
+
+    // 分词引擎, 初始化时按配置确定
+    private static volatile SegmentationEngine engine;
 
     // 分词方法, 是否进行细拆分, true用于索引, false用于搜索
     private final boolean fineSegment;
+    // 按句子分窗口读取, 为 null 时一次读取全部文本
+    private final SentenceWindowReader windowReader;
+    // 长文本并行分词, 为 null 时不并行
+    private final ParallelSegmenter parallelSegmenter;
+    // 不含中文的片段长度达到该值时在 Java 中分词, 是节点级别缓存键的一部分, 0 表示不开启
+    private final int fastPathMinRun;
+    // 不含中文的片段在 Java 中分词, 为 null 时全部由 NLPIR 分词
+    private final ScriptAwareSegmenter scriptAwareSegmenter;
+    // 超过该长度的输入使用 Java 分词, 0 表示不限制
+    private final int maxChars;
+    // 单次 NLPIR 调用的最长等待时间, 0 表示不限制
+    private final long timeBudgetNanos;
+    // 引擎不可用或调用失败时是否使用 Java 分词, 否则分析失败
+    private final boolean fallbackOnUnavailable;
+    // 输出 token 图, 为 null 时按原方式输出
+    private final TokenGraph graph;
+    // 预热用的分词器不使用节点级别的缓存, memo 和慢日志, 统计写入单独的实例
+    private final boolean warmup;
+    private final SegmentationStats stats;
 
 
     /**
-     * 分词结果类
+     * Instantiates a new Ictclas tokenizer.
+     *
+     * @param configuration the configuration
+     * @param environment   the environment
+     * @param fineSegment   the fine segment
+     * @throws NlpirException the nlpir exception
      */
-    static class TokenResult {
-        /**
-         * 词对应开始位置
-         */
-        int begin;
-        /**
-         * 词对应结束位置
-         */
-        int end;
-        /**
-         * 词性
-         */
-        String pos;
-        /**
-         * 词
-         */
-        String text;
-
-        /**
-         * Instantiates a new Token result.
-         *
-         * @param begin begin
-         * @param end   end
-         * @param pos   pos
-         * @param text  text
-         */
-        @ConstructorProperties({"begin", "end", "pos", "text"})
-        public TokenResult(int begin, int end, String pos, String text) {
-            this.begin = begin;
-            this.end = end;
-            this.pos = pos;
-            this.text = text;
-        }
+    public IctclasTokenizer(Configuration configuration, Environment environment, boolean fineSegment) throws NlpirException {
+        this(configuration, environment, fineSegment, IctclasTokenizerSettings.DEFAULT);
+    }
 
-        /**
-         * 将分词结果 json 转换为类
-         *
-         * @param json the json
-         * @return the list
-         */
-        public static List<TokenResult> parse(String json) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            return Access.doPrivileged(() -> {
-                try {
-                    return objectMapper.readValue(json, new TypeReference<>() {
-                    });
-                } catch (JsonProcessingException e) {
-                    LOGGER.error("Jackson parse json failed: {}", e.getMessage(), e);
-                    return null;
-                }
-            });
-        }
+    /**
+     * Instantiates a new Ictclas tokenizer.
+     *
+     * @param configuration the configuration
+     * @param environment   the environment
+     * @param fineSegment   the fine segment
+     * @param settings      the tokenizer settings
+     * @throws NlpirException the nlpir exception
+     */
+    public IctclasTokenizer(
+            Configuration configuration, Environment environment, boolean fineSegment, IctclasTokenizerSettings settings
+    ) throws NlpirException {
+        this(configuration, environment, fineSegment, settings, false);
     }
 
     /**
@@ -102,54 +129,299 @@ public final class IctclasTokenizer extends Tokenizer {
      * @param configuration the configuration
      * @param environment   the environment
      * @param fineSegment   the fine segment
+     * @param settings      the tokenizer settings
+     * @param warmup        是否用于预热, 预热不计入节点统计, 不经过缓存, memo 和慢日志
      * @throws NlpirException the nlpir exception
      */
-    public IctclasTokenizer(Configuration configuration, Environment environment, boolean fineSegment) throws NlpirException {
+    IctclasTokenizer(
+            Configuration configuration, Environment environment, boolean fineSegment, IctclasTokenizerSettings settings,
+            boolean warmup
+    ) throws NlpirException {
         this.fineSegment = fineSegment;
-        if (!initState) {
-            IctclasAnalysisPlugin.LOGGER.info("Set jna.tmpdir in IctclasAnalysisPlugin");
-            Access.doPrivileged(() -> System.setProperty("jna.tmpdir", environment.tmpFile().toString()));
-            init(
-                    Configuration.getPluginPath(environment).toString(), configuration.getLicenseCode(),
-                    Optional.ofNullable(configuration.getUserDict())
-                            .map(dict -> Configuration.getUserDictionaryPath(environment, dict))
-                            .map(Path::toAbsolutePath)
-                            .map(Path::toString)
-                            .orElse(null),
-                    configuration.isOverWrite()
+        this.warmup = warmup;
+        this.stats = warmup ? new SegmentationStats() : STATS;
+        this.windowReader = settings.getWindowSize() > 0 ? new SentenceWindowReader(settings.getWindowSize()) : null;
+        this.parallelSegmenter = settings.getParallelThreshold() > 0
+                ? new ParallelSegmenter(settings.getParallelThreshold(), settings.getParallelChunkSize())
+                : null;
+        this.fastPathMinRun = settings.getFastPathMinRun();
+        this.scriptAwareSegmenter = fastPathMinRun > 0
+                ? new ScriptAwareSegmenter(fastPathMinRun)
+                : null;
+        this.graph = settings.isGraph() ? new TokenGraph() : null;
+        Configuration.Fallback fallback = configuration.getFallback();
+        this.maxChars = fallback.getMaxChars();
+        this.timeBudgetNanos = fallback.getTimeBudget().nanos();
+        this.fallbackOnUnavailable = fallback.isOnUnavailable();
+        try {
+            NlpirInitializer.NODE.awaitReady(
+                    configuration.getStartup().getReadyTimeout(), () -> initialize(configuration, environment)
             );
+        } catch (NlpirException e) {
+            if (!fallback.isOnUnavailable()) {
+                throw e;
+            }
+            // NLPIR 可用之前使用 Java 分词, 初始化稍后完成时自动切换回 NLPIR
+            LOGGER.warn("NLPIR is unavailable, tokenize with the Java fallback: {}", e.getMessage());
         }
     }
 
     /**
-     * 分词组件初始化, 全局只能进行一次
+     * 按插件配置初始化分词组件, 已经初始化时什么也不做
      *
-     * @param data         词典路径
-     * @param sLicenceCode 授权码，默认为""
+     * @param configuration the configuration
+     * @param environment   the environment
+     * @throws NlpirException the nlpir exception
+     */
+    static void initialize(Configuration configuration, Environment environment) throws NlpirException {
+        if (initState) {
+            return;
+        }
+        IctclasAnalysisPlugin.LOGGER.info("Set jna.tmpdir in IctclasAnalysisPlugin");
+        Access.doPrivileged(() -> System.setProperty("jna.tmpdir", environment.tmpFile().toString()));
+        init(
+                () -> createEngine(configuration, environment),
+                Optional.ofNullable(configuration.getUserDict())
+                        .map(dict -> Configuration.getUserDictionaryPath(environment, dict))
+                        .map(Path::toAbsolutePath)
+                        .map(Path::toString)
+                        .orElse(null),
+                configuration.isOverWrite(),
+                configuration.getUserDictReload().getMaxIncrementalChanges(),
+                configuration.getSearchCache(),
+                configuration.getNativeConcurrency(),
+                configuration.getSlowLog(),
+                configuration.getSegmentationMemo(),
+                configuration.getSentenceCache(),
+                configuration.isCompiledUserDict()
+        );
+    }
+
+    /**
+     * 按配置创建分词引擎, 开启 workers 时 NLPIR 在独立进程中运行
+     *
+     * @param configuration the configuration
+     * @param environment   the environment
+     * @return the segmentation engine
+     * @throws NlpirException 初始化失败
+     */
+    private static SegmentationEngine createEngine(
+            Configuration configuration, Environment environment
+    ) throws NlpirException {
+        Configuration.Engine engineConfig = configuration.getEngine();
+        if (engineConfig.getType() == Configuration.Engine.Type.DICTIONARY) {
+            Path words = Optional.ofNullable(engineConfig.getDictionary())
+                    .map(Configuration.getPluginPath(environment)::resolve)
+                    .orElse(null);
+            try {
+                DictionaryEngine dictionaryEngine = DictionaryEngine.load(words);
+                LOGGER.info("使用 Java 词典分词引擎, 词表: {}", words);
+                return dictionaryEngine;
+            } catch (IOException e) {
+                throw new NlpirException("Cannot load engine dictionary " + words + ": " + e.getMessage());
+            }
+        }
+        Configuration.Workers workersConfig = configuration.getWorkers();
+        WorkerPool pool = WorkerPool.create(workersConfig, environment.tmpFile());
+        if (pool != null) {
+            // 由分词进程加载 NLPIR 和用户词典, 节点内不再加载本地库
+            LOGGER.info("NLPIR 在 {} 个独立进程中运行, 目录: {}",
+                    workersConfig.getCount(), environment.tmpFile().resolve(workersConfig.getDirectory()));
+            return new WorkerEngine(pool);
+        }
+        Path pluginPath = Configuration.getPluginPath(environment);
+        NlpirDataSet dataSet;
+        try {
+            dataSet = NlpirDataSet.prepare(pluginPath, configuration.getDataProfile(), environment.tmpFile());
+        } catch (IOException | SecurityException e) {
+            throw new NlpirException("Cannot prepare NLPIR data profile: " + e.getMessage());
+        }
+        try {
+            return NlpirEngine.init(dataSet, configuration.getLicenseCode(), configuration.isDirectBinding());
+        } catch (NlpirException e) {
+            if (dataSet.getProfile() == Configuration.DataProfile.Profile.FULL) {
+                throw e;
+            }
+            // 裁剪后的数据不完整时使用全部数据
+            LOGGER.warn("NLPIR 使用数据集 {} 初始化失败, 使用全部数据重试", dataSet.getProfile());
+            try {
+                dataSet = NlpirDataSet.full(pluginPath);
+            } catch (IOException io) {
+                throw new NlpirException("Cannot read NLPIR data: " + io.getMessage());
+            }
+            return NlpirEngine.init(dataSet, configuration.getLicenseCode(), configuration.isDirectBinding());
+        }
+    }
+
+    /**
+     * 分词组件初始化, 全局只能成功一次, 失败后可以重试
+     *
+     * @param engineFactory 创建分词引擎, 成功后不再调用
      * @param userDict     用户词典文件
      * @param bOverwrite   用户词典引入方式
+     * @param maxIncrementalChanges 重新加载用户词典时, 变化的词条超过该数量则重新导入整个词典
+     * @param cacheConfig  搜索分词缓存配置
+     * @param concurrency  NLPIR 调用并发限制配置
+     * @param slowLogConfig 分词慢日志配置
+     * @param memoConfig   粗粒度分词复用细粒度结果的配置
+     * @param sentenceCacheConfig 按句分词缓存配置
+     * @param compiledUserDict 是否保存编译后的用户词典, 保存在 NLPIR 实际加载的 Data 目录中, 关闭时每次启动都导入用户词典
      */
-    private static synchronized void init(String data, String sLicenceCode, String userDict, boolean bOverwrite) throws NlpirException {
-        if (IctclasTokenizer.initState)
+    private static synchronized void init(
+            CheckedSupplier<SegmentationEngine, NlpirException> engineFactory, String userDict, boolean bOverwrite,
+            int maxIncrementalChanges, Configuration.SearchCache cacheConfig,
+            Configuration.NativeConcurrency concurrency, Configuration.SlowLog slowLogConfig,
+            Configuration.SegmentationMemo memoConfig, Configuration.SentenceCache sentenceCacheConfig,
+            boolean compiledUserDict
+    ) throws NlpirException {
+        if (IctclasTokenizer.initState) {
             return;
-        LOGGER.info("NLPIR 初始化");
-        IctclasTokenizer.initState = IctclasNative.INSTANCE.NLPIR_Init(data, 1, sLicenceCode);
-        if (!IctclasTokenizer.initState) {
-            String errorMsg = IctclasNative.INSTANCE.NLPIR_GetLastErrorMsg();
-            LOGGER.error("NLPIR 初始化失败, {}", errorMsg);
-            throw new NlpirException(errorMsg);
-        }
-        LOGGER.info("NLPIR 初始化成功");
-        // TODO 导入词典
-        if (userDict != null && !userDict.isEmpty() && !userDict.equals("\"\"")) {
-            int state = IctclasNative.INSTANCE.NLPIR_ImportUserDict(userDict, bOverwrite);
-            if (state == 0)
-                try {
-                    throw new NlpirException(IctclasNative.INSTANCE.NLPIR_GetLastErrorMsg());
-                } catch (NlpirException e) {
-                    LOGGER.error("Import user dict failed", e);
-                }
         }
+        // 引擎创建后保留, 之后的步骤失败时重试不再重新初始化 NLPIR
+        SegmentationEngine segmentationEngine = engine;
+        if (segmentationEngine == null) {
+            segmentationEngine = engineFactory.get();
+            engine = segmentationEngine;
+        }
+        UserDictionary dictionary = UserDictionary.none();
+        UserDictionary.NativeDictionary nativeDictionary = segmentationEngine.dictionary();
+        if (nativeDictionary != null && userDict != null && !userDict.isEmpty() && !userDict.equals("\"\"")) {
+            // 只有节点内的 NLPIR 在初始化时加载 Data/UserDict.pdat
+            CompiledUserDictionary compiled = compiledUserDict && segmentationEngine instanceof NlpirEngine nlpir
+                    ? new CompiledUserDictionary(nlpir.getDataSet().getPath().resolve("Data")) : null;
+            dictionary = new UserDictionary(
+                    Path.of(userDict), bOverwrite, maxIncrementalChanges, nativeDictionary,
+                    IctclasTokenizer::invalidateSearchCache, compiled
+            );
+            dictionary.load();
+        }
+        NativeCallLimiter limiter = new NativeCallLimiter(concurrency);
+        SegmentationCache cache = SegmentationCache.create(cacheConfig);
+        SegmentationSlowLog segmentationSlowLog = SegmentationSlowLog.create(slowLogConfig);
+        SentenceCache sentences = SentenceCache.create(sentenceCacheConfig);
+        SegmentationMemo segmentationMemo = SegmentationMemo.create(memoConfig);
+        // 全部成功后才发布, 任何一步失败时 initState 保持 false, 下次初始化重新执行整个过程
+        userDictionary = dictionary;
+        nativeCallLimiter = limiter;
+        searchCache = cache;
+        slowLog = segmentationSlowLog;
+        sentenceCache = sentences;
+        memo = segmentationMemo;
+        IctclasTokenizer.initState = true;
+        if (concurrency.getMaxConcurrentCalls() > 0) {
+            LOGGER.info("NLPIR 分词并发限制: {}, fair: {}, acquireTimeout: {}, onTimeout: {}",
+                    concurrency.getMaxConcurrentCalls(), concurrency.isFair(),
+                    concurrency.getAcquireTimeout(), concurrency.getOnTimeout());
+        }
+        if (cache != null) {
+            LOGGER.info("NLPIR 搜索分词缓存已开启, maxEntries: {}, maxWeight: {}",
+                    cacheConfig.getMaxEntries(), cacheConfig.getMaxWeight());
+        }
+        if (segmentationSlowLog != null) {
+            LOGGER.info("NLPIR 分词慢日志已开启, threshold: {}", slowLogConfig.getThreshold());
+        }
+        if (sentences != null) {
+            LOGGER.info("NLPIR 按句分词缓存已开启, maxWeight: {}, minTextLength: {}",
+                    sentenceCacheConfig.getMaxWeight(), sentenceCacheConfig.getMinTextLength());
+        }
+        if (segmentationMemo != null) {
+            LOGGER.info("NLPIR 粗粒度分词复用细粒度结果已开启, maxTextLength: {}", memoConfig.getMaxTextLength());
+        }
+    }
+
+    /**
+     * 用户词典变化后清空搜索分词缓存和按句分词缓存
+     */
+    static void invalidateSearchCache() {
+        SegmentationCache cache = searchCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        SentenceCache sentences = sentenceCache;
+        if (sentences != null) {
+            sentences.invalidateAll();
+        }
+    }
+
+    /**
+     * 用户词典, 未配置时 {@link UserDictionary#isConfigured()} 为 false
+     *
+     * @return the user dictionary
+     */
+    public static UserDictionary getUserDictionary() {
+        return userDictionary;
+    }
+
+    /**
+     * NLPIR 调用并发限制
+     *
+     * @return the native call limiter
+     */
+    static NativeCallLimiter getNativeCallLimiter() {
+        return nativeCallLimiter;
+    }
+
+    /**
+     * 分词统计
+     *
+     * @return the segmentation stats
+     */
+    static SegmentationStats getStats() {
+        return STATS;
+    }
+
+    /**
+     * 分词慢日志, 未开启或未初始化时为 null
+     *
+     * @return the segmentation slow log
+     */
+    static SegmentationSlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * 按句分词缓存, 未开启或未初始化时为 null
+     *
+     * @return the sentence cache
+     */
+    static SentenceCache getSentenceCache() {
+        return sentenceCache;
+    }
+
+    /**
+     * 粗粒度分词复用细粒度结果, 未开启或未初始化时为 null
+     *
+     * @return the segmentation memo
+     */
+    static SegmentationMemo getMemo() {
+        return memo;
+    }
+
+    /**
+     * 分词引擎, 未初始化时为 null
+     *
+     * @return the segmentation engine
+     */
+    static SegmentationEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * 独立分词进程, 未开启或未初始化时为 null
+     *
+     * @return the worker pool
+     */
+    static WorkerPool getWorkerPool() {
+        return engine instanceof WorkerEngine workerEngine ? workerEngine.getPool() : null;
+    }
+
+    /**
+     * 搜索分词缓存, 未开启或未初始化时为 null
+     *
+     * @return the segmentation cache
+     */
+    static SegmentationCache getSearchCache() {
+        return searchCache;
     }
 
     // 存储 tokenResults 读取进度
@@ -159,65 +431,98 @@ public final class IctclasTokenizer extends Tokenizer {
     private int lastBeginPosition = 0;
     private int lastEndPosition = 0;
     // 存储当前文本分词结果, 空表示当前文本为空或者没有开始分词
-    private List<TokenResult> tempTokenResults;
-
-    private void setTokenResults(List<TokenResult> tokenResults) {
-        tempTokenResults = tokenResults;
-    }
-
-    private List<TokenResult> getTokenResults() {
-        return Optional.ofNullable(this.tempTokenResults).orElse(List.of());
-    }
+    private final TokenResults tokenResults = new TokenResults();
+    // 当前分词结果在全文中的偏移, 分窗口读取时为窗口的开始位置
+    private int tokenBase = 0;
+    // 读取 Reader 的缓冲
+    private final char[] readBuffer = new char[1024];
+    // graph 模式下当前窗口第一个节点在全文中的位置
+    private int graphBase = 0;
+    // graph 模式下上一个 token 的位置
+    private int lastPosition = -1;
 
     @Override
-    public boolean incrementToken() {
-        // 获取分词结果, 并进行判断是否有token
-        // this.getTokenResults(input);
-        if (this.getTokenResults().size() == 0) {
-            cursor = 0;
-            return false;
+    public boolean incrementToken() throws IOException {
+        if (graph != null) {
+            return incrementGraphToken();
         }
-
         // 若当前的 Token 的 end 比存储的最大的 endPosition 要小或者想等, 那么后者应该只是前者更细的分词, 需要将
         // PositionIncrementAttribute 设置为 0
         // 使用循环用于跳过位置信息错误的 token
         while (true) {
-            // 若 cursor 大于 tokenResults 的长度, 说明已经获取完当前数据
-            if (this.getTokenResults().size() <= cursor) {
-                return false;
+            // 若 cursor 大于 tokenResults 的长度, 说明已经获取完当前数据, 分窗口读取时继续读取下一个窗口
+            if (cursor >= tokenResults.size()) {
+                if (windowReader == null || !nextWindow()) {
+                    return false;
+                }
+                continue;
             }
             // 清理当前的位置信息, 并开始解析数据
             clearAttributes();
-            // 获取token数据, 并解析位置信息
-            TokenResult currentToken = this.getTokenResults().get(cursor);
+            // 获取token数据, 并解析位置信息, 位置转换为全文中的位置
+            int begin = tokenBase + tokenResults.begin(cursor);
+            int end = tokenBase + tokenResults.end(cursor);
             // 过滤掉在超过上一个 PositionAtt 不为0的 token, 否则会抛出异常
-            if (lastBeginPosition > currentToken.begin) {
+            if (lastBeginPosition > begin) {
                 cursor++;
                 continue;
             }
             // 若当前 Token 的位置在上一个 PositionAtt 为非0 的 token 内部, 则设置当前的 positionAtt 为 0, 为前者的细粒度分词
             // 否则为顺序的下一个分词结果, 设置 PositionAtt 为 1 并更新上一个 positionAtt=1 的token 位置
-            if (lastEndPosition >= currentToken.end) {
+            if (lastEndPosition >= end) {
                 positionAtt.setPositionIncrement(0);
             } else {
                 positionAtt.setPositionIncrement(1);
-                lastBeginPosition = currentToken.begin;
-                lastEndPosition = currentToken.end;
+                lastBeginPosition = begin;
+                lastEndPosition = end;
+            }
+            setToken(cursor, begin, end);
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug(
+                        "[{}] start:{} end:{} lastMax:{} position:{}",
+                        termAtt, begin, end, lastEndPosition, positionAtt.getPositionIncrement()
+                );
             }
-            LOGGER.debug(String.format(
-                    "[%s] start:%s end:%s lastMax:%s position:%s",
-                    currentToken.text, currentToken.begin, currentToken.end, lastEndPosition, positionAtt.getPositionIncrement()
-            ));
-            // 更新其他位置信息
-            termAtt.append(currentToken.text);
-            offsetAtt.setOffset(correctOffset(currentToken.begin), correctOffset(currentToken.end));
-            typeAtt.setType(currentToken.pos);
             cursor++;
-            this.endPosition = currentToken.end;
+            this.endPosition = end;
             return true;
         }
     }
 
+    /**
+     * graph 模式, 按 {@link TokenGraph} 的顺序输出全部 token, 位置增量和位置长度由图中的节点确定
+     *
+     * @return the boolean
+     * @throws IOException the io exception
+     */
+    private boolean incrementGraphToken() throws IOException {
+        while (cursor >= graph.size()) {
+            if (windowReader == null || !nextWindow()) {
+                return false;
+            }
+        }
+        clearAttributes();
+        int index = graph.token(cursor);
+        int begin = tokenBase + tokenResults.begin(index);
+        int end = tokenBase + tokenResults.end(index);
+        int position = graphBase + graph.position(cursor);
+        positionAtt.setPositionIncrement(position - lastPosition);
+        positionLengthAtt.setPositionLength(graph.positionLength(cursor));
+        lastPosition = position;
+        setToken(index, begin, end);
+        cursor++;
+        this.endPosition = Math.max(this.endPosition, end);
+        return true;
+    }
+
+    // 更新其他位置信息, 直接从共享缓冲复制, 不产生新对象
+    private void setToken(int index, int begin, int end) {
+        termAtt.copyBuffer(tokenResults.textBuffer(), tokenResults.textStart(index), tokenResults.textLength(index));
+        offsetAtt.setOffset(correctOffset(begin), correctOffset(end));
+        typeAtt.setType(tokenResults.pos(index));
+        posAtt.setPosCode(tokenResults.posCode(index));
+    }
+
     @Override
     public void end() throws IOException {
         super.end();
@@ -229,11 +534,28 @@ public final class IctclasTokenizer extends Tokenizer {
     public void reset() throws IOException {
         super.reset();
         // 分词, 并重置 cursor
-        this.getTokenResults(input);
+        tokenResults.clear();
+        tokenBase = 0;
+        if (windowReader != null) {
+            windowReader.reset(input);
+        } else {
+            this.getTokenResults(input);
+        }
         cursor = 0;
         endPosition = 0;
         lastBeginPosition = 0;
         lastEndPosition = 0;
+        if (graph != null) {
+            graph.build(tokenResults);
+            graphBase = 0;
+            lastPosition = -1;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        super.close();
+        tokenResults.release();
     }
 
     /**
@@ -243,21 +565,297 @@ public final class IctclasTokenizer extends Tokenizer {
      * @throws IOException the io exception
      */
     private void getTokenResults(Reader reader) throws IOException {
-        char[] arr = new char[1024];
         StringBuilder buffer = new StringBuilder();
         int numCharsRead;
-        while ((numCharsRead = reader.read(arr, 0, arr.length)) != -1) {
-            buffer.append(arr, 0, numCharsRead);
+        while ((numCharsRead = reader.read(readBuffer, 0, readBuffer.length)) != -1) {
+            buffer.append(readBuffer, 0, numCharsRead);
         }
         String targetString = buffer.toString();
         LOGGER.debug("Tokenizer Input: {}", targetString);
         if (!targetString.isEmpty()) {
-            String segmentResult = IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(targetString, fineSegment);
-            this.setTokenResults(TokenResult.parse(segmentResult));
-            LOGGER.debug("Tokenizer Output: {}", segmentResult);
+            segmentText(targetString);
         } else {
             LOGGER.debug("Tokenizer Input is empty pass tokenization");
+            stats.onEmptyInput();
         }
 
     }
+
+    /**
+     * 读取下一个窗口并分词, 窗口内没有 token 时继续读取, 直到有 token 或读取完毕
+     *
+     * @return 是否读取到新的 token
+     * @throws IOException the io exception
+     */
+    private boolean nextWindow() throws IOException {
+        String window;
+        while ((window = windowReader.next()) != null) {
+            LOGGER.debug("Tokenizer Window Input at {}: {}", windowReader.base(), window);
+            if (graph != null) {
+                // 下一个窗口从上一个窗口的结束节点开始
+                graphBase += graph.nodeCount();
+            }
+            tokenResults.clear();
+            tokenBase = windowReader.base();
+            cursor = 0;
+            segmentText(window);
+            if (graph != null) {
+                graph.build(tokenResults);
+            }
+            if (tokenResults.size() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 对文本进行分词, 搜索时的短文本重复率高, 优先从缓存中获取
+     *
+     * @param text the text
+     */
+    private void segmentText(String text) {
+        if (!initState) {
+            fallback(text, tokenResults, FallbackSegmenter.Reason.UNAVAILABLE);
+            return;
+        }
+        if (maxChars > 0 && text.length() > maxChars) {
+            fallback(text, tokenResults, FallbackSegmenter.Reason.TOO_LONG);
+            return;
+        }
+        SegmentationSlowLog currentSlowLog = warmup ? null : slowLog;
+        long start = currentSlowLog == null ? 0 : System.nanoTime();
+        SegmentationCache cache = fineSegment || warmup ? null : searchCache;
+        SentenceCache currentSentenceCache = warmup ? null : sentenceCache;
+        SegmentationMemo currentMemo = warmup ? null : memo;
+        // 以词典版本作为键的一部分, 重新加载词典期间产生的旧结果不会被命中
+        long version = userDictionary.version();
+        if (!fineSegment && currentMemo != null && currentMemo.coarse(text, fastPathMinRun, version, tokenResults)) {
+            LOGGER.debug("Tokenizer Output derived from fine segmentation");
+        } else if (cache != null && cache.isCacheable(text)) {
+            if (!cache.get(text, false, fastPathMinRun, version, tokenResults) && segmentScripts(text, tokenResults)) {
+                cache.put(text, false, fastPathMinRun, version, tokenResults);
+            }
+        } else if (currentSentenceCache != null && currentSentenceCache.accepts(text)) {
+            // 重新索引时大部分句子没有变化, 只对未命中的句子调用 NLPIR, 连续未命中的部分足够长时仍并行分词
+            currentSentenceCache.segment(text, fineSegment, fastPathMinRun, version, tokenResults, this::segmentMisses);
+        } else if (parallelSegmenter != null && parallelSegmenter.shouldSplit(text)) {
+            parallelSegmenter.segment(text, tokenResults, this::segmentScripts);
+        } else {
+            segmentScripts(text, tokenResults);
+        }
+        if (fineSegment && currentMemo != null) {
+            currentMemo.remember(text, fastPathMinRun, version, tokenResults);
+        }
+        if (currentSlowLog != null) {
+            currentSlowLog.maybeLog(text, fineSegment, tokenResults.size(), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 按句分词缓存中连续未命中的句子, 达到 parallel_threshold 时并行分词
+     *
+     * @param text    the text
+     * @param results the results
+     * @return 是否分词成功
+     */
+    private boolean segmentMisses(String text, TokenResults results) {
+        if (parallelSegmenter == null || !parallelSegmenter.shouldSplit(text)) {
+            return segmentScripts(text, results);
+        }
+        AtomicBoolean success = new AtomicBoolean(true);
+        parallelSegmenter.segment(text, results, (chunk, part) -> {
+            if (!segmentScripts(chunk, part)) {
+                success.set(false);
+            }
+        });
+        return success.get();
+    }
+
+    /**
+     * 开启了 fast_path_min_run 时只把含有中文的部分交给 NLPIR, 并行分词时会在其他线程中调用
+     *
+     * @param text    the text
+     * @param results the results
+     * @return 是否分词成功
+     */
+    private boolean segmentScripts(String text, TokenResults results) {
+        if (scriptAwareSegmenter == null) {
+            return segment(text, results);
+        }
+        return scriptAwareSegmenter.segment(text, results, this::segment);
+    }
+
+    /**
+     * 使用 Java 分词代替 NLPIR
+     *
+     * @param text    the text
+     * @param results the results
+     * @param reason  the reason
+     */
+    private void fallback(String text, TokenResults results, FallbackSegmenter.Reason reason) {
+        stats.onFallback(reason);
+        if (reason != FallbackSegmenter.Reason.UNAVAILABLE) {
+            LOGGER.warn("Tokenize input of {} chars with the Java fallback, reason: {}", text.length(), reason);
+        } else {
+            LOGGER.debug("Tokenize input of {} chars with the Java fallback, reason: {}", text.length(), reason);
+        }
+        FallbackSegmenter.segment(text, results);
+    }
+
+    /**
+     * 调用 NLPIR 分词并解析结果, 设置了 timeBudget 时在插件线程池中调用并限制等待时间, 并行分词时会在其他线程中调用
+     *
+     * @param text    the text
+     * @param results the results
+     * @return 是否解析成功, 超时后使用 Java 分词时返回 false, 结果不会进入缓存
+     */
+    private boolean segment(String text, TokenResults results) {
+        ExecutorService pool = timeBudgetNanos > 0 ? ParallelSegmenter.executor() : null;
+        // 已经在插件线程池的任务中时直接调用, 避免等待同一个线程池
+        if (pool == null || ParallelSegmenter.inPoolTask()) {
+            return segmentNative(text, results);
+        }
+        // 超时后 NLPIR 调用仍会继续, 因此写入单独的结果
+        BudgetedCall call = new BudgetedCall(text);
+        FutureTask<Boolean> task = new FutureTask<>(call);
+        try {
+            ParallelSegmenter.execute(pool, task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("NLPIR call with time budget rejected, call in caller thread");
+            return segmentNative(text, results);
+        }
+        try {
+            boolean parsed = task.get(timeBudgetNanos, TimeUnit.NANOSECONDS);
+            results.copyFrom(call.results);
+            return parsed;
+        } catch (TimeoutException e) {
+            call.abandon();
+            fallback(text, results, FallbackSegmenter.Reason.TIMEOUT);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            call.abandon();
+            fallback(text, results, FallbackSegmenter.Reason.TIMEOUT);
+            return false;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 带 timeBudget 的 NLPIR 调用. 放弃时尚未开始的调用不再执行, 已经开始的调用无法中断,
+     * 会继续持有用户词典读锁和并发许可直到结束, 期间计入 {@link SegmentationStats#getAbandonedRunning()}.
+     */
+    private final class BudgetedCall implements Callable<Boolean> {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int ABANDONED = 3;
+
+        private final String text;
+        private final TokenResults results = new TokenResults();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+
+        private BudgetedCall(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public Boolean call() {
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                return false;
+            }
+            try {
+                return segmentNative(text, results);
+            } finally {
+                if (!state.compareAndSet(RUNNING, DONE)) {
+                    stats.onAbandonedFinished();
+                }
+            }
+        }
+
+        private void abandon() {
+            while (true) {
+                int current = state.get();
+                if (current == DONE || current == PENDING && state.compareAndSet(PENDING, ABANDONED)) {
+                    return;
+                }
+                if (current == RUNNING && state.compareAndSet(RUNNING, ABANDONED)) {
+                    stats.onAbandoned();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在当前线程中调用分词引擎并解析结果, 引擎不可用或调用失败时按 fallback.onUnavailable 使用 Java 分词或分析失败
+     *
+     * @param text    the text
+     * @param results the results
+     * @return 是否解析成功
+     */
+    private boolean segmentNative(String text, TokenResults results) {
+        SegmentationEngine current = engine;
+        if (!current.isAvailable()) {
+            return unavailable(current, text, results);
+        }
+        Lock lock = userDictionary.readLock();
+        // 预热与正常分词同时进行时同样受并发限制, 但不计入耗时统计
+        BytesRef output = nativeCallLimiter.call(() -> {
+            BytesRef segmented = locked(lock, () -> current.segment(text, fineSegment));
+            return segmented == null ? ENGINE_FAILED : segmented;
+        }, !warmup);
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Tokenizer Output: {}", output == null ? null : output.utf8ToString());
+        }
+        if (output == ENGINE_FAILED) {
+            // 例如分词进程重新启动, 心跳超时或请求超时, 不能把非空输入索引为空
+            stats.onNativeError();
+            return unavailable(current, text, results);
+        }
+        if (output == null) {
+            // 等待许可超时且 onTimeout 为 skip, 已计入 skips, 没有调用 NLPIR, 不是 NLPIR 的错误
+            results.clear();
+            return false;
+        }
+        long parseStart = System.nanoTime();
+        return onParsed(text, results, results.parse(output.bytes, output.offset, output.length), parseStart);
+    }
+
+    private boolean unavailable(SegmentationEngine current, String text, TokenResults results) {
+        if (!fallbackOnUnavailable) {
+            throw new IllegalStateException(
+                    "NLPIR engine [" + current.name() + "] failed to segment input of " + text.length() + " chars"
+            );
+        }
+        fallback(text, results, FallbackSegmenter.Reason.UNAVAILABLE);
+        return false;
+    }
+
+    private boolean onParsed(String text, TokenResults results, boolean parsed, long parseStart) {
+        long parseNanos = System.nanoTime() - parseStart;
+        if (parsed) {
+            stats.onSegment(text.length(), results.size(), parseNanos);
+        } else {
+            stats.onParseError(parseNanos);
+        }
+        return parsed;
+    }
+
+    /**
+     * 持有用户词典读锁调用 NLPIR, 避免看到重新加载了一半的词典
+     */
+    private static <T> T locked(Lock lock, Supplier<T> nativeCall) {
+        lock.lock();
+        try {
+            return nativeCall.get();
+        } finally {
+            lock.unlock();
+        }
+    }
 }
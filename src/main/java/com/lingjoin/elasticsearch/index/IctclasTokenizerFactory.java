@@ -20,6 +20,7 @@ public class IctclasTokenizerFactory extends AbstractTokenizerFactory {
 
     final private boolean fineSegment;
     final private Environment environment;
+    final private IctclasTokenizerSettings tokenizerSettings;
 
     /**
      * Instantiates a new Ictclas tokenizer factory.
@@ -35,6 +36,7 @@ public class IctclasTokenizerFactory extends AbstractTokenizerFactory {
         this.environment = environment;
         this.fineSegment = fineSegment;
         this.configuration = Configuration.getConfiguration(environment);
+        this.tokenizerSettings = IctclasTokenizerSettings.parse(settings);
     }
 
     /**
@@ -65,10 +67,15 @@ public class IctclasTokenizerFactory extends AbstractTokenizerFactory {
         return new IctclasTokenizerFactory(indexSettings, environment, settings, name, true);
     }
 
+    /**
+     * 创建分词器, 开启 fallback.onUnavailable 时 NLPIR 不可用也不会抛出异常, 而是使用 Java 分词.
+     *
+     * @return the tokenizer
+     */
     @Override
     public Tokenizer create() {
         try {
-            return new IctclasTokenizer(configuration, environment, fineSegment);
+            return new IctclasTokenizer(configuration, environment, fineSegment, tokenizerSettings);
         } catch (NlpirException e) {
             LOGGER.error("Initialization Tokenizer failed", e);
             throw new RuntimeException(e);
@@ -0,0 +1,124 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * 分词器在索引配置中的设置, 对 tokenizer 和 analyzer 均有效.
+ */
+public class IctclasTokenizerSettings {
+
+    /**
+     * 不做任何设置时的默认值.
+     */
+    public static final IctclasTokenizerSettings DEFAULT = new IctclasTokenizerSettings(0, 0, 2048, 0, false);
+
+    private final int windowSize;
+    private final int parallelThreshold;
+    private final int parallelChunkSize;
+    private final int fastPathMinRun;
+    private final boolean graph;
+
+    /**
+     * Instantiates a new Ictclas tokenizer settings.
+     *
+     * @param windowSize        分窗口读取时的窗口大小, 0 表示一次读取全部文本
+     * @param parallelThreshold 文本长度达到该值时并行分词, 0 表示不并行
+     * @param parallelChunkSize 并行分词时每个分块的最大长度
+     * @param fastPathMinRun    不含中文的片段达到该长度时在 Java 中分词, 0 表示全部由 NLPIR 分词
+     */
+    public IctclasTokenizerSettings(int windowSize, int parallelThreshold, int parallelChunkSize, int fastPathMinRun) {
+        this(windowSize, parallelThreshold, parallelChunkSize, fastPathMinRun, false);
+    }
+
+    /**
+     * Instantiates a new Ictclas tokenizer settings.
+     *
+     * @param windowSize        分窗口读取时的窗口大小, 0 表示一次读取全部文本
+     * @param parallelThreshold 文本长度达到该值时并行分词, 0 表示不并行
+     * @param parallelChunkSize 并行分词时每个分块的最大长度
+     * @param fastPathMinRun    不含中文的片段达到该长度时在 Java 中分词, 0 表示全部由 NLPIR 分词
+     * @param graph             是否输出 token 图, 设置 PositionLengthAttribute 且不丢弃 token
+     */
+    public IctclasTokenizerSettings(
+            int windowSize, int parallelThreshold, int parallelChunkSize, int fastPathMinRun, boolean graph
+    ) {
+        if (windowSize < 0 || windowSize == 1) {
+            throw new IllegalArgumentException("[window_size] must be 0 or at least 2 but was " + windowSize);
+        }
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("[parallel_threshold] must be >= 0 but was " + parallelThreshold);
+        }
+        if (parallelChunkSize < 2) {
+            throw new IllegalArgumentException("[parallel_chunk_size] must be at least 2 but was " + parallelChunkSize);
+        }
+        if (fastPathMinRun < 0) {
+            throw new IllegalArgumentException("[fast_path_min_run] must be >= 0 but was " + fastPathMinRun);
+        }
+        this.windowSize = windowSize;
+        this.parallelThreshold = parallelThreshold;
+        this.parallelChunkSize = parallelChunkSize;
+        this.fastPathMinRun = fastPathMinRun;
+        this.graph = graph;
+    }
+
+    /**
+     * 从索引配置中解析.
+     *
+     * @param settings the settings
+     * @return the ictclas tokenizer settings
+     */
+    public static IctclasTokenizerSettings parse(Settings settings) {
+        return new IctclasTokenizerSettings(
+                settings.getAsInt("window_size", DEFAULT.windowSize),
+                settings.getAsInt("parallel_threshold", DEFAULT.parallelThreshold),
+                settings.getAsInt("parallel_chunk_size", DEFAULT.parallelChunkSize),
+                settings.getAsInt("fast_path_min_run", DEFAULT.fastPathMinRun),
+                settings.getAsBoolean("graph", DEFAULT.graph)
+        );
+    }
+
+    /**
+     * 分窗口读取时的窗口大小, 0 表示一次读取全部文本.
+     *
+     * @return the window size
+     */
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * 文本长度达到该值时并行分词, 0 表示不并行.
+     *
+     * @return the parallel threshold
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * 并行分词时每个分块的最大长度.
+     *
+     * @return the parallel chunk size
+     */
+    public int getParallelChunkSize() {
+        return parallelChunkSize;
+    }
+
+    /**
+     * 不含中文的片段达到该长度时在 Java 中分词, 0 表示全部由 NLPIR 分词.
+     *
+     * @return the fast path min run
+     */
+    public int getFastPathMinRun() {
+        return fastPathMinRun;
+    }
+
+    /**
+     * 是否输出 token 图. 开启时细粒度的词位于所在粗粒度词内部的位置, 粗粒度词的 PositionLengthAttribute 为其跨过的位置数.
+     *
+     * @return the boolean
+     */
+    public boolean isGraph() {
+        return graph;
+    }
+}
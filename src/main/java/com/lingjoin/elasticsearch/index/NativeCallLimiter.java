@@ -0,0 +1,200 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration.NativeConcurrency;
+import com.lingjoin.elasticsearch.util.LatencyHistogram;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 节点级别的 NLPIR 调用并发限制.
+ * <p>
+ * 同时进入 native 库的调用数不超过 maxConcurrentCalls, 等待许可超时后按 {@link NativeConcurrency.OnTimeout} 处理.
+ * 同时记录等待许可和调用本身的耗时.
+ */
+public final class NativeCallLimiter {
+
+    private final Semaphore permits;
+    private final int maxConcurrentCalls;
+    private final long acquireTimeoutNanos;
+    private final NativeConcurrency.OnTimeout onTimeout;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram inCall = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder skips = new LongAdder();
+
+    /**
+     * Instantiates a new Native call limiter.
+     *
+     * @param configuration the configuration
+     */
+    public NativeCallLimiter(NativeConcurrency configuration) {
+        this.maxConcurrentCalls = configuration.getMaxConcurrentCalls();
+        this.permits = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls, configuration.isFair()) : null;
+        this.acquireTimeoutNanos = configuration.getAcquireTimeout().nanos();
+        this.onTimeout = configuration.getOnTimeout();
+    }
+
+    /**
+     * 在并发限制内执行 native 调用.
+     *
+     * @param <T>        the type parameter
+     * @param nativeCall the native call
+     * @return 调用结果, onTimeout 为 skip 且超时时返回 null
+     * @throws EsRejectedExecutionException onTimeout 为 reject 且超时
+     */
+    public <T> T call(Supplier<T> nativeCall) {
+        return call(nativeCall, true);
+    }
+
+    /**
+     * 在并发限制内执行 native 调用.
+     *
+     * @param <T>        the type parameter
+     * @param nativeCall the native call
+     * @param recorded   是否计入耗时和超时统计, 预热时为 false
+     * @return 调用结果, onTimeout 为 skip 且超时时返回 null
+     * @throws EsRejectedExecutionException onTimeout 为 reject 且超时
+     */
+    public <T> T call(Supplier<T> nativeCall, boolean recorded) {
+        if (permits == null) {
+            return timed(nativeCall, recorded);
+        }
+        boolean acquired = acquire(recorded);
+        if (!acquired) {
+            if (recorded) {
+                timeouts.increment();
+            }
+            switch (onTimeout) {
+                case REJECT:
+                    if (recorded) {
+                        rejections.increment();
+                    }
+                    throw new EsRejectedExecutionException(
+                            "timed out waiting for one of " + maxConcurrentCalls + " NLPIR call permits", false
+                    );
+                case SKIP:
+                    if (recorded) {
+                        skips.increment();
+                    }
+                    LOGGER.warn("Timed out waiting for NLPIR call permit, skip segmentation");
+                    return null;
+                default:
+                    LOGGER.debug("Timed out waiting for NLPIR call permit, proceed without permit");
+                    return timed(nativeCall, recorded);
+            }
+        }
+        try {
+            return timed(nativeCall, recorded);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private boolean acquire(boolean recorded) {
+        long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire();
+        if (!acquired) {
+            try {
+                acquired = permits.tryAcquire(acquireTimeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (recorded) {
+            queueWait.record(System.nanoTime() - start);
+        }
+        return acquired;
+    }
+
+    private <T> T timed(Supplier<T> nativeCall, boolean recorded) {
+        if (!recorded) {
+            return nativeCall.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return nativeCall.get();
+        } finally {
+            inCall.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 同时进行的最大调用数, 0 表示不限制.
+     *
+     * @return the int
+     */
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    /**
+     * 当前正在进行的受限调用数.
+     *
+     * @return the int
+     */
+    public int getActiveCalls() {
+        return permits == null ? 0 : maxConcurrentCalls - permits.availablePermits();
+    }
+
+    /**
+     * 当前等待许可的线程数估计值.
+     *
+     * @return the int
+     */
+    public int getQueuedCalls() {
+        return permits == null ? 0 : permits.getQueueLength();
+    }
+
+    /**
+     * 等待许可耗时.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    /**
+     * native 调用耗时.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getInCall() {
+        return inCall;
+    }
+
+    /**
+     * 等待许可超时次数.
+     *
+     * @return the long
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 超时后被拒绝的次数.
+     *
+     * @return the long
+     */
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    /**
+     * 超时后跳过分词的次数.
+     *
+     * @return the long
+     */
+    public long getSkips() {
+        return skips.sum();
+    }
+}
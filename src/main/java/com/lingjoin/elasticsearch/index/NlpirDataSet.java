@@ -0,0 +1,233 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.elasticsearch.util.Configuration;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * NLPIR_Init 加载的数据集.
+ * <p>
+ * full 直接使用插件目录. segmentation 在临时目录中生成新的 Data 目录, 其中的文件链接到插件目录 (不支持符号链接时复制),
+ * 去掉 {@link #SEGMENTATION_EXCLUDES} 和配置的 exclude, 并在 Configure.xml 中关闭情感分析.
+ * UserDict.pdat 是链接时保存编译后的用户词典写入插件目录; 是副本时只写入临时目录, 下次启动重新导入用户词典,
+ * 见 {@link CompiledUserDictionary}.
+ */
+final class NlpirDataSet {
+
+    /**
+     * segmentation 去掉的 Data 目录下的文件, glob 格式: 情感分析, 英文命名实体, 拼写纠错, 拼音, BIG5 和文档模板
+     */
+    static final List<String> SEGMENTATION_EXCLUDES = List.of(
+            "sentiment.*", "ChnSenti-*", "English", "SpellError*", "pinyin.*", "hanzi2pinyin.map",
+            "BIG5.*", "BIG2GBK.map", "GBK2BIG.map", "Template"
+    );
+
+    /**
+     * NLPIR 配置文件名
+     */
+    static final String CONFIGURE = "Configure.xml";
+
+    // Configure.xml 声明为 GB2312
+    private static final Charset CONFIGURE_CHARSET = Charset.forName("GBK");
+    private static final Pattern SENTIMENT = Pattern.compile("(?i)<Sentiment>\\s*on\\s*</Sentiment>");
+
+    private final Configuration.DataProfile.Profile profile;
+    private final Path path;
+    private final long bytes;
+    private final long fullBytes;
+
+    private NlpirDataSet(Configuration.DataProfile.Profile profile, Path path, long bytes, long fullBytes) {
+        this.profile = profile;
+        this.path = path;
+        this.bytes = bytes;
+        this.fullBytes = fullBytes;
+    }
+
+    /**
+     * 插件目录中的全部数据.
+     *
+     * @param pluginPath 插件目录
+     * @return the nlpir data set
+     * @throws IOException 读取失败
+     */
+    static NlpirDataSet full(Path pluginPath) throws IOException {
+        long size = size(pluginPath.resolve("Data"));
+        return new NlpirDataSet(Configuration.DataProfile.Profile.FULL, pluginPath, size, size);
+    }
+
+    /**
+     * 按配置准备数据集.
+     *
+     * @param pluginPath   插件目录
+     * @param config       the config
+     * @param tmpDirectory Elasticsearch 的临时目录
+     * @return the nlpir data set
+     * @throws IOException 生成数据目录失败
+     */
+    static NlpirDataSet prepare(
+            Path pluginPath, Configuration.DataProfile config, Path tmpDirectory
+    ) throws IOException {
+        return prepare(pluginPath, config, tmpDirectory, true);
+    }
+
+    /**
+     * 按配置准备数据集.
+     *
+     * @param pluginPath    插件目录
+     * @param config        the config
+     * @param tmpDirectory  Elasticsearch 的临时目录
+     * @param symbolicLinks 是否尝试创建符号链接, 为 false 时复制文件
+     * @return the nlpir data set
+     * @throws IOException 生成数据目录失败
+     */
+    static NlpirDataSet prepare(
+            Path pluginPath, Configuration.DataProfile config, Path tmpDirectory, boolean symbolicLinks
+    ) throws IOException {
+        if (config.getProfile() == Configuration.DataProfile.Profile.FULL) {
+            return full(pluginPath);
+        }
+        List<String> patterns = new ArrayList<>(SEGMENTATION_EXCLUDES);
+        patterns.addAll(config.getExclude());
+        Path target = tmpDirectory.resolve(config.getDirectory())
+                .resolve(config.getProfile().name().toLowerCase(Locale.ROOT));
+        return Access.doPrivilegedIOException(() -> {
+            Path source = pluginPath.resolve("Data");
+            build(source, target.resolve("Data"), patterns, symbolicLinks);
+            return new NlpirDataSet(config.getProfile(), target, size(target.resolve("Data")), size(source));
+        });
+    }
+
+    private static void build(Path source, Path data, List<String> patterns, boolean links) throws IOException {
+        List<PathMatcher> excludes = patterns.stream()
+                .map(pattern -> FileSystems.getDefault().getPathMatcher("glob:" + pattern))
+                .toList();
+        delete(data.getParent());
+        Files.createDirectories(data);
+        boolean symbolicLinks = links;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(source)) {
+            for (Path entry : entries) {
+                Path name = entry.getFileName();
+                if (excludes.stream().anyMatch(exclude -> exclude.matches(name))) {
+                    LOGGER.debug("NLPIR data profile excludes {}", name);
+                    continue;
+                }
+                Path destination = data.resolve(name.toString());
+                if (name.toString().equals(CONFIGURE)) {
+                    String configure = Files.readString(entry, CONFIGURE_CHARSET);
+                    Files.writeString(destination, trim(configure), CONFIGURE_CHARSET);
+                    continue;
+                }
+                if (symbolicLinks) {
+                    try {
+                        Files.createSymbolicLink(destination, entry.toAbsolutePath());
+                        continue;
+                    } catch (UnsupportedOperationException | IOException | SecurityException e) {
+                        LOGGER.warn("Cannot create symbolic links in {}, copy NLPIR data instead: {}", data, e.toString());
+                        symbolicLinks = false;
+                    }
+                }
+                copy(entry, destination);
+            }
+        }
+    }
+
+    /**
+     * 关闭分词用不到的功能.
+     *
+     * @param configure Configure.xml 的内容
+     * @return the string
+     */
+    static String trim(String configure) {
+        return SENTIMENT.matcher(configure).replaceAll("<Sentiment>Off</Sentiment>");
+    }
+
+    private static void copy(Path source, Path destination) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : paths.toList()) {
+                Path copied = destination.resolve(source.relativize(path).toString());
+                // 已存在的目录保留, 文件覆盖
+                if (Files.isDirectory(copied)) {
+                    continue;
+                }
+                Files.copy(path, copied, StandardCopyOption.COPY_ATTRIBUTES, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        // 不跟随符号链接, 只删除链接本身
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static long size(Path directory) throws IOException {
+        return Access.doPrivilegedIOException(() -> {
+            try (Stream<Path> paths = Files.walk(directory, FileVisitOption.FOLLOW_LINKS)) {
+                long total = 0;
+                for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                    total += Files.size(path);
+                }
+                return total;
+            }
+        });
+    }
+
+    /**
+     * Gets profile.
+     *
+     * @return the profile
+     */
+    Configuration.DataProfile.Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * NLPIR_Init 的数据路径, 包含 Data 目录.
+     *
+     * @return the path
+     */
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * 数据集中文件的总大小.
+     *
+     * @return the long
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * 插件目录中全部数据的总大小.
+     *
+     * @return the long
+     */
+    long getFullBytes() {
+        return fullBytes;
+    }
+}
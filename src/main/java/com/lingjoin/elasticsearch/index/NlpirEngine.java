@@ -0,0 +1,137 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.NativeMemory;
+import com.lingjoin.nlpir.IctclasDirect;
+import com.lingjoin.nlpir.IctclasNative;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.util.BytesRef;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 在节点内通过 JNA 调用 NLPIR 的分词引擎.
+ * <p>
+ * 开启 directBinding 时以 UTF-8 字节调用 {@link IctclasDirect}, 否则调用 {@link IctclasNative#NLPIR_Tokenizer4IR}.
+ */
+final class NlpirEngine implements SegmentationEngine {
+
+    /**
+     * 引擎名称
+     */
+    static final String NAME = "nlpir";
+
+    private static final ThreadLocal<BytesRef> RESULTS = ThreadLocal.withInitial(BytesRef::new);
+
+    private final boolean directBinding;
+    private final NlpirDataSet dataSet;
+    private final long residentBytesBeforeInit;
+    private final long residentBytesAfterInit;
+
+    private NlpirEngine(
+            boolean directBinding, NlpirDataSet dataSet, long residentBytesBeforeInit, long residentBytesAfterInit
+    ) {
+        this.directBinding = directBinding;
+        this.dataSet = dataSet;
+        this.residentBytesBeforeInit = residentBytesBeforeInit;
+        this.residentBytesAfterInit = residentBytesAfterInit;
+    }
+
+    /**
+     * 初始化 NLPIR, 全局只能进行一次.
+     *
+     * @param dataSet      加载的数据集
+     * @param sLicenceCode 授权码，默认为""
+     * @param direct       是否使用 direct mapping 调用分词
+     * @return the nlpir engine
+     * @throws NlpirException 初始化失败
+     */
+    static NlpirEngine init(NlpirDataSet dataSet, String sLicenceCode, boolean direct) throws NlpirException {
+        LOGGER.info("NLPIR 初始化, 数据集: {}, 路径: {}, {} bytes",
+                dataSet.getProfile(), dataSet.getPath(), dataSet.getBytes());
+        long residentBefore = NativeMemory.residentBytes();
+        long start = System.nanoTime();
+        if (!IctclasNative.INSTANCE.NLPIR_Init(dataSet.getPath().toString(), 1, sLicenceCode)) {
+            String errorMsg = IctclasNative.INSTANCE.NLPIR_GetLastErrorMsg();
+            LOGGER.error("NLPIR 初始化失败, {}", errorMsg);
+            throw new NlpirException(errorMsg);
+        }
+        // 包括加载 Data/UserDict.pdat 中编译后的用户词典
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        long residentAfter = NativeMemory.residentBytes();
+        LOGGER.info("NLPIR 初始化成功, 耗时 {} ms, 常驻内存 {} -> {} bytes", took, residentBefore, residentAfter);
+        if (direct && !IctclasDirect.isAvailable()) {
+            LOGGER.warn("NLPIR direct mapping 不可用, 使用 JNA 接口调用分词", IctclasDirect.getUnavailableCause());
+        }
+        return new NlpirEngine(direct && IctclasDirect.isAvailable(), dataSet, residentBefore, residentAfter);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public BytesRef segment(String text, boolean fineSegment) {
+        BytesRef result = RESULTS.get();
+        if (directBinding) {
+            IctclasDirect.Utf8Result utf8Result = IctclasDirect.tokenize(text, fineSegment);
+            result.bytes = utf8Result.bytes();
+            result.offset = 0;
+            result.length = utf8Result.length();
+            return result;
+        }
+        String segmentResult = IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(text, fineSegment);
+        if (segmentResult == null) {
+            return null;
+        }
+        byte[] bytes = segmentResult.getBytes(StandardCharsets.UTF_8);
+        result.bytes = bytes;
+        result.offset = 0;
+        result.length = bytes.length;
+        return result;
+    }
+
+    @Override
+    public UserDictionary.NativeDictionary dictionary() {
+        return UserDictionary.NLPIR;
+    }
+
+    /**
+     * 是否通过 direct mapping 调用.
+     *
+     * @return the boolean
+     */
+    boolean isDirectBinding() {
+        return directBinding;
+    }
+
+    /**
+     * Gets data set.
+     *
+     * @return the data set
+     */
+    NlpirDataSet getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * NLPIR_Init 之前的进程常驻内存.
+     *
+     * @return 字节数, 无法读取时为 -1
+     */
+    long getResidentBytesBeforeInit() {
+        return residentBytesBeforeInit;
+    }
+
+    /**
+     * NLPIR_Init 之后的进程常驻内存.
+     *
+     * @return 字节数, 无法读取时为 -1
+     */
+    long getResidentBytesAfterInit() {
+        return residentBytesAfterInit;
+    }
+}
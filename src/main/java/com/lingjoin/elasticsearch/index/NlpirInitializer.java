@@ -0,0 +1,329 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.elasticsearch.util.Configuration;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.core.CheckedRunnable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.env.Environment;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * NLPIR 初始化与预热的状态.
+ * <p>
+ * 节点启动时在后台线程中初始化, 完成后继续用预热语料预热. 分词器创建时等待初始化完成, 预热期间已经可以分词.
+ * 没有在启动时初始化时 (startup.eager 为 false 或未经过插件启动), 第一个分词器在当前线程中初始化.
+ * 初始化失败后记住失败原因, 退避时间内创建分词器直接失败, 退避时间过后下一个分词器在当前线程中重试初始化.
+ * 退避时间从 1 秒开始, 每次失败翻倍, 最长 5 分钟.
+ */
+final class NlpirInitializer {
+
+    /**
+     * 初始化状态.
+     */
+    enum State {
+        /**
+         * 尚未开始初始化
+         */
+        NOT_STARTED,
+        /**
+         * 正在初始化, 分词器等待
+         */
+        INITIALIZING,
+        /**
+         * 初始化完成, 正在预热, 可以分词
+         */
+        WARMING_UP,
+        /**
+         * 初始化与预热都已完成
+         */
+        READY,
+        /**
+         * 初始化失败, 等待重试
+         */
+        FAILED
+    }
+
+    private static final TimeValue INITIAL_RETRY_DELAY = TimeValue.timeValueSeconds(1);
+    private static final TimeValue MAX_RETRY_DELAY = TimeValue.timeValueMinutes(5);
+
+    /**
+     * 节点级别的初始化状态.
+     */
+    static final NlpirInitializer NODE = new NlpirInitializer();
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.NOT_STARTED);
+    private final LongSupplier nanoTime;
+    private final long initialRetryNanos;
+    private final long maxRetryNanos;
+    // 每次开始初始化时替换, 在状态变为 INITIALIZING 之前写入
+    private volatile CountDownLatch initialized = new CountDownLatch(1);
+    private volatile NlpirException failure;
+    private volatile long retryAtNanos;
+    // 只由正在初始化的线程修改
+    private long retryDelayNanos;
+    private volatile int failures;
+    private volatile long initNanos = -1;
+    private volatile long warmupNanos = -1;
+
+    /**
+     * Instantiates a new Nlpir initializer.
+     */
+    NlpirInitializer() {
+        this(System::nanoTime, INITIAL_RETRY_DELAY, MAX_RETRY_DELAY);
+    }
+
+    /**
+     * Instantiates a new Nlpir initializer.
+     *
+     * @param nanoTime          时钟
+     * @param initialRetryDelay 第一次失败后的重试退避时间
+     * @param maxRetryDelay     最长退避时间
+     */
+    NlpirInitializer(LongSupplier nanoTime, TimeValue initialRetryDelay, TimeValue maxRetryDelay) {
+        this.nanoTime = nanoTime;
+        this.initialRetryNanos = initialRetryDelay.nanos();
+        this.maxRetryNanos = maxRetryDelay.nanos();
+        this.retryDelayNanos = initialRetryNanos;
+    }
+
+    /**
+     * 在后台初始化并预热 NLPIR.
+     *
+     * @param executor      the executor
+     * @param configuration the configuration
+     * @param environment   the environment
+     */
+    void startAsync(Executor executor, Configuration configuration, Environment environment) {
+        startAsync(
+                executor,
+                () -> IctclasTokenizer.initialize(configuration, environment),
+                () -> warmup(configuration, environment)
+        );
+    }
+
+    /**
+     * 在后台执行初始化, 成功后执行预热, 已经开始初始化时什么也不做.
+     *
+     * @param executor   the executor
+     * @param initialize the initialize
+     * @param warmup     the warmup
+     */
+    void startAsync(Executor executor, CheckedRunnable<NlpirException> initialize, Runnable warmup) {
+        if (!begin(State.NOT_STARTED)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                if (initialize(initialize)) {
+                    warmup(warmup);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Cannot initialize NLPIR in background, initialize on first use", e);
+            state.set(State.NOT_STARTED);
+            initialized.countDown();
+        }
+    }
+
+    /**
+     * 等待初始化完成, 尚未开始或失败后已过退避时间时在当前线程中初始化.
+     *
+     * @param timeout    最长等待时间
+     * @param initialize the initialize
+     * @throws NlpirException 初始化失败或等待超时
+     */
+    void awaitReady(TimeValue timeout, CheckedRunnable<NlpirException> initialize) throws NlpirException {
+        long deadline = System.nanoTime() + timeout.nanos();
+        while (true) {
+            State current = state.get();
+            if (current == State.WARMING_UP || current == State.READY) {
+                return;
+            }
+            if (current == State.NOT_STARTED && begin(State.NOT_STARTED)) {
+                if (!initialize(initialize)) {
+                    throw failure;
+                }
+                return;
+            }
+            if (current == State.FAILED) {
+                if (nanoTime.getAsLong() - retryAtNanos < 0 || !begin(State.FAILED)) {
+                    throw failure;
+                }
+                LOGGER.info("Retrying NLPIR initialization after {} failure(s)", failures);
+                if (!initialize(initialize)) {
+                    throw failure;
+                }
+                return;
+            }
+            if (current == State.INITIALIZING) {
+                await(deadline, timeout);
+            }
+        }
+    }
+
+    // 等待正在进行的初始化结束, 之后由调用方重新检查状态
+    private void await(long deadline, TimeValue timeout) throws NlpirException {
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0 || !initialized.await(remaining, TimeUnit.NANOSECONDS)) {
+                throw new NlpirException("NLPIR is still initializing after " + timeout);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NlpirException("Interrupted while waiting for NLPIR initialization");
+        }
+    }
+
+    // 从 expected 进入 INITIALIZING, 先替换 latch, 等待的线程看到 INITIALIZING 时一定拿到新的 latch
+    private synchronized boolean begin(State expected) {
+        if (state.get() != expected) {
+            return false;
+        }
+        initialized = new CountDownLatch(1);
+        state.set(State.INITIALIZING);
+        return true;
+    }
+
+    private boolean initialize(CheckedRunnable<NlpirException> initialize) {
+        long start = System.nanoTime();
+        NlpirException error = null;
+        try {
+            initialize.run();
+            initNanos = System.nanoTime() - start;
+            failure = null;
+            retryDelayNanos = initialRetryNanos;
+            state.set(State.WARMING_UP);
+            return true;
+        } catch (NlpirException e) {
+            error = e;
+        } catch (RuntimeException | Error e) {
+            error = new NlpirException("NLPIR initialization failed: " + e.getMessage());
+            error.initCause(e);
+        } finally {
+            if (error != null) {
+                failure = error;
+                failures++;
+                retryAtNanos = nanoTime.getAsLong() + retryDelayNanos;
+                LOGGER.error("NLPIR initialization failed, retry after {}", TimeValue.timeValueNanos(retryDelayNanos), error);
+                retryDelayNanos = Math.min(retryDelayNanos * 2, maxRetryNanos);
+                state.set(State.FAILED);
+            }
+            initialized.countDown();
+        }
+        return false;
+    }
+
+    private void warmup(Runnable warmup) {
+        long start = System.nanoTime();
+        try {
+            warmup.run();
+        } catch (RuntimeException e) {
+            LOGGER.warn("NLPIR warm-up failed", e);
+        } finally {
+            warmupNanos = System.nanoTime() - start;
+            state.compareAndSet(State.WARMING_UP, State.READY);
+        }
+    }
+
+    /**
+     * Gets state.
+     *
+     * @return the state
+     */
+    State getState() {
+        return state.get();
+    }
+
+    /**
+     * 初始化失败的次数.
+     *
+     * @return the int
+     */
+    int getFailures() {
+        return failures;
+    }
+
+    /**
+     * 初始化耗时, 尚未初始化成功时为 -1.
+     *
+     * @return the long
+     */
+    long getInitNanos() {
+        return initNanos;
+    }
+
+    /**
+     * 预热耗时, 尚未完成预热时为 -1.
+     *
+     * @return the long
+     */
+    long getWarmupNanos() {
+        return warmupNanos;
+    }
+
+    /**
+     * 用预热语料分别进行粗粒度和细粒度分词, 预热 NLPIR 内部缓存和 JIT.
+     * 预热不计入节点的分词统计, 也不写入缓存, memo 和慢日志.
+     *
+     * @param configuration the configuration
+     * @param environment   the environment
+     */
+    static void warmup(Configuration configuration, Environment environment) {
+        Configuration.Startup startup = configuration.getStartup();
+        if (startup.getWarmupCorpus().isEmpty() || startup.getWarmupIterations() <= 0) {
+            return;
+        }
+        Path corpus = Configuration.getPluginPath(environment).resolve(startup.getWarmupCorpus());
+        List<String> lines;
+        try {
+            lines = Access.doPrivilegedIOException(() -> Files.readAllLines(corpus, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            LOGGER.warn("Cannot read NLPIR warm-up corpus from {}", corpus, e);
+            return;
+        }
+        long start = System.nanoTime();
+        long tokens = 0;
+        try {
+            for (int i = 0; i < startup.getWarmupIterations(); i++) {
+                for (boolean fineSegment : new boolean[]{true, false}) {
+                    Tokenizer tokenizer = new IctclasTokenizer(
+                            configuration, environment, fineSegment, IctclasTokenizerSettings.DEFAULT, true
+                    );
+                    for (String line : lines) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        tokenizer.setReader(new StringReader(line));
+                        tokenizer.reset();
+                        while (tokenizer.incrementToken()) {
+                            tokens++;
+                        }
+                        tokenizer.end();
+                        tokenizer.close();
+                    }
+                }
+            }
+        } catch (IOException | NlpirException e) {
+            throw new IllegalStateException(e);
+        }
+        LOGGER.info("NLPIR 预热完成, {} 行 x {} 次, {} 个词, 耗时 {}",
+                lines.size(), startup.getWarmupIterations(), tokens,
+                TimeValue.timeValueNanos(System.nanoTime() - start));
+    }
+}
@@ -0,0 +1,96 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 读取 NLPIR Data 目录下的 .wordlist 词表和 .map 对照表.
+ * <p>
+ * 词表: int 编号总数, int 词数 n, n 个 int 偏移, 8 字节的头, 之后是以 0 结尾的词, 偏移从头之后算起.
+ * 对照表: int 源词表的词数 n, int 目标词表的词数, n 个 int 目标词表中的编号, 之后是 NLPIR 自用的索引.
+ * 所有整数都是小端序.
+ */
+final class NlpirMapFile {
+
+    private static final int WORD_LIST_HEADER = 8;
+
+    private NlpirMapFile() {
+    }
+
+    /**
+     * 读取词表, 下标即编号.
+     *
+     * @param path    the path
+     * @param charset 词表的编码
+     * @return the string [ ]
+     * @throws IOException 文件不存在或格式错误
+     */
+    static String[] readWordList(Path path, Charset charset) throws IOException {
+        ByteBuffer in = open(path);
+        try {
+            in.getInt();
+            int count = in.getInt();
+            if (count < 0 || count > in.remaining() / Integer.BYTES) {
+                throw new IOException("Invalid NLPIR word list " + path + ": " + count + " words");
+            }
+            int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = in.getInt();
+            }
+            int data = in.position() + WORD_LIST_HEADER;
+            byte[] bytes = in.array();
+            String[] words = new String[count];
+            for (int i = 0; i < count; i++) {
+                int start = data + offsets[i];
+                if (offsets[i] < 0 || start >= bytes.length) {
+                    throw new IOException("Invalid NLPIR word list " + path + ": word " + i + " is out of range");
+                }
+                int end = start;
+                while (end < bytes.length && bytes[end] != 0) {
+                    end++;
+                }
+                words[i] = new String(bytes, start, end - start, charset);
+            }
+            return words;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid NLPIR word list " + path, e);
+        }
+    }
+
+    /**
+     * 读取对照表, 返回源词表每个编号对应的目标词表编号.
+     *
+     * @param path the path
+     * @return the int [ ]
+     * @throws IOException 文件不存在或格式错误
+     */
+    static int[] readMap(Path path) throws IOException {
+        ByteBuffer in = open(path);
+        try {
+            int count = in.getInt();
+            int targets = in.getInt();
+            if (count < 0 || count > in.remaining() / Integer.BYTES) {
+                throw new IOException("Invalid NLPIR map " + path + ": " + count + " entries");
+            }
+            int[] map = new int[count];
+            for (int i = 0; i < count; i++) {
+                map[i] = in.getInt();
+                if (map[i] < 0 || map[i] >= targets) {
+                    throw new IOException("Invalid NLPIR map " + path + ": entry " + i + " is out of range");
+                }
+            }
+            return map;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid NLPIR map " + path, e);
+        }
+    }
+
+    private static ByteBuffer open(Path path) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(path)).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,152 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * ictclas_normalize 的字符对照表, 每个字符只对应一个字符, 转换后文本长度和偏移都不变.
+ * <p>
+ * 按高 8 位分页, 没有任何映射的页为 null, 查表只需两次数组访问. 繁体到简体的对照来自 NLPIR 自带的
+ * UTF8.wordlist, UTF2GBK.map 和 GBK.wordlist, NLPIR 转为 GBK 时把繁体字映射到对应的简体字.
+ */
+final class NormalizeTable {
+
+    /**
+     * Unicode 词表, 相对 Data 目录
+     */
+    static final String UTF8_WORD_LIST = "UTF8.wordlist";
+    /**
+     * Unicode 到 GBK 的对照表
+     */
+    static final String UTF8_TO_GBK_MAP = "UTF2GBK.map";
+    /**
+     * GBK 词表
+     */
+    static final String GBK_WORD_LIST = "GBK.wordlist";
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private static final int PAGE_SIZE = 256;
+
+    private final char[][] pages = new char[PAGE_SIZE][];
+    private int size;
+
+    /**
+     * 复制其他对照表, 可选加上全角到半角的转换.
+     *
+     * @param base  the base, 可以为 null
+     * @param width 是否把全角 ASCII 和全角空格转为半角
+     */
+    NormalizeTable(NormalizeTable base, boolean width) {
+        if (base != null) {
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                if (base.pages[i] != null) {
+                    pages[i] = base.pages[i].clone();
+                }
+            }
+            size = base.size;
+        }
+        if (width) {
+            // ！ 到 ～ 与 ! 到 ~ 一一对应
+            for (char c = '！'; c <= '～'; c++) {
+                put(c, (char) (c - 0xFEE0));
+            }
+            put('　', ' ');
+        }
+    }
+
+    /**
+     * 从 NLPIR 的 Data 目录读取繁体到简体的对照.
+     *
+     * @param dataDirectory NLPIR 的 Data 目录
+     * @return the normalize table
+     * @throws IOException 文件不存在或格式错误
+     */
+    static NormalizeTable traditional(Path dataDirectory) throws IOException {
+        return traditional(
+                NlpirMapFile.readWordList(dataDirectory.resolve(UTF8_WORD_LIST), StandardCharsets.UTF_8),
+                NlpirMapFile.readMap(dataDirectory.resolve(UTF8_TO_GBK_MAP)),
+                NlpirMapFile.readWordList(dataDirectory.resolve(GBK_WORD_LIST), GBK)
+        );
+    }
+
+    /**
+     * 按词表和对照表构建, 只保留单个汉字之间的映射, 跳过词表中的分区名, 符号和用户自定义区.
+     *
+     * @param unicode  Unicode 词表
+     * @param toGbk    Unicode 编号到 GBK 编号
+     * @param gbk      GBK 词表
+     * @return the normalize table
+     */
+    static NormalizeTable traditional(String[] unicode, int[] toGbk, String[] gbk) {
+        NormalizeTable table = new NormalizeTable(null, false);
+        int count = Math.min(unicode.length, toGbk.length);
+        for (int i = 0; i < count; i++) {
+            String from = unicode[i];
+            String to = toGbk[i] < gbk.length ? gbk[toGbk[i]] : null;
+            if (from.length() == 1 && to != null && to.length() == 1 && isIdeograph(from.charAt(0))
+                    && isIdeograph(to.charAt(0)) && from.charAt(0) != to.charAt(0)) {
+                table.put(from.charAt(0), to.charAt(0));
+            }
+        }
+        return table;
+    }
+
+    private static boolean isIdeograph(char c) {
+        return Character.UnicodeScript.of(c) == Character.UnicodeScript.HAN;
+    }
+
+    private void put(char from, char to) {
+        char[] page = pages[from >>> 8];
+        if (page == null) {
+            page = new char[PAGE_SIZE];
+            char first = (char) (from & 0xFF00);
+            for (int i = 0; i < PAGE_SIZE; i++) {
+                page[i] = (char) (first + i);
+            }
+            pages[from >>> 8] = page;
+        }
+        if (page[from & 0xFF] == from) {
+            size++;
+        }
+        page[from & 0xFF] = to;
+    }
+
+    /**
+     * 转换一个字符, 没有映射时原样返回.
+     *
+     * @param c the c
+     * @return the char
+     */
+    char map(char c) {
+        char[] page = pages[c >>> 8];
+        return page == null ? c : page[c & 0xFF];
+    }
+
+    /**
+     * 原地转换.
+     *
+     * @param buffer the buffer
+     * @param offset the offset
+     * @param length the length
+     */
+    void map(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char[] page = pages[buffer[i] >>> 8];
+            if (page != null) {
+                buffer[i] = page[buffer[i] & 0xFF];
+            }
+        }
+    }
+
+    /**
+     * 有映射的字符数.
+     *
+     * @return the int
+     */
+    int size() {
+        return size;
+    }
+}
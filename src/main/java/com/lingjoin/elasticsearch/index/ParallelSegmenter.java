@@ -0,0 +1,195 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 单个长文本的并行分词.
+ * <p>
+ * 文本在句子或标点处切分为多个分块, 除第一块外提交到插件的 {@link IctclasAnalysisPlugin#EXECUTOR_NAME} 线程池,
+ * 调用线程按顺序处理尚未被线程池领取的分块, 再按顺序合并各分块的结果并修正位置.
+ * 线程池繁忙或拒绝任务时分块在调用线程中执行, 不会因等待线程池而阻塞.
+ */
+final class ParallelSegmenter {
+
+    // 插件启动时设置, 未设置时 (如单元测试) 所有分块都在调用线程中执行
+    private static volatile ExecutorService executor;
+    // 由 execute 提交的任务执行期间为 true, 任务中再次调用 NLPIR 时不能等待同一个线程池
+    private static final ThreadLocal<Boolean> IN_POOL_TASK = ThreadLocal.withInitial(() -> false);
+
+    private final int threshold;
+    private final int chunkSize;
+
+    /**
+     * Instantiates a new Parallel segmenter.
+     *
+     * @param threshold 文本长度达到该值时才并行分词
+     * @param chunkSize 每个分块的最大长度
+     */
+    ParallelSegmenter(int threshold, int chunkSize) {
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 设置并行分词使用的线程池.
+     *
+     * @param executorService the executor service
+     */
+    static void setExecutor(ExecutorService executorService) {
+        executor = executorService;
+    }
+
+    /**
+     * 插件的线程池, 未设置时为 null.
+     *
+     * @return the executor service
+     */
+    static ExecutorService executor() {
+        return executor;
+    }
+
+    /**
+     * 在插件线程池中执行任务, 任务执行期间 {@link #inPoolTask()} 为 true.
+     *
+     * @param pool the pool
+     * @param task the task
+     * @throws RejectedExecutionException 线程池拒绝任务
+     */
+    static void execute(ExecutorService pool, Runnable task) {
+        pool.execute(() -> {
+            IN_POOL_TASK.set(true);
+            try {
+                task.run();
+            } finally {
+                IN_POOL_TASK.set(false);
+            }
+        });
+    }
+
+    /**
+     * 当前线程是否正在执行 {@link #execute} 提交的任务.
+     *
+     * @return the boolean
+     */
+    static boolean inPoolTask() {
+        return IN_POOL_TASK.get();
+    }
+
+    /**
+     * 文本是否需要并行分词.
+     *
+     * @param text the text
+     * @return the boolean
+     */
+    boolean shouldSplit(String text) {
+        return text.length() >= threshold && text.length() > chunkSize;
+    }
+
+    /**
+     * 切分文本并行分词, 结果按顺序写入 target.
+     *
+     * @param text      the text
+     * @param target    the target
+     * @param segmenter 对单个分块分词的方法
+     */
+    void segment(String text, TokenResults target, BiConsumer<String, TokenResults> segmenter) {
+        Chunk[] chunks = split(text, segmenter);
+        ExecutorService pool = executor;
+        if (pool != null) {
+            for (int i = 1; i < chunks.length; i++) {
+                try {
+                    execute(pool, chunks[i]);
+                } catch (RejectedExecutionException e) {
+                    LOGGER.debug("Parallel segmentation rejected, run remaining chunks in caller thread");
+                    break;
+                }
+            }
+        }
+        target.clear();
+        for (Chunk chunk : chunks) {
+            chunk.run();
+            chunk.await();
+            target.append(chunk.results, chunk.base);
+        }
+    }
+
+    private Chunk[] split(String text, BiConsumer<String, TokenResults> segmenter) {
+        char[] chars = text.toCharArray();
+        int count = 0;
+        int[] cuts = new int[chars.length / chunkSize + 2];
+        int start = 0;
+        while (start < chars.length) {
+            int end = chars.length - start <= chunkSize
+                    ? chars.length
+                    : SentenceWindowReader.boundary(chars, start, start + chunkSize);
+            if (count + 1 == cuts.length) {
+                cuts = Arrays.copyOf(cuts, cuts.length * 2);
+            }
+            cuts[++count] = end;
+            start = end;
+        }
+        Chunk[] chunks = new Chunk[count];
+        for (int i = 0; i < count; i++) {
+            chunks[i] = new Chunk(new String(chars, cuts[i], cuts[i + 1] - cuts[i]), cuts[i], segmenter);
+        }
+        return chunks;
+    }
+
+    /**
+     * 分块任务, 由线程池或调用线程中先领取的一方执行.
+     */
+    private static final class Chunk implements Runnable {
+        private final String text;
+        private final int base;
+        private final BiConsumer<String, TokenResults> segmenter;
+        private final TokenResults results = new TokenResults();
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile RuntimeException failure;
+
+        private Chunk(String text, int base, BiConsumer<String, TokenResults> segmenter) {
+            this.text = text;
+            this.base = base;
+            this.segmenter = segmenter;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                segmenter.accept(text, results);
+            } catch (RuntimeException e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        private void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+}
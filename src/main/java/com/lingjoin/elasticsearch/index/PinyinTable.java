@@ -0,0 +1,120 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ictclas_pinyin 的汉字拼音表, 每个汉字只保留第一个读音.
+ * <p>
+ * 与 {@link NormalizeTable} 一样按高 8 位分页, 页中保存读音的编号, 读音只保存一份. 两万多个汉字约占 100 KB.
+ */
+final class PinyinTable {
+
+    private static final int PAGE_SIZE = 256;
+
+    private final short[][] pages = new short[PAGE_SIZE][];
+    // 编号从 1 开始, 0 表示没有读音
+    private final List<char[]> syllables = new ArrayList<>();
+    private int size;
+
+    private PinyinTable() {
+        syllables.add(new char[0]);
+    }
+
+    /**
+     * 每行一个汉字和它的读音, 以空白分隔, 多个读音以逗号分隔. 声调数字和声调符号会被去掉, ü 写作 v.
+     * 同一个汉字出现多次时以第一次为准.
+     *
+     * @param lines the lines
+     * @return the pinyin table
+     */
+    static PinyinTable parse(List<String> lines) {
+        PinyinTable table = new PinyinTable();
+        Map<String, Short> ids = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            if (parts.length != 2 || parts[0].length() != 1) {
+                throw new IllegalArgumentException("Invalid pinyin line " + (i + 1) + ": [" + line + "]");
+            }
+            String syllable = syllable(parts[1]);
+            if (syllable.isEmpty()) {
+                throw new IllegalArgumentException("Invalid pinyin line " + (i + 1) + ": [" + line + "]");
+            }
+            char c = parts[0].charAt(0);
+            if (table.id(c) == 0) {
+                Short id = ids.get(syllable);
+                if (id == null) {
+                    if (table.syllables.size() > Short.MAX_VALUE) {
+                        throw new IllegalArgumentException("Too many distinct pinyin syllables");
+                    }
+                    id = (short) table.syllables.size();
+                    table.syllables.add(syllable.toCharArray());
+                    ids.put(syllable, id);
+                }
+                table.put(c, id);
+            }
+        }
+        return table;
+    }
+
+    // 第一个读音, 小写, 去掉声调
+    private static String syllable(String readings) {
+        String first = readings.split("[,，\\s]", 2)[0];
+        // 分解后声调符号和 ü 的两点都是单独的组合字符
+        String plain = Normalizer.normalize(first, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder syllable = new StringBuilder(plain.length());
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                syllable.append(c);
+            } else if ((c == '̈' || c == ':') && syllable.length() > 0 && syllable.charAt(syllable.length() - 1) == 'u') {
+                // lǚ 和 lu:3 都写作 lv
+                syllable.setCharAt(syllable.length() - 1, 'v');
+            }
+        }
+        return syllable.toString();
+    }
+
+    private void put(char c, short id) {
+        short[] page = pages[c >>> 8];
+        if (page == null) {
+            page = new short[PAGE_SIZE];
+            pages[c >>> 8] = page;
+        }
+        page[c & 0xFF] = id;
+        size++;
+    }
+
+    private short id(char c) {
+        short[] page = pages[c >>> 8];
+        return page == null ? 0 : page[c & 0xFF];
+    }
+
+    /**
+     * 汉字的读音, 没有读音时返回 null. 返回的数组不可修改.
+     *
+     * @param c the c
+     * @return the char [ ]
+     */
+    char[] syllable(char c) {
+        short id = id(c);
+        return id == 0 ? null : syllables.get(id);
+    }
+
+    /**
+     * 有读音的汉字数.
+     *
+     * @return the int
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,25 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.util.Attribute;
+
+/**
+ * NLPIR 词性的整数编码, 由 {@link IctclasTokenizer} 设置, 过滤时不需要比较词性字符串.
+ *
+ * @see PosTags
+ */
+public interface PosAttribute extends Attribute {
+
+    /**
+     * 词性编码, 没有词性时为 {@link PosTags#NONE}.
+     *
+     * @return the int
+     */
+    int getPosCode();
+
+    /**
+     * Sets pos code.
+     *
+     * @param posCode the pos code
+     */
+    void setPosCode(int posCode);
+}
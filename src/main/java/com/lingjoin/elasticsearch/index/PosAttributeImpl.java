@@ -0,0 +1,37 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.util.AttributeImpl;
+import org.apache.lucene.util.AttributeReflector;
+
+/**
+ * {@link PosAttribute} 的默认实现.
+ */
+public final class PosAttributeImpl extends AttributeImpl implements PosAttribute {
+
+    private int posCode = PosTags.NONE;
+
+    @Override
+    public int getPosCode() {
+        return posCode;
+    }
+
+    @Override
+    public void setPosCode(int posCode) {
+        this.posCode = posCode;
+    }
+
+    @Override
+    public void clear() {
+        posCode = PosTags.NONE;
+    }
+
+    @Override
+    public void reflectWith(AttributeReflector reflector) {
+        reflector.reflect(PosAttribute.class, "posCode", posCode);
+    }
+
+    @Override
+    public void copyTo(AttributeImpl target) {
+        ((PosAttribute) target).setPosCode(posCode);
+    }
+}
@@ -0,0 +1,74 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按前缀选出的词性编码集合, 查找时只按编码读取一个布尔数组.
+ * <p>
+ * 数组按当前已登记的词性构建, 之后才登记的词性在第一次查找时扩展数组.
+ */
+public final class PosTagSet {
+
+    private final List<String> prefixes;
+    private volatile boolean[] matches;
+
+    private PosTagSet(List<String> prefixes) {
+        this.prefixes = prefixes;
+        this.matches = build(PosTags.size());
+    }
+
+    /**
+     * 词性以任一前缀开头的编码集合, 例如 "u" 包括 u, ude1, ule 等, 没有词性的 token 不在集合中.
+     *
+     * @param prefixes the prefixes
+     * @return the pos tag set
+     */
+    public static PosTagSet ofPrefixes(Collection<String> prefixes) {
+        return new PosTagSet(prefixes.stream().filter(prefix -> !prefix.isEmpty()).toList());
+    }
+
+    /**
+     * 编码是否在集合中.
+     *
+     * @param code the code
+     * @return the boolean
+     */
+    public boolean contains(int code) {
+        boolean[] table = matches;
+        if (code >= 0 && code < table.length) {
+            return table[code];
+        }
+        return code > 0 && extend(code);
+    }
+
+    private synchronized boolean extend(int code) {
+        if (code >= matches.length) {
+            matches = build(Math.max(PosTags.size(), code + 1));
+        }
+        return matches[code];
+    }
+
+    private boolean[] build(int size) {
+        boolean[] table = new boolean[size];
+        for (int code = PosTags.NONE + 1; code < size; code++) {
+            String name = PosTags.name(code);
+            for (String prefix : prefixes) {
+                if (name.startsWith(prefix)) {
+                    table[code] = true;
+                    break;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Gets prefixes.
+     *
+     * @return the list
+     */
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+}
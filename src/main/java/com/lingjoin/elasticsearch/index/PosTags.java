@@ -0,0 +1,154 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.CharArrayMap;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.util.Arrays;
+
+/**
+ * 词性标签表, 将 NLPIR 输出的词性字符串映射为紧凑的整数编码.
+ * <p>
+ * 内置编码顺序与 {@code Data/ICTPOS.map} 一致且固定不变, 未知的词性在第一次出现时追加到表尾.
+ * 查找时直接使用字符数组, 不会产生新的 String.
+ */
+public final class PosTags {
+
+    /**
+     * 缺失或为空的词性编码, 对应 {@link TypeAttribute#DEFAULT_TYPE}.
+     */
+    public static final int NONE = 0;
+
+    /**
+     * ICTPOS.map 中的词性标签, 下标加一即为编码
+     */
+    private static final String[] BUILTIN = {
+            "a", "ad", "ag", "al", "an", "b", "bl", "c", "cc", "d", "dg", "dl", "e", "f", "h", "k", "m", "Mg", "mq",
+            "n", "ng", "nl", "nr", "nr1", "nr2", "nrf", "nrj", "ns", "nsf", "nt", "nz", "o", "p", "pba", "pbei", "q",
+            "qt", "qv", "r", "Rg", "rr", "ry", "rys", "ryt", "ryv", "rz", "rzs", "rzt", "rzv", "s", "t", "tg", "u",
+            "ude1", "ude2", "ude3", "udeng", "udh", "uguo", "ule", "ulian", "uls", "usuo", "uyy", "uzhe", "uzhi", "v",
+            "vd", "vf", "vg", "vi", "vl", "vn", "vshi", "vx", "vyou", "w", "wb", "wd", "wf", "wj", "wky", "wkz", "wm",
+            "wn", "wp", "ws", "wt", "ww", "wyy", "wyz", "x", "y", "z", "xu", "xe", "session", "xm"
+    };
+
+    /**
+     * 编码上限, 超过后的新词性统一记为 {@link #NONE}
+     */
+    static final int MAX_CODES = Short.MAX_VALUE;
+
+    private static volatile CharArrayMap<Integer> codes;
+    private static volatile String[] names;
+
+    static {
+        CharArrayMap<Integer> map = new CharArrayMap<>(BUILTIN.length * 2, false);
+        String[] table = new String[BUILTIN.length + 1];
+        table[NONE] = TypeAttribute.DEFAULT_TYPE;
+        for (int i = 0; i < BUILTIN.length; i++) {
+            map.put(BUILTIN[i], i + 1);
+            table[i + 1] = BUILTIN[i];
+        }
+        codes = map;
+        names = table;
+    }
+
+    private PosTags() {
+    }
+
+    /**
+     * 获取词性编码, 未出现过的词性会被登记.
+     *
+     * @param text   the text
+     * @param offset the offset
+     * @param length the length
+     * @return the code
+     */
+    public static int code(char[] text, int offset, int length) {
+        if (length == 0) {
+            return NONE;
+        }
+        Integer code = codes.get(text, offset, length);
+        return code != null ? code : register(new String(text, offset, length));
+    }
+
+    /**
+     * 获取词性编码, 未出现过的词性会被登记.
+     *
+     * @param pos the pos
+     * @return the code
+     */
+    public static int code(String pos) {
+        if (pos == null || pos.isEmpty()) {
+            return NONE;
+        }
+        Integer code = codes.get(pos);
+        return code != null ? code : register(pos);
+    }
+
+    /**
+     * 获取编码对应的词性, 返回的字符串为同一实例, 可直接用于 {@link TypeAttribute}.
+     *
+     * @param code the code
+     * @return the pos
+     */
+    public static String name(int code) {
+        String[] table = names;
+        return code >= 0 && code < table.length ? table[code] : TypeAttribute.DEFAULT_TYPE;
+    }
+
+    /**
+     * 当前已登记的编码数量, 包括 {@link #NONE}.
+     *
+     * @return the int
+     */
+    public static int size() {
+        return names.length;
+    }
+
+    /**
+     * 内置词性的数量, 编码 1 到该值为内置词性, 可以用一个字节表示.
+     *
+     * @return the int
+     */
+    public static int builtinSize() {
+        return BUILTIN.length;
+    }
+
+    /**
+     * 编码对应的一字节 payload, 非内置词性记为 {@link #NONE}, 内置编码固定不变, 因此已索引的 payload 始终有效.
+     *
+     * @param code the code
+     * @return the byte
+     */
+    public static byte toPayload(int code) {
+        return code > NONE && code <= BUILTIN.length ? (byte) code : (byte) NONE;
+    }
+
+    /**
+     * payload 对应的编码.
+     *
+     * @param payload the payload
+     * @return the code
+     */
+    public static int fromPayload(byte payload) {
+        int code = payload & 0xFF;
+        return code <= BUILTIN.length ? code : NONE;
+    }
+
+    // 写时复制, 读路径无锁
+    private static synchronized int register(String pos) {
+        Integer code = codes.get(pos);
+        if (code != null) {
+            return code;
+        }
+        String[] table = names;
+        if (table.length >= MAX_CODES) {
+            return NONE;
+        }
+        CharArrayMap<Integer> map = new CharArrayMap<>(codes, false);
+        map.put(pos, table.length);
+        String[] extended = Arrays.copyOf(table, table.length + 1);
+        extended[table.length] = pos;
+        names = extended;
+        codes = map;
+        return table.length;
+    }
+}
@@ -0,0 +1,160 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteBuffersDataOutput;
+import org.elasticsearch.common.CheckedSupplier;
+
+import java.io.IOException;
+import java.util.Base64;
+
+/**
+ * ictclas 预处理器保存的分词结果, 由 ictclas_pretokenized 分词器重放.
+ * <p>
+ * 格式: 版本号 (1 字节), token 数量和结束位置 (vInt), 之后每个 token 依次为位置增量, 与上一个 token 开始位置的差,
+ * 长度 (均为 vInt), 词性和词 (UTF-8). 内置词性写为 {@link PosTags} 编码, 其他词性写为 {@link #CUSTOM_POS} 加词性名称.
+ * 整体以 Base64 字符串保存在文档中.
+ */
+public final class PreTokenizedStream {
+
+    /**
+     * 当前格式版本
+     */
+    static final byte VERSION = 1;
+
+    // 非内置词性, 之后跟词性名称
+    private static final int CUSTOM_POS = PosTags.builtinSize() + 1;
+
+    private final ByteArrayDataInput in;
+    private final int finalOffset;
+    private int remaining;
+    private int start;
+
+    private PreTokenizedStream(ByteArrayDataInput in, int remaining, int finalOffset) {
+        this.in = in;
+        this.remaining = remaining;
+        this.finalOffset = finalOffset;
+    }
+
+    /**
+     * 读取 token stream 的全部 token 并编码, stream 需要由调用方关闭.
+     *
+     * @param stream the stream
+     * @return Base64 字符串
+     * @throws IOException the io exception
+     */
+    public static String encode(TokenStream stream) throws IOException {
+        CharTermAttribute termAtt = stream.addAttribute(CharTermAttribute.class);
+        OffsetAttribute offsetAtt = stream.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute positionAtt = stream.addAttribute(PositionIncrementAttribute.class);
+        PosAttribute posAtt = stream.addAttribute(PosAttribute.class);
+        ByteBuffersDataOutput tokens = new ByteBuffersDataOutput();
+        int count = 0;
+        int lastStart = 0;
+        stream.reset();
+        while (stream.incrementToken()) {
+            int start = offsetAtt.startOffset();
+            if (start < lastStart) {
+                throw new IllegalArgumentException("Token [" + termAtt + "] starts before the previous token");
+            }
+            tokens.writeVInt(positionAtt.getPositionIncrement());
+            tokens.writeVInt(start - lastStart);
+            tokens.writeVInt(offsetAtt.endOffset() - start);
+            int code = posAtt.getPosCode();
+            if (code == PosTags.NONE || PosTags.toPayload(code) != PosTags.NONE) {
+                tokens.writeVInt(code);
+            } else {
+                tokens.writeVInt(CUSTOM_POS);
+                tokens.writeString(PosTags.name(code));
+            }
+            tokens.writeString(termAtt.toString());
+            lastStart = start;
+            count++;
+        }
+        stream.end();
+        ByteBuffersDataOutput out = new ByteBuffersDataOutput();
+        out.writeByte(VERSION);
+        out.writeVInt(count);
+        out.writeVInt(offsetAtt.endOffset());
+        tokens.copyTo(out);
+        return Base64.getEncoder().encodeToString(out.toArrayCopy());
+    }
+
+    /**
+     * 解码 {@link #encode(TokenStream)} 的结果.
+     *
+     * @param encoded the encoded, 空字符串表示没有 token
+     * @return the pre tokenized stream
+     * @throws IllegalArgumentException 不是有效的分词结果
+     */
+    static PreTokenizedStream decode(CharSequence encoded) {
+        String value = encoded.toString().strip();
+        if (value.isEmpty()) {
+            return new PreTokenizedStream(null, 0, 0);
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid ictclas token stream: " + e.getMessage(), e);
+        }
+        if (bytes.length == 0 || bytes[0] != VERSION) {
+            throw new IllegalArgumentException(
+                    "Invalid ictclas token stream: unsupported version " + (bytes.length == 0 ? "none" : bytes[0])
+            );
+        }
+        ByteArrayDataInput in = new ByteArrayDataInput(bytes, 1, bytes.length - 1);
+        int count = read(in::readVInt);
+        return new PreTokenizedStream(in, count, read(in::readVInt));
+    }
+
+    /**
+     * 读取下一个 token 到属性中.
+     *
+     * @param termAtt     the term att
+     * @param offsetAtt   the offset att, 设置未经 correctOffset 的位置
+     * @param positionAtt the position att
+     * @param posAtt      the pos att
+     * @return 是否还有 token
+     */
+    boolean next(
+            CharTermAttribute termAtt, OffsetAttribute offsetAtt,
+            PositionIncrementAttribute positionAtt, PosAttribute posAtt
+    ) {
+        if (remaining == 0) {
+            return false;
+        }
+        remaining--;
+        positionAtt.setPositionIncrement(read(in::readVInt));
+        start += read(in::readVInt);
+        offsetAtt.setOffset(start, start + read(in::readVInt));
+        int code = read(in::readVInt);
+        if (code > CUSTOM_POS) {
+            throw new IllegalArgumentException("Invalid ictclas token stream: unknown pos code " + code);
+        }
+        posAtt.setPosCode(code == CUSTOM_POS ? PosTags.code(read(in::readString)) : code);
+        termAtt.setEmpty().append(read(in::readString));
+        return true;
+    }
+
+    /**
+     * 全部 token 之后的结束位置.
+     *
+     * @return the int
+     */
+    int finalOffset() {
+        return finalOffset;
+    }
+
+    // 数据被截断时 ByteArrayDataInput 抛出越界异常
+    private static <T> T read(CheckedSupplier<T, IOException> reader) {
+        try {
+            return reader.get();
+        } catch (IOException | RuntimeException e) {
+            throw new IllegalArgumentException("Invalid ictclas token stream: " + e, e);
+        }
+    }
+}
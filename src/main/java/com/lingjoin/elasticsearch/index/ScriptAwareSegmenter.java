@@ -0,0 +1,181 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+
+/**
+ * 按文字类型切分输入, 只把含有中文的部分交给 NLPIR, 其余部分在 Java 中分词.
+ * <p>
+ * 不含中文的连续片段长度达到 minRun 时才单独处理, 较短的片段仍与相邻的中文一起调用 NLPIR, 避免增加调用次数.
+ * 片段的边界对齐到空白, 与中文相连的英文和数字仍由 NLPIR 处理. Java 中的规则与 NLPIR 对英文的处理一致:
+ * 空白不产生 token, 字母和数字连续组成一个词, 数字词的词性为 m, 其余为 x, 标点和符号每个字符为一个词, 词性为 w.
+ * 与 UAX#29 类似, 字母或数字之间的 . ' _ 以及数字之间的 , 不会切开一个词.
+ */
+final class ScriptAwareSegmenter {
+
+    private static final int NUMBER = PosTags.code("m");
+    private static final int STRING = PosTags.code("x");
+    private static final int PUNCTUATION = PosTags.code("w");
+
+    private final int minRun;
+
+    /**
+     * Instantiates a new Script aware segmenter.
+     *
+     * @param minRun 不含中文的片段达到该长度时在 Java 中分词
+     */
+    ScriptAwareSegmenter(int minRun) {
+        this.minRun = minRun;
+    }
+
+    /**
+     * 对文本分词, 结果写入 target.
+     *
+     * @param text      the text
+     * @param target    the target
+     * @param segmenter 调用 NLPIR 分词的方法
+     * @return 是否全部分词成功
+     */
+    boolean segment(String text, TokenResults target, BiPredicate<String, TokenResults> segmenter) {
+        int[] javaRuns = javaRuns(text);
+        if (javaRuns.length == 0) {
+            return segmenter.test(text, target);
+        }
+        target.clear();
+        char[] buffer = text.toCharArray();
+        TokenResults part = null;
+        boolean success = true;
+        int start = 0;
+        for (int i = 0; i <= javaRuns.length; i += 2) {
+            int nativeEnd = i < javaRuns.length ? javaRuns[i] : text.length();
+            if (nativeEnd > start) {
+                if (part == null) {
+                    part = new TokenResults();
+                }
+                part.clear();
+                success &= segmenter.test(text.substring(start, nativeEnd), part);
+                target.append(part, start);
+            }
+            if (i < javaRuns.length) {
+                int before = target.size();
+                tokenize(buffer, javaRuns[i], javaRuns[i + 1], target);
+                IctclasTokenizer.getStats().onFastPath(javaRuns[i + 1] - javaRuns[i], target.size() - before);
+                start = javaRuns[i + 1];
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 查找需要在 Java 中分词的片段.
+     * <p>
+     * 含有中文的非空白字符序列交给 NLPIR, 它们之间的片段达到 minRun 或整个文本都不含中文时在 Java 中分词.
+     *
+     * @param text the text
+     * @return 依次为每个片段的开始和结束位置
+     */
+    int[] javaRuns(String text) {
+        int length = text.length();
+        int[] runs = new int[0];
+        int count = 0;
+        int position = 0;
+        while (position < length) {
+            int island = position;
+            while (island < length && !needsNative(text.codePointAt(island))) {
+                island++;
+            }
+            int gapEnd = island;
+            if (island < length) {
+                while (gapEnd > position && !Character.isWhitespace(text.charAt(gapEnd - 1))) {
+                    gapEnd--;
+                }
+            }
+            if (gapEnd - position >= minRun || (position == 0 && gapEnd == length && length > 0)) {
+                if (count + 2 > runs.length) {
+                    runs = Arrays.copyOf(runs, Math.max(4, runs.length * 2));
+                }
+                runs[count++] = position;
+                runs[count++] = gapEnd;
+            }
+            // 跳过含有中文的非空白字符序列
+            position = island;
+            while (position < length && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+        return Arrays.copyOf(runs, count);
+    }
+
+    /**
+     * 是否需要由 NLPIR 处理: 汉字, 注音符号以及全角和中文标点.
+     *
+     * @param codePoint the code point
+     * @return the boolean
+     */
+    static boolean needsNative(int codePoint) {
+        if (codePoint < 0x2E80) {
+            return false;
+        }
+        if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+            return true;
+        }
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        return block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_FORMS
+                || block == Character.UnicodeBlock.VERTICAL_FORMS
+                || block == Character.UnicodeBlock.BOPOMOFO
+                || block == Character.UnicodeBlock.BOPOMOFO_EXTENDED;
+    }
+
+    /**
+     * 在 Java 中对不含中文的片段分词.
+     *
+     * @param text   the text
+     * @param start  the start
+     * @param end    the end
+     * @param target the target
+     */
+    static void tokenize(char[] text, int start, int end, TokenResults target) {
+        int i = start;
+        while (i < end) {
+            int codePoint = Character.codePointAt(text, i, end);
+            int charCount = Character.charCount(codePoint);
+            if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint)) {
+                i += charCount;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int wordStart = i;
+                boolean digits = true;
+                while (i < end) {
+                    codePoint = Character.codePointAt(text, i, end);
+                    if (Character.isLetterOrDigit(codePoint)) {
+                        digits &= Character.isDigit(codePoint);
+                        i += Character.charCount(codePoint);
+                    } else if (joins(text, i, end, codePoint)) {
+                        i++;
+                    } else {
+                        break;
+                    }
+                }
+                target.add(wordStart, i, digits ? NUMBER : STRING, text, wordStart, i - wordStart);
+            } else {
+                target.add(i, i + charCount, PUNCTUATION, text, i, charCount);
+                i += charCount;
+            }
+        }
+    }
+
+    // 连接符两侧都是字母或数字时不切开, 逗号只连接数字
+    private static boolean joins(char[] text, int i, int end, int codePoint) {
+        if (i == 0 || i + 1 >= end) {
+            return false;
+        }
+        int previous = Character.codePointBefore(text, i);
+        int next = Character.codePointAt(text, i + 1, end);
+        return switch (codePoint) {
+            case '.', '\'', '_' -> Character.isLetterOrDigit(previous) && Character.isLetterOrDigit(next);
+            case ',' -> Character.isDigit(previous) && Character.isDigit(next);
+            default -> false;
+        };
+    }
+}
@@ -0,0 +1,150 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.core.TimeValue;
+
+/**
+ * 节点级别的分词结果缓存, 以 (文本, 是否细粒度, 用户词典版本) 为键, 缓存解析好的 {@link TokenResults}.
+ * <p>
+ * 缓存同时受条数和内存限制: 每个条目的权重取实际占用与 {@code maxWeight / maxEntries} 中较大者,
+ * 因此总权重不超过 maxWeight 时条数也不会超过 maxEntries.
+ */
+public final class SegmentationCache {
+
+    // 键的固定开销: Key 对象, String 对象及其数组头
+    private static final long KEY_OVERHEAD = 64;
+
+    private final Cache<Key, TokenResults> cache;
+    private final int maxTextLength;
+
+    /**
+     * Instantiates a new Segmentation cache.
+     *
+     * @param maxEntries        最大缓存条数
+     * @param maxWeight         最大占用内存
+     * @param expireAfterAccess 未被访问的过期时间, 0 表示不过期
+     * @param maxTextLength     可被缓存的最大文本长度
+     */
+    SegmentationCache(long maxEntries, long maxWeight, TimeValue expireAfterAccess, int maxTextLength) {
+        long minEntryWeight = Math.max(1, maxWeight / Math.max(1, maxEntries));
+        CacheBuilder<Key, TokenResults> builder = CacheBuilder.<Key, TokenResults>builder()
+                .setMaximumWeight(maxWeight)
+                .weigher((key, value) -> Math.max(minEntryWeight, key.ramBytesUsed() + value.ramBytesUsed()));
+        if (expireAfterAccess.nanos() > 0) {
+            builder.setExpireAfterAccess(expireAfterAccess);
+        }
+        this.cache = builder.build();
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * 根据配置创建缓存, 未开启时返回 null.
+     *
+     * @param configuration the configuration
+     * @return the segmentation cache
+     */
+    static SegmentationCache create(Configuration.SearchCache configuration) {
+        if (!configuration.isEnabled()) {
+            return null;
+        }
+        return new SegmentationCache(
+                configuration.getMaxEntries(),
+                configuration.getMaxWeight().getBytes(),
+                configuration.getExpireAfterAccess(),
+                configuration.getMaxTextLength()
+        );
+    }
+
+    /**
+     * 文本是否可以被缓存, 过长的文本通常不会重复出现, 不进入缓存.
+     *
+     * @param text the text
+     * @return the boolean
+     */
+    public boolean isCacheable(String text) {
+        return text.length() <= maxTextLength;
+    }
+
+    /**
+     * 从缓存中取出分词结果并复制到 target 中.
+     *
+     * @param text        the text
+     * @param fineSegment    the fine segment
+     * @param fastPathMinRun 分词器的 fast_path_min_run, 不同设置的结果不同
+     * @param version        用户词典版本
+     * @param target         the target
+     * @return 是否命中
+     */
+    public boolean get(String text, boolean fineSegment, int fastPathMinRun, long version, TokenResults target) {
+        TokenResults cached = cache.get(new Key(text, fineSegment, fastPathMinRun, version));
+        if (cached == null) {
+            return false;
+        }
+        target.copyFrom(cached);
+        return true;
+    }
+
+    /**
+     * 缓存分词结果, 保存的是 results 的副本.
+     *
+     * @param text        the text
+     * @param fineSegment    the fine segment
+     * @param fastPathMinRun 分词器的 fast_path_min_run
+     * @param version        分词前读取的用户词典版本
+     * @param results        the results
+     */
+    public void put(String text, boolean fineSegment, int fastPathMinRun, long version, TokenResults results) {
+        cache.put(new Key(text, fineSegment, fastPathMinRun, version), results.copy());
+    }
+
+    /**
+     * 清空缓存, 用户词典变化后必须调用.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 当前缓存条数.
+     *
+     * @return the int
+     */
+    public int count() {
+        return cache.count();
+    }
+
+    /**
+     * 当前缓存权重.
+     *
+     * @return the long
+     */
+    public long weight() {
+        return cache.weight();
+    }
+
+    /**
+     * 命中, 未命中及淘汰次数.
+     *
+     * @return the cache stats
+     */
+    public Cache.CacheStats stats() {
+        return cache.stats();
+    }
+
+    private record Key(String text, boolean fineSegment, int fastPathMinRun, long version) {
+        long ramBytesUsed() {
+            return KEY_OVERHEAD + (long) text.length() * Character.BYTES;
+        }
+    }
+
+    @Override
+    public String toString() {
+        Cache.CacheStats stats = stats();
+        return String.format(
+                "SegmentationCache[count=%s, weight=%s, hits=%s, misses=%s, evictions=%s]",
+                count(), weight(), stats.getHits(), stats.getMisses(), stats.getEvictions()
+        );
+    }
+}
@@ -0,0 +1,45 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * 分词引擎, {@link IctclasTokenizer} 只通过该接口分词.
+ * <p>
+ * 引擎输出与 NLPIR_Tokenizer4IR 相同格式的 UTF-8 json, 由 {@link TokenResults#parse(byte[], int, int)} 解析,
+ * 因此分词器自身的开销 (读取, 解析, 属性输出) 与引擎无关. 分词时持有用户词典读锁, 修改词典时持有写锁.
+ * 通过 config.yml 中的 engine 选择, 节点内只初始化一个引擎.
+ */
+public interface SegmentationEngine {
+
+    /**
+     * 引擎名称, 用于日志和统计.
+     *
+     * @return the string
+     */
+    String name();
+
+    /**
+     * 分词.
+     *
+     * @param text        the text
+     * @param fineSegment the fine segment
+     * @return 当前线程复用的 UTF-8 json, 在同一线程下次调用前有效, 失败时返回 null
+     */
+    BytesRef segment(String text, boolean fineSegment);
+
+    /**
+     * 用户词典操作.
+     *
+     * @return 不支持在节点内修改词典时返回 null
+     */
+    UserDictionary.NativeDictionary dictionary();
+
+    /**
+     * 引擎当前是否可用, 不可用时使用 Java 分词.
+     *
+     * @return the boolean
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+}
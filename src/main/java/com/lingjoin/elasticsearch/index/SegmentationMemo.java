@@ -0,0 +1,132 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个线程记住最近一次细粒度分词的结果, 同一文本随后的粗粒度分词直接从中取出, 不再调用 NLPIR.
+ * <p>
+ * 同一个值同时映射为 ictclas_index 字段和 ictclas_search 子字段时, 两个字段在同一个线程中依次分析,
+ * 细粒度结果中位置增量为 1 的 token 即为粗粒度的 token. 只能由细粒度推出粗粒度, 因此细粒度字段需要先被分析,
+ * 例如作为父字段. 两个字段的 fast_path_min_run 必须相同. 每个线程只保留一条, 过长的文本不保留.
+ */
+final class SegmentationMemo {
+
+    private final int maxTextLength;
+    private final ThreadLocal<Entry> entries = ThreadLocal.withInitial(Entry::new);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Entry {
+        private String text;
+        private int fastPathMinRun;
+        private long version;
+        private final TokenResults fine = new TokenResults();
+    }
+
+    /**
+     * Instantiates a new Segmentation memo.
+     *
+     * @param maxTextLength 保留的最大文本长度
+     */
+    SegmentationMemo(int maxTextLength) {
+        this.maxTextLength = maxTextLength;
+    }
+
+    /**
+     * 根据配置创建, 未开启时返回 null.
+     *
+     * @param configuration the configuration
+     * @return the segmentation memo
+     */
+    static SegmentationMemo create(Configuration.SegmentationMemo configuration) {
+        return configuration.isEnabled() ? new SegmentationMemo(configuration.getMaxTextLength()) : null;
+    }
+
+    /**
+     * 记住当前线程的细粒度分词结果.
+     *
+     * @param text           the text
+     * @param fastPathMinRun 分词器的 fast_path_min_run
+     * @param version        分词前读取的用户词典版本
+     * @param fine           细粒度分词结果
+     */
+    void remember(String text, int fastPathMinRun, long version, TokenResults fine) {
+        Entry entry = entries.get();
+        if (text.length() > maxTextLength || fine.size() == 0) {
+            entry.text = null;
+            entry.fine.clear();
+            return;
+        }
+        entry.text = text;
+        entry.fastPathMinRun = fastPathMinRun;
+        entry.version = version;
+        entry.fine.copyFrom(fine);
+    }
+
+    /**
+     * 当前线程最近一次细粒度分词的文本相同时, 从中推出粗粒度结果.
+     *
+     * @param text           the text
+     * @param fastPathMinRun 分词器的 fast_path_min_run
+     * @param version        当前用户词典版本
+     * @param target         the target
+     * @return 是否命中
+     */
+    boolean coarse(String text, int fastPathMinRun, long version, TokenResults target) {
+        if (text.length() > maxTextLength) {
+            return false;
+        }
+        Entry entry = entries.get();
+        // 多数情况下两个字段拿到的是同一个 String, 先比较引用
+        if (entry.text == null || entry.version != version || entry.fastPathMinRun != fastPathMinRun
+                || (entry.text != text && !entry.text.equals(text))) {
+            misses.increment();
+            return false;
+        }
+        hits.increment();
+        coarse(entry.fine, target);
+        return true;
+    }
+
+    /**
+     * 取出细粒度结果中不被前一个 token 覆盖的 token, 与分词器设置位置增量的规则一致.
+     *
+     * @param fine   细粒度分词结果
+     * @param target the target
+     */
+    static void coarse(TokenResults fine, TokenResults target) {
+        target.clear();
+        int lastBegin = 0;
+        int lastEnd = 0;
+        for (int i = 0; i < fine.size(); i++) {
+            int begin = fine.begin(i);
+            int end = fine.end(i);
+            if (lastBegin > begin || lastEnd >= end) {
+                continue;
+            }
+            lastBegin = begin;
+            lastEnd = end;
+            target.add(begin, end, fine.posCode(i), fine.textBuffer(), fine.textStart(i), fine.textLength(i));
+        }
+    }
+
+    /**
+     * 命中次数.
+     *
+     * @return the long
+     */
+    long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 未命中次数.
+     *
+     * @return the long
+     */
+    long getMisses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,109 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.core.TimeValue;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 分词慢日志, 记录耗时超过阈值的输入.
+ * <p>
+ * 使用单独的 logger, 可以在 log4j2.properties 中单独配置输出. 每秒最多记录 maxPerSecond 条, 超出的只计数.
+ */
+public final class SegmentationSlowLog {
+
+    private static final Logger SLOW_LOG = LogManager.getLogger("com.lingjoin.elasticsearch.index.ictclas.slowlog");
+
+    private final long thresholdNanos;
+    private final int maxChars;
+    private final int maxPerSecond;
+
+    private final AtomicLong windowStart = new AtomicLong();
+    private final AtomicLong windowCount = new AtomicLong();
+    private final LongAdder slow = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+
+    /**
+     * Instantiates a new Segmentation slow log.
+     *
+     * @param configuration the configuration
+     */
+    SegmentationSlowLog(Configuration.SlowLog configuration) {
+        this.thresholdNanos = configuration.getThreshold().nanos();
+        this.maxChars = configuration.getMaxChars();
+        this.maxPerSecond = configuration.getMaxPerSecond();
+        this.windowStart.set(System.nanoTime() - 1_000_000_000L);
+    }
+
+    /**
+     * 根据配置创建慢日志, 未开启时返回 null.
+     *
+     * @param configuration the configuration
+     * @return the segmentation slow log
+     */
+    static SegmentationSlowLog create(Configuration.SlowLog configuration) {
+        return configuration.isEnabled() ? new SegmentationSlowLog(configuration) : null;
+    }
+
+    /**
+     * 耗时超过阈值时记录.
+     *
+     * @param text        the text
+     * @param fineSegment the fine segment
+     * @param tokens      产生的 token 数
+     * @param tookNanos   分词耗时
+     */
+    void maybeLog(String text, boolean fineSegment, int tokens, long tookNanos) {
+        if (tookNanos < thresholdNanos) {
+            return;
+        }
+        slow.increment();
+        if (!acquire(System.nanoTime())) {
+            return;
+        }
+        logged.increment();
+        String sample = text.length() > maxChars ? text.substring(0, maxChars) + "..." : text;
+        SLOW_LOG.warn("took[{}], took_millis[{}], fine_segment[{}], chars[{}], tokens[{}], source[{}]",
+                TimeValue.timeValueNanos(tookNanos), tookNanos / 1_000_000, fineSegment, text.length(), tokens,
+                sample.replace('\n', ' '));
+    }
+
+    // 按秒限制记录条数
+    private boolean acquire(long now) {
+        long start = windowStart.get();
+        if (now - start >= 1_000_000_000L && windowStart.compareAndSet(start, now)) {
+            windowCount.set(0);
+        }
+        return windowCount.incrementAndGet() <= maxPerSecond;
+    }
+
+    /**
+     * Gets threshold.
+     *
+     * @return the threshold
+     */
+    public TimeValue getThreshold() {
+        return TimeValue.timeValueNanos(thresholdNanos);
+    }
+
+    /**
+     * 超过阈值的次数.
+     *
+     * @return the long
+     */
+    public long getSlow() {
+        return slow.sum();
+    }
+
+    /**
+     * 实际记录的条数.
+     *
+     * @return the long
+     */
+    public long getLogged() {
+        return logged.sum();
+    }
+}
@@ -0,0 +1,218 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 节点级别的分词统计, 按 NLPIR 调用计数. native 调用耗时由 {@link NativeCallLimiter} 记录, 这里记录解析耗时.
+ */
+public final class SegmentationStats {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder chars = new LongAdder();
+    private final LongAdder tokens = new LongAdder();
+    private final LongAdder emptyInputs = new LongAdder();
+    private final LongAdder nativeErrors = new LongAdder();
+    private final LongAdder parseErrors = new LongAdder();
+    private final LongAdder fastPathChars = new LongAdder();
+    private final LongAdder fastPathTokens = new LongAdder();
+    private final LongAdder abandonedCalls = new LongAdder();
+    private final AtomicInteger abandonedRunning = new AtomicInteger();
+    private final LongAdder[] fallbacks = new LongAdder[FallbackSegmenter.Reason.values().length];
+    private final LatencyHistogram parse = new LatencyHistogram();
+
+    /**
+     * Instantiates a new Segmentation stats.
+     */
+    SegmentationStats() {
+        for (int i = 0; i < fallbacks.length; i++) {
+            fallbacks[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次成功的分词.
+     *
+     * @param textLength 输入文本长度
+     * @param tokenCount 产生的 token 数
+     * @param parseNanos 解析耗时
+     */
+    void onSegment(int textLength, int tokenCount, long parseNanos) {
+        calls.increment();
+        chars.add(textLength);
+        tokens.add(tokenCount);
+        parse.record(parseNanos);
+    }
+
+    /**
+     * 记录一次空输入, 空输入不会调用 NLPIR.
+     */
+    void onEmptyInput() {
+        emptyInputs.increment();
+    }
+
+    /**
+     * 记录一次 NLPIR 没有返回结果.
+     */
+    void onNativeError() {
+        calls.increment();
+        nativeErrors.increment();
+    }
+
+    /**
+     * 记录一次解析失败.
+     *
+     * @param parseNanos 解析耗时
+     */
+    void onParseError(long parseNanos) {
+        calls.increment();
+        parseErrors.increment();
+        parse.record(parseNanos);
+    }
+
+    /**
+     * 记录一段在 Java 中分词的文本.
+     *
+     * @param textLength 文本长度
+     * @param tokenCount 产生的 token 数
+     */
+    void onFastPath(int textLength, int tokenCount) {
+        fastPathChars.add(textLength);
+        fastPathTokens.add(tokenCount);
+    }
+
+    /**
+     * 记录一次使用 Java 分词代替 NLPIR.
+     *
+     * @param reason the reason
+     */
+    void onFallback(FallbackSegmenter.Reason reason) {
+        fallbacks[reason.ordinal()].increment();
+    }
+
+    /**
+     * 记录一次超过 timeBudget 后被放弃但仍在执行的 NLPIR 调用.
+     */
+    void onAbandoned() {
+        abandonedCalls.increment();
+        abandonedRunning.incrementAndGet();
+    }
+
+    /**
+     * 记录一次被放弃的 NLPIR 调用执行结束.
+     */
+    void onAbandonedFinished() {
+        abandonedRunning.decrementAndGet();
+    }
+
+    /**
+     * NLPIR 调用次数.
+     *
+     * @return the long
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * 已分词的字符数.
+     *
+     * @return the long
+     */
+    public long getChars() {
+        return chars.sum();
+    }
+
+    /**
+     * 产生的 token 数.
+     *
+     * @return the long
+     */
+    public long getTokens() {
+        return tokens.sum();
+    }
+
+    /**
+     * 空输入次数.
+     *
+     * @return the long
+     */
+    public long getEmptyInputs() {
+        return emptyInputs.sum();
+    }
+
+    /**
+     * NLPIR 没有返回结果的次数, 包括等待许可超时后跳过的调用.
+     *
+     * @return the long
+     */
+    public long getNativeErrors() {
+        return nativeErrors.sum();
+    }
+
+    /**
+     * 解析失败次数.
+     *
+     * @return the long
+     */
+    public long getParseErrors() {
+        return parseErrors.sum();
+    }
+
+    /**
+     * 在 Java 中分词的字符数, 不包括在 {@link #getChars()} 中.
+     *
+     * @return the long
+     */
+    public long getFastPathChars() {
+        return fastPathChars.sum();
+    }
+
+    /**
+     * 在 Java 中分词产生的 token 数.
+     *
+     * @return the long
+     */
+    public long getFastPathTokens() {
+        return fastPathTokens.sum();
+    }
+
+    /**
+     * 超过 timeBudget 后被放弃但仍在执行的 NLPIR 调用总数.
+     *
+     * @return the long
+     */
+    public long getAbandonedCalls() {
+        return abandonedCalls.sum();
+    }
+
+    /**
+     * 当前仍在执行的被放弃的 NLPIR 调用数, 这些调用仍持有用户词典读锁和并发许可.
+     *
+     * @return the int
+     */
+    public int getAbandonedRunning() {
+        return abandonedRunning.get();
+    }
+
+    /**
+     * 因为 reason 使用 Java 分词的次数.
+     *
+     * @param reason the reason
+     * @return the long
+     */
+    long getFallbacks(FallbackSegmenter.Reason reason) {
+        return fallbacks[reason.ordinal()].sum();
+    }
+
+    /**
+     * 解析耗时.
+     *
+     * @return the latency histogram
+     */
+    public LatencyHistogram getParse() {
+        return parse;
+    }
+}
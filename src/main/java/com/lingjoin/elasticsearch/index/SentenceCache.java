@@ -0,0 +1,275 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.core.TimeValue;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * 节点级别的按句分词缓存, 用于重新索引大部分内容没有变化的文档.
+ * <p>
+ * 输入按句末标点切分为句子, 每个句子以 (句子文本, 是否细粒度, fast_path_min_run, 用户词典版本) 为键缓存相对于句首的分词结果.
+ * 缓存是节点级别的, 键中保留完整的句子而不只是哈希, 不同的句子不会因为哈希碰撞读到彼此的结果.
+ * 命中的句子直接复用, 相邻的未命中句子合并为一次 NLPIR 调用, 再按句子拆分结果写入缓存.
+ * 跨越句子边界的 token 所在的句子不缓存. 缓存受内存限制, 按 LRU 淘汰.
+ */
+public final class SentenceCache {
+
+    // 键的固定开销: Key 对象, String 对象及其数组头
+    private static final long KEY_OVERHEAD = 80;
+
+    private final Cache<Key, TokenResults> cache;
+    private final int minTextLength;
+    private final int maxSentenceLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder hitChars = new LongAdder();
+
+    /**
+     * Instantiates a new Sentence cache.
+     *
+     * @param maxWeight         最大占用内存
+     * @param expireAfterAccess 未被访问的过期时间, 0 表示不过期
+     * @param minTextLength     文本长度达到该值时才按句缓存
+     * @param maxSentenceLength 超过该长度的句子不缓存
+     */
+    SentenceCache(long maxWeight, TimeValue expireAfterAccess, int minTextLength, int maxSentenceLength) {
+        CacheBuilder<Key, TokenResults> builder = CacheBuilder.<Key, TokenResults>builder()
+                .setMaximumWeight(maxWeight)
+                .weigher((key, value) -> key.ramBytesUsed() + value.ramBytesUsed());
+        if (expireAfterAccess.nanos() > 0) {
+            builder.setExpireAfterAccess(expireAfterAccess);
+        }
+        this.cache = builder.build();
+        this.minTextLength = minTextLength;
+        this.maxSentenceLength = maxSentenceLength;
+    }
+
+    /**
+     * 根据配置创建缓存, 未开启时返回 null.
+     *
+     * @param configuration the configuration
+     * @return the sentence cache
+     */
+    static SentenceCache create(Configuration.SentenceCache configuration) {
+        if (!configuration.isEnabled()) {
+            return null;
+        }
+        return new SentenceCache(
+                configuration.getMaxWeight().getBytes(),
+                configuration.getExpireAfterAccess(),
+                configuration.getMinTextLength(),
+                configuration.getMaxSentenceLength()
+        );
+    }
+
+    /**
+     * 文本是否按句缓存.
+     *
+     * @param text the text
+     * @return the boolean
+     */
+    public boolean accepts(String text) {
+        return text.length() >= minTextLength;
+    }
+
+    /**
+     * 按句分词, 结果写入 target.
+     *
+     * @param text        the text
+     * @param fineSegment    the fine segment
+     * @param fastPathMinRun 分词器的 fast_path_min_run, 不同设置的结果不同
+     * @param version        分词前读取的用户词典版本
+     * @param target         the target
+     * @param segmenter      对未命中的句子调用 NLPIR 分词的方法
+     * @return 是否全部分词成功
+     */
+    boolean segment(
+            String text, boolean fineSegment, int fastPathMinRun, long version, TokenResults target,
+            BiPredicate<String, TokenResults> segmenter
+    ) {
+        char[] chars = text.toCharArray();
+        int[] ends = sentences(chars);
+        Key[] keys = new Key[ends.length];
+        target.clear();
+        TokenResults part = new TokenResults();
+        boolean success = true;
+        int missStart = -1;
+        int missFirst = -1;
+        int start = 0;
+        for (int i = 0; i < ends.length; i++) {
+            int length = ends[i] - start;
+            if (length <= maxSentenceLength) {
+                keys[i] = new Key(new String(chars, start, length), fineSegment, fastPathMinRun, version);
+            }
+            TokenResults cached = keys[i] == null ? null : cache.get(keys[i]);
+            if (cached != null) {
+                hits.increment();
+                hitChars.add(length);
+                if (missStart >= 0) {
+                    success &= segmentMisses(text, missStart, missFirst, i, ends, keys, target, part, segmenter);
+                    missStart = -1;
+                }
+                target.append(cached, start);
+            } else {
+                misses.increment();
+                if (missStart < 0) {
+                    missStart = start;
+                    missFirst = i;
+                }
+            }
+            start = ends[i];
+        }
+        if (missStart >= 0) {
+            success &= segmentMisses(text, missStart, missFirst, ends.length, ends, keys, target, part, segmenter);
+        }
+        return success;
+    }
+
+    /**
+     * 对连续未命中的句子 [first, last) 调用一次 NLPIR, 按句子拆分后写入缓存.
+     */
+    private boolean segmentMisses(
+            String text, int missStart, int first, int last, int[] ends, Key[] keys, TokenResults target,
+            TokenResults part, BiPredicate<String, TokenResults> segmenter
+    ) {
+        part.clear();
+        if (!segmenter.test(text.substring(missStart, ends[last - 1]), part)) {
+            target.append(part, missStart);
+            return false;
+        }
+        target.append(part, missStart);
+        int token = 0;
+        int sentenceStart = 0;
+        // 已处理的 token 的最大结束位置, 超过句首说明有 token 跨越了上一个句子的边界
+        int reach = 0;
+        for (int i = first; i < last; i++) {
+            int sentenceEnd = ends[i] - missStart;
+            TokenResults sentence = new TokenResults();
+            boolean cacheable = keys[i] != null && reach <= sentenceStart;
+            while (token < part.size() && part.begin(token) < sentenceEnd) {
+                reach = Math.max(reach, part.end(token));
+                if (part.end(token) > sentenceEnd || part.begin(token) < sentenceStart) {
+                    cacheable = false;
+                } else if (cacheable) {
+                    sentence.add(
+                            part.begin(token) - sentenceStart, part.end(token) - sentenceStart, part.posCode(token),
+                            part.textBuffer(), part.textStart(token), part.textLength(token)
+                    );
+                }
+                token++;
+            }
+            if (cacheable) {
+                cache.put(keys[i], sentence.copy());
+            }
+            sentenceStart = sentenceEnd;
+        }
+        return true;
+    }
+
+    /**
+     * 按句末标点切分, 句末的引号和括号归入当前句.
+     *
+     * @param text the text
+     * @return 每个句子的结束位置
+     */
+    static int[] sentences(char[] text) {
+        int[] ends = new int[8];
+        int count = 0;
+        int i = 0;
+        while (i < text.length) {
+            if (SentenceWindowReader.isSentenceEnd(text[i])) {
+                i++;
+                // 连续的句末标点及其后的引号等归入当前句
+                while (i < text.length && (SentenceWindowReader.isSentenceEnd(text[i])
+                        || SentenceWindowReader.isClosing(text[i]))) {
+                    i++;
+                }
+                if (count == ends.length) {
+                    ends = Arrays.copyOf(ends, count * 2);
+                }
+                ends[count++] = i;
+            } else {
+                i++;
+            }
+        }
+        if (count == 0 || ends[count - 1] < text.length) {
+            if (count == ends.length) {
+                ends = Arrays.copyOf(ends, count + 1);
+            }
+            ends[count++] = text.length;
+        }
+        return Arrays.copyOf(ends, count);
+    }
+
+    /**
+     * 清空缓存.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 当前缓存的句子数.
+     *
+     * @return the int
+     */
+    public int count() {
+        return cache.count();
+    }
+
+    /**
+     * 当前缓存权重.
+     *
+     * @return the long
+     */
+    public long weight() {
+        return cache.weight();
+    }
+
+    /**
+     * 命中的句子数.
+     *
+     * @return the long
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * 未命中的句子数.
+     *
+     * @return the long
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 命中的句子的字符数, 即省去的 NLPIR 输入.
+     *
+     * @return the long
+     */
+    public long getHitChars() {
+        return hitChars.sum();
+    }
+
+    /**
+     * 淘汰的句子数.
+     *
+     * @return the long
+     */
+    public long getEvictions() {
+        return cache.stats().getEvictions();
+    }
+
+    private record Key(String sentence, boolean fineSegment, int fastPathMinRun, long version) {
+        long ramBytesUsed() {
+            return KEY_OVERHEAD + (long) sentence.length() * Character.BYTES;
+        }
+    }
+}
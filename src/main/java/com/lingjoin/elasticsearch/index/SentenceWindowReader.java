@@ -0,0 +1,173 @@
+package com.lingjoin.elasticsearch.index;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * 按句子边界分窗口读取 Reader, 每次最多读取 windowSize 个字符.
+ * <p>
+ * 窗口在最后一个句末标点处截断, 剩余部分留到下一个窗口, 因此内存占用只与窗口大小有关.
+ * 窗口内找不到句末标点时依次退化为逗号等次级标点, 空白, 最后直接在窗口末尾截断 (不拆分代理对).
+ */
+final class SentenceWindowReader {
+
+    private final char[] buffer;
+    private Reader reader;
+    // buffer 中有效字符数
+    private int length;
+    // 上一个窗口在 buffer 中的结束位置
+    private int cut;
+    // buffer[0] 在全文中的位置
+    private int base;
+    private boolean eof;
+
+    /**
+     * Instantiates a new Sentence window reader.
+     *
+     * @param windowSize 窗口大小
+     */
+    SentenceWindowReader(int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("window size must be at least 2 but was " + windowSize);
+        }
+        this.buffer = new char[windowSize];
+    }
+
+    /**
+     * 开始读取新的 Reader.
+     *
+     * @param reader the reader
+     */
+    void reset(Reader reader) {
+        this.reader = reader;
+        this.length = 0;
+        this.cut = 0;
+        this.base = 0;
+        this.eof = false;
+    }
+
+    /**
+     * 读取下一个窗口.
+     *
+     * @return 窗口文本, 读取完毕时返回 null
+     * @throws IOException the io exception
+     */
+    String next() throws IOException {
+        // 丢弃上一个窗口, 保留未分词的剩余部分
+        if (cut > 0) {
+            System.arraycopy(buffer, cut, buffer, 0, length - cut);
+            base += cut;
+            length -= cut;
+            cut = 0;
+        }
+        while (!eof && length < buffer.length) {
+            int read = reader.read(buffer, length, buffer.length - length);
+            if (read == -1) {
+                eof = true;
+            } else {
+                length += read;
+            }
+        }
+        if (length == 0) {
+            return null;
+        }
+        cut = eof ? length : boundary(buffer, 0, length);
+        return new String(buffer, 0, cut);
+    }
+
+    /**
+     * 上一个窗口的第一个字符在全文中的位置.
+     *
+     * @return the int
+     */
+    int base() {
+        return base;
+    }
+
+    /**
+     * 查找 text[from, to) 的截断位置, 返回值在 (from, to] 之间.
+     *
+     * @param text the text
+     * @param from the from
+     * @param to   the to
+     * @return the int
+     */
+    static int boundary(char[] text, int from, int to) {
+        int end = lastIndexAfter(text, from, to, SentenceWindowReader::isSentenceEnd);
+        if (end < 0) {
+            end = lastIndexAfter(text, from, to, SentenceWindowReader::isClauseEnd);
+        }
+        if (end < 0) {
+            end = lastIndexAfter(text, from, to, Character::isWhitespace);
+        }
+        if (end < 0) {
+            end = to - from > 1 && Character.isHighSurrogate(text[to - 1]) ? to - 1 : to;
+        }
+        // 句末的引号, 括号等归入当前句
+        while (end < to && isClosing(text[end])) {
+            end++;
+        }
+        return end;
+    }
+
+    private interface CharPredicate {
+        boolean test(char c);
+    }
+
+    private static int lastIndexAfter(char[] text, int from, int to, CharPredicate predicate) {
+        for (int i = to - 1; i >= from; i--) {
+            if (predicate.test(text[i])) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    static boolean isSentenceEnd(char c) {
+        switch (c) {
+            case '。':
+            case '！':
+            case '？':
+            case '；':
+            case '…':
+            case '!':
+            case '?':
+            case ';':
+            case '\n':
+            case '\r':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isClauseEnd(char c) {
+        switch (c) {
+            case '，':
+            case '、':
+            case '：':
+            case ',':
+            case ':':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isClosing(char c) {
+        switch (c) {
+            case '”':
+            case '’':
+            case '」':
+            case '』':
+            case '）':
+            case '》':
+            case '"':
+            case '\'':
+            case ')':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.InPlaceMergeSorter;
+
+import java.util.Arrays;
+
+/**
+ * 分词结果的 token 图, 用于 graph 模式.
+ * <p>
+ * 只有能从前面的词到达的开始位置才是图中的节点: 第一个词的开始位置, 某个词的结束位置, 以及不早于之前所有词结束位置的开始位置.
+ * 开始于粗粒度词中间而没有词在此结束的细粒度词无法接在前一个词之后, 与前一个节点的 token 叠放在同一位置.
+ * token 从其节点连到第一个开始位置不小于其结束位置的节点, 没有这样的节点时连到最后的结束节点,
+ * 因此粗粒度的词跨过其中的细粒度词, 词之间的空白不会断开图, 也不会丢弃任何 token. 输出顺序按开始位置, 相同时长的在前.
+ */
+final class TokenGraph {
+
+    private int size;
+    // 按输出顺序排列的 token 在 TokenResults 中的下标
+    private int[] order = new int[16];
+    private int[] positions = new int[16];
+    private int[] lengths = new int[16];
+    // 节点对应的开始位置, 升序
+    private int[] nodes = new int[16];
+    private int nodeCount;
+    // 所有 token 的结束位置, 升序
+    private int[] ends = new int[16];
+
+    /**
+     * 按分词结果重新构建.
+     *
+     * @param results the results
+     */
+    void build(TokenResults results) {
+        size = results.size();
+        if (order.length < size) {
+            int capacity = ArrayUtil.oversize(size, Integer.BYTES);
+            order = new int[capacity];
+            positions = new int[capacity];
+            lengths = new int[capacity];
+            nodes = new int[capacity];
+            ends = new int[capacity];
+        }
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+            ends[i] = results.end(i);
+        }
+        Arrays.sort(ends, 0, size);
+        new InPlaceMergeSorter() {
+            @Override
+            protected int compare(int i, int j) {
+                int a = order[i];
+                int b = order[j];
+                int byBegin = Integer.compare(results.begin(a), results.begin(b));
+                return byBegin != 0 ? byBegin : Integer.compare(results.end(b), results.end(a));
+            }
+
+            @Override
+            protected void swap(int i, int j) {
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+            }
+        }.sort(0, size);
+        nodeCount = 0;
+        int reach = 0;
+        for (int i = 0; i < size; i++) {
+            int begin = results.begin(order[i]);
+            // 无法到达的开始位置不作为节点, token 叠放在前一个节点上
+            if (nodeCount == 0 || nodes[nodeCount - 1] != begin
+                    && (begin >= reach || Arrays.binarySearch(ends, 0, size, begin) >= 0)) {
+                nodes[nodeCount++] = begin;
+            }
+            positions[i] = nodeCount - 1;
+            reach = Math.max(reach, results.end(order[i]));
+        }
+        for (int i = 0; i < size; i++) {
+            int end = endNode(results.end(order[i]));
+            // 长度为 0 的 token 也至少占一个位置
+            lengths[i] = Math.max(1, end - positions[i]);
+        }
+    }
+
+    // 第一个开始位置不小于 end 的节点
+    private int endNode(int end) {
+        int low = 0;
+        int high = nodeCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (nodes[mid] < end) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Token 数量.
+     *
+     * @return the int
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 第 i 个输出的 token 在分词结果中的下标.
+     *
+     * @param i the i
+     * @return the int
+     */
+    int token(int i) {
+        return order[i];
+    }
+
+    /**
+     * 第 i 个输出的 token 的位置, 从 0 开始.
+     *
+     * @param i the i
+     * @return the int
+     */
+    int position(int i) {
+        return positions[i];
+    }
+
+    /**
+     * 第 i 个输出的 token 跨过的位置数.
+     *
+     * @param i the i
+     * @return the int
+     */
+    int positionLength(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * 节点数量, 即最后的结束节点的位置, 分窗口分词时下一个窗口从该位置继续.
+     *
+     * @return the int
+     */
+    int nodeCount() {
+        return nodeCount;
+    }
+}
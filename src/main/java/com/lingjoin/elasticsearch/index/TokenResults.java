@@ -0,0 +1,346 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+import java.io.IOException;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 分词结果, 以基本类型数组保存, 可在同一个 Tokenizer 中重复使用.
+ * <p>
+ * 每个 token 的开始/结束位置保存在 int 数组中, 词性保存为 {@link PosTags} 编码, 词文本共用一个 char 数组.
+ */
+public final class TokenResults implements Accountable {
+
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(TokenResults.class);
+
+    /**
+     * 共享的 json 工厂, 线程安全
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * close 之后保留的最大 token 数, 超出时释放数组, 避免超长文本的缓冲长期驻留
+     */
+    static final int RETAINED_TOKENS = 4096;
+
+    private static final int INITIAL_TOKENS = 16;
+    private static final int INITIAL_CHARS = 64;
+
+    private int size;
+    private int[] begins = new int[INITIAL_TOKENS];
+    private int[] ends = new int[INITIAL_TOKENS];
+    private short[] posCodes = new short[INITIAL_TOKENS];
+    // textStarts[i] 为第 i 个词在 text 中的开始位置, textStarts[size] 为已使用的长度
+    private int[] textStarts = new int[INITIAL_TOKENS + 1];
+    private char[] text = new char[INITIAL_CHARS];
+
+    /**
+     * 清空分词结果, 保留已分配的数组.
+     */
+    public void clear() {
+        size = 0;
+        textStarts[0] = 0;
+    }
+
+    /**
+     * 清空分词结果, 并释放超出 {@link #RETAINED_TOKENS} 的数组.
+     */
+    public void release() {
+        clear();
+        if (begins.length > RETAINED_TOKENS) {
+            begins = new int[INITIAL_TOKENS];
+            ends = new int[INITIAL_TOKENS];
+            posCodes = new short[INITIAL_TOKENS];
+            textStarts = new int[INITIAL_TOKENS + 1];
+        }
+        if (text.length > RETAINED_TOKENS * 4) {
+            text = new char[INITIAL_CHARS];
+        }
+    }
+
+    /**
+     * Token 数量.
+     *
+     * @return the int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 词对应开始位置.
+     *
+     * @param index the index
+     * @return the int
+     */
+    public int begin(int index) {
+        return begins[index];
+    }
+
+    /**
+     * 词对应结束位置.
+     *
+     * @param index the index
+     * @return the int
+     */
+    public int end(int index) {
+        return ends[index];
+    }
+
+    /**
+     * 词性编码.
+     *
+     * @param index the index
+     * @return the int
+     */
+    public int posCode(int index) {
+        return posCodes[index];
+    }
+
+    /**
+     * 词性.
+     *
+     * @param index the index
+     * @return the string
+     */
+    public String pos(int index) {
+        return PosTags.name(posCodes[index]);
+    }
+
+    /**
+     * 所有词共用的字符缓冲.
+     *
+     * @return the char [ ]
+     */
+    public char[] textBuffer() {
+        return text;
+    }
+
+    /**
+     * 词在 {@link #textBuffer()} 中的开始位置.
+     *
+     * @param index the index
+     * @return the int
+     */
+    public int textStart(int index) {
+        return textStarts[index];
+    }
+
+    /**
+     * 词的长度.
+     *
+     * @param index the index
+     * @return the int
+     */
+    public int textLength(int index) {
+        return textStarts[index + 1] - textStarts[index];
+    }
+
+    /**
+     * 词.
+     *
+     * @param index the index
+     * @return the string
+     */
+    public String text(int index) {
+        return new String(text, textStarts[index], textLength(index));
+    }
+
+    /**
+     * 添加一个 token.
+     *
+     * @param begin   begin
+     * @param end     end
+     * @param posCode pos code
+     * @param buffer  text buffer
+     * @param offset  text offset
+     * @param length  text length
+     */
+    public void add(int begin, int end, int posCode, char[] buffer, int offset, int length) {
+        int start = textStarts[size];
+        ensureText(start + length);
+        System.arraycopy(buffer, offset, text, start, length);
+        commit(begin, end, posCode, start + length);
+    }
+
+    /**
+     * 复制为一个大小刚好的只读副本, 用于缓存.
+     *
+     * @return the token results
+     */
+    public TokenResults copy() {
+        TokenResults copy = new TokenResults();
+        copy.size = size;
+        copy.begins = ArrayUtil.copyOfSubArray(begins, 0, size);
+        copy.ends = ArrayUtil.copyOfSubArray(ends, 0, size);
+        copy.posCodes = ArrayUtil.copyOfSubArray(posCodes, 0, size);
+        copy.textStarts = ArrayUtil.copyOfSubArray(textStarts, 0, size + 1);
+        copy.text = ArrayUtil.copyOfSubArray(text, 0, textStarts[size]);
+        return copy;
+    }
+
+    /**
+     * 用另一个分词结果覆盖当前内容, 复用当前已分配的数组.
+     *
+     * @param other the other
+     */
+    public void copyFrom(TokenResults other) {
+        clear();
+        ensureTokens(other.size);
+        ensureText(other.textStarts[other.size]);
+        System.arraycopy(other.begins, 0, begins, 0, other.size);
+        System.arraycopy(other.ends, 0, ends, 0, other.size);
+        System.arraycopy(other.posCodes, 0, posCodes, 0, other.size);
+        System.arraycopy(other.textStarts, 0, textStarts, 0, other.size + 1);
+        System.arraycopy(other.text, 0, text, 0, other.textStarts[other.size]);
+        size = other.size;
+    }
+
+    /**
+     * 将另一个分词结果追加到末尾, 开始/结束位置加上 offset.
+     *
+     * @param other  the other
+     * @param offset the offset
+     */
+    public void append(TokenResults other, int offset) {
+        int textBase = textStarts[size];
+        ensureTokens(size + other.size);
+        ensureText(textBase + other.textStarts[other.size]);
+        for (int i = 0; i < other.size; i++) {
+            begins[size + i] = other.begins[i] + offset;
+            ends[size + i] = other.ends[i] + offset;
+            posCodes[size + i] = other.posCodes[i];
+            textStarts[size + i + 1] = other.textStarts[i + 1] + textBase;
+        }
+        System.arraycopy(other.text, 0, text, textBase, other.textStarts[other.size]);
+        size += other.size;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED
+                + RamUsageEstimator.sizeOf(begins)
+                + RamUsageEstimator.sizeOf(ends)
+                + RamUsageEstimator.sizeOf(posCodes)
+                + RamUsageEstimator.sizeOf(textStarts)
+                + RamUsageEstimator.sizeOf(text);
+    }
+
+    /**
+     * 将 NLPIR_Tokenizer4IR 返回的 json 流式解析到当前对象中, 原有内容会被清空.
+     * <p>
+     * 解析失败时记录日志并保持为空.
+     *
+     * @param json the json
+     * @return 是否解析成功
+     */
+    public boolean parse(String json) {
+        clear();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return parse(parser);
+        } catch (IOException e) {
+            LOGGER.error("Jackson parse json failed: {}", e.getMessage(), e);
+            clear();
+            return false;
+        }
+    }
+
+    /**
+     * 将 UTF-8 编码的 json 流式解析到当前对象中, 原有内容会被清空.
+     * <p>
+     * 解析失败时记录日志并保持为空.
+     *
+     * @param json   the json
+     * @param offset the offset
+     * @param length the length
+     * @return 是否解析成功
+     */
+    public boolean parse(byte[] json, int offset, int length) {
+        clear();
+        try (JsonParser parser = JSON_FACTORY.createParser(json, offset, length)) {
+            return parse(parser);
+        } catch (IOException e) {
+            LOGGER.error("Jackson parse json failed: {}", e.getMessage(), e);
+            clear();
+            return false;
+        }
+    }
+
+    private boolean parse(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_ARRAY) {
+            throw new IOException("Expect json array but got " + parser.currentToken());
+        }
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            parseToken(parser);
+        }
+        return true;
+    }
+
+    private void parseToken(JsonParser parser) throws IOException {
+        int begin = 0;
+        int end = 0;
+        int posCode = PosTags.NONE;
+        int start = textStarts[size];
+        int textEnd = start;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            // 字段名由 jackson 规范化, 不会重复创建 String
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "begin":
+                    begin = parser.getValueAsInt();
+                    break;
+                case "end":
+                    end = parser.getValueAsInt();
+                    break;
+                case "pos":
+                    if (value == JsonToken.VALUE_STRING) {
+                        posCode = PosTags.code(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                    }
+                    break;
+                case "text":
+                    if (value == JsonToken.VALUE_STRING) {
+                        int length = parser.getTextLength();
+                        ensureText(start + length);
+                        System.arraycopy(parser.getTextCharacters(), parser.getTextOffset(), text, start, length);
+                        textEnd = start + length;
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        commit(begin, end, posCode, textEnd);
+    }
+
+    private void commit(int begin, int end, int posCode, int textEnd) {
+        ensureTokens(size + 1);
+        begins[size] = begin;
+        ends[size] = end;
+        posCodes[size] = (short) posCode;
+        textStarts[++size] = textEnd;
+    }
+
+    private void ensureTokens(int count) {
+        if (begins.length < count) {
+            int capacity = ArrayUtil.oversize(count, Integer.BYTES);
+            begins = ArrayUtil.growExact(begins, capacity);
+            ends = ArrayUtil.growExact(ends, capacity);
+            posCodes = ArrayUtil.growExact(posCodes, capacity);
+            textStarts = ArrayUtil.growExact(textStarts, capacity + 1);
+        }
+    }
+
+    private void ensureText(int length) {
+        if (text.length < length) {
+            text = ArrayUtil.grow(text, length);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.nlpir.IctclasNative;
+import com.lingjoin.nlpir.NlpirException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 节点级别的用户词典, 支持不重启节点重新加载.
+ * <p>
+ * 重新加载时与上次加载的内容比较, 只通过 NLPIR_AddUserWord / NLPIR_DelUsrWord 应用变化的词条,
+ * 变化过多或增量应用失败时先删除去掉的词, 再重新导入整个词典. 修改词典时持有写锁, 分词调用持有读锁,
+ * 因此分词不会看到只应用了一部分的词典. 每次修改后版本号加一, 并通知调用方清空分词缓存.
+ * <p>
+ * 指定 {@link CompiledUserDictionary} 时, 导入或重新加载后保存编译结果, 词典文件和 overWrite 都没有变化时启动不再导入.
+ */
+public final class UserDictionary {
+
+    /**
+     * 重新加载的方式.
+     */
+    public enum Mode {
+        /**
+         * 词典没有变化
+         */
+        UNCHANGED,
+        /**
+         * 只应用了变化的词条
+         */
+        INCREMENTAL,
+        /**
+         * 重新导入了整个词典
+         */
+        FULL;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * 重新加载的结果.
+     *
+     * @param mode    重新加载的方式
+     * @param added   新增或修改的词条数
+     * @param removed 删除的词条数
+     * @param version 重新加载后的词典版本
+     */
+    public record ReloadResult(Mode mode, int added, int removed, long version) {
+    }
+
+    /**
+     * 分词引擎的词典操作, 测试时可以替换.
+     */
+    public interface NativeDictionary {
+        /**
+         * 添加或修改一个词条, 格式为 "词 词性".
+         *
+         * @param entry the entry
+         * @return 是否成功
+         */
+        boolean addWord(String entry);
+
+        /**
+         * 删除一个词.
+         *
+         * @param word the word
+         * @return 是否成功
+         */
+        boolean deleteWord(String word);
+
+        /**
+         * 导入整个词典文件.
+         *
+         * @param path      the path
+         * @param overwrite the overwrite
+         * @return 是否成功
+         */
+        boolean importDictionary(String path, boolean overwrite);
+
+        /**
+         * 最近一次错误信息.
+         *
+         * @return the string
+         */
+        String lastError();
+
+        /**
+         * 保存当前词典, 下次初始化时直接加载.
+         *
+         * @return 是否成功, 不支持时返回 false
+         */
+        default boolean saveDictionary() {
+            return false;
+        }
+    }
+
+    /**
+     * 通过 NLPIR 修改词典.
+     */
+    static final NativeDictionary NLPIR = new NativeDictionary() {
+        @Override
+        public boolean addWord(String entry) {
+            return IctclasNative.INSTANCE.NLPIR_AddUserWord(entry) == 1;
+        }
+
+        @Override
+        public boolean deleteWord(String word) {
+            return IctclasNative.INSTANCE.NLPIR_DelUsrWord(word) != -1;
+        }
+
+        @Override
+        public boolean importDictionary(String path, boolean overwrite) {
+            return IctclasNative.INSTANCE.NLPIR_ImportUserDict(path, overwrite) != 0;
+        }
+
+        @Override
+        public String lastError() {
+            return IctclasNative.INSTANCE.NLPIR_GetLastErrorMsg();
+        }
+
+        @Override
+        public boolean saveDictionary() {
+            return IctclasNative.INSTANCE.NLPIR_SaveTheUsrDic() == 1;
+        }
+    };
+
+    private final Path path;
+    private final boolean overWrite;
+    private final int maxIncrementalChanges;
+    private final NativeDictionary nativeDictionary;
+    private final Runnable onChange;
+    private final CompiledUserDictionary compiled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile long version;
+    // 上次加载的词条, 词 -> 词性 (可以为 null), 只在 synchronized 方法中访问
+    private Map<String, String> entries = Map.of();
+    private volatile int size;
+
+    /**
+     * Instantiates a new User dictionary.
+     *
+     * @param path                  词典文件, 为 null 时表示没有配置用户词典
+     * @param overWrite             导入时是否覆盖原有用户词典
+     * @param maxIncrementalChanges 变化的词条超过该数量时重新导入整个词典
+     * @param nativeDictionary      the native dictionary
+     * @param onChange              词典变化后的回调, 用于清空分词缓存
+     */
+    UserDictionary(
+            Path path, boolean overWrite, int maxIncrementalChanges, NativeDictionary nativeDictionary, Runnable onChange
+    ) {
+        this(path, overWrite, maxIncrementalChanges, nativeDictionary, onChange, null);
+    }
+
+    /**
+     * Instantiates a new User dictionary.
+     *
+     * @param path                  词典文件, 为 null 时表示没有配置用户词典
+     * @param overWrite             导入时是否覆盖原有用户词典
+     * @param maxIncrementalChanges 变化的词条超过该数量时重新导入整个词典
+     * @param nativeDictionary      the native dictionary
+     * @param onChange              词典变化后的回调, 用于清空分词缓存
+     * @param compiled              编译后的用户词典, 为 null 时每次启动都导入
+     */
+    UserDictionary(
+            Path path, boolean overWrite, int maxIncrementalChanges, NativeDictionary nativeDictionary, Runnable onChange,
+            CompiledUserDictionary compiled
+    ) {
+        this.path = path;
+        this.overWrite = overWrite;
+        this.maxIncrementalChanges = maxIncrementalChanges;
+        this.nativeDictionary = nativeDictionary;
+        this.onChange = onChange;
+        this.compiled = compiled;
+    }
+
+    /**
+     * 没有配置用户词典时使用.
+     *
+     * @return the user dictionary
+     */
+    static UserDictionary none() {
+        return new UserDictionary(null, false, 0, NLPIR, () -> {
+        });
+    }
+
+    /**
+     * 是否配置了用户词典.
+     *
+     * @return the boolean
+     */
+    public boolean isConfigured() {
+        return path != null;
+    }
+
+    /**
+     * Gets path.
+     *
+     * @return the path
+     */
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * 词典版本, 每次修改后加一.
+     *
+     * @return the long
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * 上次加载的词条数.
+     *
+     * @return the int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 分词调用需要持有的读锁.
+     *
+     * @return the lock
+     */
+    Lock readLock() {
+        return lock.readLock();
+    }
+
+    /**
+     * 首次导入整个词典, 编译结果与词典文件一致时跳过导入, 导入失败时只记录日志.
+     */
+    synchronized void load() {
+        if (path == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        // 先于读取计算, 文件在此期间变化时下次启动重新编译
+        String key = compiledKey();
+        try {
+            entries = read(path);
+            size = entries.size();
+        } catch (IOException e) {
+            LOGGER.error("Cannot read user dict {}", path, e);
+        }
+        try {
+            if (key != null && compiled.isUpToDate(key)) {
+                // 编译结果已在初始化时加载
+                LOGGER.info("NLPIR 用户词典与编译结果 {} 一致, 跳过导入, {} 个词条, 校验耗时 {} ms",
+                        compiled.getCompiled(), entries.size(), elapsedMillis(start));
+                return;
+            }
+            if (key != null) {
+                compiled.invalidate();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot check compiled user dict {}", compiled.getCompiled(), e);
+            key = null;
+        }
+        lock.writeLock().lock();
+        try {
+            if (!nativeDictionary.importDictionary(path.toString(), overWrite)) {
+                LOGGER.error("Import user dict failed", new NlpirException(nativeDictionary.lastError()));
+                key = null;
+            }
+            version++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        onChange.run();
+        LOGGER.info("NLPIR 用户词典已导入, {} 个词条, 耗时 {} ms", entries.size(), elapsedMillis(start));
+        compile(key);
+    }
+
+    // 没有开启编译或无法读取词典文件时返回 null
+    private String compiledKey() {
+        if (compiled == null) {
+            return null;
+        }
+        try {
+            return CompiledUserDictionary.key(path, overWrite);
+        } catch (IOException e) {
+            LOGGER.warn("Cannot compute checksum of user dict {}", path, e);
+            return null;
+        }
+    }
+
+    // 保存编译结果, 只读取词典, 与分词调用一样持有读锁
+    private void compile(String key) {
+        if (key == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        lock.readLock().lock();
+        try {
+            if (compiled.compile(nativeDictionary, key)) {
+                LOGGER.info("NLPIR 用户词典已编译到 {}, 耗时 {} ms", compiled.getCompiled(), elapsedMillis(start));
+            } else {
+                LOGGER.warn("Save compiled user dict failed: {}", nativeDictionary.lastError());
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot write checksum of compiled user dict {}", compiled.getCompiled(), e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * 重新读取词典文件并应用变化的词条.
+     *
+     * @return the reload result
+     * @throws IOException    读取词典文件失败
+     * @throws NlpirException 重新导入整个词典失败
+     */
+    public synchronized ReloadResult reload() throws IOException, NlpirException {
+        if (path == null) {
+            throw new IllegalStateException("No user dictionary is configured");
+        }
+        String key = compiledKey();
+        Map<String, String> latest = read(path);
+        List<String> added = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : latest.entrySet()) {
+            if (!entries.containsKey(entry.getKey()) || !Objects.equals(entries.get(entry.getKey()), entry.getValue())) {
+                added.add(entry.getValue() == null ? entry.getKey() : entry.getKey() + " " + entry.getValue());
+            }
+        }
+        for (String word : entries.keySet()) {
+            if (!latest.containsKey(word)) {
+                removed.add(word);
+            }
+        }
+        if (added.isEmpty() && removed.isEmpty()) {
+            return new ReloadResult(Mode.UNCHANGED, 0, 0, version);
+        }
+        if (key != null) {
+            compiled.invalidate();
+        }
+
+        Mode mode = Mode.INCREMENTAL;
+        lock.writeLock().lock();
+        try {
+            if (added.size() + removed.size() > maxIncrementalChanges || !applyIncremental(added, removed)) {
+                mode = Mode.FULL;
+                // overWrite 为 false 时导入只会添加词条, 删除的词需要单独删除
+                deleteWords(removed);
+                if (!nativeDictionary.importDictionary(path.toString(), overWrite)) {
+                    throw new NlpirException(nativeDictionary.lastError());
+                }
+            }
+            entries = latest;
+            size = latest.size();
+        } finally {
+            // 失败时词典状态未知, 同样需要使缓存失效
+            version++;
+            lock.writeLock().unlock();
+            onChange.run();
+        }
+        LOGGER.info("NLPIR 用户词典已重新加载, mode: {}, added: {}, removed: {}, version: {}",
+                mode, added.size(), removed.size(), version);
+        compile(key);
+        return new ReloadResult(mode, added.size(), removed.size(), version);
+    }
+
+    private boolean applyIncremental(List<String> added, List<String> removed) {
+        boolean success = deleteWords(removed);
+        for (String entry : added) {
+            if (!nativeDictionary.addWord(entry)) {
+                LOGGER.debug("Add user word [{}] failed: {}", entry, nativeDictionary.lastError());
+                success = false;
+            }
+        }
+        if (!success) {
+            LOGGER.warn("Apply user dict changes incrementally failed, import the whole user dict");
+        }
+        return success;
+    }
+
+    private boolean deleteWords(List<String> removed) {
+        boolean success = true;
+        for (String word : removed) {
+            if (!nativeDictionary.deleteWord(word)) {
+                LOGGER.debug("Delete user word [{}] failed: {}", word, nativeDictionary.lastError());
+                success = false;
+            }
+        }
+        return success;
+    }
+
+    /**
+     * 读取词典文件, 每行为 "词 词性" 或 "词", 跳过空行, 重复的词以最后一行为准.
+     *
+     * @param path the path
+     * @return 词 -> 词性
+     * @throws IOException the io exception
+     */
+    static Map<String, String> read(Path path) throws IOException {
+        return parse(Access.doPrivilegedIOException(() -> Files.readAllLines(path, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 解析词典内容.
+     *
+     * @param lines the lines
+     * @return 词 -> 词性
+     */
+    static Map<String, String> parse(List<String> lines) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (String line : lines) {
+            String entry = line.replace("\uFEFF", "").strip();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int split = 0;
+            while (split < entry.length() && !Character.isWhitespace(entry.charAt(split))) {
+                split++;
+            }
+            String pos = entry.substring(split).strip();
+            entries.put(entry.substring(0, split), pos.isEmpty() ? null : pos);
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,65 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.worker.WorkerPool;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * 由独立分词进程运行 NLPIR 的分词引擎, 用户词典由分词进程在启动时加载.
+ */
+final class WorkerEngine implements SegmentationEngine {
+
+    /**
+     * 引擎名称
+     */
+    static final String NAME = "workers";
+
+    private static final ThreadLocal<BytesRef> RESULTS = ThreadLocal.withInitial(BytesRef::new);
+
+    private final WorkerPool pool;
+
+    /**
+     * Instantiates a new Worker engine.
+     *
+     * @param pool the pool
+     */
+    WorkerEngine(WorkerPool pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public BytesRef segment(String text, boolean fineSegment) {
+        WorkerPool.Response response = pool.segment(text, fineSegment);
+        if (response == null) {
+            return null;
+        }
+        BytesRef result = RESULTS.get();
+        result.bytes = response.bytes();
+        result.offset = 0;
+        result.length = response.length();
+        return result;
+    }
+
+    @Override
+    public UserDictionary.NativeDictionary dictionary() {
+        return null;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return pool.isAvailable();
+    }
+
+    /**
+     * Gets pool.
+     *
+     * @return the worker pool
+     */
+    WorkerPool getPool() {
+        return pool;
+    }
+}
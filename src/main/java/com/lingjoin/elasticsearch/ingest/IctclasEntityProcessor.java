@@ -0,0 +1,268 @@
+package com.lingjoin.elasticsearch.ingest;
+
+import com.lingjoin.elasticsearch.index.IctclasPreTokenizedTokenizer;
+import com.lingjoin.elasticsearch.index.PosAttribute;
+import com.lingjoin.elasticsearch.index.PosTagSet;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.elasticsearch.core.CheckedFunction;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.ingest.AbstractProcessor;
+import org.elasticsearch.ingest.ConfigurationUtils;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Processor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ictclas_entities 预处理器, 按词性从一次分词结果中取出命名实体, 去重后按类型写入 target_field 的子字段.
+ * <p>
+ * 默认 person 为 nr, place 为 ns, organization 为 nt 开头的词. 配置了 tokens_field 且文档中已有 ictclas
+ * 预处理器保存的分词结果时直接重放, 不再调用 NLPIR. 子字段映射为 keyword 后即可用 terms 聚合统计实体.
+ */
+public final class IctclasEntityProcessor extends AbstractProcessor {
+
+    /**
+     * The constant TYPE.
+     */
+    public static final String TYPE = "ictclas_entities";
+
+    /**
+     * 默认的实体类型和对应的词性前缀
+     */
+    static final Map<String, List<String>> DEFAULT_TYPES = defaultTypes();
+
+    /**
+     * 默认每种实体最多保留的数量
+     */
+    static final int DEFAULT_MAX_PER_TYPE = 100;
+
+    private final String field;
+    private final String targetField;
+    private final String tokensField;
+    private final IctclasProcessor.Mode mode;
+    private final boolean ignoreMissing;
+    private final String[] types;
+    private final PosTagSet[] tagSets;
+    private final int maxPerType;
+    private final CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers;
+
+    /**
+     * Instantiates a new Ictclas entity processor.
+     *
+     * @param tag           the tag
+     * @param description   the description
+     * @param field         the field
+     * @param targetField   the target field
+     * @param tokensField   ictclas 预处理器保存分词结果的字段, 可以为 null
+     * @param mode          the mode
+     * @param ignoreMissing 字段不存在时是否跳过
+     * @param typeTags      实体类型和对应的词性前缀
+     * @param maxPerType    每种实体最多保留的数量
+     * @param tokenizers    按是否细粒度分词创建分词器
+     */
+    IctclasEntityProcessor(
+            String tag, String description, String field, String targetField, String tokensField,
+            IctclasProcessor.Mode mode, boolean ignoreMissing, Map<String, List<String>> typeTags, int maxPerType,
+            CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers
+    ) {
+        super(tag, description);
+        this.field = field;
+        this.targetField = targetField;
+        this.tokensField = tokensField;
+        this.mode = mode;
+        this.ignoreMissing = ignoreMissing;
+        this.types = typeTags.keySet().toArray(new String[0]);
+        this.tagSets = new PosTagSet[types.length];
+        for (int i = 0; i < types.length; i++) {
+            tagSets[i] = PosTagSet.ofPrefixes(typeTags.get(types[i]));
+        }
+        this.maxPerType = maxPerType;
+        this.tokenizers = tokenizers;
+    }
+
+    @Override
+    public IngestDocument execute(IngestDocument document) throws Exception {
+        Tokenizer tokenizer;
+        String input;
+        if (tokensField != null && document.hasField(tokensField, true)) {
+            // 复用 ictclas 预处理器的分词结果
+            tokenizer = new IctclasPreTokenizedTokenizer();
+            input = document.getFieldValue(tokensField, String.class);
+        } else {
+            input = document.getFieldValue(field, String.class, ignoreMissing);
+            if (input == null) {
+                if (ignoreMissing) {
+                    return document;
+                }
+                throw new IllegalArgumentException("field [" + field + "] is null, cannot extract entities");
+            }
+            tokenizer = tokenizers.apply(mode.isFine());
+        }
+        List<Set<String>> entities = extract(tokenizer, input);
+        for (int i = 0; i < types.length; i++) {
+            if (!entities.get(i).isEmpty()) {
+                document.setFieldValue(targetField + "." + types[i], new ArrayList<>(entities.get(i)));
+            }
+        }
+        return document;
+    }
+
+    private List<Set<String>> extract(Tokenizer tokenizer, String input) throws IOException {
+        List<Set<String>> entities = new ArrayList<>(types.length);
+        for (int i = 0; i < types.length; i++) {
+            entities.add(new LinkedHashSet<>());
+        }
+        try (tokenizer) {
+            CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+            PosAttribute posAtt = tokenizer.addAttribute(PosAttribute.class);
+            tokenizer.setReader(new StringReader(input));
+            tokenizer.reset();
+            int full = 0;
+            // 所有类型都达到上限后不再读取
+            while (full < types.length && tokenizer.incrementToken()) {
+                int code = posAtt.getPosCode();
+                for (int i = 0; i < types.length; i++) {
+                    Set<String> found = entities.get(i);
+                    if (found.size() < maxPerType && tagSets[i].contains(code)
+                            && found.add(termAtt.toString()) && found.size() == maxPerType) {
+                        full++;
+                    }
+                }
+            }
+            tokenizer.end();
+        }
+        return entities;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    /**
+     * Gets target field.
+     *
+     * @return the target field
+     */
+    String getTargetField() {
+        return targetField;
+    }
+
+    /**
+     * Gets mode.
+     *
+     * @return the mode
+     */
+    IctclasProcessor.Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Gets max per type.
+     *
+     * @return the int
+     */
+    int getMaxPerType() {
+        return maxPerType;
+    }
+
+    private static Map<String, List<String>> defaultTypes() {
+        Map<String, List<String>> types = new LinkedHashMap<>();
+        types.put("person", List.of("nr"));
+        types.put("place", List.of("ns"));
+        types.put("organization", List.of("nt"));
+        return types;
+    }
+
+    /**
+     * The type Factory.
+     */
+    public static final class Factory implements Processor.Factory {
+
+        private final CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers;
+
+        /**
+         * Instantiates a new Factory.
+         *
+         * @param environment the environment
+         */
+        public Factory(Environment environment) {
+            this(IctclasProcessor.tokenizers(environment));
+        }
+
+        /**
+         * Instantiates a new Factory.
+         *
+         * @param tokenizers 按是否细粒度分词创建分词器
+         */
+        Factory(CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers) {
+            this.tokenizers = tokenizers;
+        }
+
+        @Override
+        public IctclasEntityProcessor create(
+                Map<String, Processor.Factory> registry, String tag, String description, Map<String, Object> config
+        ) {
+            String field = ConfigurationUtils.readStringProperty(TYPE, tag, config, "field");
+            String targetField = ConfigurationUtils.readStringProperty(TYPE, tag, config, "target_field", "entities");
+            String tokensField = ConfigurationUtils.readOptionalStringProperty(TYPE, tag, config, "tokens_field");
+            // 实体用粗粒度分词, 完整的机构名不会被拆开
+            String mode = ConfigurationUtils.readStringProperty(TYPE, tag, config, "mode", "search");
+            boolean ignoreMissing = ConfigurationUtils.readBooleanProperty(TYPE, tag, config, "ignore_missing", false);
+            Map<String, Object> types = ConfigurationUtils.readOptionalMap(TYPE, tag, config, "types");
+            int maxPerType = ConfigurationUtils.readIntProperty(TYPE, tag, config, "max_per_type", DEFAULT_MAX_PER_TYPE);
+            IctclasProcessor.Mode parsed;
+            try {
+                parsed = IctclasProcessor.Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw ConfigurationUtils.newConfigurationException(
+                        TYPE, tag, "mode", "must be [index] or [search], got [" + mode + "]"
+                );
+            }
+            if (maxPerType <= 0) {
+                throw ConfigurationUtils.newConfigurationException(
+                        TYPE, tag, "max_per_type", "must be > 0, got [" + maxPerType + "]"
+                );
+            }
+            return new IctclasEntityProcessor(
+                    tag, description, field, targetField, tokensField, parsed, ignoreMissing,
+                    types == null ? DEFAULT_TYPES : parseTypes(tag, types), maxPerType, tokenizers
+            );
+        }
+
+        private static Map<String, List<String>> parseTypes(String tag, Map<String, Object> types) {
+            if (types.isEmpty()) {
+                throw ConfigurationUtils.newConfigurationException(TYPE, tag, "types", "must not be empty");
+            }
+            Map<String, List<String>> parsed = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : types.entrySet()) {
+                Object value = entry.getValue();
+                List<String> prefixes = new ArrayList<>();
+                if (value instanceof String prefix) {
+                    prefixes.add(prefix);
+                } else if (value instanceof List<?> list) {
+                    for (Object prefix : list) {
+                        prefixes.add(String.valueOf(prefix));
+                    }
+                }
+                if (prefixes.stream().allMatch(String::isEmpty)) {
+                    throw ConfigurationUtils.newConfigurationException(
+                            TYPE, tag, "types", "[" + entry.getKey() + "] must list at least one pos tag prefix"
+                    );
+                }
+                parsed.put(entry.getKey(), prefixes);
+            }
+            return parsed;
+        }
+    }
+}
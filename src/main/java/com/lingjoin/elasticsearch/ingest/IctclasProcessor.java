@@ -0,0 +1,218 @@
+package com.lingjoin.elasticsearch.ingest;
+
+import com.lingjoin.elasticsearch.index.IctclasTokenizer;
+import com.lingjoin.elasticsearch.index.PreTokenizedStream;
+import com.lingjoin.elasticsearch.util.Configuration;
+import com.lingjoin.nlpir.NlpirException;
+import org.apache.lucene.analysis.Tokenizer;
+import org.elasticsearch.core.CheckedFunction;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.ingest.AbstractProcessor;
+import org.elasticsearch.ingest.ConfigurationUtils;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Processor;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ictclas 预处理器, 对字段分词一次, 将分词结果以 {@link PreTokenizedStream} 编码保存到 target_field.
+ * <p>
+ * target_field 使用 ictclas_pretokenized 分词器索引, 重新索引或写入多个索引时直接重放保存的结果, 不再调用 NLPIR.
+ */
+public final class IctclasProcessor extends AbstractProcessor {
+
+    /**
+     * The constant TYPE.
+     */
+    public static final String TYPE = "ictclas";
+
+    /**
+     * 分词方式, index 为细粒度分词, 与 ictclas_index 一致; search 与 ictclas_search 一致
+     */
+    public enum Mode {
+        /**
+         * Index mode.
+         */
+        INDEX,
+        /**
+         * Search mode.
+         */
+        SEARCH;
+
+        /**
+         * 是否细粒度分词.
+         *
+         * @return the boolean
+         */
+        public boolean isFine() {
+            return this == INDEX;
+        }
+    }
+
+    private final String field;
+    private final String targetField;
+    private final Mode mode;
+    private final boolean ignoreMissing;
+    private final boolean override;
+    private final CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers;
+
+    /**
+     * Instantiates a new Ictclas processor.
+     *
+     * @param tag           the tag
+     * @param description   the description
+     * @param field         the field
+     * @param targetField   the target field
+     * @param mode          the mode
+     * @param ignoreMissing 字段不存在时是否跳过
+     * @param override      target_field 已存在时是否重新分词
+     * @param tokenizers    按是否细粒度分词创建分词器
+     */
+    IctclasProcessor(
+            String tag, String description, String field, String targetField, Mode mode, boolean ignoreMissing,
+            boolean override, CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers
+    ) {
+        super(tag, description);
+        this.field = field;
+        this.targetField = targetField;
+        this.mode = mode;
+        this.ignoreMissing = ignoreMissing;
+        this.override = override;
+        this.tokenizers = tokenizers;
+    }
+
+    @Override
+    public IngestDocument execute(IngestDocument document) throws Exception {
+        // 重新索引已经分词的文档时直接使用保存的结果
+        if (!override && document.hasField(targetField)) {
+            return document;
+        }
+        String text = document.getFieldValue(field, String.class, ignoreMissing);
+        if (text == null) {
+            if (ignoreMissing) {
+                return document;
+            }
+            throw new IllegalArgumentException("field [" + field + "] is null, cannot be segmented");
+        }
+        document.setFieldValue(targetField, encode(text));
+        return document;
+    }
+
+    private String encode(String text) throws NlpirException, IOException {
+        try (Tokenizer tokenizer = tokenizers.apply(mode.isFine())) {
+            tokenizer.setReader(new StringReader(text));
+            return PreTokenizedStream.encode(tokenizer);
+        }
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    /**
+     * Gets field.
+     *
+     * @return the field
+     */
+    String getField() {
+        return field;
+    }
+
+    /**
+     * Gets target field.
+     *
+     * @return the target field
+     */
+    String getTargetField() {
+        return targetField;
+    }
+
+    /**
+     * Gets mode.
+     *
+     * @return the mode
+     */
+    Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Is ignore missing.
+     *
+     * @return the boolean
+     */
+    boolean isIgnoreMissing() {
+        return ignoreMissing;
+    }
+
+    /**
+     * Is override.
+     *
+     * @return the boolean
+     */
+    boolean isOverride() {
+        return override;
+    }
+
+    /**
+     * 按插件配置创建 {@link IctclasTokenizer}.
+     *
+     * @param environment the environment
+     * @return 按是否细粒度分词创建分词器
+     */
+    static CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers(Environment environment) {
+        return fine -> new IctclasTokenizer(Configuration.getConfiguration(environment), environment, fine);
+    }
+
+    /**
+     * The type Factory.
+     */
+    public static final class Factory implements Processor.Factory {
+
+        private final CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers;
+
+        /**
+         * Instantiates a new Factory.
+         *
+         * @param environment the environment
+         */
+        public Factory(Environment environment) {
+            this(tokenizers(environment));
+        }
+
+        /**
+         * Instantiates a new Factory.
+         *
+         * @param tokenizers 按是否细粒度分词创建分词器
+         */
+        Factory(CheckedFunction<Boolean, Tokenizer, NlpirException> tokenizers) {
+            this.tokenizers = tokenizers;
+        }
+
+        @Override
+        public IctclasProcessor create(
+                Map<String, Processor.Factory> registry, String tag, String description, Map<String, Object> config
+        ) {
+            String field = ConfigurationUtils.readStringProperty(TYPE, tag, config, "field");
+            String targetField = ConfigurationUtils.readStringProperty(TYPE, tag, config, "target_field", field + "_tokens");
+            String mode = ConfigurationUtils.readStringProperty(TYPE, tag, config, "mode", "index");
+            boolean ignoreMissing = ConfigurationUtils.readBooleanProperty(TYPE, tag, config, "ignore_missing", false);
+            boolean override = ConfigurationUtils.readBooleanProperty(TYPE, tag, config, "override", true);
+            Mode parsed;
+            try {
+                parsed = Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw ConfigurationUtils.newConfigurationException(
+                        TYPE, tag, "mode", "must be [index] or [search], got [" + mode + "]"
+                );
+            }
+            return new IctclasProcessor(
+                    tag, description, field, targetField, parsed, ignoreMissing, override, tokenizers
+            );
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.lingjoin.elasticsearch.query;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.TermToBytesRefAttribute;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queries.payloads.MaxPayloadFunction;
+import org.apache.lucene.queries.payloads.PayloadScoreQuery;
+import org.apache.lucene.queries.spans.SpanTermQuery;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.Version;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.query.AbstractQueryBuilder;
+import org.elasticsearch.index.query.SearchExecutionContext;
+import org.elasticsearch.xcontent.ParseField;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * ictclas_pos_weighted, 按 ictclas_pos_payload 索引的词性对命中的词加权.
+ * <p>
+ * 查询文本经分析后每个词对应一个 {@link PayloadScoreQuery}, 得分乘以文档中该词各次出现的词性权重的最大值.
+ * 字段需要使用带 ictclas_pos_payload 的分析器索引, 没有 payload 的词使用 default_weight.
+ * <pre>
+ * {"ictclas_pos_weighted": {"field": "content", "query": "商务部通知", "weights": {"n": 2.0, "v": 0.5}}}
+ * </pre>
+ */
+public class IctclasPosWeightedQueryBuilder extends AbstractQueryBuilder<IctclasPosWeightedQueryBuilder> {
+
+    /**
+     * The constant NAME.
+     */
+    public static final String NAME = "ictclas_pos_weighted";
+
+    private static final ParseField FIELD_FIELD = new ParseField("field");
+    private static final ParseField QUERY_FIELD = new ParseField("query");
+    private static final ParseField WEIGHTS_FIELD = new ParseField("weights");
+    private static final ParseField DEFAULT_WEIGHT_FIELD = new ParseField("default_weight");
+    private static final ParseField ANALYZER_FIELD = new ParseField("analyzer");
+
+    /**
+     * 默认权重
+     */
+    public static final float DEFAULT_WEIGHT = 1.0f;
+
+    private final String field;
+    private final String query;
+    private final Map<String, Float> weights;
+    private float defaultWeight = DEFAULT_WEIGHT;
+    private String analyzer;
+
+    /**
+     * Instantiates a new Ictclas pos weighted query builder.
+     *
+     * @param field   the field
+     * @param query   the query
+     * @param weights 词性前缀对应的权重
+     */
+    public IctclasPosWeightedQueryBuilder(String field, String query, Map<String, Float> weights) {
+        if (field == null || field.isEmpty()) {
+            throw new IllegalArgumentException("[" + NAME + "] requires a field");
+        }
+        if (query == null) {
+            throw new IllegalArgumentException("[" + NAME + "] requires a query");
+        }
+        this.field = field;
+        this.query = query;
+        this.weights = new TreeMap<>(Objects.requireNonNull(weights, "weights"));
+        for (Map.Entry<String, Float> entry : this.weights.entrySet()) {
+            checkWeight(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Instantiates a new Ictclas pos weighted query builder.
+     *
+     * @param in the in
+     * @throws IOException the io exception
+     */
+    public IctclasPosWeightedQueryBuilder(StreamInput in) throws IOException {
+        super(in);
+        field = in.readString();
+        query = in.readString();
+        weights = new TreeMap<>(in.readMap(StreamInput::readString, StreamInput::readFloat));
+        defaultWeight = in.readFloat();
+        analyzer = in.readOptionalString();
+    }
+
+    @Override
+    protected void doWriteTo(StreamOutput out) throws IOException {
+        out.writeString(field);
+        out.writeString(query);
+        out.writeMap(weights, StreamOutput::writeString, StreamOutput::writeFloat);
+        out.writeFloat(defaultWeight);
+        out.writeOptionalString(analyzer);
+    }
+
+    private static void checkWeight(String tag, Float weight) {
+        if (weight == null || weight < 0 || !Float.isFinite(weight)) {
+            throw new IllegalArgumentException(
+                    "[" + NAME + "] weight of [" + tag + "] must be a non-negative number, got [" + weight + "]"
+            );
+        }
+    }
+
+    /**
+     * 没有 payload 或没有匹配词性时的权重.
+     *
+     * @param defaultWeight the default weight
+     * @return the ictclas pos weighted query builder
+     */
+    public IctclasPosWeightedQueryBuilder defaultWeight(float defaultWeight) {
+        checkWeight(DEFAULT_WEIGHT_FIELD.getPreferredName(), defaultWeight);
+        this.defaultWeight = defaultWeight;
+        return this;
+    }
+
+    /**
+     * 分析查询文本使用的分析器, 默认使用字段的搜索分析器.
+     *
+     * @param analyzer the analyzer
+     * @return the ictclas pos weighted query builder
+     */
+    public IctclasPosWeightedQueryBuilder analyzer(String analyzer) {
+        this.analyzer = analyzer;
+        return this;
+    }
+
+    /**
+     * Gets field.
+     *
+     * @return the field
+     */
+    public String field() {
+        return field;
+    }
+
+    /**
+     * Gets query.
+     *
+     * @return the query
+     */
+    public String query() {
+        return query;
+    }
+
+    /**
+     * Gets weights.
+     *
+     * @return the map
+     */
+    public Map<String, Float> weights() {
+        return weights;
+    }
+
+    /**
+     * Gets default weight.
+     *
+     * @return the float
+     */
+    public float defaultWeight() {
+        return defaultWeight;
+    }
+
+    /**
+     * Gets analyzer.
+     *
+     * @return the string
+     */
+    public String analyzer() {
+        return analyzer;
+    }
+
+    @Override
+    protected void doXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(NAME);
+        builder.field(FIELD_FIELD.getPreferredName(), field);
+        builder.field(QUERY_FIELD.getPreferredName(), query);
+        builder.field(WEIGHTS_FIELD.getPreferredName(), weights);
+        builder.field(DEFAULT_WEIGHT_FIELD.getPreferredName(), defaultWeight);
+        if (analyzer != null) {
+            builder.field(ANALYZER_FIELD.getPreferredName(), analyzer);
+        }
+        boostAndQueryNameToXContent(builder);
+        builder.endObject();
+    }
+
+    /**
+     * 解析查询.
+     *
+     * @param parser the parser
+     * @return the ictclas pos weighted query builder
+     * @throws IOException the io exception
+     */
+    public static IctclasPosWeightedQueryBuilder fromXContent(XContentParser parser) throws IOException {
+        String field = null;
+        String query = null;
+        Map<String, Float> weights = Map.of();
+        Float defaultWeight = null;
+        String analyzer = null;
+        float boost = DEFAULT_BOOST;
+        String queryName = null;
+        String currentFieldName = null;
+        XContentParser.Token token;
+        while ((token = parser.nextToken()) != XContentParser.Token.END_OBJECT) {
+            if (token == XContentParser.Token.FIELD_NAME) {
+                currentFieldName = parser.currentName();
+            } else if (token == XContentParser.Token.START_OBJECT) {
+                if (WEIGHTS_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    weights = parser.map(TreeMap::new, XContentParser::floatValue);
+                } else {
+                    throw new ParsingException(
+                            parser.getTokenLocation(), "[" + NAME + "] unknown object [" + currentFieldName + "]"
+                    );
+                }
+            } else if (token.isValue()) {
+                if (FIELD_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    field = parser.text();
+                } else if (QUERY_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    query = parser.text();
+                } else if (DEFAULT_WEIGHT_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    defaultWeight = parser.floatValue();
+                } else if (ANALYZER_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    analyzer = parser.text();
+                } else if (BOOST_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    boost = parser.floatValue();
+                } else if (NAME_FIELD.match(currentFieldName, parser.getDeprecationHandler())) {
+                    queryName = parser.text();
+                } else {
+                    throw new ParsingException(
+                            parser.getTokenLocation(), "[" + NAME + "] unknown field [" + currentFieldName + "]"
+                    );
+                }
+            } else {
+                throw new ParsingException(
+                        parser.getTokenLocation(), "[" + NAME + "] unexpected token [" + token + "]"
+                );
+            }
+        }
+        IctclasPosWeightedQueryBuilder builder;
+        try {
+            builder = new IctclasPosWeightedQueryBuilder(field, query, weights);
+            if (defaultWeight != null) {
+                builder.defaultWeight(defaultWeight);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ParsingException(parser.getTokenLocation(), e.getMessage(), e);
+        }
+        return builder.analyzer(analyzer).boost(boost).queryName(queryName);
+    }
+
+    @Override
+    protected Query doToQuery(SearchExecutionContext context) throws IOException {
+        MappedFieldType fieldType = context.getFieldType(field);
+        if (fieldType == null) {
+            return new MatchNoDocsQuery("unmapped field [" + field + "]");
+        }
+        if (!fieldType.getTextSearchInfo().hasPositions()) {
+            throw new IllegalArgumentException("[" + NAME + "] field [" + field + "] was indexed without position data");
+        }
+        Analyzer searchAnalyzer;
+        if (analyzer == null) {
+            searchAnalyzer = fieldType.getTextSearchInfo().getSearchAnalyzer();
+        } else {
+            searchAnalyzer = context.getIndexAnalyzers().get(analyzer);
+            if (searchAnalyzer == null) {
+                throw new IllegalArgumentException("[" + NAME + "] analyzer [" + analyzer + "] not found");
+            }
+        }
+        return toQuery(fieldType.name(), terms(searchAnalyzer, fieldType.name(), query), weights, defaultWeight);
+    }
+
+    /**
+     * 分析后的词, 去掉重复.
+     *
+     * @param analyzer the analyzer
+     * @param field    the field
+     * @param text     the text
+     * @return the set
+     * @throws IOException the io exception
+     */
+    static Set<BytesRef> terms(Analyzer analyzer, String field, String text) throws IOException {
+        Set<BytesRef> terms = new LinkedHashSet<>();
+        try (TokenStream stream = analyzer.tokenStream(field, text)) {
+            TermToBytesRefAttribute termAtt = stream.addAttribute(TermToBytesRefAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(BytesRef.deepCopyOf(termAtt.getBytesRef()));
+            }
+            stream.end();
+        }
+        return terms;
+    }
+
+    /**
+     * 每个词一个 {@link PayloadScoreQuery}, 任一词命中即可.
+     *
+     * @param field         the field
+     * @param terms         the terms
+     * @param weights       the weights
+     * @param defaultWeight the default weight
+     * @return the query
+     */
+    static Query toQuery(String field, Set<BytesRef> terms, Map<String, Float> weights, float defaultWeight) {
+        if (terms.isEmpty()) {
+            return new MatchNoDocsQuery("no terms in [" + NAME + "] query");
+        }
+        PosWeightDecoder decoder = new PosWeightDecoder(weights, defaultWeight);
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (BytesRef term : terms) {
+            Query query = new PayloadScoreQuery(
+                    new SpanTermQuery(new Term(field, term)), new MaxPayloadFunction(), decoder, true
+            );
+            if (terms.size() == 1) {
+                return query;
+            }
+            builder.add(query, BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    @Override
+    protected boolean doEquals(IctclasPosWeightedQueryBuilder other) {
+        return Objects.equals(field, other.field)
+                && Objects.equals(query, other.query)
+                && Objects.equals(weights, other.weights)
+                && Float.compare(defaultWeight, other.defaultWeight) == 0
+                && Objects.equals(analyzer, other.analyzer);
+    }
+
+    @Override
+    protected int doHashCode() {
+        return Objects.hash(field, query, weights, defaultWeight, analyzer);
+    }
+
+    @Override
+    public String getWriteableName() {
+        return NAME;
+    }
+
+    @Override
+    public Version getMinimalSupportedVersion() {
+        return Version.V_8_0_0;
+    }
+}
@@ -0,0 +1,68 @@
+package com.lingjoin.elasticsearch.query;
+
+import com.lingjoin.elasticsearch.index.PosTags;
+import org.apache.lucene.queries.payloads.PayloadDecoder;
+import org.apache.lucene.util.BytesRef;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 将 ictclas_pos_payload 写入的一字节词性 payload 解码为权重.
+ * <p>
+ * 权重按词性前缀配置, 多个前缀匹配时取最长的, 例如 {"n": 2, "nr": 3} 中 nr 为 3, ns 为 2.
+ * 没有 payload 或没有匹配的词性使用默认权重.
+ */
+public final class PosWeightDecoder implements PayloadDecoder {
+
+    // 下标为 payload 字节的无符号值
+    private final float[] weights = new float[256];
+    private final float defaultWeight;
+
+    /**
+     * Instantiates a new Pos weight decoder.
+     *
+     * @param weights       词性前缀对应的权重
+     * @param defaultWeight 默认权重
+     */
+    public PosWeightDecoder(Map<String, Float> weights, float defaultWeight) {
+        this.defaultWeight = defaultWeight;
+        Arrays.fill(this.weights, defaultWeight);
+        for (int code = PosTags.NONE + 1; code <= PosTags.builtinSize(); code++) {
+            String tag = PosTags.name(code);
+            int longest = -1;
+            for (Map.Entry<String, Float> entry : weights.entrySet()) {
+                String prefix = entry.getKey();
+                if (!prefix.isEmpty() && tag.startsWith(prefix) && prefix.length() > longest) {
+                    longest = prefix.length();
+                    this.weights[code] = entry.getValue();
+                }
+            }
+        }
+    }
+
+    @Override
+    public float computePayloadFactor(BytesRef payload) {
+        if (payload == null || payload.length == 0) {
+            return defaultWeight;
+        }
+        return weights[payload.bytes[payload.offset] & 0xFF];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PosWeightDecoder that = (PosWeightDecoder) o;
+        return Float.compare(that.defaultWeight, defaultWeight) == 0 && Arrays.equals(weights, that.weights);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Float.hashCode(defaultWeight) + Arrays.hashCode(weights);
+    }
+}
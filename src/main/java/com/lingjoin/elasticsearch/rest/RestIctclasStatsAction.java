@@ -0,0 +1,47 @@
+package com.lingjoin.elasticsearch.rest;
+
+import com.lingjoin.elasticsearch.index.IctclasNodeStats;
+import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.rest.RestRequest.Method.GET;
+
+/**
+ * 当前节点的分词统计.
+ * <p>
+ * GET /_ictclas/stats, 只返回接收请求的节点的统计. 响应按请求的格式输出, 支持 pretty, human 和 filter_path.
+ */
+public class RestIctclasStatsAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "ictclas_stats_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return List.of(new Route(GET, "/_ictclas/stats"));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String nodeId = client.getLocalNodeId();
+        // 只读取计数器, 直接在网络线程中返回
+        return channel -> {
+            XContentBuilder builder = channel.newBuilder();
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("node", nodeId);
+            body.putAll(IctclasNodeStats.snapshot(builder.humanReadable()));
+            builder.map(body);
+            channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+        };
+    }
+}
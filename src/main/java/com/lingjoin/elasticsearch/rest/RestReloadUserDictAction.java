@@ -0,0 +1,81 @@
+package com.lingjoin.elasticsearch.rest;
+
+import com.lingjoin.elasticsearch.index.IctclasTokenizer;
+import com.lingjoin.elasticsearch.index.UserDictionary;
+import org.elasticsearch.ResourceNotFoundException;
+import org.elasticsearch.client.internal.node.NodeClient;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.List;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+import static org.elasticsearch.rest.RestRequest.Method.POST;
+
+/**
+ * 重新加载当前节点的用户词典.
+ * <p>
+ * POST /_ictclas/user_dict/_reload, 只作用于接收请求的节点. 响应按请求的格式输出, 支持 pretty, human 和 filter_path.
+ */
+public class RestReloadUserDictAction extends BaseRestHandler {
+
+    @Override
+    public String getName() {
+        return "ictclas_reload_user_dict_action";
+    }
+
+    @Override
+    public List<Route> routes() {
+        return List.of(new Route(POST, "/_ictclas/user_dict/_reload"));
+    }
+
+    @Override
+    protected RestChannelConsumer prepareRequest(RestRequest request, NodeClient client) {
+        String nodeId = client.getLocalNodeId();
+        // 重新加载需要读取文件并持有写锁, 不在网络线程中执行
+        return channel -> client.threadPool().generic().execute(new AbstractRunnable() {
+            @Override
+            protected void doRun() throws Exception {
+                UserDictionary dictionary = IctclasTokenizer.getUserDictionary();
+                if (!dictionary.isConfigured()) {
+                    throw new ResourceNotFoundException("no user dictionary is configured or NLPIR is not initialized");
+                }
+                long start = System.nanoTime();
+                UserDictionary.ReloadResult result = dictionary.reload();
+                TimeValue took = TimeValue.timeValueNanos(System.nanoTime() - start);
+                XContentBuilder builder = channel.newBuilder();
+                builder.startObject();
+                builder.field("node", nodeId);
+                builder.field("path", dictionary.getPath().toString());
+                builder.field("mode", result.mode().toString());
+                builder.field("added", result.added());
+                builder.field("removed", result.removed());
+                builder.field("version", result.version());
+                builder.humanReadableField("took_millis", "took", took);
+                builder.endObject();
+                channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                sendFailure(channel, e);
+            }
+        });
+    }
+
+    private static void sendFailure(RestChannel channel, Exception e) {
+        try {
+            channel.sendResponse(new BytesRestResponse(channel, e));
+        } catch (IOException inner) {
+            inner.addSuppressed(e);
+            LOGGER.error("Failed to send user dict reload failure response", inner);
+        }
+    }
+}
@@ -2,7 +2,10 @@ package com.lingjoin.elasticsearch.util;
 
 import org.elasticsearch.SpecialPermission;
 
+import java.io.IOException;
 import java.security.PrivilegedAction;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
 
 /**
  * Copy code from <a href="https://github.com/elastic/elasticsearch/blob/master/plugins/discovery-gce/src/main/java/org/elasticsearch/cloud/gce/util/Access.java">elasticsearch repo</a>
@@ -23,4 +26,21 @@ public class Access {
         SpecialPermission.check();
         return java.security.AccessController.doPrivileged(operation);
     }
+
+    /**
+     * Do privilege action which may throw IOException.
+     *
+     * @param <T>       the type parameter
+     * @param operation the operation
+     * @return the t
+     * @throws IOException the io exception
+     */
+    public static <T> T doPrivilegedIOException(final PrivilegedExceptionAction<T> operation) throws IOException {
+        SpecialPermission.check();
+        try {
+            return java.security.AccessController.doPrivileged(operation);
+        } catch (final PrivilegedActionException e) {
+            throw (IOException) e.getCause();
+        }
+    }
 }
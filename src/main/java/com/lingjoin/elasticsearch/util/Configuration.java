@@ -3,11 +3,16 @@ package com.lingjoin.elasticsearch.util;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.core.TimeValue;
 import org.elasticsearch.env.Environment;
 
 import java.beans.ConstructorProperties;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 /**
  * The type Configuration.
@@ -17,6 +22,25 @@ public class Configuration {
     private final String licenseCode;
     private final String userDict;
     private final boolean overWrite;
+    private final SearchCache searchCache;
+    private final NativeConcurrency nativeConcurrency;
+    private final boolean directBinding;
+    private final Startup startup;
+    private final UserDictReload userDictReload;
+    private final SlowLog slowLog;
+    private final SegmentationMemo segmentationMemo;
+    private final SentenceCache sentenceCache;
+    private final Fallback fallback;
+    private final Workers workers;
+    private final Engine engine;
+    private final boolean compiledUserDict;
+    private final DataProfile dataProfile;
+
+    // 已加载的配置, 同一个配置文件只解析一次
+    private static volatile Loaded loaded;
+
+    private record Loaded(Path path, Configuration configuration) {
+    }
 
     /**
      * Instantiates a new Configuration.
@@ -24,12 +48,47 @@ public class Configuration {
      * @param licenseCode licenseCode
      * @param userDict    userDict 用户词典名称
      * @param overWrite   overWrite 是否覆盖用户词典
+     * @param searchCache       searchCache 搜索分词缓存配置
+     * @param nativeConcurrency nativeConcurrency NLPIR 调用并发限制配置
+     * @param directBinding     directBinding 是否使用 direct mapping 方式调用分词, 默认开启
+     * @param startup           startup 节点启动时的初始化与预热配置
+     * @param userDictReload    userDictReload 用户词典重新加载配置
+     * @param slowLog           slowLog 分词慢日志配置
+     * @param segmentationMemo  segmentationMemo 粗粒度分词复用细粒度结果的配置
+     * @param sentenceCache     sentenceCache 按句分词缓存配置
+     * @param fallback          fallback 输入超出限制或 NLPIR 不可用时使用 Java 分词的配置
+     * @param workers           workers 在独立进程中运行 NLPIR 的配置
+     * @param engine            engine 分词引擎配置
+     * @param compiledUserDict  compiledUserDict 是否保存编译后的用户词典, 词典没有变化时启动不再导入, 默认开启
+     * @param dataProfile       dataProfile NLPIR 加载的数据集配置
      */
-    @ConstructorProperties({"licenseCode", "userDict", "overWrite"})
-    public Configuration(String licenseCode, String userDict, boolean overWrite) {
+    @ConstructorProperties({
+            "licenseCode", "userDict", "overWrite", "searchCache", "nativeConcurrency", "directBinding", "startup",
+            "userDictReload", "slowLog", "segmentationMemo", "sentenceCache", "fallback", "workers", "engine",
+            "compiledUserDict", "dataProfile"
+    })
+    public Configuration(
+            String licenseCode, String userDict, boolean overWrite, SearchCache searchCache,
+            NativeConcurrency nativeConcurrency, Boolean directBinding, Startup startup, UserDictReload userDictReload,
+            SlowLog slowLog, SegmentationMemo segmentationMemo, SentenceCache sentenceCache, Fallback fallback,
+            Workers workers, Engine engine, Boolean compiledUserDict, DataProfile dataProfile
+    ) {
         this.licenseCode = licenseCode;
         this.userDict = userDict;
         this.overWrite = overWrite;
+        this.searchCache = Optional.ofNullable(searchCache).orElseGet(SearchCache::getDefault);
+        this.nativeConcurrency = Optional.ofNullable(nativeConcurrency).orElseGet(NativeConcurrency::getDefault);
+        this.directBinding = Optional.ofNullable(directBinding).orElse(true);
+        this.startup = Optional.ofNullable(startup).orElseGet(Startup::getDefault);
+        this.userDictReload = Optional.ofNullable(userDictReload).orElseGet(UserDictReload::getDefault);
+        this.slowLog = Optional.ofNullable(slowLog).orElseGet(SlowLog::getDefault);
+        this.segmentationMemo = Optional.ofNullable(segmentationMemo).orElseGet(SegmentationMemo::getDefault);
+        this.sentenceCache = Optional.ofNullable(sentenceCache).orElseGet(SentenceCache::getDefault);
+        this.fallback = Optional.ofNullable(fallback).orElseGet(Fallback::getDefault);
+        this.workers = Optional.ofNullable(workers).orElseGet(Workers::getDefault);
+        this.engine = Optional.ofNullable(engine).orElseGet(Engine::getDefault);
+        this.compiledUserDict = Optional.ofNullable(compiledUserDict).orElse(true);
+        this.dataProfile = Optional.ofNullable(dataProfile).orElseGet(DataProfile::getDefault);
     }
 
     /**
@@ -59,8 +118,125 @@ public class Configuration {
         return overWrite;
     }
 
+    /**
+     * Gets search cache.
+     *
+     * @return the search cache
+     */
+    public SearchCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * Gets native concurrency.
+     *
+     * @return the native concurrency
+     */
+    public NativeConcurrency getNativeConcurrency() {
+        return nativeConcurrency;
+    }
+
+    /**
+     * Is direct binding boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isDirectBinding() {
+        return directBinding;
+    }
+
+    /**
+     * Is compiled user dict boolean.
+     *
+     * @return the boolean
+     */
+    public boolean isCompiledUserDict() {
+        return compiledUserDict;
+    }
+
+    /**
+     * Gets data profile.
+     *
+     * @return the data profile
+     */
+    public DataProfile getDataProfile() {
+        return dataProfile;
+    }
+
+    /**
+     * Gets startup.
+     *
+     * @return the startup
+     */
+    public Startup getStartup() {
+        return startup;
+    }
+
+    /**
+     * Gets user dict reload.
+     *
+     * @return the user dict reload
+     */
+    public UserDictReload getUserDictReload() {
+        return userDictReload;
+    }
+
+    /**
+     * Gets slow log.
+     *
+     * @return the slow log
+     */
+    public SlowLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * Gets segmentation memo.
+     *
+     * @return the segmentation memo
+     */
+    public SegmentationMemo getSegmentationMemo() {
+        return segmentationMemo;
+    }
+
+    /**
+     * Gets sentence cache.
+     *
+     * @return the sentence cache
+     */
+    public SentenceCache getSentenceCache() {
+        return sentenceCache;
+    }
+
+    /**
+     * Gets fallback.
+     *
+     * @return the fallback
+     */
+    public Fallback getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Gets workers.
+     *
+     * @return the workers
+     */
+    public Workers getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Gets engine.
+     *
+     * @return the engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
     private static Configuration getDefaultConfiguration() {
-        return new Configuration("", "", false);
+        return new Configuration("", "", false, null, null, null, null, null, null, null, null, null, null, null, null, null);
     }
 
     /**
@@ -71,6 +247,16 @@ public class Configuration {
      */
     public static Configuration getConfiguration(Environment environment) {
         Path config = Configuration.getPluginPath(environment).resolve("config.yml");
+        Loaded current = loaded;
+        if (current != null && current.path().equals(config)) {
+            return current.configuration();
+        }
+        Configuration configuration = readConfiguration(config);
+        loaded = new Loaded(config, configuration);
+        return configuration;
+    }
+
+    private static Configuration readConfiguration(Path config) {
         ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
         return Access.doPrivileged(() -> {
             try {
@@ -83,7 +269,6 @@ public class Configuration {
                 return Configuration.getDefaultConfiguration();
             }
         });
-
     }
 
     /**
@@ -107,4 +292,768 @@ public class Configuration {
         return environment.pluginsFile().resolve(IctclasAnalysisPlugin.PLUGIN_NAME);
     }
 
-}
\ No newline at end of file
+    /**
+     * 搜索分词缓存配置, 对应 config.yml 中的 searchCache.
+     */
+    public static class SearchCache {
+        private final boolean enabled;
+        private final long maxEntries;
+        private final ByteSizeValue maxWeight;
+        private final TimeValue expireAfterAccess;
+        private final int maxTextLength;
+
+        /**
+         * Instantiates a new Search cache.
+         *
+         * @param enabled           enabled 是否开启缓存
+         * @param maxEntries        maxEntries 最大缓存条数
+         * @param maxWeight         maxWeight 最大占用内存, 如 32mb
+         * @param expireAfterAccess expireAfterAccess 未被访问的过期时间, 如 1h, 0 表示不过期
+         * @param maxTextLength     maxTextLength 可被缓存的最大文本长度
+         */
+        @ConstructorProperties({"enabled", "maxEntries", "maxWeight", "expireAfterAccess", "maxTextLength"})
+        public SearchCache(Boolean enabled, Long maxEntries, String maxWeight, String expireAfterAccess, Integer maxTextLength) {
+            this.enabled = Optional.ofNullable(enabled).orElse(true);
+            this.maxEntries = Optional.ofNullable(maxEntries).orElse(10_000L);
+            this.maxWeight = ByteSizeValue.parseBytesSizeValue(
+                    Optional.ofNullable(maxWeight).orElse("32mb"), "searchCache.maxWeight"
+            );
+            this.expireAfterAccess = TimeValue.parseTimeValue(
+                    Optional.ofNullable(expireAfterAccess).orElse("1h"), "searchCache.expireAfterAccess"
+            );
+            this.maxTextLength = Optional.ofNullable(maxTextLength).orElse(128);
+        }
+
+        private static SearchCache getDefault() {
+            return new SearchCache(null, null, null, null, null);
+        }
+
+        /**
+         * Is enabled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEnabled() {
+            return enabled && maxEntries > 0 && maxWeight.getBytes() > 0;
+        }
+
+        /**
+         * Gets max entries.
+         *
+         * @return the max entries
+         */
+        public long getMaxEntries() {
+            return maxEntries;
+        }
+
+        /**
+         * Gets max weight.
+         *
+         * @return the max weight
+         */
+        public ByteSizeValue getMaxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * Gets expire after access.
+         *
+         * @return the expire after access
+         */
+        public TimeValue getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        /**
+         * Gets max text length.
+         *
+         * @return the max text length
+         */
+        public int getMaxTextLength() {
+            return maxTextLength;
+        }
+    }
+
+    /**
+     * NLPIR 分词调用的并发限制配置, 对应 config.yml 中的 nativeConcurrency.
+     */
+    public static class NativeConcurrency {
+
+        /**
+         * 等待许可超时后的处理方式.
+         */
+        public enum OnTimeout {
+            /**
+             * 不再等待许可, 直接调用
+             */
+            PROCEED,
+            /**
+             * 拒绝本次分词, 抛出 EsRejectedExecutionException, 请求返回 429
+             */
+            REJECT,
+            /**
+             * 跳过本次分词, 不产生任何 token
+             */
+            SKIP
+        }
+
+        private final int maxConcurrentCalls;
+        private final boolean fair;
+        private final TimeValue acquireTimeout;
+        private final OnTimeout onTimeout;
+
+        /**
+         * Instantiates a new Native concurrency.
+         *
+         * @param maxConcurrentCalls maxConcurrentCalls 同时进行的最大调用数, 0 表示不限制
+         * @param fair               fair 是否按等待顺序获取许可
+         * @param acquireTimeout     acquireTimeout 等待许可的超时时间
+         * @param onTimeout          onTimeout 超时后的处理方式: proceed, reject, skip
+         */
+        @ConstructorProperties({"maxConcurrentCalls", "fair", "acquireTimeout", "onTimeout"})
+        public NativeConcurrency(Integer maxConcurrentCalls, Boolean fair, String acquireTimeout, String onTimeout) {
+            this.maxConcurrentCalls = Optional.ofNullable(maxConcurrentCalls).orElse(0);
+            this.fair = Optional.ofNullable(fair).orElse(false);
+            this.acquireTimeout = TimeValue.parseTimeValue(
+                    Optional.ofNullable(acquireTimeout).orElse("30s"), "nativeConcurrency.acquireTimeout"
+            );
+            this.onTimeout = OnTimeout.valueOf(
+                    Optional.ofNullable(onTimeout).orElse("proceed").toUpperCase(Locale.ROOT)
+            );
+        }
+
+        private static NativeConcurrency getDefault() {
+            return new NativeConcurrency(null, null, null, null);
+        }
+
+        /**
+         * Gets max concurrent calls.
+         *
+         * @return the max concurrent calls
+         */
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        /**
+         * Is fair boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isFair() {
+            return fair;
+        }
+
+        /**
+         * Gets acquire timeout.
+         *
+         * @return the acquire timeout
+         */
+        public TimeValue getAcquireTimeout() {
+            return acquireTimeout;
+        }
+
+        /**
+         * Gets on timeout.
+         *
+         * @return the on timeout
+         */
+        public OnTimeout getOnTimeout() {
+            return onTimeout;
+        }
+    }
+
+    /**
+     * 节点启动时的初始化与预热配置, 对应 config.yml 中的 startup.
+     */
+    public static class Startup {
+        private final boolean eager;
+        private final TimeValue readyTimeout;
+        private final String warmupCorpus;
+        private final int warmupIterations;
+
+        /**
+         * Instantiates a new Startup.
+         *
+         * @param eager            eager 是否在节点启动时后台初始化, 否则在第一次分词时初始化
+         * @param readyTimeout     readyTimeout 分词器等待初始化完成的最长时间
+         * @param warmupCorpus     warmupCorpus 预热语料文件, 相对于插件目录, 每行一段文本, 为空时不预热
+         * @param warmupIterations warmupIterations 预热语料的重复次数
+         */
+        @ConstructorProperties({"eager", "readyTimeout", "warmupCorpus", "warmupIterations"})
+        public Startup(Boolean eager, String readyTimeout, String warmupCorpus, Integer warmupIterations) {
+            this.eager = Optional.ofNullable(eager).orElse(true);
+            this.readyTimeout = TimeValue.parseTimeValue(
+                    Optional.ofNullable(readyTimeout).orElse("30s"), "startup.readyTimeout"
+            );
+            this.warmupCorpus = Optional.ofNullable(warmupCorpus).orElse("");
+            this.warmupIterations = Optional.ofNullable(warmupIterations).orElse(1);
+        }
+
+        private static Startup getDefault() {
+            return new Startup(null, null, null, null);
+        }
+
+        /**
+         * Is eager boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEager() {
+            return eager;
+        }
+
+        /**
+         * Gets ready timeout.
+         *
+         * @return the ready timeout
+         */
+        public TimeValue getReadyTimeout() {
+            return readyTimeout;
+        }
+
+        /**
+         * Gets warmup corpus.
+         *
+         * @return the warmup corpus
+         */
+        public String getWarmupCorpus() {
+            return warmupCorpus;
+        }
+
+        /**
+         * Gets warmup iterations.
+         *
+         * @return the warmup iterations
+         */
+        public int getWarmupIterations() {
+            return warmupIterations;
+        }
+    }
+
+    /**
+     * 用户词典重新加载配置, 对应 config.yml 中的 userDictReload.
+     */
+    public static class UserDictReload {
+        private final boolean watch;
+        private final int maxIncrementalChanges;
+
+        /**
+         * Instantiates a new User dict reload.
+         *
+         * @param watch                 watch 是否监听词典文件变化并自动重新加载
+         * @param maxIncrementalChanges maxIncrementalChanges 变化的词条超过该数量时重新导入整个词典
+         */
+        @ConstructorProperties({"watch", "maxIncrementalChanges"})
+        public UserDictReload(Boolean watch, Integer maxIncrementalChanges) {
+            this.watch = Optional.ofNullable(watch).orElse(true);
+            this.maxIncrementalChanges = Optional.ofNullable(maxIncrementalChanges).orElse(1000);
+        }
+
+        private static UserDictReload getDefault() {
+            return new UserDictReload(null, null);
+        }
+
+        /**
+         * Is watch boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isWatch() {
+            return watch;
+        }
+
+        /**
+         * Gets max incremental changes.
+         *
+         * @return the max incremental changes
+         */
+        public int getMaxIncrementalChanges() {
+            return maxIncrementalChanges;
+        }
+    }
+
+    /**
+     * 分词慢日志配置, 对应 config.yml 中的 slowLog.
+     */
+    public static class SlowLog {
+        private final boolean enabled;
+        private final TimeValue threshold;
+        private final int maxChars;
+        private final int maxPerSecond;
+
+        /**
+         * Instantiates a new Slow log.
+         *
+         * @param enabled      enabled 是否开启, 默认关闭
+         * @param threshold    threshold 分词耗时超过该值时记录
+         * @param maxChars     maxChars 记录的输入文本最大长度
+         * @param maxPerSecond maxPerSecond 每秒最多记录的条数
+         */
+        @ConstructorProperties({"enabled", "threshold", "maxChars", "maxPerSecond"})
+        public SlowLog(Boolean enabled, String threshold, Integer maxChars, Integer maxPerSecond) {
+            this.enabled = Optional.ofNullable(enabled).orElse(false);
+            this.threshold = TimeValue.parseTimeValue(
+                    Optional.ofNullable(threshold).orElse("500ms"), "slowLog.threshold"
+            );
+            this.maxChars = Optional.ofNullable(maxChars).orElse(200);
+            this.maxPerSecond = Optional.ofNullable(maxPerSecond).orElse(10);
+        }
+
+        private static SlowLog getDefault() {
+            return new SlowLog(null, null, null, null);
+        }
+
+        /**
+         * Is enabled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        /**
+         * Gets threshold.
+         *
+         * @return the threshold
+         */
+        public TimeValue getThreshold() {
+            return threshold;
+        }
+
+        /**
+         * Gets max chars.
+         *
+         * @return the max chars
+         */
+        public int getMaxChars() {
+            return maxChars;
+        }
+
+        /**
+         * Gets max per second.
+         *
+         * @return the max per second
+         */
+        public int getMaxPerSecond() {
+            return maxPerSecond;
+        }
+    }
+
+    /**
+     * 粗粒度分词复用同一线程中细粒度分词结果的配置, 对应 config.yml 中的 segmentationMemo.
+     */
+    public static class SegmentationMemo {
+        private final boolean enabled;
+        private final int maxTextLength;
+
+        /**
+         * Instantiates a new Segmentation memo.
+         *
+         * @param enabled       enabled 是否开启, 默认关闭
+         * @param maxTextLength maxTextLength 每个线程保留的最大文本长度
+         */
+        @ConstructorProperties({"enabled", "maxTextLength"})
+        public SegmentationMemo(Boolean enabled, Integer maxTextLength) {
+            this.enabled = Optional.ofNullable(enabled).orElse(false);
+            this.maxTextLength = Optional.ofNullable(maxTextLength).orElse(65536);
+        }
+
+        private static SegmentationMemo getDefault() {
+            return new SegmentationMemo(null, null);
+        }
+
+        /**
+         * Is enabled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEnabled() {
+            return enabled && maxTextLength > 0;
+        }
+
+        /**
+         * Gets max text length.
+         *
+         * @return the max text length
+         */
+        public int getMaxTextLength() {
+            return maxTextLength;
+        }
+    }
+
+    /**
+     * 按句分词缓存配置, 对应 config.yml 中的 sentenceCache.
+     */
+    public static class SentenceCache {
+        private final boolean enabled;
+        private final ByteSizeValue maxWeight;
+        private final TimeValue expireAfterAccess;
+        private final int minTextLength;
+        private final int maxSentenceLength;
+
+        /**
+         * Instantiates a new Sentence cache.
+         *
+         * @param enabled           enabled 是否开启, 默认关闭
+         * @param maxWeight         maxWeight 最大占用内存, 如 64mb
+         * @param expireAfterAccess expireAfterAccess 未被访问的过期时间, 0 表示不过期
+         * @param minTextLength     minTextLength 文本长度达到该值时才按句缓存
+         * @param maxSentenceLength maxSentenceLength 超过该长度的句子不缓存
+         */
+        @ConstructorProperties({"enabled", "maxWeight", "expireAfterAccess", "minTextLength", "maxSentenceLength"})
+        public SentenceCache(
+                Boolean enabled, String maxWeight, String expireAfterAccess, Integer minTextLength, Integer maxSentenceLength
+        ) {
+            this.enabled = Optional.ofNullable(enabled).orElse(false);
+            this.maxWeight = ByteSizeValue.parseBytesSizeValue(
+                    Optional.ofNullable(maxWeight).orElse("64mb"), "sentenceCache.maxWeight"
+            );
+            this.expireAfterAccess = TimeValue.parseTimeValue(
+                    Optional.ofNullable(expireAfterAccess).orElse("0"), "sentenceCache.expireAfterAccess"
+            );
+            this.minTextLength = Optional.ofNullable(minTextLength).orElse(256);
+            this.maxSentenceLength = Optional.ofNullable(maxSentenceLength).orElse(1024);
+        }
+
+        private static SentenceCache getDefault() {
+            return new SentenceCache(null, null, null, null, null);
+        }
+
+        /**
+         * Is enabled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEnabled() {
+            return enabled && maxWeight.getBytes() > 0;
+        }
+
+        /**
+         * Gets max weight.
+         *
+         * @return the max weight
+         */
+        public ByteSizeValue getMaxWeight() {
+            return maxWeight;
+        }
+
+        /**
+         * Gets expire after access.
+         *
+         * @return the expire after access
+         */
+        public TimeValue getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        /**
+         * Gets min text length.
+         *
+         * @return the min text length
+         */
+        public int getMinTextLength() {
+            return minTextLength;
+        }
+
+        /**
+         * Gets max sentence length.
+         *
+         * @return the max sentence length
+         */
+        public int getMaxSentenceLength() {
+            return maxSentenceLength;
+        }
+    }
+
+    /**
+     * 输入超出限制或 NLPIR 不可用时使用 Java 分词的配置, 对应 config.yml 中的 fallback.
+     * <p>
+     * timeBudget 只让分析线程不再等待, 超时的 NLPIR 调用无法中断, 结束前仍持有并发许可和用户词典读锁.
+     */
+    public static class Fallback {
+        private final int maxChars;
+        private final TimeValue timeBudget;
+        private final boolean onUnavailable;
+
+        /**
+         * Instantiates a new Fallback.
+         *
+         * @param maxChars      maxChars 超过该长度的输入 (或窗口) 使用 Java 分词, 0 表示不限制
+         * @param timeBudget    timeBudget 单次 NLPIR 调用的最长等待时间, 超时后使用 Java 分词, 0 表示不限制
+         * @param onUnavailable onUnavailable NLPIR 不可用时是否使用 Java 分词, 默认关闭, 创建分词器时抛出异常
+         */
+        @ConstructorProperties({"maxChars", "timeBudget", "onUnavailable"})
+        public Fallback(Integer maxChars, String timeBudget, Boolean onUnavailable) {
+            this.maxChars = Optional.ofNullable(maxChars).orElse(0);
+            this.timeBudget = TimeValue.parseTimeValue(
+                    Optional.ofNullable(timeBudget).orElse("0"), "fallback.timeBudget"
+            );
+            this.onUnavailable = Optional.ofNullable(onUnavailable).orElse(false);
+        }
+
+        private static Fallback getDefault() {
+            return new Fallback(null, null, null);
+        }
+
+        /**
+         * Gets max chars.
+         *
+         * @return the max chars
+         */
+        public int getMaxChars() {
+            return maxChars;
+        }
+
+        /**
+         * Gets time budget.
+         *
+         * @return the time budget
+         */
+        public TimeValue getTimeBudget() {
+            return timeBudget;
+        }
+
+        /**
+         * Is on unavailable boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isOnUnavailable() {
+            return onUnavailable;
+        }
+    }
+
+    /**
+     * plugin-security.policy 中允许读写的 ring 文件目录, 相对于 Elasticsearch 的临时目录
+     */
+    public static final String GRANTED_WORKERS = "ictclas-workers";
+    /**
+     * plugin-security.policy 中允许读写的生成数据目录, 相对于 Elasticsearch 的临时目录
+     */
+    public static final String GRANTED_DATA = "ictclas-data";
+
+    // 安全策略只对临时目录下的固定目录授权, 其他目录在访问时才会因为没有权限失败, 因此在读取配置时拒绝
+    private static String granted(String directory, String granted, String setting) {
+        Path path = Path.of(directory).normalize();
+        if (path.isAbsolute() || !path.startsWith(granted)) {
+            throw new IllegalArgumentException(
+                    "[" + setting + "] must be [" + granted + "] or a directory inside it, got [" + directory + "]"
+            );
+        }
+        return directory;
+    }
+
+    /**
+     * 在独立进程中运行 NLPIR 的配置, 对应 config.yml 中的 workers.
+     * <p>
+     * 分词进程由 bin/ictclas-worker 启动, 插件通过目录中的 worker-N.ring 文件与其通信.
+     */
+    public static class Workers {
+        private final boolean enabled;
+        private final String directory;
+        private final int count;
+        private final TimeValue requestTimeout;
+        private final TimeValue healthTimeout;
+
+        /**
+         * Instantiates a new Workers.
+         *
+         * @param enabled        enabled 是否开启, 默认关闭, 开启后节点内不再加载 NLPIR
+         * @param directory      directory ring 文件所在目录, 相对于 Elasticsearch 的临时目录, 只能是 ictclas-workers 或其子目录
+         * @param count          count 分词进程数
+         * @param requestTimeout requestTimeout 单个请求的最长等待时间
+         * @param healthTimeout  healthTimeout 心跳超过该时间未更新的进程视为不可用
+         */
+        @ConstructorProperties({"enabled", "directory", "count", "requestTimeout", "healthTimeout"})
+        public Workers(Boolean enabled, String directory, Integer count, String requestTimeout, String healthTimeout) {
+            this.enabled = Optional.ofNullable(enabled).orElse(false);
+            this.directory = granted(Optional.ofNullable(directory).orElse(GRANTED_WORKERS), GRANTED_WORKERS, "workers.directory");
+            this.count = Optional.ofNullable(count).orElse(2);
+            this.requestTimeout = TimeValue.parseTimeValue(
+                    Optional.ofNullable(requestTimeout).orElse("10s"), "workers.requestTimeout"
+            );
+            this.healthTimeout = TimeValue.parseTimeValue(
+                    Optional.ofNullable(healthTimeout).orElse("2s"), "workers.healthTimeout"
+            );
+        }
+
+        private static Workers getDefault() {
+            return new Workers(null, null, null, null, null);
+        }
+
+        /**
+         * Is enabled boolean.
+         *
+         * @return the boolean
+         */
+        public boolean isEnabled() {
+            return enabled && count > 0;
+        }
+
+        /**
+         * Gets directory.
+         *
+         * @return the directory
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Gets count.
+         *
+         * @return the count
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Gets request timeout.
+         *
+         * @return the request timeout
+         */
+        public TimeValue getRequestTimeout() {
+            return requestTimeout;
+        }
+
+        /**
+         * Gets health timeout.
+         *
+         * @return the health timeout
+         */
+        public TimeValue getHealthTimeout() {
+            return healthTimeout;
+        }
+    }
+
+    /**
+     * 分词引擎配置, 对应 config.yml 中的 engine.
+     */
+    public static class Engine {
+
+        /**
+         * 分词引擎类型.
+         */
+        public enum Type {
+            /**
+             * NLPIR, 开启 workers 时在独立进程中运行
+             */
+            NLPIR,
+            /**
+             * 纯 Java 的词典分词, 按词表正向最大匹配
+             */
+            DICTIONARY
+        }
+
+        private final Type type;
+        private final String dictionary;
+
+        /**
+         * Instantiates a new Engine.
+         *
+         * @param type       type 引擎类型: nlpir, dictionary
+         * @param dictionary dictionary dictionary 引擎的词表, 相对于插件目录, 为空时所有汉字单独成词
+         */
+        @ConstructorProperties({"type", "dictionary"})
+        public Engine(String type, String dictionary) {
+            this.type = Type.valueOf(Optional.ofNullable(type).orElse("nlpir").toUpperCase(Locale.ROOT));
+            this.dictionary = Optional.ofNullable(dictionary).filter(path -> !path.isBlank()).orElse(null);
+        }
+
+        private static Engine getDefault() {
+            return new Engine(null, null);
+        }
+
+        /**
+         * Gets type.
+         *
+         * @return the type
+         */
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * Gets dictionary.
+         *
+         * @return the dictionary
+         */
+        public String getDictionary() {
+            return dictionary;
+        }
+    }
+
+    /**
+     * NLPIR 加载的数据集配置, 对应 config.yml 中的 dataProfile.
+     * <p>
+     * segmentation 在临时目录中生成只包含分词所需数据的 Data 目录, 减少 NLPIR 的内存占用和初始化时间.
+     */
+    public static class DataProfile {
+
+        /**
+         * 数据集.
+         */
+        public enum Profile {
+            /**
+             * 插件目录中的全部数据
+             */
+            FULL,
+            /**
+             * 去掉情感分析, 英文命名实体, 拼写纠错, 拼音, BIG5 和文档模板等分词用不到的数据
+             */
+            SEGMENTATION
+        }
+
+        private final Profile profile;
+        private final String directory;
+        private final List<String> exclude;
+
+        /**
+         * Instantiates a new Data profile.
+         *
+         * @param profile   profile 数据集: full, segmentation
+         * @param directory directory 生成的数据目录, 相对于 Elasticsearch 的临时目录, 只能是 ictclas-data 或其子目录
+         * @param exclude   exclude segmentation 额外去掉的 Data 目录下的文件, glob 格式
+         */
+        @ConstructorProperties({"profile", "directory", "exclude"})
+        public DataProfile(String profile, String directory, List<String> exclude) {
+            this.profile = Profile.valueOf(Optional.ofNullable(profile).orElse("full").toUpperCase(Locale.ROOT));
+            this.directory = granted(Optional.ofNullable(directory).orElse(GRANTED_DATA), GRANTED_DATA, "dataProfile.directory");
+            this.exclude = Optional.ofNullable(exclude).map(List::copyOf).orElse(List.of());
+        }
+
+        private static DataProfile getDefault() {
+            return new DataProfile(null, null, null);
+        }
+
+        /**
+         * Gets profile.
+         *
+         * @return the profile
+         */
+        public Profile getProfile() {
+            return profile;
+        }
+
+        /**
+         * Gets directory.
+         *
+         * @return the directory
+         */
+        public String getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Gets exclude.
+         *
+         * @return the list
+         */
+        public List<String> getExclude() {
+            return exclude;
+        }
+    }
+}
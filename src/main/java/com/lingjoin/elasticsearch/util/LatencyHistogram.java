@@ -0,0 +1,150 @@
+package com.lingjoin.elasticsearch.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁的耗时直方图, 以微秒为单位按 2 的幂分桶.
+ * <p>
+ * 第 0 个桶记录小于 1 微秒的耗时, 第 i 个桶记录 [2^(i-1), 2^i) 微秒的耗时, 最后一个桶记录其余全部.
+ */
+public final class LatencyHistogram {
+
+    /**
+     * 桶的数量, 最后一个桶的下界约为 36 分钟
+     */
+    public static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Instantiates a new Latency histogram.
+     */
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次耗时.
+     *
+     * @param nanos the nanos
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        buckets[bucket(micros)].increment();
+        count.increment();
+        sumNanos.add(Math.max(0, nanos));
+        maxNanos.accumulate(nanos);
+    }
+
+    static int bucket(long micros) {
+        return Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * 第 i 个桶的上界 (不包含), 单位微秒.
+     *
+     * @param bucket the bucket
+     * @return the long
+     */
+    public static long upperBoundMicros(int bucket) {
+        return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * 获取当前的快照.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, count.sum(), sumNanos.sum(), maxNanos.get());
+    }
+
+    /**
+     * 直方图快照.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumNanos;
+        private final long maxNanos;
+
+        private Snapshot(long[] counts, long count, long sumNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.sumNanos = sumNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * 记录次数.
+         *
+         * @return the long
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 总耗时, 单位纳秒.
+         *
+         * @return the long
+         */
+        public long getSumNanos() {
+            return sumNanos;
+        }
+
+        /**
+         * 最大耗时, 单位纳秒.
+         *
+         * @return the long
+         */
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        /**
+         * 各个桶的次数.
+         *
+         * @return the long [ ]
+         */
+        public long[] getCounts() {
+            return counts.clone();
+        }
+
+        /**
+         * 估算百分位数, 返回所在桶的上界, 单位微秒.
+         *
+         * @param percentile 0 ~ 100
+         * @return the long
+         */
+        public long percentileMicros(double percentile) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(100, Math.max(0, percentile)) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(1, rank)) {
+                    return upperBoundMicros(i);
+                }
+            }
+            return upperBoundMicros(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.lingjoin.elasticsearch.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 进程的常驻内存, 用于估计 NLPIR 加载数据后的本地内存占用. 只支持 Linux.
+ */
+public final class NativeMemory {
+
+    private static final Path STATUS = Path.of("/proc/self/status");
+
+    private NativeMemory() {
+    }
+
+    /**
+     * 当前进程的常驻内存 (VmRSS).
+     *
+     * @return 字节数, 无法读取时返回 -1
+     */
+    public static long residentBytes() {
+        try {
+            List<String> lines = Access.doPrivilegedIOException(
+                    () -> Files.readAllLines(STATUS, StandardCharsets.US_ASCII)
+            );
+            return parse(lines);
+        } catch (IOException | SecurityException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 解析 /proc/self/status 中的 VmRSS.
+     *
+     * @param lines the lines
+     * @return 字节数, 没有 VmRSS 时返回 -1
+     */
+    static long parse(List<String> lines) {
+        for (String line : lines) {
+            if (line.startsWith("VmRSS:")) {
+                String value = line.substring("VmRSS:".length()).strip();
+                int unit = value.indexOf(' ');
+                try {
+                    return Long.parseLong(unit < 0 ? value : value.substring(0, unit)) * 1024;
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+}
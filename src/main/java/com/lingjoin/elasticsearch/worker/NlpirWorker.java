@@ -0,0 +1,222 @@
+package com.lingjoin.elasticsearch.worker;
+
+import com.lingjoin.nlpir.IctclasDirect;
+import com.lingjoin.nlpir.IctclasNative;
+import org.elasticsearch.core.SuppressForbidden;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 在 Elasticsearch 之外运行 NLPIR 的分词进程.
+ * <p>
+ * 每个进程创建一个 {@link RingFile}, 单线程依次处理各个槽位中的请求, 另有一个线程定期写入心跳.
+ * 进程退出或崩溃后由 bin/ictclas-worker 重新启动, 重新启动时 generation 加一, 等待中的请求会失败并由客户端重试或回退.
+ * <pre>
+ * java -cp "plugins/analysis-ictclas/*:lib/*" com.lingjoin.elasticsearch.worker.NlpirWorker \
+ *     --ring tmp/ictclas-workers/worker-0.ring --data plugins/analysis-ictclas
+ * </pre>
+ */
+public final class NlpirWorker implements Runnable {
+
+    /**
+     * 心跳间隔
+     */
+    static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+
+    private static final int DEFAULT_SLOTS = 16;
+    private static final int DEFAULT_SLOT_SIZE = 1 << 20;
+
+    /**
+     * 分词方法, 返回 NLPIR 输出的 UTF-8 字节, 失败时返回 null.
+     */
+    @FunctionalInterface
+    interface Segmenter {
+        /**
+         * Segment.
+         *
+         * @param text        the text
+         * @param fineSegment the fine segment
+         * @return 从 position 到 limit 为结果, 在下次调用前有效
+         */
+        ByteBuffer segment(String text, boolean fineSegment);
+    }
+
+    private final RingFile ring;
+    private final Segmenter segmenter;
+    private volatile boolean running = true;
+    private byte[] input = new byte[4096];
+
+    /**
+     * Instantiates a new Nlpir worker.
+     *
+     * @param ring      the ring
+     * @param segmenter the segmenter
+     */
+    NlpirWorker(RingFile ring, Segmenter segmenter) {
+        this.ring = ring;
+        this.segmenter = segmenter;
+    }
+
+    /**
+     * 处理请求直到 {@link #stop()}.
+     */
+    @Override
+    public void run() {
+        int idle = 0;
+        while (running) {
+            boolean worked = false;
+            for (int slot = 0; slot < ring.slots(); slot++) {
+                if (ring.state(slot) == RingFile.REQUEST
+                        && ring.compareAndSetState(slot, RingFile.REQUEST, RingFile.PROCESSING)) {
+                    process(slot);
+                    worked = true;
+                }
+            }
+            idle = worked ? 0 : idle + 1;
+            if (!worked) {
+                RingFile.backoff(idle);
+            }
+        }
+    }
+
+    /**
+     * 写入一次心跳.
+     */
+    void heartbeat() {
+        ring.heartbeat(System.currentTimeMillis());
+    }
+
+    /**
+     * 停止处理请求.
+     */
+    void stop() {
+        running = false;
+    }
+
+    private void process(int slot) {
+        int length = ring.length(slot);
+        if (input.length < length) {
+            input = new byte[Math.max(length, input.length * 2)];
+        }
+        ring.read(slot, input);
+        String text = new String(input, 0, length, StandardCharsets.UTF_8);
+        boolean fineSegment = (ring.flags(slot) & RingFile.FLAG_FINE_SEGMENT) != 0;
+        int state = RingFile.FAILED;
+        try {
+            ByteBuffer result = segmenter.segment(text, fineSegment);
+            if (result == null) {
+                ring.writeLength(slot, 0);
+            } else if (result.remaining() > ring.capacity()) {
+                // 结果放不下时告知所需的大小, 需要增大 --slot-size
+                ring.writeLength(slot, result.remaining());
+            } else {
+                ring.write(
+                        slot, ring.ticket(slot), ring.flags(slot),
+                        result.array(), result.arrayOffset() + result.position(), result.remaining()
+                );
+                state = RingFile.RESPONSE;
+            }
+        } catch (RuntimeException e) {
+            log("segmentation failed: " + e);
+            ring.writeLength(slot, 0);
+        }
+        // 客户端已经超时放弃时直接释放槽位
+        if (!ring.compareAndSetState(slot, RingFile.PROCESSING, state)) {
+            ring.setState(slot, RingFile.FREE);
+        }
+    }
+
+    /**
+     * 启动分词进程.
+     *
+     * @param args --ring, --data 必须, --license, --user-dict, --overwrite, --slots, --slot-size, --direct 可选
+     * @throws IOException the io exception
+     */
+    @SuppressForbidden(reason = "standalone process reports errors on stderr and exits with a status")
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = parse(args);
+        if (!options.containsKey("ring") || !options.containsKey("data")) {
+            log("usage: NlpirWorker --ring <file> --data <dir> [--license <code>] [--user-dict <file>] [--overwrite]"
+                    + " [--slots <n>] [--slot-size <bytes>] [--direct]");
+            System.exit(2);
+        }
+        if (!IctclasNative.INSTANCE.NLPIR_Init(options.get("data"), 1, options.getOrDefault("license", ""))) {
+            log("NLPIR init failed: " + IctclasNative.INSTANCE.NLPIR_GetLastErrorMsg());
+            System.exit(1);
+        }
+        String userDict = options.get("user-dict");
+        if (userDict != null && !userDict.isEmpty()) {
+            int imported = IctclasNative.INSTANCE.NLPIR_ImportUserDict(userDict, flag(options, "overwrite"));
+            log("imported " + imported + " user words from " + userDict);
+        }
+        Segmenter segmenter = flag(options, "direct") && IctclasDirect.isAvailable() ? direct() : jna();
+        RingFile ring = RingFile.create(
+                Path.of(options.get("ring")),
+                Integer.parseInt(options.getOrDefault("slots", String.valueOf(DEFAULT_SLOTS))),
+                Integer.parseInt(options.getOrDefault("slot-size", String.valueOf(DEFAULT_SLOT_SIZE))),
+                ProcessHandle.current().pid()
+        );
+        NlpirWorker worker = new NlpirWorker(ring, segmenter);
+        Thread heartbeat = new Thread(() -> {
+            while (true) {
+                worker.heartbeat();
+                try {
+                    Thread.sleep(HEARTBEAT_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "ictclas-worker-heartbeat");
+        heartbeat.setDaemon(true);
+        heartbeat.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(worker::stop));
+        log("serving " + ring.slots() + " slots on " + ring.path() + ", generation " + ring.generation());
+        worker.run();
+    }
+
+    private static Segmenter direct() {
+        return (text, fineSegment) -> {
+            IctclasDirect.Utf8Result result = IctclasDirect.tokenize(text, fineSegment);
+            return ByteBuffer.wrap(result.bytes(), 0, result.length());
+        };
+    }
+
+    private static Segmenter jna() {
+        return (text, fineSegment) -> {
+            String result = IctclasNative.INSTANCE.NLPIR_Tokenizer4IR(text, fineSegment);
+            return result == null ? null : ByteBuffer.wrap(result.getBytes(StandardCharsets.UTF_8));
+        };
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("unexpected argument: " + args[i]);
+            }
+            String name = args[i].substring(2);
+            if (i + 1 < args.length && !args[i + 1].startsWith("--")) {
+                options.put(name, args[++i]);
+            } else {
+                options.put(name, "");
+            }
+        }
+        return options;
+    }
+
+    // 只写选项名时为 true
+    private static boolean flag(Map<String, String> options, String name) {
+        String value = options.get(name);
+        return value != null && (value.isEmpty() || Boolean.parseBoolean(value));
+    }
+
+    @SuppressForbidden(reason = "standalone process reports errors on stderr and exits with a status")
+    private static void log(String message) {
+        System.err.println("[ictclas-worker " + ProcessHandle.current().pid() + "] " + message);
+    }
+}
@@ -0,0 +1,343 @@
+package com.lingjoin.elasticsearch.worker;
+
+import com.lingjoin.elasticsearch.util.Access;
+import org.elasticsearch.core.SuppressForbidden;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分词进程与 Elasticsearch 之间共享的内存映射文件.
+ * <p>
+ * 文件头之后是固定数量, 固定大小的槽位, 每个槽位同时只承载一个请求, 多个槽位即可流水线处理多个请求:
+ * <pre>
+ * 文件头 (64 字节): magic, layout, slots, slotSize, heartbeat, generation, pid
+ * 槽位: state, length, ticket, flags, 之后为 UTF-8 的输入或 NLPIR 输出
+ * </pre>
+ * 槽位状态只通过 CAS 修改: 客户端 FREE → CLAIMED → REQUEST, 分词进程 REQUEST → PROCESSING → RESPONSE / FAILED,
+ * 客户端读取后 → FREE. 客户端超时后把 PROCESSING 改为 ABANDONED, 分词进程处理完后将其释放.
+ * 分词进程每次启动时 generation 加一并释放所有槽位. 映射完成后即关闭文件.
+ * 客户端访问映射前通过 {@link #acquire()} 增加引用, 最后一个引用 {@link #release()} 后立即解除映射,
+ * 分词进程重新启动后旧的映射不必等到 GC 回收; 无法解除映射时仍由 GC 回收.
+ */
+final class RingFile {
+
+    /**
+     * 文件头 magic, "NLPR"
+     */
+    static final int MAGIC = 0x4E4C5052;
+    /**
+     * 文件布局版本
+     */
+    static final int LAYOUT = 1;
+
+    static final int HEADER_SIZE = 64;
+    static final int SLOT_HEADER_SIZE = 24;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LAYOUT_OFFSET = 4;
+    private static final int SLOTS_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 12;
+    private static final int HEARTBEAT_OFFSET = 16;
+    private static final int GENERATION_OFFSET = 24;
+    private static final int PID_OFFSET = 32;
+
+    private static final int STATE_OFFSET = 0;
+    private static final int LENGTH_OFFSET = 4;
+    private static final int TICKET_OFFSET = 8;
+    private static final int FLAGS_OFFSET = 16;
+
+    static final int FREE = 0;
+    static final int CLAIMED = 1;
+    static final int REQUEST = 2;
+    static final int PROCESSING = 3;
+    static final int RESPONSE = 4;
+    static final int FAILED = 5;
+    static final int ABANDONED = 6;
+
+    /**
+     * 请求标志: 细粒度分词
+     */
+    static final int FLAG_FINE_SEGMENT = 1;
+
+    // 轮询时先自旋, 之后每次休眠 POLL_NANOS
+    private static final int SPIN_ROUNDS = 200;
+    private static final long POLL_NANOS = 50_000;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONG = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    // sun.misc.Unsafe#invokeCleaner, 不可用时为 null
+    private static final MethodHandle CLEANER = Access.doPrivileged(RingFile::cleaner);
+
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int slots;
+    private final int slotSize;
+    // 创建或打开时的一个引用属于持有该文件的一方
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    private RingFile(Path path, MappedByteBuffer buffer, int slots, int slotSize) {
+        this.path = path;
+        this.buffer = buffer;
+        this.slots = slots;
+        this.slotSize = slotSize;
+    }
+
+    /**
+     * 分词进程创建或重新初始化文件, generation 加一, 所有槽位置为 FREE.
+     *
+     * @param path     the path
+     * @param slots    槽位数
+     * @param slotSize 每个槽位的字节数, 8 的倍数
+     * @param pid      分词进程的 pid
+     * @return the ring file
+     * @throws IOException the io exception
+     */
+    static RingFile create(Path path, int slots, int slotSize, long pid) throws IOException {
+        if (slots <= 0 || slotSize <= SLOT_HEADER_SIZE || slotSize % 8 != 0) {
+            throw new IllegalArgumentException("invalid ring layout: slots=" + slots + ", slotSize=" + slotSize);
+        }
+        long size = HEADER_SIZE + (long) slots * slotSize;
+        long generation = 0;
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+        )) {
+            if (channel.size() >= HEADER_SIZE) {
+                MappedByteBuffer old = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if (old.order(ByteOrder.nativeOrder()).getInt(MAGIC_OFFSET) == MAGIC) {
+                    generation = old.getLong(GENERATION_OFFSET);
+                }
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        buffer.order(ByteOrder.nativeOrder());
+        RingFile ring = new RingFile(path, buffer, slots, slotSize);
+        // 先使旧的客户端看到 magic 失效, 重置槽位后再写入新的文件头
+        INT.setVolatile(buffer, MAGIC_OFFSET, 0);
+        for (int slot = 0; slot < slots; slot++) {
+            INT.setVolatile(buffer, ring.slotOffset(slot) + STATE_OFFSET, FREE);
+        }
+        buffer.putInt(LAYOUT_OFFSET, LAYOUT);
+        buffer.putInt(SLOTS_OFFSET, slots);
+        buffer.putInt(SLOT_SIZE_OFFSET, slotSize);
+        buffer.putLong(PID_OFFSET, pid);
+        LONG.setVolatile(buffer, HEARTBEAT_OFFSET, System.currentTimeMillis());
+        LONG.setVolatile(buffer, GENERATION_OFFSET, generation + 1);
+        INT.setVolatile(buffer, MAGIC_OFFSET, MAGIC);
+        return ring;
+    }
+
+    /**
+     * 客户端打开分词进程已经创建的文件.
+     *
+     * @param path the path
+     * @return the ring file
+     * @throws IOException 文件不存在或不是有效的 ring 文件
+     */
+    static RingFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException("ring file " + path + " is not initialized");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(LAYOUT_OFFSET) != LAYOUT) {
+                throw new IOException("ring file " + path + " has an unknown layout");
+            }
+            int slots = header.getInt(SLOTS_OFFSET);
+            int slotSize = header.getInt(SLOT_SIZE_OFFSET);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) slots * slotSize);
+            buffer.order(ByteOrder.nativeOrder());
+            return new RingFile(path, buffer, slots, slotSize);
+        }
+    }
+
+    @SuppressForbidden(reason = "unmap ring files of restarted workers instead of waiting for GC")
+    private static MethodHandle cleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 增加一个引用, 释放前映射不会被解除.
+     *
+     * @return 已经解除映射时返回 false
+     */
+    boolean acquire() {
+        while (true) {
+            int current = references.get();
+            if (current <= 0) {
+                return false;
+            }
+            if (references.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放一个引用, 最后一个引用释放后解除映射, 之后不能再访问.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0 && CLEANER != null) {
+            try {
+                CLEANER.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable e) {
+                // 由 GC 回收
+            }
+        }
+    }
+
+    private int slotOffset(int slot) {
+        return HEADER_SIZE + slot * slotSize;
+    }
+
+    /**
+     * Gets path.
+     *
+     * @return the path
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * 槽位数.
+     *
+     * @return the int
+     */
+    int slots() {
+        return slots;
+    }
+
+    /**
+     * 每个槽位可以存放的最大字节数.
+     *
+     * @return the int
+     */
+    int capacity() {
+        return slotSize - SLOT_HEADER_SIZE;
+    }
+
+    /**
+     * 文件头是否有效, 分词进程重新初始化期间无效.
+     *
+     * @return the boolean
+     */
+    boolean isValid() {
+        return (int) INT.getVolatile(buffer, MAGIC_OFFSET) == MAGIC;
+    }
+
+    long heartbeat() {
+        return (long) LONG.getVolatile(buffer, HEARTBEAT_OFFSET);
+    }
+
+    void heartbeat(long millis) {
+        LONG.setVolatile(buffer, HEARTBEAT_OFFSET, millis);
+    }
+
+    long generation() {
+        return (long) LONG.getVolatile(buffer, GENERATION_OFFSET);
+    }
+
+    long pid() {
+        return buffer.getLong(PID_OFFSET);
+    }
+
+    int state(int slot) {
+        return (int) INT.getVolatile(buffer, slotOffset(slot) + STATE_OFFSET);
+    }
+
+    boolean compareAndSetState(int slot, int expected, int state) {
+        return INT.compareAndSet(buffer, slotOffset(slot) + STATE_OFFSET, expected, state);
+    }
+
+    void setState(int slot, int state) {
+        INT.setVolatile(buffer, slotOffset(slot) + STATE_OFFSET, state);
+    }
+
+    long ticket(int slot) {
+        return buffer.getLong(slotOffset(slot) + TICKET_OFFSET);
+    }
+
+    int flags(int slot) {
+        return buffer.getInt(slotOffset(slot) + FLAGS_OFFSET);
+    }
+
+    int length(int slot) {
+        return buffer.getInt(slotOffset(slot) + LENGTH_OFFSET);
+    }
+
+    /**
+     * 写入槽位内容, 调用方需要持有该槽位 (CLAIMED 或 PROCESSING).
+     *
+     * @param slot   the slot
+     * @param ticket the ticket
+     * @param flags  the flags
+     * @param bytes  the bytes
+     * @param offset the offset
+     * @param length the length
+     */
+    void write(int slot, long ticket, int flags, byte[] bytes, int offset, int length) {
+        int slotOffset = slotOffset(slot);
+        buffer.putLong(slotOffset + TICKET_OFFSET, ticket);
+        buffer.putInt(slotOffset + FLAGS_OFFSET, flags);
+        buffer.putInt(slotOffset + LENGTH_OFFSET, length);
+        buffer.put(slotOffset + SLOT_HEADER_SIZE, bytes, offset, length);
+    }
+
+    /**
+     * 写入结果长度, 用于 FAILED 时告知所需的大小.
+     *
+     * @param slot   the slot
+     * @param length the length
+     */
+    void writeLength(int slot, int length) {
+        buffer.putInt(slotOffset(slot) + LENGTH_OFFSET, length);
+    }
+
+    /**
+     * 读取槽位内容.
+     *
+     * @param slot   the slot
+     * @param target 长度不小于 {@link #length(int)}
+     */
+    void read(int slot, byte[] target) {
+        buffer.get(slotOffset(slot) + SLOT_HEADER_SIZE, target, 0, length(slot));
+    }
+
+    /**
+     * 轮询等待槽位状态变化, 前 {@link #SPIN_ROUNDS} 轮自旋, 之后短暂休眠.
+     *
+     * @param round 已等待的轮数
+     */
+    static void backoff(int round) {
+        if (round < SPIN_ROUNDS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(POLL_NANOS);
+        }
+    }
+}
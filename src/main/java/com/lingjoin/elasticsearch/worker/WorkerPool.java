@@ -0,0 +1,388 @@
+package com.lingjoin.elasticsearch.worker;
+
+import com.lingjoin.elasticsearch.util.Access;
+import com.lingjoin.elasticsearch.util.Configuration;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.lingjoin.elasticsearch.index.IctclasAnalysisPlugin.LOGGER;
+
+/**
+ * 通过内存映射文件把分词请求交给 {@link NlpirWorker} 进程.
+ * <p>
+ * 每个分词进程对应目录下的 worker-N.ring. 请求按轮询选择心跳未超时的进程, 在其中占用一个空闲槽位写入输入后等待结果,
+ * 同一进程的多个槽位可以同时排队. 进程重新启动 (generation 变化) 后重新映射文件, 等待中的请求失败.
+ * 等待期间心跳超过 healthTimeout 未更新时请求立即失败并释放槽位, 不会等到 requestTimeout.
+ * Elasticsearch 的系统调用过滤不允许插件创建进程, 分词进程由 bin/ictclas-worker 启动和重启.
+ */
+public final class WorkerPool {
+
+    private static final ThreadLocal<Response> RESPONSES = ThreadLocal.withInitial(Response::new);
+
+    private final Worker[] workers;
+    private final long requestTimeoutNanos;
+    private final long healthTimeoutMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong tickets = new AtomicLong();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder restarts = new LongAdder();
+
+    /**
+     * Instantiates a new Worker pool.
+     *
+     * @param directory           ring 文件所在目录
+     * @param count               分词进程数
+     * @param requestTimeoutNanos 单个请求的最长等待时间
+     * @param healthTimeoutMillis 心跳超过该时间未更新的进程视为不可用
+     */
+    WorkerPool(Path directory, int count, long requestTimeoutNanos, long healthTimeoutMillis) {
+        this.workers = new Worker[count];
+        for (int i = 0; i < count; i++) {
+            workers[i] = new Worker(directory.resolve("worker-" + i + ".ring"));
+        }
+        this.requestTimeoutNanos = requestTimeoutNanos;
+        this.healthTimeoutMillis = healthTimeoutMillis;
+    }
+
+    /**
+     * 根据配置创建, 未开启时返回 null.
+     *
+     * @param configuration the configuration
+     * @param tmpDirectory  Elasticsearch 的临时目录, 相对路径相对于该目录
+     * @return the worker pool
+     */
+    public static WorkerPool create(Configuration.Workers configuration, Path tmpDirectory) {
+        if (!configuration.isEnabled()) {
+            return null;
+        }
+        return new WorkerPool(
+                tmpDirectory.resolve(configuration.getDirectory()),
+                configuration.getCount(),
+                configuration.getRequestTimeout().nanos(),
+                configuration.getHealthTimeout().millis()
+        );
+    }
+
+    /**
+     * 是否有可用的分词进程.
+     *
+     * @return the boolean
+     */
+    public boolean isAvailable() {
+        return healthyWorkers() > 0;
+    }
+
+    /**
+     * 心跳未超时的分词进程数.
+     *
+     * @return the int
+     */
+    public int healthyWorkers() {
+        long now = System.currentTimeMillis();
+        int healthy = 0;
+        for (Worker worker : workers) {
+            RingFile ring = worker.ring(now);
+            if (ring != null) {
+                ring.release();
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    /**
+     * 分词, 返回 NLPIR 输出的 UTF-8 字节.
+     *
+     * @param text        the text
+     * @param fineSegment the fine segment
+     * @return 当前线程复用的结果, 在下次调用前有效, 失败或超时时返回 null
+     */
+    public Response segment(String text, boolean fineSegment) {
+        requests.increment();
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        long deadline = System.nanoTime() + requestTimeoutNanos;
+        int round = 0;
+        while (true) {
+            boolean available = false;
+            long now = System.currentTimeMillis();
+            for (int attempt = 0; attempt < workers.length; attempt++) {
+                Worker worker = workers[Math.floorMod(next.getAndIncrement(), workers.length)];
+                RingFile ring = worker.ring(now);
+                if (ring == null) {
+                    continue;
+                }
+                available = true;
+                try {
+                    if (input.length > ring.capacity()) {
+                        LOGGER.warn(
+                                "Input of {} bytes exceeds the worker slot capacity of {} bytes",
+                                input.length,
+                                ring.capacity()
+                        );
+                        failures.increment();
+                        return null;
+                    }
+                    int slot = claim(ring);
+                    if (slot >= 0) {
+                        return call(worker, ring, slot, input, fineSegment, deadline);
+                    }
+                } finally {
+                    ring.release();
+                }
+            }
+            if (!available) {
+                failures.increment();
+                return null;
+            }
+            // 所有槽位都在使用中, 等待空闲槽位
+            if (System.nanoTime() - deadline > 0) {
+                timeouts.increment();
+                return null;
+            }
+            RingFile.backoff(round++);
+        }
+    }
+
+    private static int claim(RingFile ring) {
+        for (int slot = 0; slot < ring.slots(); slot++) {
+            if (ring.state(slot) == RingFile.FREE && ring.compareAndSetState(slot, RingFile.FREE, RingFile.CLAIMED)) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private Response call(Worker worker, RingFile ring, int slot, byte[] input, boolean fineSegment, long deadline) {
+        long generation = ring.generation();
+        long ticket = tickets.incrementAndGet();
+        ring.write(slot, ticket, fineSegment ? RingFile.FLAG_FINE_SEGMENT : 0, input, 0, input.length);
+        ring.setState(slot, RingFile.REQUEST);
+        int round = 0;
+        while (true) {
+            // 进程重新启动后槽位已被重置, 可能已被其他请求占用, 不再修改
+            if (ring.generation() != generation || !ring.isValid()) {
+                failures.increment();
+                return null;
+            }
+            int state = ring.state(slot);
+            if (state == RingFile.RESPONSE || state == RingFile.FAILED) {
+                if (ring.ticket(slot) != ticket) {
+                    failures.increment();
+                    return null;
+                }
+                int length = ring.length(slot);
+                if (state == RingFile.FAILED) {
+                    ring.setState(slot, RingFile.FREE);
+                    if (length > ring.capacity()) {
+                        LOGGER.warn(
+                                "Worker result of {} bytes exceeds the slot capacity of {} bytes", length, ring.capacity()
+                        );
+                    }
+                    failures.increment();
+                    return null;
+                }
+                Response response = RESPONSES.get();
+                response.ensureCapacity(length);
+                ring.read(slot, response.bytes);
+                response.length = length;
+                ring.setState(slot, RingFile.FREE);
+                return response;
+            }
+            long heartbeat = ring.heartbeat();
+            if (System.currentTimeMillis() - heartbeat > healthTimeoutMillis) {
+                // 进程已退出但尚未重新启动, 不再等到 requestTimeout
+                if (release(ring, slot)) {
+                    worker.markUnhealthy(heartbeat);
+                    LOGGER.warn("NLPIR worker {} stopped sending heartbeats, request failed", worker.path);
+                    failures.increment();
+                    return null;
+                }
+                continue;
+            }
+            if (System.nanoTime() - deadline > 0) {
+                if (release(ring, slot)) {
+                    timeouts.increment();
+                    return null;
+                }
+                continue;
+            }
+            RingFile.backoff(round++);
+        }
+    }
+
+    // 尚未开始处理时直接释放, 处理中时由分词进程在完成后或重新启动时释放; 都失败说明结果刚好写入, 应继续读取
+    private static boolean release(RingFile ring, int slot) {
+        return ring.compareAndSetState(slot, RingFile.REQUEST, RingFile.FREE)
+                || ring.compareAndSetState(slot, RingFile.PROCESSING, RingFile.ABANDONED);
+    }
+
+    /**
+     * 分词进程数.
+     *
+     * @return the int
+     */
+    public int getCount() {
+        return workers.length;
+    }
+
+    /**
+     * 请求数.
+     *
+     * @return the long
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * 失败的请求数, 包括没有可用进程, 进程重新启动, 等待期间心跳超时和结果超出槽位大小.
+     *
+     * @return the long
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * 超时的请求数.
+     *
+     * @return the long
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 观察到的分词进程重新启动次数.
+     *
+     * @return the long
+     */
+    public long getRestarts() {
+        return restarts.sum();
+    }
+
+    /**
+     * 分词进程的结果, UTF-8 字节.
+     */
+    public static final class Response {
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        /**
+         * The bytes, only the first {@link #length()} bytes are valid.
+         *
+         * @return the byte [ ]
+         */
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * Number of valid bytes.
+         *
+         * @return the int
+         */
+        public int length() {
+            return length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = new byte[Math.max(capacity, bytes.length * 2)];
+            }
+        }
+    }
+
+    /**
+     * 一个分词进程的 ring 文件, 文件不存在时在每个 healthTimeout 内最多尝试打开一次.
+     */
+    private final class Worker {
+        private final Path path;
+        private volatile RingFile ring;
+        private volatile long generation;
+        private volatile long nextOpen;
+        // 请求等待期间发现心跳超时时的心跳, 心跳更新前不再选择该进程
+        private volatile long unhealthyHeartbeat = Long.MIN_VALUE;
+
+        private Worker(Path path) {
+            this.path = path;
+        }
+
+        void markUnhealthy(long heartbeat) {
+            unhealthyHeartbeat = heartbeat;
+        }
+
+        /**
+         * 进程可用时返回已经 {@link RingFile#acquire()} 的 ring 文件, 使用后需要释放, 否则返回 null.
+         */
+        RingFile ring(long now) {
+            RingFile current = acquireCurrent();
+            if (current == null || current.generation() != generation) {
+                if (current != null) {
+                    current.release();
+                }
+                current = reopen(now);
+            }
+            if (current == null) {
+                return null;
+            }
+            long heartbeat = current.heartbeat();
+            if (!current.isValid() || heartbeat == unhealthyHeartbeat || now - heartbeat > healthTimeoutMillis) {
+                current.release();
+                return null;
+            }
+            return current;
+        }
+
+        private RingFile acquireCurrent() {
+            while (true) {
+                RingFile current = ring;
+                // 获取失败说明已被重新映射的文件替换
+                if (current == null || current.acquire()) {
+                    return current;
+                }
+            }
+        }
+
+        // 进程重新启动后槽位数和大小可能变化, 重新映射; 旧映射在仍在使用的请求结束后解除
+        private synchronized RingFile reopen(long now) {
+            RingFile current = ring;
+            if (current != null && current.generation() == generation) {
+                return current.acquire() ? current : null;
+            }
+            if (current != null && !current.isValid()) {
+                // 进程正在重新初始化文件
+                return null;
+            }
+            if (current == null && now < nextOpen) {
+                return null;
+            }
+            try {
+                RingFile opened = Access.doPrivilegedIOException(() -> RingFile.open(path));
+                if (current != null) {
+                    restarts.increment();
+                    LOGGER.info(
+                            "NLPIR worker {} restarted, pid: {}, generation: {}", path, opened.pid(), opened.generation()
+                    );
+                }
+                generation = opened.generation();
+                ring = opened;
+                if (current != null) {
+                    current.release();
+                }
+                return opened.acquire() ? opened : null;
+            } catch (IOException | SecurityException e) {
+                nextOpen = now + healthTimeoutMillis;
+                LOGGER.debug("NLPIR worker {} is not available: {}", path, e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.lingjoin.nlpir;
+
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLibrary;
+import com.sun.jna.Pointer;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Direct mapped binding of NLPIR_Tokenizer4IR.
+ * <p>
+ * Unlike {@link IctclasNative}, calls are dispatched without reflection. The input is encoded as UTF-8 into a reusable
+ * per-thread native buffer, and the result is copied from native memory into a reusable per-thread byte array
+ * without building an intermediate {@link String}. It shares the library loaded by {@link IctclasNative}, so
+ * {@link IctclasNative#NLPIR_Init} must be called before using it.
+ */
+public final class IctclasDirect {
+
+    private static final boolean AVAILABLE;
+    private static final Throwable UNAVAILABLE_CAUSE;
+
+    static {
+        boolean available = false;
+        Throwable cause = null;
+        try {
+            Native.register(IctclasDirect.class, NativeLibrary.getInstance(IctclasNative.LIBRARY_NAME));
+            available = true;
+        } catch (Throwable e) {
+            cause = e;
+        }
+        AVAILABLE = available;
+        UNAVAILABLE_CAUSE = cause;
+    }
+
+    private static final ThreadLocal<Buffers> BUFFERS = ThreadLocal.withInitial(Buffers::new);
+
+    // 超过该大小的缓冲只用于当次调用, 不在线程中保留
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+
+    private IctclasDirect() {
+    }
+
+    private static native Pointer NLPIR_Tokenizer4IR(Pointer text, boolean bFineSegment);
+
+    /**
+     * Whether the direct binding has been registered.
+     *
+     * @return the boolean
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * The reason why the direct binding is unavailable.
+     *
+     * @return the throwable, null when available
+     */
+    public static Throwable getUnavailableCause() {
+        return UNAVAILABLE_CAUSE;
+    }
+
+    /**
+     * Nlpir tokenizer 4 ir, the json result is written as UTF-8 into the returned per-thread buffer.
+     * <p>
+     * The returned {@link Utf8Result} is reused by the next call on the same thread.
+     *
+     * @param text         the text
+     * @param bFineSegment the b fine segment
+     * @return the utf 8 result
+     */
+    public static Utf8Result tokenize(CharSequence text, boolean bFineSegment) {
+        Buffers buffers = BUFFERS.get();
+        Pointer input = buffers.encode(text);
+        Pointer output = NLPIR_Tokenizer4IR(input, bFineSegment);
+        Utf8Result result = buffers.result;
+        if (output == null) {
+            result.length = 0;
+            return result;
+        }
+        long length = output.indexOf(0, (byte) 0);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("NLPIR result is too large: " + length + " bytes");
+        }
+        result.ensureCapacity((int) length);
+        output.read(0, result.bytes, 0, (int) length);
+        result.length = (int) length;
+        return result;
+    }
+
+    /**
+     * UTF-8 bytes of a NLPIR result.
+     */
+    public static final class Utf8Result {
+        private byte[] bytes = new byte[1024];
+        private int length;
+
+        /**
+         * The bytes, only the first {@link #length()} bytes are valid.
+         *
+         * @return the byte [ ]
+         */
+        public byte[] bytes() {
+            return bytes;
+        }
+
+        /**
+         * Number of valid bytes.
+         *
+         * @return the int
+         */
+        public int length() {
+            return length;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (bytes.length < capacity) {
+                bytes = new byte[Math.max(capacity, bytes.length * 2)];
+            } else if (bytes.length > MAX_RETAINED_BYTES && capacity <= MAX_RETAINED_BYTES) {
+                bytes = new byte[Math.max(capacity, 1024)];
+            }
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class Buffers {
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private final Utf8Result result = new Utf8Result();
+        private Memory memory;
+        private ByteBuffer buffer;
+
+        private Pointer encode(CharSequence text) {
+            // UTF-8 每个 char 最多 3 个字节, 再加上结尾的 0
+            long capacity = (long) text.length() * 3 + 1;
+            Memory target = memory;
+            ByteBuffer targetBuffer = buffer;
+            if (capacity > MAX_RETAINED_BYTES) {
+                target = new Memory(capacity);
+                targetBuffer = target.getByteBuffer(0, capacity);
+            } else if (memory == null || memory.size() < capacity) {
+                memory = target = new Memory(Math.max(capacity, 4096));
+                buffer = targetBuffer = memory.getByteBuffer(0, memory.size());
+            }
+            targetBuffer.clear();
+            encoder.reset();
+            CoderResult coderResult = encoder.encode(CharBuffer.wrap(text), targetBuffer, true);
+            if (!coderResult.isUnderflow()) {
+                throw new IllegalStateException("Failed to encode input as UTF-8: " + coderResult);
+            }
+            encoder.flush(targetBuffer);
+            targetBuffer.put((byte) 0);
+            return target;
+        }
+    }
+}
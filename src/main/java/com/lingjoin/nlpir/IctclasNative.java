@@ -10,6 +10,11 @@ import java.io.IOException;
  */
 public interface IctclasNative extends Library {
 
+    /**
+     * The constant LIBRARY_NAME, extracted once so that every binding shares the same loaded library.
+     */
+    String LIBRARY_NAME = getLibraryName();
+
     /**
      * The constant INSTANCE.
      */
@@ -21,12 +26,21 @@ public interface IctclasNative extends Library {
      * @return the instance
      */
     static IctclasNative getInstance() {
+        return Native.load(LIBRARY_NAME, IctclasNative.class);
+    }
+
+    /**
+     * Gets library name, the library bundled in the plugin is preferred.
+     *
+     * @return the library name
+     */
+    static String getLibraryName() {
         String name = "NLPIR";
         try {
             name = Native.extractFromResourcePath(name, IctclasNative.class.getClassLoader()).getAbsolutePath();
         } catch (IOException ignored) {
         }
-        return Native.load(name, IctclasNative.class);
+        return name;
     }
 
     /**
@@ -56,6 +70,14 @@ public interface IctclasNative extends Library {
      */
     int NLPIR_AddUserWord(String userWord);
 
+    /**
+     * Nlpir del usr word int.
+     *
+     * @param sWord the s word
+     * @return the int, -1 when the word does not exist
+     */
+    int NLPIR_DelUsrWord(String sWord);
+
     /**
      * Nlpir import user dict int.
      *
@@ -65,6 +87,13 @@ public interface IctclasNative extends Library {
      */
     int NLPIR_ImportUserDict(String dictFileName, boolean bOverwrite);
 
+    /**
+     * Nlpir save the usr dic int, writes the current user dictionary to Data/UserDict.pdat.
+     *
+     * @return the int, 1 on success
+     */
+    int NLPIR_SaveTheUsrDic();
+
     /**
      * Nlpir get last error msg string.
      *
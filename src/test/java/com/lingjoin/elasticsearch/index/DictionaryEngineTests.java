@@ -0,0 +1,105 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class DictionaryEngineTests extends ESTestCase {
+
+    private static DictionaryEngine engine() {
+        return new DictionaryEngine(Map.of(
+                "中国科学院", "nt", "科学院", "n", "科学", "n", "中国", "ns",
+                "商务部", "nt", "商务", "n", "转发", "v"
+        ));
+    }
+
+    // 按 NLPIR 的输出解析, 同时检查偏移
+    private static List<String> segment(DictionaryEngine engine, String text, boolean fineSegment) {
+        BytesRef output = engine.segment(text, fineSegment);
+        TokenResults results = new TokenResults();
+        assertTrue(output.utf8ToString(), results.parse(output.bytes, output.offset, output.length));
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(text.substring(results.begin(i), results.end(i)), equalTo(results.text(i)));
+            tokens.add(results.posCode(i) == PosTags.NONE ? results.text(i) : results.text(i) + "/" + results.pos(i));
+        }
+        return tokens;
+    }
+
+    public void testMaximumMatching() {
+        DictionaryEngine engine = engine();
+        assertThat(segment(engine, "中国科学院转发", false), contains("中国科学院/nt", "转发/v"));
+        // 词表中没有的汉字单独成词, 中文标点的词性为 w
+        assertThat(segment(engine, "转发了，商务部", false), contains("转发/v", "了", "，/w", "商务部/nt"));
+        assertThat(segment(engine, "", false).size(), equalTo(0));
+    }
+
+    public void testFineSegment() {
+        DictionaryEngine engine = engine();
+        assertThat(
+                segment(engine, "中国科学院转发商务部", true),
+                contains("中国科学院/nt", "中国/ns", "科学院/n", "科学/n", "转发/v", "商务部/nt", "商务/n")
+        );
+    }
+
+    public void testMixedText() {
+        assertThat(segment(engine(), "商务部 iPhone 13 转发", false), contains("商务部/nt", "iPhone/x", "13/m", "转发/v"));
+    }
+
+    public void testDeterministic() {
+        DictionaryEngine engine = engine();
+        String text = "中国科学院转发商务部的通知。";
+        assertThat(segment(engine, text, true), equalTo(segment(engine, text, true)));
+        assertThat(engine.segment(text, false).utf8ToString(), equalTo(engine().segment(text, false).utf8ToString()));
+    }
+
+    public void testEscaping() {
+        List<String> tokens = segment(engine(), "转发\"商务部\"\\", false);
+        assertTrue(tokens.toString(), tokens.containsAll(List.of("转发/v", "商务部/nt")));
+    }
+
+    public void testUserWords() throws Exception {
+        DictionaryEngine engine = engine();
+        UserDictionary.NativeDictionary dictionary = engine.dictionary();
+        assertTrue(dictionary.addWord("科学院转发 n"));
+        assertThat(segment(engine, "中国科学院转发", false), contains("中国科学院/nt", "转发/v"));
+        assertThat(segment(engine, "科学院转发", false), contains("科学院转发/n"));
+        assertTrue(dictionary.deleteWord("中国科学院"));
+        assertThat(segment(engine, "中国科学院转发", false), contains("中国/ns", "科学院转发/n"));
+        assertFalse(dictionary.deleteWord("不存在"));
+        assertFalse(dictionary.addWord(" "));
+
+        Path file = createTempDir().resolve("userdict.txt");
+        Files.writeString(file, "中国科学院 nt\n", StandardCharsets.UTF_8);
+        // 覆盖导入时之前的用户词失效, 包括删除标记
+        assertTrue(dictionary.importDictionary(file.toString(), true));
+        assertThat(segment(engine, "中国科学院转发", false), contains("中国科学院/nt", "转发/v"));
+        assertFalse(dictionary.importDictionary(file.resolveSibling("missing.txt").toString(), false));
+    }
+
+    public void testLoad() throws Exception {
+        assertThat(segment(DictionaryEngine.load(null), "商务部", false), contains("商", "务", "部"));
+        Path file = createTempDir().resolve("words.txt");
+        Files.writeString(file, "商务部 nt\n商务\n", StandardCharsets.UTF_8);
+        assertThat(segment(DictionaryEngine.load(file), "商务部", true), contains("商务部/nt", "商务"));
+    }
+
+    public void testConfiguration() {
+        Configuration.Engine defaults = new Configuration.Engine(null, " ");
+        assertThat(defaults.getType(), equalTo(Configuration.Engine.Type.NLPIR));
+        assertThat(defaults.getDictionary(), nullValue());
+        assertThat(new Configuration.Engine("Dictionary", "words.txt").getType(),
+                equalTo(Configuration.Engine.Type.DICTIONARY));
+    }
+}
@@ -0,0 +1,60 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class FallbackSegmenterTests extends ESTestCase {
+
+    private static List<String> segment(String text) {
+        TokenResults results = new TokenResults();
+        FallbackSegmenter.segment(text, results);
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(text.substring(results.begin(i), results.end(i)), equalTo(results.text(i)));
+            texts.add(results.text(i));
+        }
+        return texts;
+    }
+
+    public void testBigrams() {
+        assertThat(segment("商务部"), contains("商务", "务部"));
+        assertThat(segment("商"), contains("商"));
+    }
+
+    public void testMixed() {
+        assertThat(segment("转发商务部，iPhone 13。好"), contains("转发", "发商", "商务", "务部", "，", "iPhone", "13", "。", "好"));
+        // 扩展区汉字占两个 char
+        assertThat(segment("𠀀中"), contains("𠀀中"));
+    }
+
+    public void testLongRepeatedInput() {
+        String text = "啊".repeat(100_000);
+        TokenResults results = new TokenResults();
+        FallbackSegmenter.segment(text, results);
+        assertThat(results.size(), equalTo(99_999));
+        assertThat(results.begin(99_998), equalTo(99_998));
+    }
+
+    public void testStats() {
+        SegmentationStats stats = new SegmentationStats();
+        stats.onFallback(FallbackSegmenter.Reason.TOO_LONG);
+        stats.onFallback(FallbackSegmenter.Reason.TOO_LONG);
+        stats.onFallback(FallbackSegmenter.Reason.UNAVAILABLE);
+        assertThat(stats.getFallbacks(FallbackSegmenter.Reason.TOO_LONG), equalTo(2L));
+        assertThat(stats.getFallbacks(FallbackSegmenter.Reason.TIMEOUT), equalTo(0L));
+        assertThat(stats.getFallbacks(FallbackSegmenter.Reason.UNAVAILABLE), equalTo(1L));
+    }
+
+    public void testDefaults() {
+        Configuration.Fallback fallback = new Configuration.Fallback(null, null, null);
+        assertThat(fallback.getMaxChars(), equalTo(0));
+        assertThat(fallback.getTimeBudget().nanos(), equalTo(0L));
+        assertFalse(fallback.isOnUnavailable());
+    }
+}
@@ -1,7 +1,11 @@
 package com.lingjoin.elasticsearch.index;
 
+import com.sun.management.ThreadMXBean;
 import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
 import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
 import org.elasticsearch.Version;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.common.settings.Settings;
@@ -14,10 +18,12 @@ import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.lang.management.ManagementFactory;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.Optional;
 
+import static org.apache.lucene.tests.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
 import static org.hamcrest.Matchers.*;
 
 public class IctclasAnalysisTests extends ESTestCase {
@@ -65,6 +71,105 @@ public class IctclasAnalysisTests extends ESTestCase {
         }
     }
 
+    public void testWindowedTokenization() throws IOException {
+        TestAnalysis analysis = createTestAnalysis(Settings.builder()
+                .put("index.analysis.tokenizer.ictclas_window.type", "ictclas_index")
+                .put("index.analysis.tokenizer.ictclas_window.window_size", 16)
+                .build());
+        String source = "一切有权力的人都容易滥用权力。这是一条千古不变的经验！国务院办公厅转发商务部";
+        Tokenizer whole = analysis.tokenizer.get("ictclas_index").create();
+        Tokenizer windowed = analysis.tokenizer.get("ictclas_window").create();
+        whole.setReader(new StringReader(source));
+        windowed.setReader(new StringReader(source));
+        assertSameTokens(whole, windowed);
+    }
+
+    public void testFastPath() throws IOException {
+        TestAnalysis analysis = createTestAnalysis(Settings.builder()
+                .put("index.analysis.tokenizer.ictclas_fast.type", "ictclas_index")
+                .put("index.analysis.tokenizer.ictclas_fast.fast_path_min_run", 8)
+                .build());
+        String source = "一切有权力的人都容易滥用权力，这是一条千古不变的经验";
+        Tokenizer whole = analysis.tokenizer.get("ictclas_index").create();
+        Tokenizer fast = analysis.tokenizer.get("ictclas_fast").create();
+        whole.setReader(new StringReader(source));
+        fast.setReader(new StringReader(source));
+        assertSameTokens(whole, fast);
+
+        Tokenizer english = analysis.tokenizer.get("ictclas_fast").create();
+        english.setReader(new StringReader("Order SF1409283374623 shipped, ETA 2022"));
+        assertSimpleTSOutput(english, new String[]{"Order", "SF1409283374623", "shipped", ",", "ETA", "2022"});
+
+        // 中文两侧的英文片段都超过 fast_path_min_run, 只有 [22, 33) 交给 NLPIR, 拼接后的偏移和位置增量与整体分词一致
+        Tokenizer mixed = analysis.tokenizer.get("ictclas_fast").create();
+        mixed.setReader(new StringReader("Order SF1409283374623 国务院办公厅转发商务部 shipped, ETA 2022"));
+        assertTokenStreamContents(
+                mixed,
+                new String[]{
+                        "Order", "SF1409283374623", "国务院办公厅", "国务院", "办公厅", "转发", "商务部", "shipped", ",", "ETA", "2022"
+                },
+                new int[]{0, 6, 22, 22, 25, 28, 30, 34, 41, 43, 47},
+                new int[]{5, 21, 28, 25, 28, 30, 33, 41, 42, 46, 51},
+                new int[]{1, 1, 1, 0, 0, 1, 1, 1, 1, 1, 1},
+                51
+        );
+    }
+
+    private static void assertSameTokens(TokenStream expected, TokenStream actual) throws IOException {
+        CharTermAttribute expectedTerm = expected.addAttribute(CharTermAttribute.class);
+        OffsetAttribute expectedOffset = expected.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute expectedPosition = expected.addAttribute(PositionIncrementAttribute.class);
+        CharTermAttribute actualTerm = actual.addAttribute(CharTermAttribute.class);
+        OffsetAttribute actualOffset = actual.addAttribute(OffsetAttribute.class);
+        PositionIncrementAttribute actualPosition = actual.addAttribute(PositionIncrementAttribute.class);
+        expected.reset();
+        actual.reset();
+        while (expected.incrementToken()) {
+            assertTrue("missing token " + expectedTerm, actual.incrementToken());
+            assertThat(actualTerm.toString(), equalTo(expectedTerm.toString()));
+            assertThat(actualOffset.startOffset(), equalTo(expectedOffset.startOffset()));
+            assertThat(actualOffset.endOffset(), equalTo(expectedOffset.endOffset()));
+            assertThat(actualPosition.getPositionIncrement(), equalTo(expectedPosition.getPositionIncrement()));
+        }
+        assertFalse("unexpected token " + actualTerm, actual.incrementToken());
+        expected.end();
+        actual.end();
+        assertThat(actualOffset.endOffset(), equalTo(expectedOffset.endOffset()));
+        expected.close();
+        actual.close();
+    }
+
+    public void testIncrementTokenDoesNotAllocate() throws IOException {
+        TestAnalysis analysis = createTestAnalysis();
+        NamedAnalyzer indexAnalyzer = analysis.indexAnalyzers.get("ictclas_index");
+        ThreadMXBean threadMXBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue("thread allocation accounting is unavailable", threadMXBean.isThreadAllocatedMemorySupported());
+        String source = "国务院办公厅转发商务部, 一切有权力的人都容易滥用权力，这是一条千古不变的经验";
+
+        long allocated = 0;
+        long tokens = 0;
+        for (int i = 0; i < 200; i++) {
+            try (TokenStream stream = indexAnalyzer.analyzer().tokenStream("text", source)) {
+                stream.reset();
+                // 只统计 incrementToken 的分配, reset 中包含 native 调用
+                long before = threadMXBean.getCurrentThreadAllocatedBytes();
+                int count = 0;
+                while (stream.incrementToken()) {
+                    count++;
+                }
+                long after = threadMXBean.getCurrentThreadAllocatedBytes();
+                stream.end();
+                // 前半部分用于预热
+                if (i >= 100) {
+                    allocated += after - before;
+                    tokens += count;
+                }
+            }
+        }
+        assertThat(tokens, greaterThan(0L));
+        assertThat("allocated " + allocated + " bytes for " + tokens + " tokens", allocated, lessThan(tokens));
+    }
+
     public static void assertSimpleTSOutput(TokenStream stream, String[] expected) throws IOException {
         stream.reset();
         CharTermAttribute termAttr = stream.getAttribute(CharTermAttribute.class);
@@ -78,6 +183,10 @@ public class IctclasAnalysisTests extends ESTestCase {
     }
 
     private TestAnalysis createTestAnalysis() throws IOException {
+        return createTestAnalysis(Settings.EMPTY);
+    }
+
+    private TestAnalysis createTestAnalysis(Settings extra) throws IOException {
         Path home = Optional.ofNullable(IctclasAnalysisTests.class.getResource("/plugins"))
                 .map(URL::getPath)
                 .map(Path::of)
@@ -86,6 +195,7 @@ public class IctclasAnalysisTests extends ESTestCase {
         Settings settings = Settings.builder()
                 .put(IndexMetadata.SETTING_VERSION_CREATED, Version.CURRENT)
                 .put(Environment.PATH_HOME_SETTING.getKey(), home)
+                .put(extra)
                 .build();
         return AnalysisTestsHelper.createTestAnalysisFromSettings(settings, new IctclasAnalysisPlugin());
     }
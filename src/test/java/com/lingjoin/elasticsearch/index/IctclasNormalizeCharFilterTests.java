@@ -0,0 +1,101 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.CharFilter;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class IctclasNormalizeCharFilterTests extends ESTestCase {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    // 按 NLPIR 的 .wordlist 格式写入词表
+    private static byte[] wordList(Charset charset, String... words) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteBuffer head = ByteBuffer.allocate(8 + 4 * words.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        head.putInt(words.length).putInt(words.length);
+        for (String word : words) {
+            head.putInt(data.size());
+            data.write(word.getBytes(charset));
+            data.write(0);
+        }
+        head.putInt(0xFDFDFDFD).putInt(0);
+        data.write(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(head.array());
+        out.write(data.toByteArray());
+        return out.toByteArray();
+    }
+
+    // 按 NLPIR 的 .map 格式写入对照表, 末尾的索引不读取
+    private static byte[] map(int targets, int... ids) {
+        ByteBuffer out = ByteBuffer.allocate(8 + 4 * ids.length + 8).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(ids.length).putInt(targets);
+        for (int id : ids) {
+            out.putInt(id);
+        }
+        return out.array();
+    }
+
+    private Path dataDirectory() throws IOException {
+        Path data = createTempDir();
+        Files.write(data.resolve(NormalizeTable.UTF8_WORD_LIST), wordList(
+                StandardCharsets.UTF_8, "汉字", "国", "國", "发", "發", "髮", "Ａ", ""
+        ));
+        Files.write(data.resolve(NormalizeTable.GBK_WORD_LIST), wordList(GBK, "汉字", "国", "发", "Ａ", "?"));
+        Files.write(data.resolve(NormalizeTable.UTF8_TO_GBK_MAP), map(5, 0, 1, 1, 2, 2, 2, 3, 4));
+        return data;
+    }
+
+    private static String normalize(NormalizeTable table, String text) throws IOException {
+        StringBuilder output = new StringBuilder();
+        try (CharFilter filter = new IctclasNormalizeCharFilter(new StringReader(text), table)) {
+            char[] buffer = new char[3];
+            int read;
+            while ((read = filter.read(buffer, 0, buffer.length)) != -1) {
+                output.append(buffer, 0, read);
+            }
+            assertThat(filter.correctOffset(output.length()), equalTo(text.length()));
+        }
+        return output.toString();
+    }
+
+    public void testReadTables() throws IOException {
+        Path data = dataDirectory();
+        String[] words = NlpirMapFile.readWordList(data.resolve(NormalizeTable.GBK_WORD_LIST), GBK);
+        assertArrayEquals(new String[]{"汉字", "国", "发", "Ａ", "?"}, words);
+        assertArrayEquals(new int[]{0, 1, 1, 2, 2, 2, 3, 4}, NlpirMapFile.readMap(data.resolve(NormalizeTable.UTF8_TO_GBK_MAP)));
+
+        Path broken = data.resolve("broken.map");
+        Files.write(broken, map(2, 0, 5));
+        expectThrows(IOException.class, () -> NlpirMapFile.readMap(broken));
+        Files.write(broken, new byte[]{1, 0, 0});
+        expectThrows(IOException.class, () -> NlpirMapFile.readMap(broken));
+        expectThrows(IOException.class, () -> NlpirMapFile.readWordList(broken, GBK));
+    }
+
+    public void testNormalize() throws IOException {
+        NormalizeTable traditional = NormalizeTable.traditional(dataDirectory());
+        // 只有繁体字, 分区名和用户自定义区不转换
+        assertThat(traditional.size(), equalTo(3));
+        NormalizeTable table = new NormalizeTable(traditional, true);
+        assertThat(normalize(table, "國家發展，理髮　ＡＢＣ１２３"), equalTo("国家发展,理发 ABC123"));
+        // 代理对原样保留
+        assertThat(normalize(table, "𠀀國"), equalTo("𠀀国"));
+
+        assertThat(normalize(new NormalizeTable(traditional, false), "國，Ａ"), equalTo("国，Ａ"));
+        assertThat(normalize(new NormalizeTable(null, true), "國，Ａ"), equalTo("國,A"));
+        // 复制后互不影响
+        assertThat(traditional.map('Ａ'), equalTo('Ａ'));
+    }
+}
@@ -0,0 +1,74 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.apache.lucene.tests.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.equalTo;
+
+public class IctclasPinyinFilterTests extends ESTestCase {
+
+    private static final PinyinTable TABLE = PinyinTable.parse(List.of(
+            "# 汉字 读音",
+            "中 zhong1,zhong4",
+            "国 guó",
+            "人 ren2",
+            "民 min",
+            "绿 lǜ",
+            "女 nu:3",
+            "啊 a",
+            "中 chong"
+    ));
+
+    public void testTable() {
+        assertThat(TABLE.size(), equalTo(7));
+        // 多音字取第一个读音, 重复的汉字以第一次为准
+        assertThat(new String(TABLE.syllable('中')), equalTo("zhong"));
+        assertThat(new String(TABLE.syllable('国')), equalTo("guo"));
+        assertThat(new String(TABLE.syllable('绿')), equalTo("lv"));
+        assertThat(new String(TABLE.syllable('女')), equalTo("nv"));
+        assertNull(TABLE.syllable('A'));
+        // 相同的读音只保存一份
+        PinyinTable shared = PinyinTable.parse(List.of("人 ren", "仁 ren2"));
+        assertSame(shared.syllable('人'), shared.syllable('仁'));
+        expectThrows(IllegalArgumentException.class, () -> PinyinTable.parse(List.of("中国 zhongguo")));
+        expectThrows(IllegalArgumentException.class, () -> PinyinTable.parse(List.of("中")));
+        expectThrows(IllegalArgumentException.class, () -> PinyinTable.parse(List.of("中 123")));
+    }
+
+    public void testFilter() throws IOException {
+        TokenStream stream = new IctclasPinyinFilter(TaggedTokenizer.of("中国 iPhone 人民币 啊"), TABLE, true, true, true);
+        // 没有读音的字符原样保留, 首字母与全拼相同时只输出一次
+        assertTokenStreamContents(stream,
+                new String[]{"中国", "zhongguo", "zg", "iPhone", "人民币", "renmin币", "rm币", "啊", "a"},
+                new int[]{0, 0, 0, 2, 8, 8, 8, 11, 11},
+                new int[]{2, 2, 2, 8, 11, 11, 11, 12, 12},
+                new String[]{"word", "pinyin", "pinyin_initials", "word", "word", "pinyin", "pinyin_initials", "word", "pinyin"},
+                new int[]{1, 0, 0, 1, 1, 0, 0, 1, 0},
+                12);
+    }
+
+    public void testWithoutOriginal() throws IOException {
+        TokenStream stream = new IctclasPinyinFilter(TaggedTokenizer.of("中国 iPhone 人民"), TABLE, false, true, true);
+        // 原词的位置增量留给全拼
+        assertTokenStreamContents(stream,
+                new String[]{"zhongguo", "zg", "iPhone", "renmin", "rm"},
+                new int[]{0, 0, 2, 8, 8},
+                new int[]{2, 2, 8, 10, 10},
+                new String[]{"pinyin", "pinyin_initials", "word", "pinyin", "pinyin_initials"},
+                new int[]{1, 0, 1, 1, 0},
+                10);
+
+        stream = new IctclasPinyinFilter(TaggedTokenizer.of("中国 人民"), TABLE, false, false, true);
+        assertTokenStreamContents(stream,
+                new String[]{"zg", "rm"},
+                new int[]{0, 2},
+                new int[]{2, 4},
+                new String[]{"pinyin_initials", "pinyin_initials"},
+                new int[]{1, 1},
+                4);
+    }
+}
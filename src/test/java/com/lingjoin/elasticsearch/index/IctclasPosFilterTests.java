@@ -0,0 +1,101 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.StopFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.lucene.tests.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.equalTo;
+
+public class IctclasPosFilterTests extends ESTestCase {
+
+    public void testPrefixes() {
+        PosTagSet tags = PosTagSet.ofPrefixes(List.of("w", "u"));
+        assertTrue(tags.contains(PosTags.code("w")));
+        assertTrue(tags.contains(PosTags.code("wj")));
+        assertTrue(tags.contains(PosTags.code("ude1")));
+        assertFalse(tags.contains(PosTags.code("n")));
+        assertFalse(tags.contains(PosTags.code("v")));
+        assertFalse(tags.contains(PosTags.NONE));
+        // 之后才登记的词性
+        assertTrue(tags.contains(PosTags.code("ufilter_test")));
+        assertFalse(tags.contains(PosTags.code("filter_test")));
+        assertFalse(PosTagSet.ofPrefixes(List.of("")).contains(PosTags.code("n")));
+    }
+
+    public void testFilter() throws IOException {
+        TokenStream stream = new IctclasPosFilter(
+                TaggedTokenizer.of("商务部/nt 的/ude1 通知/n 。/wj iPhone 吧/y"),
+                PosTagSet.ofPrefixes(IctclasPosFilterFactory.DEFAULT_PREFIXES)
+        );
+        // 去掉的 token 的位置增量累加到下一个 token
+        assertTokenStreamContents(stream,
+                new String[]{"商务部", "通知", "iPhone"},
+                new int[]{0, 4, 7},
+                new int[]{3, 6, 13},
+                new String[]{"nt", "n", "word"},
+                new int[]{1, 2, 2},
+                14);
+    }
+
+    public void testStopWords() throws IOException {
+        CharArraySet words = IctclasStopFilterFactory.load(List.of("的", " ", "", " 了 ", "/"));
+        assertThat(words.size(), equalTo(3));
+        assertTrue(words.contains("了"));
+        expectThrows(UnsupportedOperationException.class, () -> words.add("吧"));
+        TokenStream stream = new StopFilter(TaggedTokenizer.of("商务部/nt 的/ude1 通知/n 了/ule"), words);
+        assertTokenStreamContents(stream,
+                new String[]{"商务部", "通知"},
+                new int[]{0, 4},
+                new int[]{3, 6},
+                new String[]{"nt", "n"},
+                new int[]{1, 2},
+                7);
+    }
+
+    public void testBuiltinCoversIctPosMap() throws IOException {
+        // 打包时 src/main/packaging 复制到测试资源的 plugins/analysis-ictclas
+        List<String> lines;
+        try (InputStream in = IctclasPosFilterTests.class.getResourceAsStream("/plugins/analysis-ictclas/Data/ICTPOS.map")) {
+            assertNotNull("ICTPOS.map is not on the test classpath", in);
+            lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().map(String::strip).toList();
+        }
+        // 前两行是表头, 之后每行一个词性
+        List<String> tags = lines.subList(2, lines.size()).stream().filter(line -> !line.isEmpty()).toList();
+        // 内置编码与 ICTPOS.map 的顺序一致
+        List<String> builtin = new ArrayList<>();
+        for (int code = PosTags.NONE + 1; code <= PosTags.builtinSize(); code++) {
+            builtin.add(PosTags.name(code));
+        }
+        assertThat(builtin, equalTo(tags));
+    }
+
+    public void testPayload() throws IOException {
+        for (int code = PosTags.NONE + 1; code <= PosTags.builtinSize(); code++) {
+            assertThat(PosTags.fromPayload(PosTags.toPayload(code)), equalTo(code));
+        }
+        // 之后登记的词性不在固定的编码表中
+        assertThat(PosTags.toPayload(PosTags.code("payload_test")), equalTo((byte) PosTags.NONE));
+
+        TokenStream stream = new IctclasPosPayloadFilter(TaggedTokenizer.of("商务部/nt iPhone 通知/n"));
+        assertTokenStreamContents(stream,
+                new String[]{"商务部", "iPhone", "通知"},
+                new int[]{0, 3, 9},
+                new int[]{3, 9, 11},
+                new String[]{"nt", "word", "n"},
+                new int[]{1, 1, 1},
+                null,
+                11,
+                null,
+                null,
+                true,
+                new byte[][]{{PosTags.toPayload(PosTags.code("nt"))}, null, {PosTags.toPayload(PosTags.code("n"))}});
+    }
+}
@@ -0,0 +1,116 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration.NativeConcurrency;
+import com.lingjoin.elasticsearch.util.LatencyHistogram;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class NativeCallLimiterTests extends ESTestCase {
+
+    public void testUnlimited() {
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(null, null, null, null));
+        assertThat(limiter.call(() -> "ok"), equalTo("ok"));
+        assertThat(limiter.getInCall().snapshot().getCount(), equalTo(1L));
+        assertThat(limiter.getQueueWait().snapshot().getCount(), equalTo(0L));
+    }
+
+    public void testNotRecorded() {
+        // 预热的调用同样受限制, 但不计入统计
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(1, false, "10s", "reject"));
+        assertThat(limiter.call(() -> "ok", false), equalTo("ok"));
+        assertThat(limiter.getInCall().snapshot().getCount(), equalTo(0L));
+        assertThat(limiter.getQueueWait().snapshot().getCount(), equalTo(0L));
+        assertThat(limiter.getActiveCalls(), equalTo(0));
+    }
+
+    public void testConcurrencyIsBounded() throws InterruptedException {
+        int max = randomIntBetween(1, 3);
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(max, randomBoolean(), "10s", "reject"));
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Thread[] threads = new Thread[max * 3];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 20; j++) {
+                    limiter.call(() -> {
+                        peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        return active.decrementAndGet();
+                    });
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertThat(peak.get(), lessThanOrEqualTo(max));
+        assertThat(limiter.getTimeouts(), equalTo(0L));
+        assertThat(limiter.getInCall().snapshot().getCount(), equalTo(threads.length * 20L));
+    }
+
+    private static void holdPermitAndRun(NativeCallLimiter limiter, Runnable whileHeld) throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> limiter.call(() -> {
+            held.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }));
+        holder.start();
+        try {
+            assertTrue(held.await(10, TimeUnit.SECONDS));
+            assertThat(limiter.getActiveCalls(), equalTo(1));
+            whileHeld.run();
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    public void testTimeoutReject() throws InterruptedException {
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(1, false, "1ms", "reject"));
+        holdPermitAndRun(limiter, () -> expectThrows(EsRejectedExecutionException.class, () -> limiter.call(() -> "ok")));
+        assertThat(limiter.getTimeouts(), equalTo(1L));
+        assertThat(limiter.getRejections(), equalTo(1L));
+    }
+
+    public void testTimeoutSkip() throws InterruptedException {
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(1, false, "1ms", "skip"));
+        holdPermitAndRun(limiter, () -> assertThat(limiter.call(() -> "ok"), nullValue()));
+        assertThat(limiter.getSkips(), equalTo(1L));
+    }
+
+    public void testTimeoutProceed() throws InterruptedException {
+        NativeCallLimiter limiter = new NativeCallLimiter(new NativeConcurrency(1, true, "1ms", "proceed"));
+        holdPermitAndRun(limiter, () -> assertThat(limiter.call(() -> "ok"), equalTo("ok")));
+        assertThat(limiter.getTimeouts(), equalTo(1L));
+        assertThat(limiter.getActiveCalls(), equalTo(0));
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(3));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(100));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(5));
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.getCount(), equalTo(4L));
+        assertThat(snapshot.getMaxNanos(), equalTo(TimeUnit.MILLISECONDS.toNanos(5)));
+        assertThat(snapshot.percentileMicros(50), equalTo(4L));
+        assertThat(snapshot.percentileMicros(75), equalTo(128L));
+        assertThat(snapshot.percentileMicros(100), equalTo(8192L));
+        assertThat(new LatencyHistogram().snapshot().percentileMicros(99), equalTo(0L));
+    }
+}
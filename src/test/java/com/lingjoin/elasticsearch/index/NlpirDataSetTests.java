@@ -0,0 +1,78 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+public class NlpirDataSetTests extends ESTestCase {
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    // 模拟插件目录中的 Data
+    private Path plugin() throws Exception {
+        Path plugin = createTempDir();
+        Path data = Files.createDirectories(plugin.resolve("Data"));
+        Files.writeString(data.resolve(NlpirDataSet.CONFIGURE),
+                "<NLPIR>\n\t<Sentiment>On</Sentiment>//情感分析\n\t<UserDict>on</UserDict>\n</NLPIR>\n", GBK);
+        Files.write(data.resolve("CoreDict.pdat"), new byte[100]);
+        Files.write(data.resolve("UserDict.pdat"), new byte[10]);
+        Files.write(data.resolve("sentiment.pdat"), new byte[1000]);
+        Files.write(data.resolve("KGB_Manager.dat"), new byte[1000]);
+        Files.write(Files.createDirectories(data.resolve("English")).resolve("ne.pdat"), new byte[1000]);
+        Files.write(Files.createDirectories(data.resolve("Font")).resolve("FontSize.dat"), new byte[10]);
+        return plugin;
+    }
+
+    public void testFull() throws Exception {
+        Path plugin = plugin();
+        NlpirDataSet dataSet = NlpirDataSet.prepare(
+                plugin, new Configuration.DataProfile(null, null, null), createTempDir()
+        );
+        assertThat(dataSet.getProfile(), equalTo(Configuration.DataProfile.Profile.FULL));
+        assertThat(dataSet.getPath(), equalTo(plugin));
+        assertThat(dataSet.getBytes(), equalTo(dataSet.getFullBytes()));
+    }
+
+    public void testSegmentation() throws Exception {
+        Path plugin = plugin();
+        Path tmp = createTempDir();
+        Configuration.DataProfile config = new Configuration.DataProfile("segmentation", null, List.of("KGB*"));
+        NlpirDataSet dataSet = NlpirDataSet.prepare(plugin, config, tmp);
+        Path data = dataSet.getPath().resolve("Data");
+        assertThat(dataSet.getPath(), equalTo(tmp.resolve(Configuration.GRANTED_DATA).resolve("segmentation")));
+        assertTrue(Files.exists(data.resolve("CoreDict.pdat")));
+        assertTrue(Files.exists(data.resolve("UserDict.pdat")));
+        assertTrue(Files.exists(data.resolve("Font").resolve("FontSize.dat")));
+        assertFalse(Files.exists(data.resolve("sentiment.pdat")));
+        assertFalse(Files.exists(data.resolve("English")));
+        assertFalse(Files.exists(data.resolve("KGB_Manager.dat")));
+        String configure = Files.readString(data.resolve(NlpirDataSet.CONFIGURE), GBK);
+        assertThat(configure, containsString("<Sentiment>Off</Sentiment>//情感分析"));
+        assertThat(configure, containsString("<UserDict>on</UserDict>"));
+        assertThat(dataSet.getBytes(), lessThan(dataSet.getFullBytes()));
+
+        // 每次初始化重新生成, 插件目录中的文件不受影响
+        NlpirDataSet again = NlpirDataSet.prepare(plugin, config, tmp);
+        assertThat(again.getBytes(), equalTo(dataSet.getBytes()));
+        assertTrue(Files.exists(plugin.resolve("Data").resolve("sentiment.pdat")));
+        assertThat(Files.size(plugin.resolve("Data").resolve("CoreDict.pdat")), equalTo(100L));
+    }
+
+    public void testDirectoryMustBeGranted() {
+        assertThat(new Configuration.DataProfile("segmentation", "ictclas-data/node-1", null).getDirectory(),
+                equalTo("ictclas-data/node-1"));
+        for (String directory : List.of("data", "/var/lib/ictclas-data", "ictclas-data/../data")) {
+            IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                    () -> new Configuration.DataProfile("segmentation", directory, null));
+            assertThat(e.getMessage(), containsString("[dataProfile.directory] must be [ictclas-data]"));
+        }
+    }
+}
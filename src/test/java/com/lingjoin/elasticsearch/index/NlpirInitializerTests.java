@@ -0,0 +1,122 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.nlpir.NlpirException;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class NlpirInitializerTests extends ESTestCase {
+
+    public void testInitializeOnFirstUse() throws NlpirException {
+        NlpirInitializer initializer = new NlpirInitializer();
+        AtomicInteger calls = new AtomicInteger();
+        assertThat(initializer.getState(), equalTo(NlpirInitializer.State.NOT_STARTED));
+        initializer.awaitReady(TimeValue.timeValueSeconds(1), calls::incrementAndGet);
+        initializer.awaitReady(TimeValue.timeValueSeconds(1), calls::incrementAndGet);
+        assertThat(calls.get(), equalTo(1));
+        assertThat(initializer.getState(), equalTo(NlpirInitializer.State.WARMING_UP));
+    }
+
+    public void testAsyncInitializationAndWarmup() throws Exception {
+        NlpirInitializer initializer = new NlpirInitializer();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch warmedUp = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            initializer.startAsync(executor, () -> {
+                calls.incrementAndGet();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new AssertionError(e);
+                }
+            }, warmedUp::countDown);
+            // 已经开始初始化, 不会重复执行
+            initializer.startAsync(executor, calls::incrementAndGet, () -> fail("warm-up twice"));
+            assertThat(initializer.getState(), equalTo(NlpirInitializer.State.INITIALIZING));
+
+            NlpirException e = expectThrows(NlpirException.class,
+                    () -> initializer.awaitReady(TimeValue.timeValueMillis(1), () -> fail("initialize on caller")));
+            assertThat(e.getMessage(), containsString("still initializing"));
+
+            release.countDown();
+            initializer.awaitReady(TimeValue.timeValueSeconds(10), () -> fail("initialize on caller"));
+            assertTrue(warmedUp.await(10, TimeUnit.SECONDS));
+            assertBusy(() -> assertThat(initializer.getState(), equalTo(NlpirInitializer.State.READY)));
+            assertThat(calls.get(), equalTo(1));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testFailureIsRetriedWithBackoff() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        NlpirInitializer initializer = new NlpirInitializer(
+                clock::get, TimeValue.timeValueSeconds(1), TimeValue.timeValueSeconds(3)
+        );
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            initializer.startAsync(executor, () -> {
+                throw new NlpirException("license expired");
+            }, () -> fail("warm-up after failure"));
+            // 退避时间内直接返回上次的失败
+            for (int i = 0; i < 2; i++) {
+                NlpirException e = expectThrows(NlpirException.class,
+                        () -> initializer.awaitReady(TimeValue.timeValueSeconds(10), () -> fail("retry")));
+                assertThat(e.getMessage(), equalTo("license expired"));
+            }
+            assertThat(initializer.getState(), equalTo(NlpirInitializer.State.FAILED));
+            assertThat(initializer.getFailures(), equalTo(1));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        AtomicInteger calls = new AtomicInteger();
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        NlpirException e = expectThrows(NlpirException.class, () -> initializer.awaitReady(TimeValue.timeValueSeconds(10), () -> {
+            calls.incrementAndGet();
+            throw new NlpirException("license still expired");
+        }));
+        assertThat(e.getMessage(), equalTo("license still expired"));
+        assertThat(initializer.getFailures(), equalTo(2));
+
+        // 退避时间翻倍
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        e = expectThrows(NlpirException.class,
+                () -> initializer.awaitReady(TimeValue.timeValueSeconds(10), () -> fail("retry")));
+        assertThat(e.getMessage(), equalTo("license still expired"));
+
+        clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        initializer.awaitReady(TimeValue.timeValueSeconds(10), calls::incrementAndGet);
+        assertThat(calls.get(), equalTo(2));
+        assertThat(initializer.getState(), equalTo(NlpirInitializer.State.WARMING_UP));
+    }
+
+    public void testWarmupFailureStillReady() throws Exception {
+        NlpirInitializer initializer = new NlpirInitializer();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            initializer.startAsync(executor, () -> {}, () -> {
+                throw new IllegalStateException("corpus");
+            });
+            initializer.awaitReady(TimeValue.timeValueSeconds(10), () -> fail("initialize on caller"));
+            assertBusy(() -> assertThat(initializer.getState(), equalTo(NlpirInitializer.State.READY)));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParallelSegmenterTests extends ESTestCase {
+
+    // 每个字符作为一个 token, 位置为分块内的位置
+    private static final BiConsumer<String, TokenResults> CHAR_SEGMENTER = (text, results) -> {
+        results.clear();
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            results.add(i, i + 1, PosTags.code("n"), chars, i, 1);
+        }
+    };
+
+    private static String randomText() {
+        char[] alphabet = "国务院办公厅转发商务部。，！".toCharArray();
+        StringBuilder text = new StringBuilder();
+        for (int i = randomIntBetween(100, 5000); i > 0; i--) {
+            text.append(alphabet[randomIntBetween(0, alphabet.length - 1)]);
+        }
+        return text.toString();
+    }
+
+    private static void assertSameAsSequential(String text, TokenResults actual) {
+        TokenResults expected = new TokenResults();
+        CHAR_SEGMENTER.accept(text, expected);
+        assertThat(actual.size(), equalTo(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat(actual.begin(i), equalTo(expected.begin(i)));
+            assertThat(actual.end(i), equalTo(expected.end(i)));
+            assertThat(actual.text(i), equalTo(expected.text(i)));
+        }
+    }
+
+    public void testShouldSplit() {
+        ParallelSegmenter segmenter = new ParallelSegmenter(100, 10);
+        assertFalse(segmenter.shouldSplit("国".repeat(99)));
+        assertTrue(segmenter.shouldSplit("国".repeat(100)));
+        assertFalse(new ParallelSegmenter(1, 100).shouldSplit("国".repeat(100)));
+    }
+
+    public void testCallerThreadOnly() {
+        ParallelSegmenter.setExecutor(null);
+        String text = randomText();
+        TokenResults results = new TokenResults();
+        new ParallelSegmenter(1, randomIntBetween(2, 200)).segment(text, results, CHAR_SEGMENTER);
+        assertSameAsSequential(text, results);
+    }
+
+    public void testWithExecutor() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(randomIntBetween(1, 4));
+        try {
+            ParallelSegmenter.setExecutor(executor);
+            for (int i = 0; i < 10; i++) {
+                String text = randomText();
+                TokenResults results = new TokenResults();
+                new ParallelSegmenter(1, randomIntBetween(2, 200)).segment(text, results, CHAR_SEGMENTER);
+                assertSameAsSequential(text, results);
+            }
+        } finally {
+            ParallelSegmenter.setExecutor(null);
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    public void testRejectedExecution() throws InterruptedException {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        try {
+            ParallelSegmenter.setExecutor(executor);
+            String text = randomText();
+            TokenResults results = new TokenResults();
+            new ParallelSegmenter(1, 16).segment(text, results, CHAR_SEGMENTER);
+            assertSameAsSequential(text, results);
+        } finally {
+            ParallelSegmenter.setExecutor(null);
+        }
+    }
+
+    public void testFailureIsRethrown() {
+        ParallelSegmenter.setExecutor(null);
+        BiConsumer<String, TokenResults> failing = (text, results) -> {
+            throw new RejectedExecutionException("boom");
+        };
+        expectThrows(RejectedExecutionException.class,
+                () -> new ParallelSegmenter(1, 16).segment(randomText(), new TokenResults(), failing));
+    }
+
+    public void testInPoolTask() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertFalse(ParallelSegmenter.inPoolTask());
+            CompletableFuture<Boolean> submitted = new CompletableFuture<>();
+            ParallelSegmenter.execute(executor, () -> submitted.complete(ParallelSegmenter.inPoolTask()));
+            assertTrue(submitted.get(10, TimeUnit.SECONDS));
+            // 同一个线程执行其他任务时不再标记
+            assertFalse(executor.submit(ParallelSegmenter::inPoolTask).get(10, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.tests.analysis.CannedTokenStream;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.apache.lucene.tests.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+
+public class PreTokenizedStreamTests extends ESTestCase {
+
+    private static Tokenizer replay(String encoded) {
+        Tokenizer tokenizer = new IctclasPreTokenizedTokenizer();
+        tokenizer.setReader(new StringReader(encoded));
+        return tokenizer;
+    }
+
+    // 模拟 IctclasTokenizer 的细粒度分词结果, 同一位置上有多个词
+    private static final String TOKENS = "商务部/nt/0/1 商务/n/0/0 发布/v/3/1 iPhone//6/1 降价/pretokenized_test/13/1";
+
+    private static void assertTokens(TokenStream stream) throws IOException {
+        assertTokenStreamContents(stream,
+                new String[]{"商务部", "商务", "发布", "iPhone", "降价"},
+                new int[]{0, 0, 3, 6, 13},
+                new int[]{3, 2, 5, 12, 15},
+                new String[]{"nt", "n", "v", "word", "pretokenized_test"},
+                new int[]{1, 0, 1, 1, 1},
+                null,
+                15,
+                false);
+    }
+
+    public void testRoundTrip() throws IOException {
+        String encoded;
+        try (TokenStream stream = TaggedTokenizer.of(TOKENS)) {
+            encoded = PreTokenizedStream.encode(stream);
+        }
+        assertTokens(TaggedTokenizer.of(TOKENS));
+        assertTokens(replay(encoded));
+
+        // 分词器可以重复使用
+        Tokenizer tokenizer = replay(encoded);
+        assertTokens(tokenizer);
+        tokenizer.setReader(new StringReader(encoded));
+        assertTokens(tokenizer);
+
+        // ICTPOS.map 中靠后的内置词性同样按编码写入
+        try (TokenStream stream = TaggedTokenizer.of("会话/session")) {
+            encoded = PreTokenizedStream.encode(stream);
+        }
+        assertTokenStreamContents(replay(encoded), new String[]{"会话"}, new String[]{"session"});
+    }
+
+    public void testEmpty() throws IOException {
+        String encoded;
+        try (TokenStream stream = new CannedTokenStream(0, 3)) {
+            encoded = PreTokenizedStream.encode(stream);
+        }
+        assertTokenStreamContents(replay(encoded), new String[0], null, null, 3);
+        assertTokenStreamContents(replay(""), new String[0], null, null, 0);
+    }
+
+    public void testInvalid() throws IOException {
+        expectThrows(IllegalArgumentException.class, () -> assertTokenStreamContents(replay("商务部"), new String[0]));
+        String wrongVersion = Base64.getEncoder().encodeToString(new byte[]{2, 0, 0});
+        expectThrows(IllegalArgumentException.class, () -> assertTokenStreamContents(replay(wrongVersion), new String[0]));
+        String encoded;
+        try (TokenStream stream = TaggedTokenizer.of("商务部/nt 发布/v")) {
+            encoded = PreTokenizedStream.encode(stream);
+        }
+        byte[] bytes = Base64.getDecoder().decode(encoded);
+        String truncated = Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, bytes.length - 3));
+        // 第一个词完整, 读取第二个词时失败
+        expectThrows(IllegalArgumentException.class, () -> assertTokenStreamContents(replay(truncated), new String[]{"商务部"}));
+        try (TokenStream stream = TaggedTokenizer.of("发布/v/3 商务部/nt/0")) {
+            expectThrows(IllegalArgumentException.class, () -> PreTokenizedStream.encode(stream));
+        }
+        assertTokenStreamContents(replay(" "), new String[0], null, null, 0);
+    }
+}
@@ -0,0 +1,97 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class ScriptAwareSegmenterTests extends ESTestCase {
+
+    // 记录调用 NLPIR 的文本, 每个非空白字符作为一个 token
+    private static class RecordingSegmenter implements BiPredicate<String, TokenResults> {
+        final List<String> calls = new ArrayList<>();
+
+        @Override
+        public boolean test(String text, TokenResults results) {
+            calls.add(text);
+            results.clear();
+            char[] chars = text.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                if (!Character.isWhitespace(chars[i])) {
+                    results.add(i, i + 1, PosTags.code("n"), chars, i, 1);
+                }
+            }
+            return true;
+        }
+    }
+
+    private static List<String> texts(TokenResults results) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            texts.add(results.text(i));
+        }
+        return texts;
+    }
+
+    public void testTokenize() {
+        String text = "iPhone 13 Pro, 1,299.00 USD: don't e-mail me@example.com_x";
+        TokenResults results = new TokenResults();
+        ScriptAwareSegmenter.tokenize(text.toCharArray(), 0, text.length(), results);
+        assertThat(texts(results), contains(
+                "iPhone", "13", "Pro", ",", "1,299.00", "USD", ":", "don't", "e", "-", "mail", "me", "@", "example.com_x"
+        ));
+        assertThat(results.pos(1), equalTo("m"));
+        assertThat(results.pos(0), equalTo("x"));
+        assertThat(results.pos(3), equalTo("w"));
+        assertThat(results.begin(4), equalTo(15));
+        assertThat(results.end(4), equalTo(23));
+    }
+
+    public void testNoChineseSkipsNative() {
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        TokenResults results = new TokenResults();
+        assertTrue(new ScriptAwareSegmenter(32).segment("SKU-1234 blue", results, segmenter));
+        assertThat(segmenter.calls, empty());
+        assertThat(texts(results), contains("SKU", "-", "1234", "blue"));
+    }
+
+    public void testShortRunsStayWithChinese() {
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        TokenResults results = new TokenResults();
+        String text = "国务院 abc 商务部";
+        assertTrue(new ScriptAwareSegmenter(32).segment(text, results, segmenter));
+        assertThat(segmenter.calls, contains(text));
+    }
+
+    public void testLongRunsAreStitched() {
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        TokenResults results = new TokenResults();
+        String text = "国务院 see https://example.com/a for details 商务部x2 end";
+        assertTrue(new ScriptAwareSegmenter(8).segment(text, results, segmenter));
+        // 与中文相连的 x2 仍由 NLPIR 处理, 结尾的短片段不单独处理
+        assertThat(segmenter.calls, contains("国务院", "商务部x2 end"));
+        assertThat(texts(results), contains(
+                "国", "务", "院", "see", "https", ":", "/", "/", "example.com", "/", "a", "for", "details",
+                "商", "务", "部", "x", "2", "e", "n", "d"
+        ));
+        // 位置为在全文中的位置
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(text.substring(results.begin(i), results.end(i)), equalTo(results.text(i)));
+        }
+    }
+
+    public void testNeedsNative() {
+        assertTrue(ScriptAwareSegmenter.needsNative('中'));
+        assertTrue(ScriptAwareSegmenter.needsNative('，'));
+        assertTrue(ScriptAwareSegmenter.needsNative('。'));
+        assertTrue(ScriptAwareSegmenter.needsNative(0x20000));
+        assertFalse(ScriptAwareSegmenter.needsNative('a'));
+        assertFalse(ScriptAwareSegmenter.needsNative('é'));
+        assertFalse(ScriptAwareSegmenter.needsNative(','));
+    }
+}
@@ -0,0 +1,104 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class SegmentationCacheTests extends ESTestCase {
+
+    private static TokenResults tokens(String text) {
+        TokenResults results = new TokenResults();
+        char[] chars = text.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            results.add(i, i + 1, PosTags.code("n"), chars, i, 1);
+        }
+        return results;
+    }
+
+    public void testHitAndMiss() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 128);
+        TokenResults target = new TokenResults();
+        assertFalse(cache.get("商务部", false, 0, 0, target));
+        cache.put("商务部", false, 0, 0, tokens("商务部"));
+        assertTrue(cache.get("商务部", false, 0, 0, target));
+        assertThat(target.size(), equalTo(3));
+        assertThat(target.text(1), equalTo("务"));
+        // 粗细粒度分开缓存
+        assertFalse(cache.get("商务部", true, 0, 0, target));
+        assertThat(cache.stats().getHits(), equalTo(1L));
+        assertThat(cache.stats().getMisses(), equalTo(2L));
+    }
+
+    public void testDictionaryVersion() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 128);
+        cache.put("商务部", false, 0, 1, tokens("商务部"));
+        assertTrue(cache.get("商务部", false, 0, 1, new TokenResults()));
+        // 词典重新加载后旧版本的结果不会被命中
+        assertFalse(cache.get("商务部", false, 0, 2, new TokenResults()));
+    }
+
+    public void testFastPathMinRun() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 128);
+        cache.put("iPhone手机", false, 4, 0, tokens("iPhone手机"));
+        assertTrue(cache.get("iPhone手机", false, 4, 0, new TokenResults()));
+        // fast_path_min_run 不同的分词器结果不同, 不能共用
+        assertFalse(cache.get("iPhone手机", false, 0, 0, new TokenResults()));
+        assertFalse(cache.get("iPhone手机", false, 8, 0, new TokenResults()));
+    }
+
+    public void testCachedValueIsCopied() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 128);
+        TokenResults results = tokens("转发");
+        cache.put("转发", false, 0, 0, results);
+        results.clear();
+        TokenResults target = new TokenResults();
+        assertTrue(cache.get("转发", false, 0, 0, target));
+        assertThat(target.size(), equalTo(2));
+        target.clear();
+        assertTrue(cache.get("转发", false, 0, 0, target));
+        assertThat(target.size(), equalTo(2));
+    }
+
+    public void testMaxEntries() {
+        int maxEntries = randomIntBetween(1, 20);
+        SegmentationCache cache = new SegmentationCache(maxEntries, 1 << 20, TimeValue.ZERO, 128);
+        for (int i = 0; i < maxEntries * 3; i++) {
+            cache.put("词" + i, false, 0, 0, tokens("词" + i));
+            assertThat(cache.count(), lessThanOrEqualTo(maxEntries));
+        }
+        assertThat(cache.stats().getEvictions(), equalTo((long) maxEntries * 2));
+    }
+
+    public void testMaxWeight() {
+        long maxWeight = 4096;
+        SegmentationCache cache = new SegmentationCache(10_000, maxWeight, TimeValue.ZERO, 1024);
+        for (int i = 0; i < 100; i++) {
+            String text = randomAlphaOfLength(100) + i;
+            cache.put(text, false, 0, 0, tokens(text));
+            assertThat(cache.weight(), lessThanOrEqualTo(maxWeight));
+        }
+    }
+
+    public void testInvalidateAll() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 128);
+        cache.put("商务部", false, 0, 0, tokens("商务部"));
+        cache.invalidateAll();
+        assertThat(cache.count(), equalTo(0));
+        assertFalse(cache.get("商务部", false, 0, 0, new TokenResults()));
+    }
+
+    public void testCacheable() {
+        SegmentationCache cache = new SegmentationCache(100, 1 << 20, TimeValue.ZERO, 4);
+        assertTrue(cache.isCacheable("商务部"));
+        assertFalse(cache.isCacheable("国务院办公厅"));
+    }
+
+    public void testDisabled() {
+        assertThat(SegmentationCache.create(new Configuration.SearchCache(false, null, null, null, null)), nullValue());
+        assertThat(SegmentationCache.create(new Configuration.SearchCache(true, 0L, null, null, null)), nullValue());
+    }
+}
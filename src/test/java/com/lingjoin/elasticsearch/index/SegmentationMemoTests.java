@@ -0,0 +1,84 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SegmentationMemoTests extends ESTestCase {
+
+    // 中华人民共和国 中华 人民 共和国 成立
+    private static TokenResults fine() {
+        TokenResults results = new TokenResults();
+        add(results, "中华人民共和国", 0);
+        add(results, "中华", 0);
+        add(results, "人民", 2);
+        add(results, "共和国", 4);
+        add(results, "成立", 7);
+        return results;
+    }
+
+    private static void add(TokenResults results, String word, int begin) {
+        results.add(begin, begin + word.length(), PosTags.code("n"), word.toCharArray(), 0, word.length());
+    }
+
+    private static List<String> texts(TokenResults results) {
+        List<String> texts = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            texts.add(results.text(i));
+        }
+        return texts;
+    }
+
+    public void testCoarseFromFine() {
+        TokenResults coarse = new TokenResults();
+        SegmentationMemo.coarse(fine(), coarse);
+        assertThat(texts(coarse), contains("中华人民共和国", "成立"));
+        assertThat(coarse.begin(1), equalTo(7));
+        assertThat(coarse.end(1), equalTo(9));
+    }
+
+    public void testRememberAndDerive() {
+        SegmentationMemo memo = new SegmentationMemo(100);
+        String text = "中华人民共和国成立";
+        TokenResults target = new TokenResults();
+        assertFalse(memo.coarse(text, 0, 0, target));
+        memo.remember(text, 0, 0, fine());
+        // 内容相同的另一个字符串同样命中
+        assertTrue(memo.coarse(new String(text.toCharArray()), 0, 0, target));
+        assertThat(texts(target), contains("中华人民共和国", "成立"));
+        assertFalse(memo.coarse("中华人民共和国", 0, 0, target));
+        // 用户词典变化后不再命中
+        assertFalse(memo.coarse(text, 0, 1, target));
+        // fast_path_min_run 不同的分词器不共用
+        assertFalse(memo.coarse(text, 4, 0, target));
+        assertThat(memo.getHits(), equalTo(1L));
+        assertThat(memo.getMisses(), equalTo(4L));
+    }
+
+    public void testTooLongTextIsNotRemembered() {
+        SegmentationMemo memo = new SegmentationMemo(4);
+        String text = "中华人民共和国成立";
+        memo.remember(text, 0, 0, fine());
+        assertFalse(memo.coarse(text, 0, 0, new TokenResults()));
+    }
+
+    public void testPerThread() throws InterruptedException {
+        SegmentationMemo memo = new SegmentationMemo(100);
+        String text = "中华人民共和国成立";
+        memo.remember(text, 0, 0, fine());
+        boolean[] hit = new boolean[1];
+        Thread other = new Thread(() -> hit[0] = memo.coarse(text, 0, 0, new TokenResults()));
+        other.start();
+        other.join();
+        assertFalse(hit[0]);
+    }
+
+    public void testDisabledByDefault() {
+        assertNull(SegmentationMemo.create(new Configuration.SegmentationMemo(null, null)));
+    }
+}
@@ -0,0 +1,58 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import com.lingjoin.elasticsearch.util.LatencyHistogram;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasKey;
+
+public class SegmentationStatsTests extends ESTestCase {
+
+    public void testCounters() {
+        SegmentationStats stats = new SegmentationStats();
+        stats.onSegment(10, 4, 2_000);
+        stats.onSegment(5, 2, 3_000);
+        stats.onEmptyInput();
+        stats.onNativeError();
+        stats.onParseError(1_000);
+        assertThat(stats.getCalls(), equalTo(4L));
+        assertThat(stats.getChars(), equalTo(15L));
+        assertThat(stats.getTokens(), equalTo(6L));
+        assertThat(stats.getEmptyInputs(), equalTo(1L));
+        assertThat(stats.getNativeErrors(), equalTo(1L));
+        assertThat(stats.getParseErrors(), equalTo(1L));
+        assertThat(stats.getParse().snapshot().getCount(), equalTo(3L));
+    }
+
+    public void testHistogramMap() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_500);
+        histogram.record(3_000_000);
+        Map<String, Object> map = IctclasNodeStats.histogram(histogram.snapshot());
+        assertThat(map.get("count"), equalTo(2L));
+        assertThat(map.get("max_micros"), equalTo(3_000L));
+        @SuppressWarnings("unchecked")
+        Map<String, Long> buckets = (Map<String, Long>) map.get("buckets");
+        assertThat(buckets.size(), equalTo(2));
+        assertThat(buckets, hasKey("lt_2"));
+        assertThat(buckets, hasKey("lt_4096"));
+    }
+
+    public void testSlowLogThresholdAndRateLimit() {
+        SegmentationSlowLog slowLog = SegmentationSlowLog.create(new Configuration.SlowLog(true, "10ms", 5, 2));
+        slowLog.maybeLog("快速", false, 1, 1_000_000);
+        assertThat(slowLog.getSlow(), equalTo(0L));
+        for (int i = 0; i < 5; i++) {
+            slowLog.maybeLog("这是一个很慢的输入文本", true, 8, 20_000_000);
+        }
+        assertThat(slowLog.getSlow(), equalTo(5L));
+        assertThat(slowLog.getLogged(), equalTo(2L));
+    }
+
+    public void testSlowLogDisabledByDefault() {
+        assertNull(SegmentationSlowLog.create(new Configuration.SlowLog(null, null, null, null)));
+    }
+}
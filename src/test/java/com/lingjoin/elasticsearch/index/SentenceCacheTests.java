@@ -0,0 +1,125 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiPredicate;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+public class SentenceCacheTests extends ESTestCase {
+
+    // 记录调用 NLPIR 的文本, 每个字符作为一个 token
+    private static class RecordingSegmenter implements BiPredicate<String, TokenResults> {
+        final List<String> calls = new ArrayList<>();
+        boolean fail = false;
+
+        @Override
+        public boolean test(String text, TokenResults results) {
+            calls.add(text);
+            results.clear();
+            if (fail) {
+                return false;
+            }
+            char[] chars = text.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                results.add(i, i + 1, PosTags.code("n"), chars, i, 1);
+            }
+            return true;
+        }
+    }
+
+    private static SentenceCache cache() {
+        return new SentenceCache(1 << 20, TimeValue.ZERO, 0, 1024);
+    }
+
+    private static void assertTokens(String text, TokenResults results) {
+        assertThat(results.size(), equalTo(text.length()));
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.begin(i), equalTo(i));
+            assertThat(results.text(i), equalTo(text.substring(i, i + 1)));
+        }
+    }
+
+    public void testSentences() {
+        assertThat(SentenceCache.sentences("一切。“这是！”经验".toCharArray()), equalTo(new int[]{3, 8, 10}));
+        assertThat(SentenceCache.sentences("经验。".toCharArray()), equalTo(new int[]{3}));
+        assertThat(SentenceCache.sentences("".toCharArray()), equalTo(new int[]{0}));
+    }
+
+    public void testOnlyChangedSentencesAreSegmented() {
+        SentenceCache cache = cache();
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        TokenResults results = new TokenResults();
+        String original = "国务院办公厅。转发商务部！一切有权力的人。";
+        assertTrue(cache.segment(original, true, 0, 0, results, segmenter));
+        assertThat(segmenter.calls, contains(original));
+        assertTokens(original, results);
+
+        segmenter.calls.clear();
+        String updated = "国务院办公厅。转发外交部！一切有权力的人。";
+        assertTrue(cache.segment(updated, true, 0, 0, results, segmenter));
+        assertThat(segmenter.calls, contains("转发外交部！"));
+        assertTokens(updated, results);
+        assertThat(cache.getHits(), equalTo(2L));
+        assertThat(cache.getMisses(), equalTo(4L));
+        assertThat(cache.getHitChars(), equalTo(15L));
+
+        segmenter.calls.clear();
+        assertTrue(cache.segment(updated, true, 0, 0, results, segmenter));
+        assertThat(segmenter.calls, empty());
+        assertTokens(updated, results);
+    }
+
+    public void testKeyIncludesSegmentModeFastPathAndVersion() {
+        SentenceCache cache = cache();
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        String text = "国务院办公厅。";
+        cache.segment(text, true, 0, 0, new TokenResults(), segmenter);
+        cache.segment(text, false, 0, 0, new TokenResults(), segmenter);
+        cache.segment(text, true, 0, 1, new TokenResults(), segmenter);
+        cache.segment(text, true, 4, 1, new TokenResults(), segmenter);
+        assertThat(segmenter.calls.size(), equalTo(4));
+        cache.segment(text, true, 4, 1, new TokenResults(), segmenter);
+        assertThat(segmenter.calls.size(), equalTo(4));
+    }
+
+    public void testFailuresAreNotCached() {
+        SentenceCache cache = cache();
+        RecordingSegmenter segmenter = new RecordingSegmenter();
+        segmenter.fail = true;
+        String text = "国务院办公厅。转发商务部！";
+        assertFalse(cache.segment(text, true, 0, 0, new TokenResults(), segmenter));
+        segmenter.fail = false;
+        segmenter.calls.clear();
+        TokenResults results = new TokenResults();
+        assertTrue(cache.segment(text, true, 0, 0, results, segmenter));
+        assertThat(segmenter.calls, contains(text));
+        assertTokens(text, results);
+    }
+
+    public void testTokensAcrossSentencesAreNotCached() {
+        SentenceCache cache = cache();
+        String text = "一切。有权力。的人。";
+        // 第二个 token 跨越了第一个句子的边界
+        BiPredicate<String, TokenResults> segmenter = (t, results) -> {
+            char[] chars = t.toCharArray();
+            results.clear();
+            results.add(0, 2, PosTags.code("n"), chars, 0, 2);
+            results.add(2, 4, PosTags.code("w"), chars, 2, 2);
+            results.add(4, t.length(), PosTags.code("n"), chars, 4, t.length() - 4);
+            return true;
+        };
+        cache.segment(text, true, 0, 0, new TokenResults(), segmenter);
+        assertThat(cache.count(), equalTo(0));
+    }
+
+    public void testDisabledByDefault() {
+        assertNull(SentenceCache.create(new Configuration.SentenceCache(null, null, null, null, null)));
+    }
+}
@@ -0,0 +1,76 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class SentenceWindowReaderTests extends ESTestCase {
+
+    private static List<String> windows(SentenceWindowReader reader, String text) throws IOException {
+        reader.reset(new StringReader(text));
+        List<String> windows = new ArrayList<>();
+        StringBuilder joined = new StringBuilder();
+        String window;
+        while ((window = reader.next()) != null) {
+            // 窗口的开始位置与已读取的长度一致
+            assertThat(reader.base(), equalTo(joined.length()));
+            joined.append(window);
+            windows.add(window);
+        }
+        assertThat(joined.toString(), equalTo(text));
+        return windows;
+    }
+
+    public void testSentenceBoundary() throws IOException {
+        SentenceWindowReader reader = new SentenceWindowReader(16);
+        List<String> windows = windows(reader, "一切有权力的人都容易滥用权力。这是一条千古不变的经验！国务院办公厅转发商务部");
+        assertThat(windows, equalTo(List.of("一切有权力的人都容易滥用权力。", "这是一条千古不变的经验！", "国务院办公厅转发商务部")));
+    }
+
+    public void testClosingQuote() throws IOException {
+        SentenceWindowReader reader = new SentenceWindowReader(12);
+        List<String> windows = windows(reader, "他说：“这是经验。”然后走了");
+        assertThat(windows.get(0), equalTo("他说：“这是经验。”"));
+    }
+
+    public void testFallbackBoundaries() throws IOException {
+        SentenceWindowReader reader = new SentenceWindowReader(8);
+        assertThat(windows(reader, "国务院办公厅，转发商务部"), equalTo(List.of("国务院办公厅，", "转发商务部")));
+        assertThat(windows(reader, "abc defgh ij"), equalTo(List.of("abc ", "defgh ", "ij")));
+        assertThat(windows(reader, "国务院办公厅转发商务部"), equalTo(List.of("国务院办公厅转发", "商务部")));
+    }
+
+    public void testSurrogatePairIsNotSplit() throws IOException {
+        SentenceWindowReader reader = new SentenceWindowReader(4);
+        List<String> windows = windows(reader, "abc𠮷def");
+        assertThat(windows.get(0), equalTo("abc"));
+        assertThat(windows.get(1), equalTo("𠮷de"));
+    }
+
+    public void testRandomText() throws IOException {
+        int windowSize = randomIntBetween(2, 64);
+        SentenceWindowReader reader = new SentenceWindowReader(windowSize);
+        char[] alphabet = "国务院办公厅转发商务部。，！ a\n".toCharArray();
+        StringBuilder text = new StringBuilder();
+        for (int i = randomIntBetween(0, 2000); i > 0; i--) {
+            text.append(alphabet[randomIntBetween(0, alphabet.length - 1)]);
+        }
+        for (String window : windows(reader, text.toString())) {
+            assertThat(window.length(), lessThanOrEqualTo(windowSize));
+            assertTrue(window.length() > 0);
+        }
+    }
+
+    public void testReuse() throws IOException {
+        SentenceWindowReader reader = new SentenceWindowReader(8);
+        windows(reader, "国务院办公厅转发商务部");
+        assertThat(windows(reader, ""), equalTo(List.of()));
+        assertThat(windows(reader, "商务部"), equalTo(List.of("商务部")));
+    }
+}
@@ -0,0 +1,83 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * 测试用的分词器, 代替 NLPIR 按 {@link IctclasTokenizer} 的方式设置属性.
+ * <p>
+ * 输入为以空白分隔的 "词/词性/开始/位置增量", 后三项可以省略: 没有词性时为 {@link PosTags#NONE},
+ * 没有开始时紧接上一个词, 位置增量默认为 1. 类型为词性名称, 结束偏移为所有词中最大的结束偏移.
+ */
+public final class TaggedTokenizer extends Tokenizer {
+    private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAtt = addAttribute(OffsetAttribute.class);
+    private final PositionIncrementAttribute positionAtt = addAttribute(PositionIncrementAttribute.class);
+    private final TypeAttribute typeAtt = addAttribute(TypeAttribute.class);
+    private final PosAttribute posAtt = addAttribute(PosAttribute.class);
+    private String[] tokens;
+    private int index;
+    private int offset;
+    private int finalOffset;
+
+    /**
+     * 创建分词器并设置输入.
+     *
+     * @param text the text
+     * @return the tagged tokenizer
+     */
+    public static TaggedTokenizer of(String text) {
+        TaggedTokenizer tokenizer = new TaggedTokenizer();
+        tokenizer.setReader(new StringReader(text));
+        return tokenizer;
+    }
+
+    @Override
+    public boolean incrementToken() {
+        if (index == tokens.length) {
+            return false;
+        }
+        clearAttributes();
+        String[] parts = tokens[index++].split("/", -1);
+        String word = parts[0];
+        int code = parts.length > 1 ? PosTags.code(parts[1]) : PosTags.NONE;
+        int start = parts.length > 2 ? Integer.parseInt(parts[2]) : offset;
+        offset = start + word.length();
+        finalOffset = Math.max(finalOffset, offset);
+        termAtt.append(word);
+        posAtt.setPosCode(code);
+        typeAtt.setType(PosTags.name(code));
+        offsetAtt.setOffset(correctOffset(start), correctOffset(offset));
+        positionAtt.setPositionIncrement(parts.length > 3 ? Integer.parseInt(parts[3]) : 1);
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        int end = correctOffset(finalOffset);
+        offsetAtt.setOffset(end, end);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        StringBuilder text = new StringBuilder();
+        char[] buffer = new char[256];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            text.append(buffer, 0, read);
+        }
+        String stripped = text.toString().strip();
+        tokens = stripped.isEmpty() ? new String[0] : stripped.split("\\s+");
+        index = 0;
+        offset = 0;
+        finalOffset = 0;
+    }
+}
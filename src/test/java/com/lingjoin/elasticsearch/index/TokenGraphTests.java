@@ -0,0 +1,136 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.analysis.tokenattributes.PositionLengthAttribute;
+import org.apache.lucene.util.graph.GraphTokenStreamFiniteStrings;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.equalTo;
+
+public class TokenGraphTests extends ESTestCase {
+
+    /**
+     * 按 {@link TokenGraph} 输出 token, 与 graph 模式的 {@link IctclasTokenizer} 相同.
+     */
+    private static final class GraphTokens extends TokenStream {
+        private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+        private final PositionIncrementAttribute positionAtt = addAttribute(PositionIncrementAttribute.class);
+        private final PositionLengthAttribute positionLengthAtt = addAttribute(PositionLengthAttribute.class);
+        private final TokenResults results;
+        private final TokenGraph graph = new TokenGraph();
+        private int cursor;
+        private int lastPosition = -1;
+
+        GraphTokens(TokenResults results) {
+            this.results = results;
+            graph.build(results);
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (cursor == graph.size()) {
+                return false;
+            }
+            clearAttributes();
+            int index = graph.token(cursor);
+            termAtt.append(results.text(index));
+            positionAtt.setPositionIncrement(graph.position(cursor) - lastPosition);
+            positionLengthAtt.setPositionLength(graph.positionLength(cursor));
+            lastPosition = graph.position(cursor);
+            cursor++;
+            return true;
+        }
+    }
+
+    // 按 NLPIR_Tokenizer4IR 的顺序添加 "词:开始", 粗粒度的词在其中的细粒度词之后
+    private static TokenResults results(String... tokens) {
+        TokenResults results = new TokenResults();
+        for (String token : tokens) {
+            int split = token.lastIndexOf(':');
+            String text = token.substring(0, split);
+            int begin = Integer.parseInt(token.substring(split + 1));
+            results.add(begin, begin + text.length(), PosTags.NONE, text.toCharArray(), 0, text.length());
+        }
+        return results;
+    }
+
+    // 词:位置:位置长度
+    private static List<String> describe(TokenResults results) {
+        TokenGraph graph = new TokenGraph();
+        graph.build(results);
+        List<String> output = new ArrayList<>();
+        for (int i = 0; i < graph.size(); i++) {
+            output.add(results.text(graph.token(i)) + ":" + graph.position(i) + ":" + graph.positionLength(i));
+        }
+        return output;
+    }
+
+    private static List<String> paths(TokenResults results) throws IOException {
+        GraphTokenStreamFiniteStrings strings = new GraphTokenStreamFiniteStrings(new GraphTokens(results));
+        List<String> paths = new ArrayList<>();
+        Iterator<TokenStream> iterator = strings.getFiniteStrings();
+        while (iterator.hasNext()) {
+            TokenStream path = iterator.next();
+            CharTermAttribute termAtt = path.addAttribute(CharTermAttribute.class);
+            StringBuilder text = new StringBuilder();
+            path.reset();
+            while (path.incrementToken()) {
+                text.append(text.length() == 0 ? "" : " ").append(termAtt);
+            }
+            paths.add(text.toString());
+        }
+        return paths;
+    }
+
+    public void testNested() throws IOException {
+        TokenResults results = results("中华:0", "人民:2", "共和国:4", "中华人民共和国:0", "成立:7");
+        assertThat(describe(results), contains(
+                "中华人民共和国:0:3", "中华:0:1", "人民:1:1", "共和国:2:1", "成立:3:1"
+        ));
+        assertThat(paths(results), containsInAnyOrder("中华人民共和国 成立", "中华 人民 共和国 成立"));
+    }
+
+    public void testNoTokenDropped() {
+        // 词之间的空白, 开始位置早于前一个词的 token, 重复和长度为 0 的 token 都保留
+        TokenResults results = results("北京:0", "大学:2", "北京大学:0", "学生:6", "大学生:5", "会:9", "会:9", ":11");
+        List<String> graph = describe(results);
+        assertThat(graph.size(), equalTo(results.size()));
+        assertThat(graph, contains(
+                "北京大学:0:2", "北京:0:1", "大学:1:1", "大学生:2:1", "学生:2:1", "会:3:1", "会:3:1", ":4:1"
+        ));
+    }
+
+    public void testUnreachableStart() throws IOException {
+        // 没有词在 "人民" 之前结束, 它叠放在粗粒度词的位置上, "成立" 紧接在粗粒度词之后
+        TokenResults results = results("人民:2", "中华人民共和国:0", "成立:7");
+        assertThat(describe(results), contains("中华人民共和国:0:1", "人民:0:1", "成立:1:1"));
+        assertThat(paths(results), containsInAnyOrder("中华人民共和国 成立", "人民 成立"));
+
+        // 从叠放的词结束的位置可以继续
+        results = results("人民:2", "共和国:4", "中华人民共和国:0", "成立:7");
+        assertThat(describe(results), contains("中华人民共和国:0:2", "人民:0:1", "共和国:1:1", "成立:2:1"));
+        assertThat(paths(results), containsInAnyOrder("中华人民共和国 成立", "人民 共和国 成立"));
+    }
+
+    public void testCoarse() {
+        TokenGraph graph = new TokenGraph();
+        graph.build(results("商务部:0", "发布:3", "通知:6"));
+        assertThat(graph.nodeCount(), equalTo(3));
+        for (int i = 0; i < graph.size(); i++) {
+            assertThat(graph.position(i), equalTo(i));
+            assertThat(graph.positionLength(i), equalTo(1));
+        }
+        graph.build(new TokenResults());
+        assertThat(graph.size(), equalTo(0));
+        assertThat(graph.nodeCount(), equalTo(0));
+    }
+}
@@ -0,0 +1,102 @@
+package com.lingjoin.elasticsearch.index;
+
+import org.apache.lucene.analysis.tokenattributes.TypeAttribute;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TokenResultsTests extends ESTestCase {
+
+    public void testParse() {
+        TokenResults results = new TokenResults();
+        String json = "[{\"begin\":0,\"end\":6,\"pos\":\"nt\",\"text\":\"国务院办公厅\"},"
+                + "{\"begin\":0,\"end\":3,\"pos\":\"nt\",\"text\":\"国务院\"},"
+                + "{\"begin\":3,\"end\":6,\"pos\":\"n\",\"text\":\"办公厅\"},"
+                + "{\"text\":\"转发\",\"pos\":\"v\",\"end\":8,\"begin\":6}]";
+        assertTrue(results.parse(json));
+        assertThat(results.size(), equalTo(4));
+        assertThat(results.text(0), equalTo("国务院办公厅"));
+        assertThat(results.text(2), equalTo("办公厅"));
+        assertThat(results.begin(2), equalTo(3));
+        assertThat(results.end(2), equalTo(6));
+        assertThat(results.text(3), equalTo("转发"));
+        assertThat(results.begin(3), equalTo(6));
+        assertThat(results.end(3), equalTo(8));
+        assertThat(results.pos(0), sameInstance(results.pos(1)));
+        assertThat(results.pos(3), equalTo("v"));
+    }
+
+    public void testParseUtf8Bytes() {
+        String json = "[{\"begin\":0,\"end\":3,\"pos\":\"nt\",\"text\":\"国务院\"},"
+                + "{\"begin\":3,\"end\":5,\"pos\":\"v\",\"text\":\"转发\"}]";
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+        int offset = randomIntBetween(0, 16);
+        byte[] padded = new byte[offset + utf8.length + randomIntBetween(0, 16)];
+        System.arraycopy(utf8, 0, padded, offset, utf8.length);
+        TokenResults fromBytes = new TokenResults();
+        assertTrue(fromBytes.parse(padded, offset, utf8.length));
+        TokenResults fromString = new TokenResults();
+        assertTrue(fromString.parse(json));
+        assertThat(fromBytes.size(), equalTo(fromString.size()));
+        for (int i = 0; i < fromString.size(); i++) {
+            assertThat(fromBytes.text(i), equalTo(fromString.text(i)));
+            assertThat(fromBytes.begin(i), equalTo(fromString.begin(i)));
+            assertThat(fromBytes.end(i), equalTo(fromString.end(i)));
+            assertThat(fromBytes.posCode(i), equalTo(fromString.posCode(i)));
+        }
+        assertFalse(fromBytes.parse(utf8, 0, utf8.length - 1));
+        assertThat(fromBytes.size(), equalTo(0));
+    }
+
+    public void testParseEscapedAndUnknownFields() {
+        TokenResults results = new TokenResults();
+        assertTrue(results.parse("[{\"begin\":0,\"end\":2,\"pos\":\"zz_new\",\"extra\":{\"a\":[1,2]},\"text\":\"\\\"a\"}]"));
+        assertThat(results.size(), equalTo(1));
+        assertThat(results.text(0), equalTo("\"a"));
+        assertThat(results.pos(0), equalTo("zz_new"));
+        assertThat(PosTags.name(PosTags.code("zz_new")), sameInstance(results.pos(0)));
+    }
+
+    public void testParseMissingPos() {
+        TokenResults results = new TokenResults();
+        assertTrue(results.parse("[{\"begin\":0,\"end\":1,\"pos\":null,\"text\":\"a\"}]"));
+        assertThat(results.posCode(0), equalTo(PosTags.NONE));
+        assertThat(results.pos(0), equalTo(TypeAttribute.DEFAULT_TYPE));
+    }
+
+    public void testParseMalformed() {
+        TokenResults results = new TokenResults();
+        assertTrue(results.parse("[{\"begin\":0,\"end\":1,\"pos\":\"n\",\"text\":\"a\"}]"));
+        assertFalse(results.parse("[{\"begin\":0,"));
+        assertThat(results.size(), equalTo(0));
+        assertFalse(results.parse("{}"));
+        assertThat(results.size(), equalTo(0));
+    }
+
+    public void testReuseAndGrow() {
+        TokenResults results = new TokenResults();
+        int count = randomIntBetween(100, 1000);
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"begin\":").append(i * 2).append(",\"end\":").append(i * 2 + 2)
+                    .append(",\"pos\":\"n\",\"text\":\"词").append(i).append("\"}");
+        }
+        json.append(']');
+        for (int round = 0; round < 2; round++) {
+            assertTrue(results.parse(json.toString()));
+            assertThat(results.size(), equalTo(count));
+            for (int i = 0; i < count; i++) {
+                assertThat(results.text(i), equalTo("词" + i));
+                assertThat(results.begin(i), equalTo(i * 2));
+            }
+        }
+        results.release();
+        assertThat(results.size(), equalTo(0));
+    }
+}
@@ -0,0 +1,321 @@
+package com.lingjoin.elasticsearch.index;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import com.lingjoin.nlpir.NlpirException;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+
+public class UserDictionaryTests extends ESTestCase {
+
+    private static class RecordingDictionary implements UserDictionary.NativeDictionary {
+        final List<String> added = new ArrayList<>();
+        final List<String> deleted = new ArrayList<>();
+        final AtomicInteger imports = new AtomicInteger();
+        final AtomicInteger saves = new AtomicInteger();
+        // NLPIR 中当前的用户词
+        final Set<String> words = new HashSet<>();
+        // 保存时写入的编译结果, 为 null 时不支持保存
+        Path compiled;
+        boolean failAdd = false;
+        boolean failImport = false;
+        Runnable onCall = () -> {
+        };
+
+        @Override
+        public boolean addWord(String entry) {
+            onCall.run();
+            added.add(entry);
+            if (!failAdd) {
+                words.add(entry.split(" ")[0]);
+            }
+            return !failAdd;
+        }
+
+        @Override
+        public boolean deleteWord(String word) {
+            onCall.run();
+            deleted.add(word);
+            words.remove(word);
+            return true;
+        }
+
+        @Override
+        public boolean importDictionary(String path, boolean overwrite) {
+            onCall.run();
+            imports.incrementAndGet();
+            if (failImport) {
+                return false;
+            }
+            // 与 NLPIR 一样, overwrite 为 false 时只添加词条
+            if (overwrite) {
+                words.clear();
+            }
+            try {
+                words.addAll(UserDictionary.read(Path.of(path)).keySet());
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return true;
+        }
+
+        @Override
+        public String lastError() {
+            return "error";
+        }
+
+        @Override
+        public boolean saveDictionary() {
+            if (compiled == null) {
+                return false;
+            }
+            saves.incrementAndGet();
+            try {
+                Files.writeString(compiled, "compiled " + saves.get(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+            return true;
+        }
+    }
+
+    // 模拟节点重新启动后加载词典
+    private static RecordingDictionary restart(Path path, boolean overWrite, Path data) {
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        nativeDictionary.compiled = data.resolve(CompiledUserDictionary.COMPILED);
+        new UserDictionary(path, overWrite, 100, nativeDictionary, () -> {
+        }, new CompiledUserDictionary(data)).load();
+        return nativeDictionary;
+    }
+
+    private static void write(Path path, String... lines) throws IOException {
+        Files.write(path, Arrays.asList(lines), StandardCharsets.UTF_8);
+    }
+
+    public void testParse() {
+        Map<String, String> entries = UserDictionary.parse(List.of("\uFEFF中关村 ns", "", "  ", "大数据\tn ", "云计算", "中关村 nz"));
+        assertThat(entries.keySet(), contains("中关村", "大数据", "云计算"));
+        assertThat(entries.get("中关村"), equalTo("nz"));
+        assertThat(entries.get("大数据"), equalTo("n"));
+        assertThat(entries.get("云计算"), nullValue());
+    }
+
+    public void testIncrementalReload() throws IOException, NlpirException {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns", "大数据 n", "云计算");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        AtomicInteger changes = new AtomicInteger();
+        UserDictionary dictionary = new UserDictionary(path, false, 100, nativeDictionary, changes::incrementAndGet);
+        dictionary.load();
+        assertThat(nativeDictionary.imports.get(), equalTo(1));
+        assertThat(changes.get(), equalTo(1));
+        long version = dictionary.version();
+
+        UserDictionary.ReloadResult unchanged = dictionary.reload();
+        assertThat(unchanged.mode(), equalTo(UserDictionary.Mode.UNCHANGED));
+        assertThat(dictionary.version(), equalTo(version));
+        assertThat(changes.get(), equalTo(1));
+
+        write(path, "中关村 nz", "云计算", "区块链 n");
+        UserDictionary.ReloadResult result = dictionary.reload();
+        assertThat(result.mode(), equalTo(UserDictionary.Mode.INCREMENTAL));
+        assertThat(result.added(), equalTo(2));
+        assertThat(result.removed(), equalTo(1));
+        assertThat(nativeDictionary.added, containsInAnyOrder("中关村 nz", "区块链 n"));
+        assertThat(nativeDictionary.deleted, contains("大数据"));
+        assertThat(nativeDictionary.imports.get(), equalTo(1));
+        assertThat(dictionary.version(), equalTo(version + 1));
+        assertThat(result.version(), equalTo(version + 1));
+        assertThat(changes.get(), equalTo(2));
+    }
+
+    public void testFullReloadWhenIncrementalFails() throws IOException, NlpirException {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        UserDictionary dictionary = new UserDictionary(path, false, 100, nativeDictionary, () -> {
+        });
+        dictionary.load();
+        nativeDictionary.failAdd = true;
+        write(path, "中关村 ns", "大数据 n");
+        assertThat(dictionary.reload().mode(), equalTo(UserDictionary.Mode.FULL));
+        assertThat(nativeDictionary.imports.get(), equalTo(2));
+    }
+
+    public void testFullReloadWhenTooManyChanges() throws IOException, NlpirException {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        UserDictionary dictionary = new UserDictionary(path, false, 2, nativeDictionary, () -> {
+        });
+        dictionary.load();
+        write(path, "大数据 n", "云计算 n", "区块链 n");
+        assertThat(dictionary.reload().mode(), equalTo(UserDictionary.Mode.FULL));
+        assertThat(nativeDictionary.added, empty());
+        assertThat(nativeDictionary.imports.get(), equalTo(2));
+        // 导入只添加词条, 去掉的词需要删除
+        assertThat(nativeDictionary.deleted, contains("中关村"));
+        assertThat(nativeDictionary.words, containsInAnyOrder("大数据", "云计算", "区块链"));
+
+        // 之后的增量重新加载基于正确的词典
+        write(path, "大数据 n", "云计算 n");
+        assertThat(dictionary.reload().mode(), equalTo(UserDictionary.Mode.INCREMENTAL));
+        assertThat(nativeDictionary.words, containsInAnyOrder("大数据", "云计算"));
+    }
+
+    public void testFailedReloadIsRetried() throws IOException, NlpirException {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        AtomicInteger changes = new AtomicInteger();
+        UserDictionary dictionary = new UserDictionary(path, false, 0, nativeDictionary, changes::incrementAndGet);
+        dictionary.load();
+        long version = dictionary.version();
+        nativeDictionary.failImport = true;
+        write(path, "大数据 n");
+        expectThrows(NlpirException.class, dictionary::reload);
+        // 失败后同样使缓存失效, 词条保持为旧的内容, 下次重新加载时再次尝试
+        assertThat(dictionary.version(), equalTo(version + 1));
+        assertThat(changes.get(), equalTo(2));
+        nativeDictionary.failImport = false;
+        assertThat(dictionary.reload().mode(), equalTo(UserDictionary.Mode.FULL));
+    }
+
+    public void testReadersAreExcludedDuringReload() throws Exception {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        UserDictionary dictionary = new UserDictionary(path, false, 100, nativeDictionary, () -> {
+        });
+        dictionary.load();
+        AtomicBoolean readerBlocked = new AtomicBoolean(true);
+        nativeDictionary.onCall = () -> {
+            Thread reader = new Thread(() -> {
+                if (dictionary.readLock().tryLock()) {
+                    readerBlocked.set(false);
+                    dictionary.readLock().unlock();
+                }
+            });
+            reader.start();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        };
+        write(path, "中关村 ns", "大数据 n");
+        dictionary.reload();
+        assertTrue(readerBlocked.get());
+        assertTrue(dictionary.readLock().tryLock());
+        dictionary.readLock().unlock();
+    }
+
+    public void testCompiledDictionaryIsReused() throws IOException {
+        Path path = createTempDir().resolve("userdic.txt");
+        Path data = createTempDir();
+        write(path, "中关村 ns", "大数据 n");
+        RecordingDictionary first = restart(path, false, data);
+        assertThat(first.imports.get(), equalTo(1));
+        assertThat(first.saves.get(), equalTo(1));
+        assertTrue(Files.exists(data.resolve(CompiledUserDictionary.STAMP)));
+
+        RecordingDictionary unchanged = restart(path, false, data);
+        assertThat(unchanged.imports.get(), equalTo(0));
+        assertThat(unchanged.saves.get(), equalTo(0));
+
+        // 词典文件或 overWrite 变化时重新编译
+        write(path, "中关村 ns", "大数据 n", "云计算");
+        assertThat(restart(path, false, data).imports.get(), equalTo(1));
+        assertThat(restart(path, false, data).imports.get(), equalTo(0));
+        assertThat(restart(path, true, data).imports.get(), equalTo(1));
+        assertThat(restart(path, true, data).imports.get(), equalTo(0));
+
+        // 编译结果被替换
+        Files.writeString(data.resolve(CompiledUserDictionary.COMPILED), "replaced by a reinstall", StandardCharsets.UTF_8);
+        assertThat(restart(path, true, data).imports.get(), equalTo(1));
+    }
+
+    public void testCompiledDictionaryAfterReload() throws IOException, NlpirException {
+        Path path = createTempDir().resolve("userdic.txt");
+        Path data = createTempDir();
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        nativeDictionary.compiled = data.resolve(CompiledUserDictionary.COMPILED);
+        UserDictionary dictionary = new UserDictionary(path, false, 100, nativeDictionary, () -> {
+        }, new CompiledUserDictionary(data));
+        dictionary.load();
+        write(path, "中关村 ns", "大数据 n");
+        assertThat(dictionary.reload().mode(), equalTo(UserDictionary.Mode.INCREMENTAL));
+        assertThat(nativeDictionary.saves.get(), equalTo(2));
+        assertThat(restart(path, false, data).imports.get(), equalTo(0));
+
+        // 重新加载失败时编译结果失效
+        nativeDictionary.failAdd = true;
+        nativeDictionary.failImport = true;
+        write(path, "中关村 ns", "大数据 n", "云计算 n");
+        expectThrows(NlpirException.class, dictionary::reload);
+        assertFalse(Files.exists(data.resolve(CompiledUserDictionary.STAMP)));
+    }
+
+    public void testCompiledDictionaryInGeneratedDataSet() throws IOException {
+        Path path = createTempDir().resolve("userdic.txt");
+        write(path, "中关村 ns");
+        Path plugin = createTempDir();
+        Path pluginData = Files.createDirectories(plugin.resolve("Data"));
+        Files.writeString(pluginData.resolve(NlpirDataSet.CONFIGURE), "<NLPIR>\n</NLPIR>\n", StandardCharsets.UTF_8);
+        Files.writeString(pluginData.resolve(CompiledUserDictionary.COMPILED), "empty", StandardCharsets.UTF_8);
+        Configuration.DataProfile config = new Configuration.DataProfile("segmentation", null, null);
+        Path tmp = createTempDir();
+
+        // 无法创建符号链接时 UserDict.pdat 是副本, 编译结果随临时目录删除, 重新生成后需要再导入
+        Path copied = NlpirDataSet.prepare(plugin, config, tmp, false).getPath().resolve("Data");
+        assertFalse(Files.isSymbolicLink(copied.resolve(CompiledUserDictionary.COMPILED)));
+        assertThat(restart(path, false, copied).imports.get(), equalTo(1));
+        assertThat(restart(path, false, copied).imports.get(), equalTo(0));
+        copied = NlpirDataSet.prepare(plugin, config, tmp, false).getPath().resolve("Data");
+        assertThat(restart(path, false, copied).imports.get(), equalTo(1));
+        assertThat(Files.readString(pluginData.resolve(CompiledUserDictionary.COMPILED)), equalTo("empty"));
+
+        // 符号链接时写入插件目录, 重新生成后仍然有效
+        Path linked = NlpirDataSet.prepare(plugin, config, tmp).getPath().resolve("Data");
+        assumeTrue("symbolic links are not supported", Files.isSymbolicLink(linked.resolve(CompiledUserDictionary.COMPILED)));
+        assertThat(restart(path, false, linked).imports.get(), equalTo(1));
+        linked = NlpirDataSet.prepare(plugin, config, tmp).getPath().resolve("Data");
+        assertThat(restart(path, false, linked).imports.get(), equalTo(0));
+        assertTrue(Files.exists(pluginData.resolve(CompiledUserDictionary.STAMP)));
+    }
+
+    public void testCompiledDictionaryNotSupported() throws IOException {
+        Path path = createTempDir().resolve("userdic.txt");
+        Path data = createTempDir();
+        write(path, "中关村 ns");
+        RecordingDictionary nativeDictionary = new RecordingDictionary();
+        new UserDictionary(path, false, 100, nativeDictionary, () -> {
+        }, new CompiledUserDictionary(data)).load();
+        assertThat(nativeDictionary.imports.get(), equalTo(1));
+        assertFalse(Files.exists(data.resolve(CompiledUserDictionary.STAMP)));
+    }
+
+    public void testNotConfigured() {
+        UserDictionary dictionary = UserDictionary.none();
+        assertFalse(dictionary.isConfigured());
+        expectThrows(IllegalStateException.class, dictionary::reload);
+    }
+}
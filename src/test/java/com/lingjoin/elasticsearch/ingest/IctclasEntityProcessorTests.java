@@ -0,0 +1,92 @@
+package com.lingjoin.elasticsearch.ingest;
+
+import com.lingjoin.elasticsearch.index.TaggedTokenizer;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class IctclasEntityProcessorTests extends ESTestCase {
+
+    private final AtomicInteger segmented = new AtomicInteger();
+
+    private IctclasEntityProcessor.Factory factory() {
+        return new IctclasEntityProcessor.Factory(fine -> {
+            segmented.incrementAndGet();
+            return new TaggedTokenizer();
+        });
+    }
+
+    private static IngestDocument document(Map<String, Object> source) {
+        return new IngestDocument("index", "1", null, null, VersionType.INTERNAL, source);
+    }
+
+    private static final String TEXT = "张三/nr 在/p 北京/ns 见到/v 李四/nr ，/wd 张三/nr 代表/v 商务部/nt 和/cc 上海市/ns";
+
+    public void testDefaultTypes() throws Exception {
+        IctclasEntityProcessor processor = factory().create(Map.of(), "tag", null, new HashMap<>(Map.of("field", "content")));
+        assertThat(processor.getMode(), equalTo(IctclasProcessor.Mode.SEARCH));
+        IngestDocument document = document(new HashMap<>(Map.of("content", TEXT)));
+        processor.execute(document);
+        assertThat(document.getFieldValue("entities.person", List.class), equalTo(List.of("张三", "李四")));
+        assertThat(document.getFieldValue("entities.place", List.class), equalTo(List.of("北京", "上海市")));
+        assertThat(document.getFieldValue("entities.organization", List.class), equalTo(List.of("商务部")));
+        assertThat(segmented.get(), equalTo(1));
+    }
+
+    public void testTypesAndLimit() throws Exception {
+        Map<String, Object> config = new HashMap<>(Map.of(
+                "field", "content", "target_field", "facets",
+                "types", Map.of("who", List.of("nr", "nt"), "verb", "v"), "max_per_type", 2
+        ));
+        IctclasEntityProcessor processor = factory().create(Map.of(), "tag", null, config);
+        assertTrue(config.isEmpty());
+        IngestDocument document = document(new HashMap<>(Map.of("content", TEXT)));
+        processor.execute(document);
+        // 每种类型最多 2 个
+        assertThat(document.getFieldValue("facets.who", List.class), equalTo(List.of("张三", "李四")));
+        assertThat(document.getFieldValue("facets.verb", List.class), equalTo(List.of("见到", "代表")));
+        assertFalse(document.hasField("facets.place"));
+
+        // 没有实体时不写入字段
+        IngestDocument empty = document(new HashMap<>(Map.of("content", "在/p 见到/v")));
+        factory().create(Map.of(), "tag", null, new HashMap<>(Map.of("field", "content"))).execute(empty);
+        assertFalse(empty.hasField("entities"));
+
+        expectThrows(ElasticsearchException.class, () -> factory().create(
+                Map.of(), "tag", null, new HashMap<>(Map.of("field", "content", "max_per_type", 0))
+        ));
+        expectThrows(ElasticsearchException.class, () -> factory().create(
+                Map.of(), "tag", null, new HashMap<>(Map.of("field", "content", "types", Map.of("who", List.of(""))))
+        ));
+    }
+
+    public void testReuseTokens() throws Exception {
+        // ictclas 预处理器保存分词结果, 实体从保存的结果中取出
+        IctclasProcessor tokens = new IctclasProcessor.Factory(fine -> new TaggedTokenizer()).create(
+                Map.of(), "tokens", null, new HashMap<>(Map.of("field", "content"))
+        );
+        IctclasEntityProcessor processor = factory().create(
+                Map.of(), "tag", null, new HashMap<>(Map.of("field", "content", "tokens_field", "content_tokens"))
+        );
+        IngestDocument document = document(new HashMap<>(Map.of("content", TEXT)));
+        tokens.execute(document);
+        processor.execute(document);
+        assertThat(segmented.get(), equalTo(0));
+        assertThat(document.getFieldValue("entities.person", List.class), equalTo(List.of("张三", "李四")));
+        assertThat(document.getFieldValue("entities.organization", List.class), equalTo(List.of("商务部")));
+
+        // 没有保存的分词结果时自行分词
+        IngestDocument plain = document(new HashMap<>(Map.of("content", TEXT)));
+        processor.execute(plain);
+        assertThat(segmented.get(), equalTo(1));
+        assertThat(plain.getFieldValue("entities.place", List.class), equalTo(List.of("北京", "上海市")));
+    }
+}
@@ -0,0 +1,119 @@
+package com.lingjoin.elasticsearch.ingest;
+
+import com.lingjoin.elasticsearch.index.IctclasPreTokenizedTokenizer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+
+public class IctclasProcessorTests extends ESTestCase {
+
+    private final List<Boolean> modes = new ArrayList<>();
+    private final AtomicInteger segmented = new AtomicInteger();
+
+    // 以空格分词代替 NLPIR, 记录调用次数和分词方式
+    private IctclasProcessor.Factory factory() {
+        return new IctclasProcessor.Factory(fine -> {
+            modes.add(fine);
+            segmented.incrementAndGet();
+            return new WhitespaceTokenizer();
+        });
+    }
+
+    private static IngestDocument document(Map<String, Object> source) {
+        return new IngestDocument("index", "1", null, null, VersionType.INTERNAL, source);
+    }
+
+    private static List<String> replay(String encoded) throws IOException {
+        List<String> output = new ArrayList<>();
+        try (Tokenizer tokenizer = new IctclasPreTokenizedTokenizer()) {
+            tokenizer.setReader(new StringReader(encoded));
+            CharTermAttribute termAtt = tokenizer.addAttribute(CharTermAttribute.class);
+            OffsetAttribute offsetAtt = tokenizer.addAttribute(OffsetAttribute.class);
+            tokenizer.reset();
+            while (tokenizer.incrementToken()) {
+                output.add(termAtt + ":" + offsetAtt.startOffset() + "-" + offsetAtt.endOffset());
+            }
+            tokenizer.end();
+        }
+        return output;
+    }
+
+    public void testSegmentOnce() throws Exception {
+        Map<String, Object> config = new HashMap<>(Map.of("field", "content"));
+        IctclasProcessor processor = factory().create(Map.of(), "tag", null, config);
+        assertThat(processor.getTargetField(), equalTo("content_tokens"));
+        assertThat(processor.getMode(), equalTo(IctclasProcessor.Mode.INDEX));
+
+        IngestDocument document = document(new HashMap<>(Map.of("content", "商务部 发布 通知")));
+        processor.execute(document);
+        String encoded = document.getFieldValue("content_tokens", String.class);
+        assertThat(replay(encoded), contains("商务部:0-3", "发布:4-6", "通知:7-9"));
+        assertThat(segmented.get(), equalTo(1));
+        assertThat(modes, contains(true));
+        // 原始字段保持不变
+        assertThat(document.getFieldValue("content", String.class), equalTo("商务部 发布 通知"));
+    }
+
+    public void testConfig() throws Exception {
+        Map<String, Object> config = new HashMap<>(Map.of(
+                "field", "content", "target_field", "tokens.search", "mode", "search", "ignore_missing", true
+        ));
+        IctclasProcessor processor = factory().create(Map.of(), "tag", null, config);
+        assertTrue(config.isEmpty());
+        assertTrue(processor.isIgnoreMissing());
+
+        IngestDocument missing = document(new HashMap<>(Map.of("title", "通知")));
+        processor.execute(missing);
+        assertFalse(missing.hasField("tokens"));
+        assertThat(segmented.get(), equalTo(0));
+
+        IngestDocument document = document(new HashMap<>(Map.of("content", "通知")));
+        processor.execute(document);
+        assertThat(replay(document.getFieldValue("tokens.search", String.class)), contains("通知:0-2"));
+        assertThat(modes, contains(false));
+
+        expectThrows(ElasticsearchException.class, () -> factory().create(
+                Map.of(), "tag", null, new HashMap<>(Map.of("field", "content", "mode", "fine"))
+        ));
+        expectThrows(ElasticsearchException.class, () -> factory().create(Map.of(), "tag", null, new HashMap<>()));
+        IctclasProcessor strict = factory().create(Map.of(), "tag", null, new HashMap<>(Map.of("field", "content")));
+        expectThrows(IllegalArgumentException.class, () -> strict.execute(document(new HashMap<>(Map.of("title", "通知")))));
+    }
+
+    public void testKeepExisting() throws Exception {
+        IctclasProcessor processor = factory().create(
+                Map.of(), "tag", null, new HashMap<>(Map.of("field", "content", "override", false))
+        );
+        IngestDocument document = document(new HashMap<>(Map.of("content", "商务部 通知")));
+        processor.execute(document);
+        String encoded = document.getFieldValue("content_tokens", String.class);
+        assertThat(segmented.get(), equalTo(1));
+
+        // 重新索引时保留已有的分词结果
+        IngestDocument reindexed = document(new HashMap<>(Map.of("content", "商务部 通知", "content_tokens", encoded)));
+        processor.execute(reindexed);
+        assertThat(segmented.get(), equalTo(1));
+        assertThat(reindexed.getFieldValue("content_tokens", String.class), equalTo(encoded));
+
+        IctclasProcessor overriding = factory().create(Map.of(), "tag", null, new HashMap<>(Map.of("field", "content")));
+        assertTrue(overriding.isOverride());
+        overriding.execute(reindexed);
+        assertThat(segmented.get(), equalTo(2));
+    }
+}
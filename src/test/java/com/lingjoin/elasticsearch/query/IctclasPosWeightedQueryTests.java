@@ -0,0 +1,139 @@
+package com.lingjoin.elasticsearch.query;
+
+import com.lingjoin.elasticsearch.index.IctclasPosPayloadFilter;
+import com.lingjoin.elasticsearch.index.PosTags;
+import com.lingjoin.elasticsearch.index.TaggedTokenizer;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.ParsingException;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.json.JsonXContent;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+import static org.apache.lucene.tests.analysis.BaseTokenStreamTestCase.assertTokenStreamContents;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+public class IctclasPosWeightedQueryTests extends ESTestCase {
+
+    // 输入为 "词/词性", 代替 IctclasTokenizer, 词性写入 payload
+    private static final class TaggedAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            Tokenizer tokenizer = new TaggedTokenizer();
+            return new TokenStreamComponents(tokenizer, new IctclasPosPayloadFilter(tokenizer));
+        }
+    }
+
+    private static BytesRef payload(String pos) {
+        return new BytesRef(new byte[]{PosTags.toPayload(PosTags.code(pos))});
+    }
+
+    public void testDecoder() {
+        PosWeightDecoder decoder = new PosWeightDecoder(Map.of("n", 2f, "nr", 3f, "v", 0.5f), 1f);
+        assertThat(decoder.computePayloadFactor(payload("n")), equalTo(2f));
+        assertThat(decoder.computePayloadFactor(payload("ns")), equalTo(2f));
+        // 最长前缀
+        assertThat(decoder.computePayloadFactor(payload("nr")), equalTo(3f));
+        assertThat(decoder.computePayloadFactor(payload("nrf")), equalTo(3f));
+        assertThat(decoder.computePayloadFactor(payload("vn")), equalTo(0.5f));
+        assertThat(decoder.computePayloadFactor(payload("a")), equalTo(1f));
+        assertThat(decoder.computePayloadFactor(null), equalTo(1f));
+        assertThat(decoder.computePayloadFactor(new BytesRef()), equalTo(1f));
+        assertThat(decoder, equalTo(new PosWeightDecoder(Map.of("n", 2f, "nr", 3f, "v", 0.5f), 1f)));
+    }
+
+    public void testSerialization() throws IOException {
+        IctclasPosWeightedQueryBuilder builder = new IctclasPosWeightedQueryBuilder(
+                "content", "商务部通知", Map.of("n", 2f, "v", 0.5f)
+        ).defaultWeight(0.8f).analyzer("ictclas_search").boost(2f).queryName("pos");
+        BytesStreamOutput out = new BytesStreamOutput();
+        builder.writeTo(out);
+        try (StreamInput in = out.bytes().streamInput()) {
+            IctclasPosWeightedQueryBuilder read = new IctclasPosWeightedQueryBuilder(in);
+            assertThat(read, equalTo(builder));
+            assertThat(read.hashCode(), equalTo(builder.hashCode()));
+        }
+    }
+
+    public void testFromXContent() throws IOException {
+        String json = "{\"field\": \"content\", \"query\": \"商务部通知\", \"weights\": {\"n\": 2, \"v\": 0.5},"
+                + " \"default_weight\": 0.8, \"boost\": 2, \"_name\": \"pos\"}";
+        try (XContentParser parser = createParser(JsonXContent.jsonXContent, json)) {
+            parser.nextToken();
+            IctclasPosWeightedQueryBuilder builder = IctclasPosWeightedQueryBuilder.fromXContent(parser);
+            assertThat(builder.field(), equalTo("content"));
+            assertThat(builder.weights(), equalTo(Map.of("n", 2f, "v", 0.5f)));
+            assertThat(builder.defaultWeight(), equalTo(0.8f));
+            assertThat(builder.boost(), equalTo(2f));
+            assertThat(builder.queryName(), equalTo("pos"));
+        }
+        try (XContentParser parser = createParser(JsonXContent.jsonXContent, "{\"field\": \"content\", \"slop\": 1}")) {
+            parser.nextToken();
+            expectThrows(ParsingException.class, () -> IctclasPosWeightedQueryBuilder.fromXContent(parser));
+        }
+        try (XContentParser parser = createParser(
+                JsonXContent.jsonXContent, "{\"field\": \"content\", \"query\": \"通知\", \"weights\": {\"n\": -1}}"
+        )) {
+            parser.nextToken();
+            expectThrows(ParsingException.class, () -> IctclasPosWeightedQueryBuilder.fromXContent(parser));
+        }
+    }
+
+    public void testScoring() throws IOException {
+        try (Directory directory = newDirectory();
+             Analyzer analyzer = new TaggedAnalyzer()) {
+            try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer))) {
+                for (String[] doc : new String[][]{{"noun", "发布/v 通知/n"}, {"verb", "通知/v 商务部/nt"}}) {
+                    Document document = new Document();
+                    document.add(new StringField("id", doc[0], Field.Store.YES));
+                    document.add(new TextField("content", doc[1], Field.Store.NO));
+                    writer.addDocument(document);
+                }
+            }
+            assertTokenStreamContents(analyzer.tokenStream("content", "通知/v 商务部/nt"),
+                    new String[]{"通知", "商务部"},
+                    new int[]{0, 2},
+                    new int[]{2, 5},
+                    new String[]{"v", "nt"},
+                    new int[]{1, 1},
+                    null,
+                    5,
+                    null,
+                    null,
+                    true,
+                    new byte[][]{payload("v").bytes, payload("nt").bytes});
+            try (DirectoryReader reader = DirectoryReader.open(directory)) {
+                IndexSearcher searcher = new IndexSearcher(reader);
+                Set<BytesRef> terms = IctclasPosWeightedQueryBuilder.terms(new TaggedAnalyzer(), "content", "通知");
+                assertThat(terms, equalTo(Set.of(new BytesRef("通知"))));
+                TopDocs hits = searcher.search(
+                        IctclasPosWeightedQueryBuilder.toQuery("content", terms, Map.of("n", 2f, "v", 0.5f), 1f), 10
+                );
+                assertThat(hits.scoreDocs.length, equalTo(2));
+                ScoreDoc top = hits.scoreDocs[0];
+                assertThat(searcher.doc(top.doc).get("id"), equalTo("noun"));
+                assertThat(top.score, greaterThan(hits.scoreDocs[1].score * 3));
+                assertTrue(IctclasPosWeightedQueryBuilder.terms(new TaggedAnalyzer(), "content", " ").isEmpty());
+            }
+        }
+    }
+}
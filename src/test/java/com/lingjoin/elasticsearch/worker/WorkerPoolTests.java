@@ -0,0 +1,226 @@
+package com.lingjoin.elasticsearch.worker;
+
+import com.lingjoin.elasticsearch.util.Configuration;
+import org.elasticsearch.test.ESTestCase;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+
+public class WorkerPoolTests extends ESTestCase {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long HEALTH_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final List<Thread> threads = new ArrayList<>();
+    private final List<NlpirWorker> workers = new ArrayList<>();
+
+    @Override
+    public void tearDown() throws Exception {
+        workers.forEach(NlpirWorker::stop);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        super.tearDown();
+    }
+
+    // 把输入和粒度原样返回
+    private static ByteBuffer echo(String text, boolean fineSegment) {
+        return ByteBuffer.wrap((text + "|" + fineSegment).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String text(WorkerPool.Response response) {
+        return new String(response.bytes(), 0, response.length(), StandardCharsets.UTF_8);
+    }
+
+    private RingFile start(Path ring, int slots, int slotSize, NlpirWorker.Segmenter segmenter) throws Exception {
+        RingFile file = RingFile.create(ring, slots, slotSize, 1);
+        NlpirWorker worker = new NlpirWorker(file, segmenter);
+        Thread thread = new Thread(worker, "test-worker");
+        workers.add(worker);
+        threads.add(thread);
+        thread.start();
+        return file;
+    }
+
+    public void testRoundTrip() throws Exception {
+        Path dir = createTempDir();
+        start(dir.resolve("worker-0.ring"), 4, 4096, WorkerPoolTests::echo);
+        WorkerPool pool = new WorkerPool(dir, 1, TIMEOUT_NANOS, HEALTH_MILLIS);
+        assertTrue(pool.isAvailable());
+        assertThat(text(pool.segment("商务部转发", true)), equalTo("商务部转发|true"));
+        assertThat(text(pool.segment("iPhone", false)), equalTo("iPhone|false"));
+        assertThat(pool.getRequests(), equalTo(2L));
+        assertThat(pool.getFailures(), equalTo(0L));
+    }
+
+    public void testPipelining() throws Exception {
+        Path dir = createTempDir();
+        start(dir.resolve("worker-0.ring"), 2, 1024, WorkerPoolTests::echo);
+        start(dir.resolve("worker-1.ring"), 2, 1024, WorkerPoolTests::echo);
+        WorkerPool pool = new WorkerPool(dir, 2, TIMEOUT_NANOS, HEALTH_MILLIS);
+        AtomicInteger mismatches = new AtomicInteger();
+        List<Thread> clients = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int client = t;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    String text = "客户端" + client + "请求" + i;
+                    WorkerPool.Response response = pool.segment(text, i % 2 == 0);
+                    if (response == null || !text(response).equals(text + "|" + (i % 2 == 0))) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+            });
+            clients.add(thread);
+            thread.start();
+        }
+        for (Thread thread : clients) {
+            thread.join();
+        }
+        assertThat(mismatches.get(), equalTo(0));
+        assertThat(pool.getRequests(), equalTo(800L));
+    }
+
+    public void testNoWorker() {
+        WorkerPool pool = new WorkerPool(createTempDir(), 2, TIMEOUT_NANOS, HEALTH_MILLIS);
+        assertFalse(pool.isAvailable());
+        assertThat(pool.segment("商务部", true), nullValue());
+        assertThat(pool.getFailures(), equalTo(1L));
+    }
+
+    public void testStaleHeartbeat() throws Exception {
+        Path dir = createTempDir();
+        // 不启动心跳线程
+        start(dir.resolve("worker-0.ring"), 1, 1024, WorkerPoolTests::echo);
+        WorkerPool pool = new WorkerPool(dir, 1, TIMEOUT_NANOS, 50);
+        assertBusy(() -> assertFalse(pool.isAvailable()));
+        workers.get(0).heartbeat();
+        assertTrue(pool.isAvailable());
+    }
+
+    public void testRestart() throws Exception {
+        Path dir = createTempDir();
+        Path ring = dir.resolve("worker-0.ring");
+        start(ring, 2, 1024, WorkerPoolTests::echo);
+        WorkerPool pool = new WorkerPool(dir, 1, TIMEOUT_NANOS, HEALTH_MILLIS);
+        assertThat(text(pool.segment("商务部", true)), equalTo("商务部|true"));
+        workers.get(0).stop();
+        threads.get(0).join();
+        // 重新启动时槽位数和大小可以变化
+        RingFile restarted = start(ring, 4, 2048, (text, fineSegment) -> echo(text + "!", fineSegment));
+        assertThat(restarted.generation(), equalTo(2L));
+        assertThat(text(pool.segment("商务部", true)), equalTo("商务部!|true"));
+        assertThat(pool.getRestarts(), equalTo(1L));
+    }
+
+    public void testRingIsUnmappedAfterLastRelease() throws Exception {
+        Path ring = createTempDir().resolve("worker-0.ring");
+        RingFile.create(ring, 1, 1024, 1);
+        RingFile opened = RingFile.open(ring);
+        assertTrue(opened.acquire());
+        opened.release();
+        assertThat(opened.slots(), equalTo(1));
+        opened.release();
+        assertFalse(opened.acquire());
+    }
+
+    public void testDirectoryMustBeGranted() {
+        assertThat(new Configuration.Workers(true, null, null, null, null).getDirectory(), equalTo("ictclas-workers"));
+        IllegalArgumentException e = expectThrows(IllegalArgumentException.class,
+                () -> new Configuration.Workers(true, "/dev/shm/ictclas", null, null, null));
+        assertThat(e.getMessage(), containsString("[workers.directory] must be [ictclas-workers]"));
+    }
+
+    public void testTimeout() throws Exception {
+        Path dir = createTempDir();
+        CountDownLatch release = new CountDownLatch(1);
+        start(dir.resolve("worker-0.ring"), 1, 1024, (text, fineSegment) -> {
+            if (text.equals("慢")) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return echo(text, fineSegment);
+        });
+        WorkerPool pool = new WorkerPool(dir, 1, TimeUnit.MILLISECONDS.toNanos(100), HEALTH_MILLIS);
+        assertThat(pool.segment("慢", true), nullValue());
+        // 唯一的槽位仍在处理中, 等待空闲槽位超时
+        assertThat(pool.segment("快", true), nullValue());
+        assertThat(pool.getTimeouts(), equalTo(2L));
+        release.countDown();
+        // 分词进程完成后释放被放弃的槽位
+        assertBusy(() -> assertThat(text(pool.segment("快", true)), equalTo("快|true")));
+    }
+
+    public void testWorkerDiesDuringRequest() throws Exception {
+        Path dir = createTempDir();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean alive = new AtomicBoolean(true);
+        start(dir.resolve("worker-0.ring"), 1, 1024, (text, fineSegment) -> {
+            if (text.equals("崩溃")) {
+                // 模拟进程在处理中退出: 心跳停止, 结果不再写入
+                alive.set(false);
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return echo(text, fineSegment);
+        });
+        Thread heartbeat = new Thread(() -> {
+            while (alive.get()) {
+                workers.get(0).heartbeat();
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "test-heartbeat");
+        threads.add(heartbeat);
+        heartbeat.start();
+        try {
+            WorkerPool pool = new WorkerPool(dir, 1, TIMEOUT_NANOS, 200);
+            assertTrue(pool.isAvailable());
+            long start = System.nanoTime();
+            assertThat(pool.segment("崩溃", true), nullValue());
+            assertThat(System.nanoTime() - start, lessThan(TIMEOUT_NANOS / 2));
+            assertThat(pool.getFailures(), equalTo(1L));
+            assertThat(pool.getTimeouts(), equalTo(0L));
+            assertFalse(pool.isAvailable());
+            // 没有可用进程时立即失败
+            assertThat(pool.segment("快", true), nullValue());
+            assertThat(pool.getFailures(), equalTo(2L));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    public void testResultTooLarge() throws Exception {
+        Path dir = createTempDir();
+        start(dir.resolve("worker-0.ring"), 1, 64, (text, fineSegment) -> ByteBuffer.wrap(new byte[100]));
+        WorkerPool pool = new WorkerPool(dir, 1, TIMEOUT_NANOS, HEALTH_MILLIS);
+        assertThat(pool.segment("商务部", true), nullValue());
+        assertThat(pool.segment("x".repeat(100), true), nullValue());
+        assertThat(pool.getFailures(), greaterThanOrEqualTo(2L));
+        // 失败后槽位被释放
+        assertThat(pool.segment("商务部", true), nullValue());
+        assertThat(pool.getTimeouts(), equalTo(0L));
+    }
+}